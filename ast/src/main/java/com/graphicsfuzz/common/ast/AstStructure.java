@@ -0,0 +1,552 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.common.ast;
+
+import com.graphicsfuzz.common.ast.decl.ArrayInfo;
+import com.graphicsfuzz.common.ast.decl.ArrayInitializer;
+import com.graphicsfuzz.common.ast.decl.DefaultLayout;
+import com.graphicsfuzz.common.ast.decl.FunctionDefinition;
+import com.graphicsfuzz.common.ast.decl.FunctionPrototype;
+import com.graphicsfuzz.common.ast.decl.InterfaceBlock;
+import com.graphicsfuzz.common.ast.decl.ParameterDecl;
+import com.graphicsfuzz.common.ast.decl.PrecisionDeclaration;
+import com.graphicsfuzz.common.ast.decl.ScalarInitializer;
+import com.graphicsfuzz.common.ast.decl.StructDeclaration;
+import com.graphicsfuzz.common.ast.decl.VariableDeclInfo;
+import com.graphicsfuzz.common.ast.decl.VariablesDeclaration;
+import com.graphicsfuzz.common.ast.expr.ArrayConstructorExpr;
+import com.graphicsfuzz.common.ast.expr.ArrayIndexExpr;
+import com.graphicsfuzz.common.ast.expr.BinaryExpr;
+import com.graphicsfuzz.common.ast.expr.BoolConstantExpr;
+import com.graphicsfuzz.common.ast.expr.FloatConstantExpr;
+import com.graphicsfuzz.common.ast.expr.FunctionCallExpr;
+import com.graphicsfuzz.common.ast.expr.IntConstantExpr;
+import com.graphicsfuzz.common.ast.expr.MemberLookupExpr;
+import com.graphicsfuzz.common.ast.expr.ParenExpr;
+import com.graphicsfuzz.common.ast.expr.TernaryExpr;
+import com.graphicsfuzz.common.ast.expr.TypeConstructorExpr;
+import com.graphicsfuzz.common.ast.expr.UIntConstantExpr;
+import com.graphicsfuzz.common.ast.expr.UnaryExpr;
+import com.graphicsfuzz.common.ast.expr.VariableIdentifierExpr;
+import com.graphicsfuzz.common.ast.stmt.BlockStmt;
+import com.graphicsfuzz.common.ast.stmt.BreakStmt;
+import com.graphicsfuzz.common.ast.stmt.ContinueStmt;
+import com.graphicsfuzz.common.ast.stmt.DeclarationStmt;
+import com.graphicsfuzz.common.ast.stmt.DefaultCaseLabel;
+import com.graphicsfuzz.common.ast.stmt.DiscardStmt;
+import com.graphicsfuzz.common.ast.stmt.DoStmt;
+import com.graphicsfuzz.common.ast.stmt.ExprCaseLabel;
+import com.graphicsfuzz.common.ast.stmt.ExprStmt;
+import com.graphicsfuzz.common.ast.stmt.ForStmt;
+import com.graphicsfuzz.common.ast.stmt.IfStmt;
+import com.graphicsfuzz.common.ast.stmt.NullStmt;
+import com.graphicsfuzz.common.ast.stmt.ReturnStmt;
+import com.graphicsfuzz.common.ast.stmt.SwitchStmt;
+import com.graphicsfuzz.common.ast.stmt.VersionStatement;
+import com.graphicsfuzz.common.ast.stmt.WhileStmt;
+import com.graphicsfuzz.common.ast.type.ArrayType;
+import com.graphicsfuzz.common.ast.type.AtomicIntType;
+import com.graphicsfuzz.common.ast.type.BasicType;
+import com.graphicsfuzz.common.ast.type.ImageType;
+import com.graphicsfuzz.common.ast.type.QualifiedType;
+import com.graphicsfuzz.common.ast.type.SamplerType;
+import com.graphicsfuzz.common.ast.type.StructType;
+import com.graphicsfuzz.common.ast.type.TypeQualifier;
+import com.graphicsfuzz.common.ast.type.VoidType;
+import com.graphicsfuzz.common.ast.visitors.IAstVisitor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Structural hashing and equality of AST nodes.  Two nodes are structurally equal if they are
+ * nodes of the same kind, with equal names, operators, literal values and qualifiers, and with
+ * structurally equal children in the same order.
+ *
+ * <p>The hash of a node is computed from the hashes of its children, and is remembered, so that
+ * asking again, or asking about an enclosing node, only does work for nodes not yet hashed.  AST
+ * nodes do not record changes made to them, so after a node is changed the change must be reported
+ * via {@link #invalidate(IAstNode)}; this forgets the hashes of the node and of every node that
+ * encloses it, leaving the hashes of all other nodes to be reused.  A node may have several
+ * parents, e.g. a struct type is shared by its declaration and its uses; all of them are tracked.
+ * Nodes that a change detaches from the hashed nodes are forgotten, so that they are not kept
+ * alive.  The object is not thread-safe.</p>
+ */
+public class AstStructure {
+
+  private final Map<IAstNode, Integer> hashes;
+
+  // The children of each node, as they were when the node was hashed.
+  private final Map<IAstNode, List<IAstNode>> children;
+
+  // The nodes that each node was a child of when they were hashed.
+  private final Map<IAstNode, Set<IAstNode>> parents;
+
+  public AstStructure() {
+    this.hashes = new IdentityHashMap<>();
+    this.children = new IdentityHashMap<>();
+    this.parents = new IdentityHashMap<>();
+  }
+
+  /**
+   * Yields a hash code for the structure of the given node, such that structurally equal nodes
+   * have equal hash codes.
+   */
+  public int hash(IAstNode node) {
+    if (node == null) {
+      return 0;
+    }
+    final Integer cached = hashes.get(node);
+    if (cached != null) {
+      return cached;
+    }
+    final Parts parts = Parts.of(node);
+    int result = node.getClass().getName().hashCode();
+    for (Object attribute : parts.attributes) {
+      result = 31 * result + Objects.hashCode(attribute);
+    }
+    for (IAstNode child : parts.children) {
+      result = 31 * result + hash(child);
+      if (child != null) {
+        parents.computeIfAbsent(child, item -> newIdentitySet()).add(node);
+      }
+    }
+    forgetDetachedChildren(node, parts.children);
+    children.put(node, parts.children);
+    hashes.put(node, result);
+    return result;
+  }
+
+  /**
+   * Determines whether the given nodes are structurally equal.  Nodes with different hashes are
+   * known to differ without being compared.
+   */
+  public boolean equal(IAstNode first, IAstNode second) {
+    if (first == second) {
+      return true;
+    }
+    if (first == null || second == null || first.getClass() != second.getClass()
+        || hash(first) != hash(second)) {
+      return false;
+    }
+    final Parts firstParts = Parts.of(first);
+    final Parts secondParts = Parts.of(second);
+    if (!firstParts.attributes.equals(secondParts.attributes)
+        || firstParts.children.size() != secondParts.children.size()) {
+      return false;
+    }
+    for (int i = 0; i < firstParts.children.size(); i++) {
+      if (!equal(firstParts.children.get(i), secondParts.children.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Records that the given node has been changed, e.g. by having a name changed or a child added,
+   * removed or replaced.  The node must be one that was changed itself; changes to nodes it
+   * encloses need to be reported separately.
+   */
+  public void invalidate(IAstNode changedNode) {
+    if (children.containsKey(changedNode)) {
+      forgetDetachedChildren(changedNode, Parts.of(changedNode).children);
+    }
+    // A node is only hashed once its children are, so the nodes enclosing a node that is not
+    // hashed are not hashed either.
+    final Deque<IAstNode> toInvalidate = new ArrayDeque<>();
+    toInvalidate.add(changedNode);
+    while (!toInvalidate.isEmpty()) {
+      final IAstNode node = toInvalidate.remove();
+      if (hashes.remove(node) != null) {
+        toInvalidate.addAll(parents.getOrDefault(node, Collections.emptySet()));
+      }
+    }
+  }
+
+  /**
+   * Forgets all hashes.
+   */
+  public void clear() {
+    hashes.clear();
+    children.clear();
+    parents.clear();
+  }
+
+  int getNumHashedNodes() {
+    return hashes.size();
+  }
+
+  /**
+   * Unlinks the children that the given node had when it was last hashed but no longer has, and
+   * forgets those that are then not the child of any hashed node.
+   */
+  private void forgetDetachedChildren(IAstNode node, List<IAstNode> currentChildren) {
+    final List<IAstNode> oldChildren = children.get(node);
+    if (oldChildren == null) {
+      return;
+    }
+    final Set<IAstNode> current = newIdentitySet();
+    current.addAll(currentChildren);
+    for (IAstNode child : oldChildren) {
+      if (child != null && !current.contains(child)) {
+        unlink(node, child);
+      }
+    }
+  }
+
+  private void unlink(IAstNode parent, IAstNode child) {
+    final Set<IAstNode> childParents = parents.get(child);
+    if (childParents == null) {
+      return;
+    }
+    childParents.remove(parent);
+    if (!childParents.isEmpty()) {
+      return;
+    }
+    parents.remove(child);
+    hashes.remove(child);
+    final List<IAstNode> grandchildren = children.remove(child);
+    if (grandchildren != null) {
+      for (IAstNode grandchild : grandchildren) {
+        if (grandchild != null) {
+          unlink(child, grandchild);
+        }
+      }
+    }
+  }
+
+  private static Set<IAstNode> newIdentitySet() {
+    return Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+
+  /**
+   * The non-node data of a node, and its child nodes, in a fixed order.  A child that is absent is
+   * represented by null.
+   */
+  private static final class Parts implements IAstVisitor {
+
+    private final List<Object> attributes = new ArrayList<>();
+    private final List<IAstNode> children = new ArrayList<>();
+
+    private static Parts of(IAstNode node) {
+      final Parts result = new Parts();
+      node.accept(result);
+      return result;
+    }
+
+    private void attributes(Object... values) {
+      Collections.addAll(attributes, values);
+    }
+
+    private void children(IAstNode... nodes) {
+      Collections.addAll(children, nodes);
+    }
+
+    private static String qualifierText(TypeQualifier qualifier) {
+      return qualifier == null ? null : qualifier.toString();
+    }
+
+    @Override
+    public void visit(IAstNode node) {
+      node.accept(this);
+    }
+
+    @Override
+    public void visitFunctionDefinition(FunctionDefinition functionDefinition) {
+      children(functionDefinition.getPrototype(), functionDefinition.getBody());
+    }
+
+    @Override
+    public void visitTranslationUnit(TranslationUnit translationUnit) {
+      children(translationUnit.getVersionStatement());
+      children.addAll(translationUnit.getTopLevelDeclarations());
+    }
+
+    @Override
+    public void visitVersionStatement(VersionStatement versionStatement) {
+      attributes(versionStatement.getText());
+    }
+
+    @Override
+    public void visitBlockStmt(BlockStmt stmt) {
+      attributes(stmt.introducesNewScope());
+      children.addAll(stmt.getStmts());
+    }
+
+    @Override
+    public void visitFunctionPrototype(FunctionPrototype functionPrototype) {
+      attributes(functionPrototype.getName());
+      children(functionPrototype.getReturnType());
+      children.addAll(functionPrototype.getParameters());
+    }
+
+    @Override
+    public void visitIfStmt(IfStmt ifStmt) {
+      children(ifStmt.getCondition(), ifStmt.getThenStmt(),
+          ifStmt.hasElseStmt() ? ifStmt.getElseStmt() : null);
+    }
+
+    @Override
+    public void visitDeclarationStmt(DeclarationStmt declarationStmt) {
+      children(declarationStmt.getVariablesDeclaration());
+    }
+
+    @Override
+    public void visitVariablesDeclaration(VariablesDeclaration variablesDeclaration) {
+      children(variablesDeclaration.getBaseType());
+      children.addAll(variablesDeclaration.getDeclInfos());
+    }
+
+    @Override
+    public void visitPrecisionDeclaration(PrecisionDeclaration precisionDeclaration) {
+      attributes(precisionDeclaration.getText());
+    }
+
+    @Override
+    public void visitArrayInitializer(ArrayInitializer arrayInitializer) {
+    }
+
+    @Override
+    public void visitScalarInitializer(ScalarInitializer scalarInitializer) {
+      children(scalarInitializer.getExpr());
+    }
+
+    @Override
+    public void visitBinaryExpr(BinaryExpr binaryExpr) {
+      attributes(binaryExpr.getOp().name());
+      children(binaryExpr.getLhs(), binaryExpr.getRhs());
+    }
+
+    @Override
+    public void visitParenExpr(ParenExpr parenExpr) {
+      children(parenExpr.getExpr());
+    }
+
+    @Override
+    public void visitVariableIdentifierExpr(VariableIdentifierExpr variableIdentifierExpr) {
+      attributes(variableIdentifierExpr.getName());
+    }
+
+    @Override
+    public void visitUnaryExpr(UnaryExpr unaryExpr) {
+      attributes(unaryExpr.getOp().name());
+      children(unaryExpr.getExpr());
+    }
+
+    @Override
+    public void visitMemberLookupExpr(MemberLookupExpr memberLookupExpr) {
+      attributes(memberLookupExpr.getMember());
+      children(memberLookupExpr.getStructure());
+    }
+
+    @Override
+    public void visitDiscardStmt(DiscardStmt discardStmt) {
+    }
+
+    @Override
+    public void visitBreakStmt(BreakStmt breakStmt) {
+    }
+
+    @Override
+    public void visitContinueStmt(ContinueStmt continueStmt) {
+    }
+
+    @Override
+    public void visitReturnStmt(ReturnStmt returnStmt) {
+      children(returnStmt.hasExpr() ? returnStmt.getExpr() : null);
+    }
+
+    @Override
+    public void visitFunctionCallExpr(FunctionCallExpr functionCallExpr) {
+      attributes(functionCallExpr.getCallee());
+      children.addAll(functionCallExpr.getArgs());
+    }
+
+    @Override
+    public void visitExprStmt(ExprStmt exprStmt) {
+      children(exprStmt.getExpr());
+    }
+
+    @Override
+    public void visitTypeConstructorExpr(TypeConstructorExpr typeConstructorExpr) {
+      attributes(typeConstructorExpr.getTypename());
+      children.addAll(typeConstructorExpr.getArgs());
+    }
+
+    @Override
+    public void visitBasicType(BasicType basicType) {
+      attributes(basicType.toString());
+    }
+
+    @Override
+    public void visitSamplerType(SamplerType samplerType) {
+      attributes(samplerType.toString());
+    }
+
+    @Override
+    public void visitImageType(ImageType imageType) {
+      attributes(imageType.toString());
+    }
+
+    @Override
+    public void visitVoidType(VoidType voidType) {
+    }
+
+    @Override
+    public void visitAtomicIntType(AtomicIntType atomicIntType) {
+    }
+
+    @Override
+    public void visitQualifiedType(QualifiedType qualifiedType) {
+      for (TypeQualifier qualifier : qualifiedType.getQualifiers()) {
+        attributes(qualifierText(qualifier));
+      }
+      children(qualifiedType.getTargetType());
+    }
+
+    @Override
+    public void visitForStmt(ForStmt forStmt) {
+      children(forStmt.getInit(), forStmt.getCondition(), forStmt.getIncrement(),
+          forStmt.getBody());
+    }
+
+    @Override
+    public void visitNullStmt(NullStmt nullStmt) {
+    }
+
+    @Override
+    public void visitDoStmt(DoStmt doStmt) {
+      children(doStmt.getBody(), doStmt.getCondition());
+    }
+
+    @Override
+    public void visitWhileStmt(WhileStmt whileStmt) {
+      children(whileStmt.getCondition(), whileStmt.getBody());
+    }
+
+    @Override
+    public void visitTernaryExpr(TernaryExpr ternaryExpr) {
+      children(ternaryExpr.getTest(), ternaryExpr.getThenExpr(), ternaryExpr.getElseExpr());
+    }
+
+    @Override
+    public void visitParameterDecl(ParameterDecl parameterDecl) {
+      attributes(parameterDecl.getName());
+      children(parameterDecl.getType(), parameterDecl.getArrayInfo());
+    }
+
+    @Override
+    public void visitArrayInfo(ArrayInfo arrayInfo) {
+      attributes(arrayInfo.hasSize() ? arrayInfo.getSize() : null);
+    }
+
+    @Override
+    public void visitVariableDeclInfo(VariableDeclInfo variableDeclInfo) {
+      attributes(variableDeclInfo.getName());
+      children(variableDeclInfo.getArrayInfo(), variableDeclInfo.getInitializer());
+    }
+
+    @Override
+    public void visitArrayIndexExpr(ArrayIndexExpr arrayIndexExpr) {
+      children(arrayIndexExpr.getArray(), arrayIndexExpr.getIndex());
+    }
+
+    @Override
+    public void visitIntConstantExpr(IntConstantExpr intConstantExpr) {
+      attributes(intConstantExpr.getValue());
+    }
+
+    @Override
+    public void visitUIntConstantExpr(UIntConstantExpr uintConstantExpr) {
+      attributes(uintConstantExpr.getValue());
+    }
+
+    @Override
+    public void visitFloatConstantExpr(FloatConstantExpr floatConstantExpr) {
+      attributes(floatConstantExpr.getValue());
+    }
+
+    @Override
+    public void visitBoolConstantExpr(BoolConstantExpr boolConstantExpr) {
+      attributes(boolConstantExpr.toString());
+    }
+
+    @Override
+    public void visitStructType(StructType structType) {
+      attributes(structType.getName());
+      attributes.addAll(structType.getFieldNames());
+      children.addAll(structType.getFieldTypes());
+    }
+
+    @Override
+    public void visitStructDeclaration(StructDeclaration structDeclaration) {
+      children(structDeclaration.getType());
+    }
+
+    @Override
+    public void visitArrayConstructorExpr(ArrayConstructorExpr arrayConstructorExpr) {
+      children(arrayConstructorExpr.getArrayType());
+      children.addAll(arrayConstructorExpr.getArgs());
+    }
+
+    @Override
+    public void visitArrayType(ArrayType arrayType) {
+      children(arrayType.getBaseType(), arrayType.getArrayInfo());
+    }
+
+    @Override
+    public void visitSwitchStmt(SwitchStmt switchStmt) {
+      children(switchStmt.getExpr(), switchStmt.getBody());
+    }
+
+    @Override
+    public void visitDefaultCaseLabel(DefaultCaseLabel defaultCaseLabel) {
+    }
+
+    @Override
+    public void visitExprCaseLabel(ExprCaseLabel exprCaseLabel) {
+      children(exprCaseLabel.getExpr());
+    }
+
+    @Override
+    public void visitInterfaceBlock(InterfaceBlock interfaceBlock) {
+      attributes(
+          interfaceBlock.hasLayoutQualifier()
+              ? qualifierText(interfaceBlock.getLayoutQualifier()) : null,
+          qualifierText(interfaceBlock.getInterfaceQualifier()),
+          interfaceBlock.getStructName(),
+          interfaceBlock.hasIdentifierName() ? interfaceBlock.getInstanceName() : null);
+      attributes.addAll(interfaceBlock.getMemberNames());
+      children.addAll(interfaceBlock.getMemberTypes());
+    }
+
+    @Override
+    public void visitDefaultLayout(DefaultLayout defaultLayout) {
+      attributes(qualifierText(defaultLayout.getLayoutQualifier()),
+          qualifierText(defaultLayout.getTypeQualifier()));
+    }
+
+  }
+
+}
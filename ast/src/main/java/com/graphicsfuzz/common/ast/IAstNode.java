@@ -18,9 +18,6 @@ package com.graphicsfuzz.common.ast;
 
 import com.graphicsfuzz.common.ast.visitors.IAstVisitor;
 import com.graphicsfuzz.common.tool.PrettyPrinterVisitor;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
 
 public interface IAstNode extends Cloneable {
 
@@ -61,21 +58,30 @@ public interface IAstNode extends Cloneable {
   }
 
 
+  /**
+   * Computes a hash code for the structure of the node; see {@link AstStructure}, which should be
+   * used instead when hashing many related nodes, as it remembers hashes.
+   * @return A hash code that is equal for structurally equal nodes
+   */
+  default int structuralHashCode() {
+    return new AstStructure().hash(this);
+  }
+
+  /**
+   * Determines whether the node is structurally equal to another node; see {@link AstStructure}.
+   * @param other The node to compare with
+   * @return true if and only if the nodes are structurally equal
+   */
+  default boolean structurallyEquals(IAstNode other) {
+    return new AstStructure().equal(this, other);
+  }
+
   /**
    * Uses the pretty printer to turn a node into a text representation.
    * @return Text representation of a node
    */
   default String getText() {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    PrintStream stream = new PrintStream(baos);
-    try {
-      new PrettyPrinterVisitor(stream).visit(this);
-      return baos.toString("UTF8");
-    } catch (UnsupportedEncodingException exception) {
-      return "<unknown>";
-    } finally {
-      stream.close();
-    }
+    return PrettyPrinterVisitor.prettyPrintAsString(this);
   }
 
 }
@@ -101,6 +101,12 @@ public class TranslationUnit implements IAstNode {
 
     TranslationUnit result = this.clone();
 
+    // Struct declarations only occur at the top level; without any, there is nothing to patch up.
+    if (result.getTopLevelDeclarations().stream()
+        .noneMatch(item -> item instanceof StructDeclaration)) {
+      return result;
+    }
+
     new StandardVisitor() {
 
       private Map<String, StructType> mapping;
@@ -59,7 +59,6 @@ import com.graphicsfuzz.common.ast.stmt.ForStmt;
 import com.graphicsfuzz.common.ast.stmt.IfStmt;
 import com.graphicsfuzz.common.ast.stmt.NullStmt;
 import com.graphicsfuzz.common.ast.stmt.ReturnStmt;
-import com.graphicsfuzz.common.ast.stmt.Stmt;
 import com.graphicsfuzz.common.ast.stmt.SwitchStmt;
 import com.graphicsfuzz.common.ast.stmt.VersionStatement;
 import com.graphicsfuzz.common.ast.stmt.WhileStmt;
@@ -72,16 +71,40 @@ import com.graphicsfuzz.common.ast.type.SamplerType;
 import com.graphicsfuzz.common.ast.type.StructType;
 import com.graphicsfuzz.common.ast.type.Type;
 import com.graphicsfuzz.common.ast.type.VoidType;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.function.Consumer;
 
 public abstract class StandardVisitor implements IAstVisitor {
 
+  private static final int INITIAL_PENDING_CHILDREN = 16;
+
   private int currentDepth;
 
+  // The visitor methods passed to visitChildFromParent, created once per visitor rather than once
+  // per child visited.
+  private final Consumer<IAstNode> visitMethod;
+  private final Consumer<FunctionPrototype> visitFunctionPrototypeMethod;
+  private final Consumer<BlockStmt> visitBlockStmtMethod;
+  private final Consumer<VariablesDeclaration> visitVariablesDeclarationMethod;
+  private final Consumer<ArrayInfo> visitArrayInfoMethod;
+
+  // Snapshots of the children of the nodes whose children are being visited, innermost last, so
+  // that a subclass may add or remove children of a node while it is being visited.  Elements at
+  // and above numPendingChildren are null.
+  private IAstNode[] pendingChildren;
+  private int numPendingChildren;
+
   public StandardVisitor() {
     currentDepth = 0;
+    visitMethod = this::visit;
+    visitFunctionPrototypeMethod = this::visitFunctionPrototype;
+    visitBlockStmtMethod = this::visitBlockStmt;
+    visitVariablesDeclarationMethod = this::visitVariablesDeclaration;
+    visitArrayInfoMethod = this::visitArrayInfo;
+    pendingChildren = new IAstNode[INITIAL_PENDING_CHILDREN];
+    numPendingChildren = 0;
   }
 
   public VisitationDepth getVistitationDepth() {
@@ -100,17 +123,19 @@ public abstract class StandardVisitor implements IAstVisitor {
 
   @Override
   public void visitFunctionDefinition(FunctionDefinition functionDefinition) {
-    visitChildFromParent(this::visitFunctionPrototype, functionDefinition.getPrototype(),
+    visitChildFromParent(visitFunctionPrototypeMethod, functionDefinition.getPrototype(),
         functionDefinition);
-    visitChildFromParent(this::visitBlockStmt, functionDefinition.getBody(), functionDefinition);
+    visitChildFromParent(visitBlockStmtMethod, functionDefinition.getBody(), functionDefinition);
   }
 
   @Override
   public void visitTranslationUnit(TranslationUnit translationUnit) {
     translationUnit.getVersionStatement().accept(this);
-    for (Declaration d : translationUnit.getTopLevelDeclarations()) {
+    final List<Declaration> declarations = translationUnit.getTopLevelDeclarations();
+    for (int i = 0; i < declarations.size(); i++) {
+      final Declaration d = declarations.get(i);
       assert d != null;
-      visitChildFromParent(this::visit, d, translationUnit);
+      visitChildFromParent(visitMethod, d, translationUnit);
     }
   }
 
@@ -128,13 +153,9 @@ public abstract class StandardVisitor implements IAstVisitor {
 
   @Override
   public void visitBlockStmt(BlockStmt stmt) {
-    // We make a shallow copy of the children of the block statement, to allow a subclass of the
+    // We visit a snapshot of the children of the block statement, to allow a subclass of the
     // visitor to potentially add or remove children of the original block statement.
-    List<Stmt> children = new ArrayList<>();
-    children.addAll(stmt.getStmts());
-    for (Stmt child : children) {
-      visitChildFromParent(child, stmt);
-    }
+    visitSnapshotOfChildrenFromParent(stmt.getStmts(), stmt);
   }
 
   @Override
@@ -148,18 +169,14 @@ public abstract class StandardVisitor implements IAstVisitor {
 
   @Override
   public void visitDeclarationStmt(DeclarationStmt declarationStmt) {
-    visitChildFromParent(this::visitVariablesDeclaration, declarationStmt.getVariablesDeclaration(),
+    visitChildFromParent(visitVariablesDeclarationMethod, declarationStmt.getVariablesDeclaration(),
         declarationStmt);
   }
 
   @Override
   public void visitVariablesDeclaration(VariablesDeclaration variablesDeclaration) {
     visitChildFromParent(variablesDeclaration.getBaseType(), variablesDeclaration);
-    List<VariableDeclInfo> children = new ArrayList<>();
-    children.addAll(variablesDeclaration.getDeclInfos());
-    for (VariableDeclInfo vd : children) {
-      visitChildFromParent(vd, variablesDeclaration);
-    }
+    visitSnapshotOfChildrenFromParent(variablesDeclaration.getDeclInfos(), variablesDeclaration);
   }
 
   @Override
@@ -222,8 +239,8 @@ public abstract class StandardVisitor implements IAstVisitor {
 
   @Override
   public void visitFunctionCallExpr(FunctionCallExpr functionCallExpr) {
-    for (Expr arg : functionCallExpr.getArgs()) {
-      visitChildFromParent(arg, functionCallExpr);
+    for (int i = 0; i < functionCallExpr.getNumArgs(); i++) {
+      visitChildFromParent(functionCallExpr.getArg(i), functionCallExpr);
     }
   }
 
@@ -235,8 +252,8 @@ public abstract class StandardVisitor implements IAstVisitor {
 
   @Override
   public void visitTypeConstructorExpr(TypeConstructorExpr typeConstructorExpr) {
-    for (Expr e : typeConstructorExpr.getArgs()) {
-      visitChildFromParent(e, typeConstructorExpr);
+    for (int i = 0; i < typeConstructorExpr.getNumArgs(); i++) {
+      visitChildFromParent(typeConstructorExpr.getArg(i), typeConstructorExpr);
     }
   }
 
@@ -303,7 +320,7 @@ public abstract class StandardVisitor implements IAstVisitor {
   @Override
   public void visitVariableDeclInfo(VariableDeclInfo variableDeclInfo) {
     if (variableDeclInfo.hasArrayInfo()) {
-      visitChildFromParent(this::visitArrayInfo, variableDeclInfo.getArrayInfo(), variableDeclInfo);
+      visitChildFromParent(visitArrayInfoMethod, variableDeclInfo.getArrayInfo(), variableDeclInfo);
     }
     if (variableDeclInfo.hasInitializer()) {
       visitChildFromParent(variableDeclInfo.getInitializer(), variableDeclInfo);
@@ -313,7 +330,7 @@ public abstract class StandardVisitor implements IAstVisitor {
   @Override
   public void visitParameterDecl(ParameterDecl parameterDecl) {
     visitChildFromParent(parameterDecl.getType(), parameterDecl);
-    visitChildFromParent(this::visitArrayInfo, parameterDecl.getArrayInfo(), parameterDecl);
+    visitChildFromParent(visitArrayInfoMethod, parameterDecl.getArrayInfo(), parameterDecl);
   }
 
   @Override
@@ -345,15 +362,16 @@ public abstract class StandardVisitor implements IAstVisitor {
   @Override
   public void visitStructDeclaration(StructDeclaration structDeclaration) {
     StructType type = structDeclaration.getType();
-    for (String name : type.getFieldNames()) {
-      visitChildFromParent(type.getFieldType(name), structDeclaration);
+    for (int i = 0; i < type.getNumFields(); i++) {
+      visitChildFromParent(type.getFieldType(i), structDeclaration);
     }
   }
 
   @Override
   public void visitArrayConstructorExpr(ArrayConstructorExpr arrayConstructorExpr) {
-    for (Expr e : arrayConstructorExpr.getArgs()) {
-      visitChildFromParent(e, arrayConstructorExpr);
+    final List<Expr> args = arrayConstructorExpr.getArgs();
+    for (int i = 0; i < args.size(); i++) {
+      visitChildFromParent(args.get(i), arrayConstructorExpr);
     }
   }
 
@@ -379,8 +397,9 @@ public abstract class StandardVisitor implements IAstVisitor {
 
   @Override
   public void visitInterfaceBlock(InterfaceBlock interfaceBlock) {
-    for (Type type : interfaceBlock.getMemberTypes()) {
-      visitChildFromParent(type, interfaceBlock);
+    final List<Type> memberTypes = interfaceBlock.getMemberTypes();
+    for (int i = 0; i < memberTypes.size(); i++) {
+      visitChildFromParent(memberTypes.get(i), interfaceBlock);
     }
   }
 
@@ -399,7 +418,35 @@ public abstract class StandardVisitor implements IAstVisitor {
   }
 
   protected void visitChildFromParent(IAstNode child, IAstNode parent) {
-    visitChildFromParent(this::visit, child, parent);
+    visitChildFromParent(visitMethod, child, parent);
+  }
+
+  private void visitSnapshotOfChildrenFromParent(List<? extends IAstNode> children,
+      IAstNode parent) {
+    final int start = numPendingChildren;
+    final int end = start + children.size();
+    if (end > pendingChildren.length) {
+      pendingChildren = Arrays.copyOf(pendingChildren, Math.max(end, 2 * pendingChildren.length));
+    }
+    if (children instanceof RandomAccess) {
+      for (int i = 0; i < children.size(); i++) {
+        pendingChildren[start + i] = children.get(i);
+      }
+    } else {
+      int index = start;
+      for (IAstNode child : children) {
+        pendingChildren[index++] = child;
+      }
+    }
+    numPendingChildren = end;
+    try {
+      for (int i = start; i < end; i++) {
+        visitChildFromParent(pendingChildren[i], parent);
+      }
+    } finally {
+      Arrays.fill(pendingChildren, start, end, null);
+      numPendingChildren = start;
+    }
   }
 
 }
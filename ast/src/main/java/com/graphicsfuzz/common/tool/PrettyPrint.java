@@ -18,6 +18,7 @@ package com.graphicsfuzz.common.tool;
 
 import com.graphicsfuzz.common.ast.TranslationUnit;
 import com.graphicsfuzz.common.util.ParseHelper;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -81,8 +82,8 @@ class PrettyPrint {
 
   private static void prettyPrintShader(Namespace ns, TranslationUnit tu)
       throws FileNotFoundException {
-    PrintStream stream = new PrintStream(new FileOutputStream(
-        new File(ns.getString("output"))));
+    PrintStream stream = new PrintStream(new BufferedOutputStream(new FileOutputStream(
+        new File(ns.getString("output")))));
     if (getGlslVersion(ns) != null) {
       throw new RuntimeException();
       //Helper.emitDefines(stream, new ShadingLanguageVersion(getGlslVersion(ns), false),
@@ -70,27 +70,43 @@ import com.graphicsfuzz.common.ast.type.Type;
 import com.graphicsfuzz.common.ast.type.TypeQualifier;
 import com.graphicsfuzz.common.ast.type.VoidType;
 import com.graphicsfuzz.common.ast.visitors.StandardVisitor;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+/**
+ * Writes the text of AST nodes to an Appendable.  The text is written piece by piece as the nodes
+ * are visited, without first being assembled into strings, so printing to a StringBuilder is
+ * cheap; a PrintStream, which is also an Appendable, is best given a buffered underlying stream.
+ */
 public class PrettyPrinterVisitor extends StandardVisitor {
 
   public static final int DEFAULT_INDENTATION_WIDTH = 1;
   public static final Supplier<String> DEFAULT_NEWLINE_SUPPLIER = () -> "\n";
+
+  // Indentation strings, indexed by the number of spaces, for the most common depths.
+  private static final String[] INDENTATIONS = new String[64];
+
+  static {
+    final StringBuilder indentation = new StringBuilder();
+    for (int i = 0; i < INDENTATIONS.length; i++) {
+      INDENTATIONS[i] = indentation.toString();
+      indentation.append(' ');
+    }
+  }
+
   private final Supplier<String> newLineSupplier;
   private final int indentationWidth;
   private int indentationCount = 0;
-  private final PrintStream out;
+  private final Appendable out;
   private boolean inFunctionDefinition = false;
 
-  public PrettyPrinterVisitor(PrintStream out) {
+  public PrettyPrinterVisitor(Appendable out) {
     this(out, DEFAULT_INDENTATION_WIDTH, DEFAULT_NEWLINE_SUPPLIER);
   }
 
-  public PrettyPrinterVisitor(PrintStream out, int indentationWidth,
+  public PrettyPrinterVisitor(Appendable out, int indentationWidth,
         Supplier<String> newLineSupplier) {
     this.out = out;
     this.indentationWidth = indentationWidth;
@@ -108,48 +124,77 @@ public class PrettyPrinterVisitor extends StandardVisitor {
    * @return String representation of the node
    */
   public static String prettyPrintAsString(IAstNode node) {
-    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-    new PrettyPrinterVisitor(new PrintStream(bytes)).visit(node);
-    return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    final StringBuilder result = new StringBuilder();
+    new PrettyPrinterVisitor(result).visit(node);
+    return result.toString();
+  }
+
+  private void emit(CharSequence text) {
+    try {
+      out.append(text);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  private void emitIndent() {
+    if (indentationCount < INDENTATIONS.length) {
+      emit(INDENTATIONS[indentationCount]);
+    } else {
+      for (int i = 0; i < indentationCount; i++) {
+        emit(" ");
+      }
+    }
+  }
+
+  private void emitNewLine() {
+    emit(newLine());
   }
 
   @Override
   public void visitVersionStatement(VersionStatement versionStatement) {
-    out.append(versionStatement.getText());
+    emit(versionStatement.getText());
   }
 
   @Override
   public void visitPrecisionDeclaration(PrecisionDeclaration precisionDeclaration) {
-    out.append(indent() + precisionDeclaration.getText() + "\n\n");
+    emitIndent();
+    emit(precisionDeclaration.getText());
+    emit("\n\n");
   }
 
   @Override
   public void visitDeclarationStmt(DeclarationStmt declarationStmt) {
-    out.append(indent());
+    emitIndent();
     super.visitDeclarationStmt(declarationStmt);
-    out.append(";" + newLine());
+    emit(";");
+    emitNewLine();
   }
 
   @Override
   public void visitVariablesDeclaration(VariablesDeclaration variablesDeclaration) {
     Type baseType = variablesDeclaration.getBaseType();
     visit(baseType);
-    out.append(" ");
+    emit(" ");
     boolean first = true;
     for (VariableDeclInfo vdi : variablesDeclaration.getDeclInfos()) {
       if (!first) {
-        out.append(", ");
+        emit(", ");
       }
       first = false;
-      out.append(vdi.getName());
+      emit(vdi.getName());
       if (vdi.hasArrayInfo()) {
-        out.append("[" + vdi.getArrayInfo().getSize() + "]");
+        emit("[");
+        emit(String.valueOf(vdi.getArrayInfo().getSize()));
+        emit("]");
         assert !(baseType instanceof ArrayType);
       } else if (baseType instanceof ArrayType) {
-        out.append("[" + ((ArrayType) baseType).getArrayInfo().getSize() + "]");
+        emit("[");
+        emit(String.valueOf(((ArrayType) baseType).getArrayInfo().getSize()));
+        emit("]");
       }
       if (vdi.hasInitializer()) {
-        out.append(" = ");
+        emit(" = ");
         visit(vdi.getInitializer());
       }
     }
@@ -167,62 +212,67 @@ public class PrettyPrinterVisitor extends StandardVisitor {
   @Override
   public void visitFunctionPrototype(FunctionPrototype functionPrototype) {
     visit(functionPrototype.getReturnType());
-    out.append(" " + functionPrototype.getName() + "(");
+    emit(" ");
+    emit(functionPrototype.getName());
+    emit("(");
     boolean first = true;
     for (ParameterDecl p : functionPrototype.getParameters()) {
       if (!first) {
-        out.append(", ");
+        emit(", ");
       }
       first = false;
       visit(p);
     }
-    out.append(")");
+    emit(")");
     if (!inFunctionDefinition) {
-      out.append(";");
+      emit(";");
     }
-    out.append(newLine());
+    emitNewLine();
   }
 
   @Override
   public void visitParameterDecl(ParameterDecl parameterDecl) {
     visit(parameterDecl.getType());
     if (parameterDecl.getName() != null) {
-      out.append(" " + parameterDecl.getName());
+      emit(" ");
+      emit(parameterDecl.getName());
     }
     if (parameterDecl.getArrayInfo() != null) {
-      out.append("[" + parameterDecl.getArrayInfo().getSize() + "]");
+      emit("[");
+      emit(String.valueOf(parameterDecl.getArrayInfo().getSize()));
+      emit("]");
     }
   }
 
   @Override
   public void visitBlockStmt(BlockStmt stmt) {
-    out.append(indent() + "{" + newLine());
+    emitIndent();
+    emit("{");
+    emitNewLine();
     increaseIndent();
     for (Stmt s : stmt.getStmts()) {
       visit(s);
     }
     decreaseIndent();
-    out.append(indent() + "}" + newLine());
-  }
-
-  private String indent() {
-    String result = "";
-    for (int i = 0; i < indentationCount; i++) {
-      result += " ";
-    }
-    return result;
+    emitIndent();
+    emit("}");
+    emitNewLine();
   }
 
   @Override
   public void visitIfStmt(IfStmt ifStmt) {
-    out.append(indent() + "if(");
+    emitIndent();
+    emit("if(");
     visit(ifStmt.getCondition());
-    out.append(")" + newLine());
+    emit(")");
+    emitNewLine();
     increaseIndent();
     visit(ifStmt.getThenStmt());
     decreaseIndent();
     if (ifStmt.hasElseStmt()) {
-      out.append(indent() + "else" + newLine());
+      emitIndent();
+      emit("else");
+      emitNewLine();
       increaseIndent();
       visit(ifStmt.getElseStmt());
       decreaseIndent();
@@ -232,20 +282,22 @@ public class PrettyPrinterVisitor extends StandardVisitor {
   @Override
   public void visitBinaryExpr(BinaryExpr binaryExpr) {
     visit(binaryExpr.getLhs());
-    out.append(" " + binaryExpr.getOp().getText() + " ");
+    emit(" ");
+    emit(binaryExpr.getOp().getText());
+    emit(" ");
     visit(binaryExpr.getRhs());
   }
 
   @Override
   public void visitParenExpr(ParenExpr parenExpr) {
-    out.append("(");
+    emit("(");
     visit(parenExpr.getExpr());
-    out.append(")");
+    emit(")");
   }
 
   @Override
   public void visitVariableIdentifierExpr(VariableIdentifierExpr variableIdentifierExpr) {
-    out.append(variableIdentifierExpr.getName());
+    emit(variableIdentifierExpr.getName());
   }
 
   @Override
@@ -257,7 +309,8 @@ public class PrettyPrinterVisitor extends StandardVisitor {
       case MINUS:
       case BNEG:
       case LNOT:
-        out.append(unaryExpr.getOp().getText() + " ");
+        emit(unaryExpr.getOp().getText());
+        emit(" ");
         break;
       case POST_DEC:
       case POST_INC:
@@ -269,7 +322,8 @@ public class PrettyPrinterVisitor extends StandardVisitor {
     switch (unaryExpr.getOp()) {
       case POST_DEC:
       case POST_INC:
-        out.append(" " + unaryExpr.getOp().getText());
+        emit(" ");
+        emit(unaryExpr.getOp().getText());
         break;
       case PRE_INC:
       case PRE_DEC:
@@ -286,135 +340,149 @@ public class PrettyPrinterVisitor extends StandardVisitor {
   @Override
   public void visitMemberLookupExpr(MemberLookupExpr memberLookupExpr) {
     visit(memberLookupExpr.getStructure());
-    out.append("." + memberLookupExpr.getMember());
+    emit(".");
+    emit(memberLookupExpr.getMember());
   }
 
   @Override
   public void visitIntConstantExpr(IntConstantExpr intConstantExpr) {
-    out.append(intConstantExpr.getValue());
+    emit(intConstantExpr.getValue());
   }
 
   @Override
   public void visitUIntConstantExpr(UIntConstantExpr intConstantExpr) {
-    out.append(intConstantExpr.getValue());
+    emit(intConstantExpr.getValue());
   }
 
   @Override
   public void visitFloatConstantExpr(FloatConstantExpr floatConstantExpr) {
-    out.append(floatConstantExpr.getValue());
+    emit(floatConstantExpr.getValue());
   }
 
   @Override
   public void visitBoolConstantExpr(BoolConstantExpr boolConstantExpr) {
-    out.append(boolConstantExpr.toString());
+    emit(boolConstantExpr.toString());
   }
 
   @Override
   public void visitBreakStmt(BreakStmt breakStmt) {
-    out.append(indent() + "break");
-    out.append(";" + newLine());
+    emitIndent();
+    emit("break;");
+    emitNewLine();
   }
 
   @Override
   public void visitContinueStmt(ContinueStmt continueStmt) {
-    out.append(indent() + "continue");
-    out.append(";" + newLine());
+    emitIndent();
+    emit("continue;");
+    emitNewLine();
   }
 
   @Override
   public void visitDiscardStmt(DiscardStmt discardStmt) {
-    out.append(indent() + "discard");
-    out.append(";" + newLine());
+    emitIndent();
+    emit("discard;");
+    emitNewLine();
   }
 
   @Override
   public void visitReturnStmt(ReturnStmt returnStmt) {
-    out.append(indent() + "return");
+    emitIndent();
+    emit("return");
     if (returnStmt.hasExpr()) {
-      out.append(" ");
+      emit(" ");
       visit(returnStmt.getExpr());
     }
-    out.append(";" + newLine());
+    emit(";");
+    emitNewLine();
   }
 
   @Override
   public void visitExprStmt(ExprStmt exprStmt) {
-    out.append(indent());
+    emitIndent();
     visit(exprStmt.getExpr());
-    out.append(";" + newLine());
+    emit(";");
+    emitNewLine();
   }
 
   @Override
   public void visitFunctionCallExpr(FunctionCallExpr functionCallExpr) {
-    out.append(functionCallExpr.getCallee() + "(");
+    emit(functionCallExpr.getCallee());
+    emit("(");
     boolean first = true;
     for (Expr e : functionCallExpr.getArgs()) {
       if (!first) {
-        out.append(", ");
+        emit(", ");
       }
       first = false;
       visit(e);
     }
-    out.append(")");
+    emit(")");
   }
 
   @Override
   public void visitTypeConstructorExpr(TypeConstructorExpr typeConstructorExpr) {
-    out.append(typeConstructorExpr.getTypename() + "(");
+    emit(typeConstructorExpr.getTypename());
+    emit("(");
     boolean first = true;
     for (Expr e : typeConstructorExpr.getArgs()) {
       if (!first) {
-        out.append(", ");
+        emit(", ");
       }
       first = false;
       visit(e);
     }
-    out.append(")");
+    emit(")");
   }
 
   @Override
   public void visitQualifiedType(QualifiedType qualifiedType) {
     for (TypeQualifier q : qualifiedType.getQualifiers()) {
-      out.append(q + " ");
+      emit(q.toString());
+      emit(" ");
     }
     visit(qualifiedType.getTargetType());
   }
 
   @Override
   public void visitBasicType(BasicType basicType) {
-    out.append(basicType.toString());
+    emit(basicType.toString());
   }
 
   @Override
   public void visitSamplerType(SamplerType samplerType) {
-    out.append(samplerType.toString());
+    emit(samplerType.toString());
   }
 
   @Override
   public void visitImageType(ImageType imageType) {
-    out.append(imageType.toString());
+    emit(imageType.toString());
   }
 
   @Override
   public void visitVoidType(VoidType voidType) {
-    out.append(voidType.toString());
+    emit(voidType.toString());
   }
 
   @Override
   public void visitAtomicIntType(AtomicIntType atomicIntType) {
-    out.append(atomicIntType.toString());
+    emit(atomicIntType.toString());
   }
 
   @Override
   public void visitNullStmt(NullStmt nullStmt) {
-    out.append(indent() + ";" + newLine());
+    emitIndent();
+    emit(";");
+    emitNewLine();
   }
 
   @Override
   public void visitWhileStmt(WhileStmt whileStmt) {
-    out.append(indent() + "while(");
+    emitIndent();
+    emit("while(");
     visit(whileStmt.getCondition());
-    out.append(")" + newLine());
+    emit(")");
+    emitNewLine();
     increaseIndent();
     visit(whileStmt.getBody());
     decreaseIndent();
@@ -422,16 +490,23 @@ public class PrettyPrinterVisitor extends StandardVisitor {
 
   @Override
   public void visitForStmt(ForStmt forStmt) {
-    out.append(indent() + "for(" + newLine());
-    out.append("    ");
+    emitIndent();
+    emit("for(");
+    emitNewLine();
+    emit("    ");
     visit(forStmt.getInit());
-    out.append("    " + indent());
+    emit("    ");
+    emitIndent();
     visit(forStmt.getCondition());
-    out.append(";" + newLine());
-    out.append("    " + indent());
+    emit(";");
+    emitNewLine();
+    emit("    ");
+    emitIndent();
     visit(forStmt.getIncrement());
-    out.append(newLine());
-    out.append(indent() + ")" + newLine());
+    emitNewLine();
+    emitIndent();
+    emit(")");
+    emitNewLine();
     increaseIndent();
     visit(forStmt.getBody());
     decreaseIndent();
@@ -439,35 +514,39 @@ public class PrettyPrinterVisitor extends StandardVisitor {
 
   @Override
   public void visitDoStmt(DoStmt doStmt) {
-    out.append(indent() + "do" + newLine());
+    emitIndent();
+    emit("do");
+    emitNewLine();
     increaseIndent();
     visit(doStmt.getBody());
     decreaseIndent();
-    out.append(indent() + "while(");
+    emitIndent();
+    emit("while(");
     visit(doStmt.getCondition());
-    out.append(");" + newLine());
+    emit(");");
+    emitNewLine();
   }
 
   @Override
   public void visitTernaryExpr(TernaryExpr ternaryExpr) {
     visit(ternaryExpr.getTest());
-    out.append(" ? ");
+    emit(" ? ");
     visit(ternaryExpr.getThenExpr());
-    out.append(" : ");
+    emit(" : ");
     visit(ternaryExpr.getElseExpr());
   }
 
   @Override
   public void visitArrayIndexExpr(ArrayIndexExpr arrayIndexExpr) {
     visit(arrayIndexExpr.getArray());
-    out.append("[");
+    emit("[");
     visit(arrayIndexExpr.getIndex());
-    out.append("]");
+    emit("]");
   }
 
   @Override
   public void visitStructType(StructType structType) {
-    out.append(structType.getName());
+    emit(structType.getName());
   }
 
   @Override
@@ -479,31 +558,39 @@ public class PrettyPrinterVisitor extends StandardVisitor {
   @Override
   public void visitArrayConstructorExpr(ArrayConstructorExpr arrayConstructorExpr) {
     visit(arrayConstructorExpr.getArrayType());
-    out.append("[" + arrayConstructorExpr.getArrayType().getArrayInfo().getSize() + "](");
+    emit("[");
+    emit(String.valueOf(arrayConstructorExpr.getArrayType().getArrayInfo().getSize()));
+    emit("](");
     boolean first = true;
     for (Expr e : arrayConstructorExpr.getArgs()) {
       if (!first) {
-        out.append(", ");
+        emit(", ");
       }
       first = false;
       visit(e);
     }
-    out.append(")");
+    emit(")");
   }
 
   @Override
   public void visitStructDeclaration(StructDeclaration structDeclaration) {
-    out.append("struct " + structDeclaration.getType().getName() + " {" + newLine());
+    emit("struct ");
+    emit(structDeclaration.getType().getName());
+    emit(" {");
+    emitNewLine();
     increaseIndent();
     for (String name : structDeclaration.getType().getFieldNames()) {
-      out.append(indent());
+      emitIndent();
       visit(structDeclaration.getType().getFieldType(name));
-      out.append(" " + name);
+      emit(" ");
+      emit(name);
       processArrayInfo(structDeclaration.getType().getFieldType(name));
-      out.append(";" + newLine());
+      emit(";");
+      emitNewLine();
     }
     decreaseIndent();
-    out.append("};" + newLine());
+    emit("};");
+    emitNewLine();
   }
 
   private void processArrayInfo(Type type) {
@@ -512,9 +599,11 @@ public class PrettyPrinterVisitor extends StandardVisitor {
     }
     ArrayType arrayType = (ArrayType) type.getWithoutQualifiers();
     while (true) {
-      out.append("["
-          + (arrayType.getArrayInfo().hasSize() ? arrayType.getArrayInfo().getSize() : "")
-          + "]");
+      emit("[");
+      if (arrayType.getArrayInfo().hasSize()) {
+        emit(String.valueOf(arrayType.getArrayInfo().getSize()));
+      }
+      emit("]");
       if (!(arrayType.getBaseType().getWithoutQualifiers() instanceof ArrayType)) {
         break;
       }
@@ -524,9 +613,11 @@ public class PrettyPrinterVisitor extends StandardVisitor {
 
   @Override
   public void visitSwitchStmt(SwitchStmt switchStmt) {
-    out.append(indent() + "switch(");
+    emitIndent();
+    emit("switch(");
     visit(switchStmt.getExpr());
-    out.append(")" + newLine());
+    emit(")");
+    emitNewLine();
     increaseIndent();
     visitBlockStmt(switchStmt.getBody());
     decreaseIndent();
@@ -534,53 +625,64 @@ public class PrettyPrinterVisitor extends StandardVisitor {
 
   @Override
   public void visitDefaultCaseLabel(DefaultCaseLabel defaultCaseLabel) {
-    out.append(indent());
-    out.append("default:" + newLine());
+    emitIndent();
+    emit("default:");
+    emitNewLine();
   }
 
   @Override
   public void visitExprCaseLabel(ExprCaseLabel exprCaseLabel) {
-    out.append(indent());
-    out.append("case ");
+    emitIndent();
+    emit("case ");
     visit(exprCaseLabel.getExpr());
-    out.append(":" + newLine());
+    emit(":");
+    emitNewLine();
   }
 
   @Override
   public void visitInterfaceBlock(InterfaceBlock interfaceBlock) {
-    out.append(indent());
+    emitIndent();
     if (interfaceBlock.hasLayoutQualifier()) {
-      out.append(interfaceBlock.getLayoutQualifier().toString() + " ");
+      emit(interfaceBlock.getLayoutQualifier().toString());
+      emit(" ");
     }
-    out.append(interfaceBlock.getInterfaceQualifier() + " "
-        + interfaceBlock.getStructName() + " {" + newLine());
+    emit(interfaceBlock.getInterfaceQualifier().toString());
+    emit(" ");
+    emit(interfaceBlock.getStructName());
+    emit(" {");
+    emitNewLine();
 
     increaseIndent();
 
     for (String memberName : interfaceBlock.getMemberNames()) {
-      out.append(indent());
+      emitIndent();
       visit(interfaceBlock.getMemberType(memberName));
-      out.append(" " + memberName);
+      emit(" ");
+      emit(memberName);
       processArrayInfo(interfaceBlock.getMemberType(memberName));
-      out.append(";" + newLine());
+      emit(";");
+      emitNewLine();
     }
 
     decreaseIndent();
 
-    out.append("}");
+    emit("}");
     if (interfaceBlock.hasIdentifierName()) {
-      out.append(" " + interfaceBlock.getInstanceName());
+      emit(" ");
+      emit(interfaceBlock.getInstanceName());
     }
-    out.append(";" + newLine());
+    emit(";");
+    emitNewLine();
   }
 
   @Override
   public void visitDefaultLayout(DefaultLayout defaultLayout) {
-    out.append(indent());
-    out.append(defaultLayout.getLayoutQualifier().toString());
-    out.append(" ");
-    out.append(defaultLayout.getTypeQualifier().toString());
-    out.append(";" + newLine());
+    emitIndent();
+    emit(defaultLayout.getLayoutQualifier().toString());
+    emit(" ");
+    emit(defaultLayout.getTypeQualifier().toString());
+    emit(";");
+    emitNewLine();
   }
 
   private void decreaseIndent() {
@@ -601,7 +703,9 @@ public class PrettyPrinterVisitor extends StandardVisitor {
       IAstNode parent) {
     super.visitChildFromParent(visitorMethod, child, parent);
     if (parent instanceof TranslationUnit && child instanceof VariablesDeclaration) {
-      out.append(";" + newLine() + newLine());
+      emit(";");
+      emitNewLine();
+      emitNewLine();
     }
   }
 
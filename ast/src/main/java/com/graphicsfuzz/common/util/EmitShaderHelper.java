@@ -19,6 +19,7 @@ package com.graphicsfuzz.common.util;
 import com.graphicsfuzz.common.ast.TranslationUnit;
 import com.graphicsfuzz.common.glslversion.ShadingLanguageVersion;
 import com.graphicsfuzz.common.tool.PrettyPrinterVisitor;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -94,7 +95,7 @@ public final class EmitShaderHelper {
         Supplier<String> newlineSupplier,
         Supplier<StringBuilder> extraMacros) throws FileNotFoundException {
     emitShader(shadingLanguageVersion, shaderKind, shader, license,
-          new PrintStream(new FileOutputStream(outputFile)),
+          new PrintStream(new BufferedOutputStream(new FileOutputStream(outputFile))),
           indentationWidth,
           newlineSupplier,
           extraMacros);
@@ -106,7 +107,7 @@ public final class EmitShaderHelper {
         Optional<String> license,
         File outputFile) throws FileNotFoundException {
     emitShader(shadingLanguageVersion, shaderKind, shader, license,
-        new PrintStream(new FileOutputStream(outputFile)),
+        new PrintStream(new BufferedOutputStream(new FileOutputStream(outputFile))),
         PrettyPrinterVisitor.DEFAULT_INDENTATION_WIDTH,
         PrettyPrinterVisitor.DEFAULT_NEWLINE_SUPPLIER,
         () -> new StringBuilder());
@@ -33,34 +33,56 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.LexerATNSimulator;
 import org.antlr.v4.runtime.atn.ParserATNSimulator;
 import org.antlr.v4.runtime.atn.PredictionContextCache;
 import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTreeListener;
 import org.apache.commons.io.FileUtils;
 
+/**
+ * Parses shaders.  Parsing is thread-safe, and threads parse concurrently: each thread has its own
+ * lexer and parser, reused from one parse to the next, and all of them share warm DFA caches.
+ */
 public class ParseHelper {
 
   static final String END_OF_HEADER = "// END OF GENERATED HEADER";
 
-  public static synchronized TranslationUnit parse(File file, boolean stripHeader)
+  // Once the shared DFA caches hold more than this many states they are discarded and rebuilt from
+  // scratch, so that the memory they occupy stays bounded.
+  private static final int MAX_DFA_STATES = 100000;
+
+  // Counting the states means walking every DFA, so it is only done once every this many parses.
+  private static final int PARSES_BETWEEN_DFA_CHECKS = 64;
+
+  private static final AtomicReference<SharedDfa> sharedDfa =
+        new AtomicReference<>(new SharedDfa());
+
+  private static final ThreadLocal<PooledParser> pooledParser =
+        ThreadLocal.withInitial(PooledParser::new);
+
+  public static TranslationUnit parse(File file, boolean stripHeader)
         throws IOException, ParseTimeoutException {
     return parseInputStream(new ByteArrayInputStream(FileUtils.readFileToByteArray(file)),
           stripHeader);
   }
 
-  public static synchronized TranslationUnit parse(String string, boolean stripHeader)
+  public static TranslationUnit parse(String string, boolean stripHeader)
         throws IOException, ParseTimeoutException {
     return parseInputStream(new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8)),
           stripHeader);
   }
 
-  private static synchronized TranslationUnit parseInputStream(InputStream input,
+  private static TranslationUnit parseInputStream(InputStream input,
         boolean stripHeader)
         throws IOException, ParseTimeoutException {
     TranslationUnit result;
@@ -73,76 +95,143 @@ public class ParseHelper {
     return parseInputStream(input);
   }
 
-  private static synchronized TranslationUnit parseInputStream(InputStream input)
+  private static TranslationUnit parseInputStream(InputStream input)
         throws IOException, ParseTimeoutException {
     final int timeLimit = 60;
 
     ParseTreeListener listener =
           new TimeoutParseTreeListener(
                 System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeLimit));
+    final PooledParser parser = pooledParser.get();
     Translation_unitContext ctx;
     try {
       try {
-        ctx = tryFastParse(input, listener);
+        ctx = parser.tryFastParse(input, listener);
       } catch (ParseCancellationException exception) {
         input.reset();
-        ctx = slowParse(input, listener);
+        ctx = parser.slowParse(input, listener);
       }
     } catch (ParseTimeoutRuntimeException exception) {
       throw new ParseTimeoutException(exception);
+    } finally {
+      parser.release();
+      evictDfaIfFull();
     }
 
     return AstBuilder.getTranslationUnit(ctx);
   }
 
-  private static Translation_unitContext tryFastParse(
-        InputStream inputStream,
-        ParseTreeListener listener) throws IOException {
+  private static void evictDfaIfFull() {
+    final SharedDfa current = sharedDfa.get();
+    if (current.numParses.incrementAndGet() % PARSES_BETWEEN_DFA_CHECKS == 0
+          && current.getNumStates() > MAX_DFA_STATES) {
+      // Parses already under way carry on with the DFA they started with.
+      sharedDfa.compareAndSet(current, new SharedDfa());
+    }
+  }
+
+  /**
+   * DFA caches, and the prediction context cache that goes with them, shared by the lexers and
+   * parsers of all threads.  The ANTLR runtime synchronizes updates to these.
+   */
+  private static final class SharedDfa {
+
+    private final DFA[] lexerDecisionToDfa = createDecisionToDfa(GLSLLexer._ATN);
+    private final DFA[] parserDecisionToDfa = createDecisionToDfa(GLSLParser._ATN);
+    private final PredictionContextCache contextCache = new PredictionContextCache();
+    private final AtomicInteger numParses = new AtomicInteger();
+
+    private static DFA[] createDecisionToDfa(ATN atn) {
+      final DFA[] result = new DFA[atn.getNumberOfDecisions()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = new DFA(atn.getDecisionState(i), i);
+      }
+      return result;
+    }
+
+    private int getNumStates() {
+      int result = 0;
+      for (DFA dfa : lexerDecisionToDfa) {
+        result += dfa.states.size();
+      }
+      for (DFA dfa : parserDecisionToDfa) {
+        result += dfa.states.size();
+      }
+      return result;
+    }
 
-    GLSLParser parser = getParser(inputStream, listener);
-    parser.setErrorHandler(new BailErrorStrategy());
-    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
-    Translation_unitContext result = parser.translation_unit();
-    parser.getInterpreter().clearDFA();
-    return result;
   }
 
-  private static Translation_unitContext slowParse(
-        InputStream inputStream,
-        ParseTreeListener listener) throws IOException {
+  /**
+   * A lexer and parser owned by a single thread, and reused for each parse on that thread.
+   */
+  private static final class PooledParser {
 
-    GLSLParser parser = getParser(inputStream, listener);
-    try {
+    private GLSLLexer lexer;
+    private GLSLParser parser;
+    private SharedDfa dfa;
+
+    private Translation_unitContext tryFastParse(
+          InputStream inputStream,
+          ParseTreeListener listener) throws IOException {
+
+      prepare(inputStream, listener);
+      parser.setErrorHandler(new BailErrorStrategy());
+      parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+      return parser.translation_unit();
+    }
+
+    private Translation_unitContext slowParse(
+          InputStream inputStream,
+          ParseTreeListener listener) throws IOException {
+
+      prepare(inputStream, listener);
+      parser.setErrorHandler(new DefaultErrorStrategy());
+      parser.getInterpreter().setPredictionMode(PredictionMode.LL);
       Translation_unitContext tu = parser.translation_unit();
       if (parser.getNumberOfSyntaxErrors() > 0) {
         throw new RuntimeException("Syntax errors occurred during parsing");
       }
       return tu;
-    } finally {
-      parser.getInterpreter().clearDFA();
     }
-  }
 
-  private static GLSLParser getParser(
-        InputStream inputStream,
-        ParseTreeListener listener) throws IOException {
-
-    ANTLRInputStream input = new ANTLRInputStream(inputStream);
-    GLSLLexer lexer = new GLSLLexer(input);
-    PredictionContextCache cache = new PredictionContextCache();
-    lexer.setInterpreter(
-          new LexerATNSimulator(lexer, lexer.getATN(),
-                lexer.getInterpreter().decisionToDFA, cache));
-    CommonTokenStream tokens = new CommonTokenStream(lexer);
-    GLSLParser parser = new GLSLParser(tokens);
-    if (listener != null) {
-      parser.addParseListener(listener);
+    private void prepare(
+          InputStream inputStream,
+          ParseTreeListener listener) throws IOException {
+
+      if (lexer == null) {
+        lexer = new GLSLLexer(new ANTLRInputStream(""));
+        parser = new GLSLParser(new CommonTokenStream(lexer));
+      }
+      final SharedDfa currentDfa = sharedDfa.get();
+      if (currentDfa != dfa) {
+        dfa = currentDfa;
+        lexer.setInterpreter(
+              new LexerATNSimulator(lexer, lexer.getATN(),
+                    dfa.lexerDecisionToDfa, dfa.contextCache));
+        parser.setInterpreter(
+              new ParserATNSimulator(parser, parser.getATN(),
+                    dfa.parserDecisionToDfa, dfa.contextCache));
+      }
+      lexer.setInputStream(new ANTLRInputStream(inputStream));
+      parser.setInputStream(new CommonTokenStream(lexer));
+      parser.removeParseListeners();
+      if (listener != null) {
+        parser.addParseListener(listener);
+      }
     }
-    parser.setInterpreter(
-          new ParserATNSimulator(parser, parser.getATN(),
-                parser.getInterpreter().decisionToDFA,
-                cache));
-    return parser;
+
+    /**
+     * Drops references to the most recent input, so that an idle thread does not keep it alive.
+     */
+    private void release() {
+      if (lexer != null) {
+        parser.removeParseListeners();
+        lexer.setInputStream(new ANTLRInputStream(""));
+        parser.setInputStream(new CommonTokenStream(lexer));
+      }
+    }
+
   }
 
   public static void stripHeader(InputStream inputStream, OutputStream outputStream)
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.common.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.graphicsfuzz.common.ast.decl.FunctionDefinition;
+import com.graphicsfuzz.common.ast.decl.StructDeclaration;
+import com.graphicsfuzz.common.ast.expr.VariableIdentifierExpr;
+import com.graphicsfuzz.common.ast.stmt.BlockStmt;
+import com.graphicsfuzz.common.ast.stmt.DiscardStmt;
+import com.graphicsfuzz.common.ast.stmt.Stmt;
+import com.graphicsfuzz.common.ast.type.StructType;
+import com.graphicsfuzz.common.ast.visitors.StandardVisitor;
+import com.graphicsfuzz.common.util.ParseHelper;
+import org.junit.Test;
+
+public class AstStructureTest {
+
+  private static final String PROGRAM = "precision highp float;\n"
+      + "struct S { int a; vec2 b[3]; };\n"
+      + "uniform vec2 injectionSwitch;\n"
+      + "layout(location = 0) out vec4 color;\n"
+      + "int f(inout S s, float x[2]) { return s.a + int(x[1]); }\n"
+      + "void main() {\n"
+      + "  S s = S(1, vec2[3](vec2(0.0), vec2(1.0), vec2(2.0)));\n"
+      + "  float x[2];\n"
+      + "  for (int i = 0; i < 2; i++) { x[i] = float(i) * 2.0; }\n"
+      + "  if (injectionSwitch.x > injectionSwitch.y) { discard; } else { color = vec4(1.0); }\n"
+      + "  switch (f(s, x)) { case 1: color.x = -(1.0); break; default: break; }\n"
+      + "  color.y = true ? 1.0 : 0.0;\n"
+      + "}\n";
+
+  @Test
+  public void testSeparatelyParsedProgramsAreEqual() throws Exception {
+    final TranslationUnit first = ParseHelper.parse(PROGRAM, false);
+    final TranslationUnit second = ParseHelper.parse(PROGRAM, false);
+    final AstStructure astStructure = new AstStructure();
+    assertEquals(astStructure.hash(first), astStructure.hash(second));
+    assertTrue(astStructure.equal(first, second));
+    assertTrue(first.structurallyEquals(second));
+    assertEquals(first.structuralHashCode(), second.structuralHashCode());
+  }
+
+  @Test
+  public void testCloneIsEqual() throws Exception {
+    final TranslationUnit tu = ParseHelper.parse(PROGRAM, false);
+    assertTrue(new AstStructure().equal(tu, tu.cloneAndPatchUp()));
+  }
+
+  @Test
+  public void testSmallDifferencesAreNoticed() throws Exception {
+    final TranslationUnit original = ParseHelper.parse(PROGRAM, false);
+    final String[][] replacements = {
+        { "return s.a", "return s.b" },
+        { "2.0; }", "2.00; }" },
+        { "i < 2", "i <= 2" },
+        { "-(1.0)", "-1.0" },
+        { "highp float", "mediump float" },
+        { "inout S s", "in S s" },
+        { "float x[2])", "float x[3])" },
+        { "true ?", "false ?" },
+        { "{ discard; }", "discard;" },
+        { "location = 0", "location = 1" },
+        { "vec2 b[3]", "vec3 b[3]" },
+    };
+    for (String[] replacement : replacements) {
+      assertTrue(PROGRAM.contains(replacement[0]));
+      final TranslationUnit changed =
+          ParseHelper.parse(PROGRAM.replace(replacement[0], replacement[1]), false);
+      assertFalse(replacement[1], new AstStructure().equal(original, changed));
+    }
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    final TranslationUnit tu = ParseHelper.parse(PROGRAM, false);
+    final TranslationUnit copy = tu.cloneAndPatchUp();
+    final AstStructure astStructure = new AstStructure();
+    final int originalHash = astStructure.hash(tu);
+    assertTrue(astStructure.equal(tu, copy));
+
+    final BlockStmt mainBody = ((FunctionDefinition) tu.getTopLevelDeclarations()
+        .get(tu.getTopLevelDeclarations().size() - 1)).getBody();
+    mainBody.addStmt(DiscardStmt.INSTANCE);
+    astStructure.invalidate(mainBody);
+    assertNotEquals(originalHash, astStructure.hash(tu));
+    assertEquals(new AstStructure().hash(tu), astStructure.hash(tu));
+    assertFalse(astStructure.equal(tu, copy));
+
+    mainBody.removeStmt(mainBody.getNumStmts() - 1);
+    astStructure.invalidate(mainBody);
+    assertEquals(originalHash, astStructure.hash(tu));
+    assertTrue(astStructure.equal(tu, copy));
+  }
+
+  @Test
+  public void testInvalidateDeepNode() throws Exception {
+    final TranslationUnit tu = ParseHelper.parse(PROGRAM, false);
+    final AstStructure astStructure = new AstStructure();
+    final int originalHash = astStructure.hash(tu);
+    new StandardVisitor() {
+      @Override
+      public void visitVariableIdentifierExpr(VariableIdentifierExpr variableIdentifierExpr) {
+        if (variableIdentifierExpr.getName().equals("i")) {
+          variableIdentifierExpr.setName("j");
+          astStructure.invalidate(variableIdentifierExpr);
+        }
+      }
+    }.visit(tu);
+    assertNotEquals(originalHash, astStructure.hash(tu));
+    assertEquals(new AstStructure().hash(tu), astStructure.hash(tu));
+  }
+
+  @Test
+  public void testInvalidateSharedStructType() throws Exception {
+    final TranslationUnit tu = ParseHelper.parse(PROGRAM, false);
+    final StructType structType =
+        ((StructDeclaration) tu.getTopLevelDeclarations().get(1)).getType();
+    final FunctionDefinition function = (FunctionDefinition) tu.getTopLevelDeclarations().get(4);
+    final AstStructure astStructure = new AstStructure();
+    final int originalHash = astStructure.hash(tu);
+    final int originalFunctionHash = astStructure.hash(function);
+
+    structType.setFieldName(0, "c");
+    astStructure.invalidate(structType);
+    assertNotEquals(originalFunctionHash, astStructure.hash(function));
+    assertEquals(new AstStructure().hash(function), astStructure.hash(function));
+    assertNotEquals(originalHash, astStructure.hash(tu));
+    assertEquals(new AstStructure().hash(tu), astStructure.hash(tu));
+  }
+
+  @Test
+  public void testDetachedNodesAreForgotten() throws Exception {
+    final TranslationUnit tu = ParseHelper.parse(PROGRAM, false);
+    final AstStructure astStructure = new AstStructure();
+    final int originalHash = astStructure.hash(tu);
+    final int numHashedNodes = astStructure.getNumHashedNodes();
+
+    final BlockStmt mainBody = ((FunctionDefinition) tu.getTopLevelDeclarations()
+        .get(tu.getTopLevelDeclarations().size() - 1)).getBody();
+    final Stmt ifStmt = mainBody.getStmt(3);
+    mainBody.removeStmt(ifStmt);
+    astStructure.invalidate(mainBody);
+    astStructure.hash(tu);
+    assertTrue(astStructure.getNumHashedNodes() < numHashedNodes);
+
+    mainBody.insertStmt(3, ifStmt);
+    astStructure.invalidate(mainBody);
+    assertEquals(originalHash, astStructure.hash(tu));
+    assertEquals(numHashedNodes, astStructure.getNumHashedNodes());
+  }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.graphicsfuzz.common.tool.PrettyPrinterVisitor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class ParseHelperTest {
+
+  private static final String[] PROGRAMS = {
+      "void main() { }",
+      "precision mediump float; uniform vec2 resolution; void main() {"
+          + " vec2 uv = gl_FragCoord.xy / resolution;"
+          + " gl_FragColor = vec4(uv, 0.0, 1.0); }",
+      "struct S { int a; float b[3]; }; int f(S s) { return s.a; }"
+          + " void main() { S s = S(1, float[3](1.0, 2.0, 3.0)); f(s); }",
+      "void main() { int x = 0; for (int i = 0; i < 10; i++) { if (i > 5) { break; }"
+          + " x += i; } while (x > 0) { x--; } }"
+  };
+
+  @Test
+  public void testParseRecoversAfterSyntaxError() throws Exception {
+    try {
+      ParseHelper.parse("void main() { int x = ; }", false);
+      fail("Expected a syntax error.");
+    } catch (RuntimeException exception) {
+      // Expected.
+    }
+    // The thread's parser must be usable again.
+    assertEquals(PrettyPrinterVisitor.prettyPrintAsString(ParseHelper.parse(PROGRAMS[0], false)),
+        PrettyPrinterVisitor.prettyPrintAsString(ParseHelper.parse(PROGRAMS[0], false)));
+  }
+
+  @Test
+  public void testConcurrentParsesAgreeWithSequentialParses() throws Exception {
+    final List<String> expected = new ArrayList<>();
+    for (String program : PROGRAMS) {
+      expected.add(PrettyPrinterVisitor.prettyPrintAsString(ParseHelper.parse(program, false)));
+    }
+
+    final int numThreads = 8;
+    final int parsesPerThread = 50;
+    final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < numThreads; i++) {
+        final int offset = i;
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < parsesPerThread; j++) {
+            final int index = (offset + j) % PROGRAMS.length;
+            assertEquals(expected.get(index), PrettyPrinterVisitor.prettyPrintAsString(
+                ParseHelper.parse(PROGRAMS[index], false)));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.benchmarks;
+
+import com.graphicsfuzz.common.ast.TranslationUnit;
+import com.graphicsfuzz.common.util.ParseHelper;
+import com.graphicsfuzz.common.util.ParseTimeoutException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures shader parsing throughput on the sample shaders.  Run main to measure throughput with
+ * 1, 2, 4, ... threads, up to the number of available cores, to see how parsing scales; the
+ * shaders directory is resolved relative to the working directory, which should be the root of
+ * the repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+  @Param("shaders/src/main/glsl")
+  public String shadersDirectory;
+
+  private List<String> shaders;
+
+  @Setup
+  public void setup() throws IOException {
+    shaders = SampleShaders.load(shadersDirectory);
+  }
+
+  /**
+   * Parses every sample shader once.
+   */
+  @Benchmark
+  public int parseAllShaders() throws IOException, ParseTimeoutException {
+    int result = 0;
+    for (String shader : shaders) {
+      final TranslationUnit tu = ParseHelper.parse(shader, false);
+      result += tu.getTopLevelDeclarations().size();
+    }
+    return result;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    final int maxThreads = Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+      final Options options = new OptionsBuilder()
+          .include(ParseBenchmark.class.getSimpleName())
+          .threads(threads)
+          .build();
+      new Runner(options).run();
+      if (threads == maxThreads) {
+        break;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.apache.commons.io.FileUtils;
+
+final class SampleShaders {
+
+  private static final Pattern PREPROCESSOR_DIRECTIVE =
+      Pattern.compile("^\\s*#", Pattern.MULTILINE);
+
+  private SampleShaders() {
+    // Utility class should not be instantiable.
+  }
+
+  /**
+   * Reads the text of the shaders under the given directory that can be parsed as they are.
+   */
+  static List<String> load(String shadersDirectory) throws IOException {
+    final List<String> shaders = new ArrayList<>();
+    for (File shader : FileUtils.listFiles(new File(shadersDirectory),
+        new String[] { "frag", "vert" }, true)) {
+      final String text = FileUtils.readFileToString(shader, StandardCharsets.UTF_8);
+      // The parser does not handle preprocessor directives; tools run the preprocessor first.
+      if (!PREPROCESSOR_DIRECTIVE.matcher(text).find()) {
+        shaders.add(text);
+      }
+    }
+    if (shaders.isEmpty()) {
+      throw new IOException("No shaders found in " + new File(shadersDirectory).getAbsolutePath());
+    }
+    return shaders;
+  }
+
+}
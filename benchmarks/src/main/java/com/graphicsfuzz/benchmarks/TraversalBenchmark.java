@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.benchmarks;
+
+import com.graphicsfuzz.common.ast.IParentMap;
+import com.graphicsfuzz.common.ast.TranslationUnit;
+import com.graphicsfuzz.common.glslversion.ShadingLanguageVersion;
+import com.graphicsfuzz.common.tool.PrettyPrinterVisitor;
+import com.graphicsfuzz.common.tool.StatsVisitor;
+import com.graphicsfuzz.common.typing.Typer;
+import com.graphicsfuzz.common.util.ParseHelper;
+import com.graphicsfuzz.common.util.ParseTimeoutException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cost of walking the sample shaders with visitors built on StandardVisitor, which
+ * the tools and the reducer do many times over.  Run with the GC profiler (-prof gc) to see the
+ * allocation rate as well as the time taken; the shaders directory is resolved relative to the
+ * working directory, which should be the root of the repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalBenchmark {
+
+  @Param("shaders/src/main/glsl")
+  public String shadersDirectory;
+
+  private List<TranslationUnit> translationUnits;
+
+  @Setup
+  public void setup() throws IOException, ParseTimeoutException {
+    translationUnits = new ArrayList<>();
+    for (String shader : SampleShaders.load(shadersDirectory)) {
+      translationUnits.add(ParseHelper.parse(shader, false));
+    }
+  }
+
+  /**
+   * Visits every node of every sample shader, doing next to nothing at each.
+   */
+  @Benchmark
+  public int countNodes() {
+    int result = 0;
+    for (TranslationUnit tu : translationUnits) {
+      final StatsVisitor statsVisitor = new StatsVisitor();
+      statsVisitor.visit(tu);
+      result += statsVisitor.getNodes();
+    }
+    return result;
+  }
+
+  /**
+   * Builds a parent map for every sample shader.
+   */
+  @Benchmark
+  public int buildParentMaps() {
+    int result = 0;
+    for (TranslationUnit tu : translationUnits) {
+      result += IParentMap.createParentMap(tu).hasParent(tu) ? 1 : 0;
+    }
+    return result;
+  }
+
+  /**
+   * Works out the types of the expressions of every sample shader.
+   */
+  @Benchmark
+  public void typeCheck(Blackhole blackhole) {
+    for (TranslationUnit tu : translationUnits) {
+      blackhole.consume(new Typer(tu, ShadingLanguageVersion.GLSL_440));
+    }
+  }
+
+  /**
+   * Pretty prints every sample shader to a string, as is done to write and to compare shaders.
+   */
+  @Benchmark
+  public int prettyPrint() {
+    int result = 0;
+    for (TranslationUnit tu : translationUnits) {
+      result += PrettyPrinterVisitor.prettyPrintAsString(tu).length();
+    }
+    return result;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    final Options options = new OptionsBuilder()
+        .include(TraversalBenchmark.class.getSimpleName())
+        .addProfiler("gc")
+        .build();
+    new Runner(options).run();
+  }
+
+}
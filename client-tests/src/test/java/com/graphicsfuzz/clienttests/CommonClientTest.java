@@ -159,11 +159,11 @@ public abstract class CommonClientTest {
     throw new RuntimeException("Only supporting testing from IDE now.");
   }
 
-  void assertSimilarImages(File expected, File actual) throws FileNotFoundException {
+  void assertSimilarImages(File expected, File actual) throws IOException {
     assertSimilarImages(expected, actual, 50.0);
   }
 
-  void assertSimilarImages(File expected, File actual, double threshold) throws FileNotFoundException {
+  void assertSimilarImages(File expected, File actual, double threshold) throws IOException {
     double histoDistance = ImageUtil.compareHistograms(
         ImageUtil.getHistogram(expected.getAbsolutePath()),
         ImageUtil.getHistogram(actual.getAbsolutePath()));
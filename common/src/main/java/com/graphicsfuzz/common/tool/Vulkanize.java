@@ -24,6 +24,7 @@ import com.graphicsfuzz.common.util.ConvertToVulkanFormat;
 import com.graphicsfuzz.common.util.Helper;
 import com.graphicsfuzz.common.util.ShaderKind;
 import com.graphicsfuzz.common.util.UniformsInfo;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
@@ -84,7 +85,8 @@ public class Vulkanize {
     AvoidDeprecatedGlFragColor.avoidDeprecatedGlFragColor(tu, Constants.GLF_COLOR);
 
     Helper.emitShader(ShadingLanguageVersion.GLSL_450, ShaderKind.FRAGMENT, tu,
-        new PrintStream(new FileOutputStream(ns.getString("output_prefix") + ".frag")));
+        new PrintStream(new BufferedOutputStream(
+            new FileOutputStream(ns.getString("output_prefix") + ".frag"))));
 
     Helper.emitUniformsInfo(uniformsInfo, new PrintStream(
         new FileOutputStream(ns.getString("output_prefix") + ".json")));
@@ -47,6 +47,14 @@ public class Helper {
           Optional.empty());
   }
 
+  public static StringBuilder getDefinesString(ShadingLanguageVersion version,
+        ShaderKind shaderKind,
+        boolean defineMacros) {
+    return EmitShaderHelper.getDefinesString(version, shaderKind,
+          defineMacros ? Helper::glfMacros : () -> new StringBuilder(),
+          Optional.empty());
+  }
+
   public static StringBuilder glfMacros() {
     StringBuilder sb = new StringBuilder();
     sb.append("#ifndef REDUCER\n");
@@ -29,6 +29,18 @@ public interface IShaderSetExperiment {
 
   Stream<File> getVariantTextFiles();
 
+  /**
+   * Determines whether there is an image or text result for the variant with the given name,
+   * which has no extension.
+   */
+  boolean hasVariantResult(String variantName);
+
+  /**
+   * Records that a result has been written for the variant with the given name, so that later
+   * checks need not look for it on disk.
+   */
+  void addVariantResult(String variantName);
+
   IShaderSet getShaderSet();
 
 }
@@ -18,7 +18,10 @@ package com.graphicsfuzz.common.util;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.stream.Stream;
+import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +39,10 @@ public class LocalShaderSetExperiement implements IShaderSetExperiment {
 
   private final IShaderSet shaderSet;
 
+  // Names, without extension, of the variants with a result; built by a single scan of the
+  // directory when first needed and kept up to date as results are added.
+  private Set<String> variantResults;
+
   public LocalShaderSetExperiement(String dir, IShaderSet shaderSet) {
     this.dir = dir;
     this.shaderSet = shaderSet;
@@ -73,6 +80,34 @@ public class LocalShaderSetExperiement implements IShaderSetExperiment {
                 && file.getName().startsWith(VARIANT_STARTSWITH));
   }
 
+  @Override
+  public synchronized boolean hasVariantResult(String variantName) {
+    return getVariantResults().contains(variantName);
+  }
+
+  @Override
+  public synchronized void addVariantResult(String variantName) {
+    getVariantResults().add(variantName);
+  }
+
+  private Set<String> getVariantResults() {
+    if (variantResults == null) {
+      variantResults = new HashSet<>();
+      final File[] files = new File(dir).listFiles();
+      if (files != null) {
+        for (File file : files) {
+          final String name = file.getName();
+          if (name.startsWith(VARIANT_STARTSWITH)
+              && (name.endsWith(IMAGE_EXT) || name.endsWith(TEXT_EXT))
+              && file.isFile()) {
+            variantResults.add(FilenameUtils.removeExtension(name));
+          }
+        }
+      }
+    }
+    return variantResults;
+  }
+
   @Override
   public IShaderSet getShaderSet() {
     return shaderSet;
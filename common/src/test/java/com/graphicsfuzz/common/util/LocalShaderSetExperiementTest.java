@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.common.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalShaderSetExperiementTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void testVariantResults() throws Exception {
+    final File dir = testFolder.newFolder();
+    new File(dir, "variant_001.png").createNewFile();
+    new File(dir, "variant_002.txt").createNewFile();
+    new File(dir, "variant_003.info.json").createNewFile();
+    new File(dir, "reference.png").createNewFile();
+
+    final IShaderSetExperiment experiment = new LocalShaderSetExperiement(dir.toString(), null);
+    assertTrue(experiment.hasVariantResult("variant_001"));
+    assertTrue(experiment.hasVariantResult("variant_002"));
+    assertFalse(experiment.hasVariantResult("variant_003"));
+    assertFalse(experiment.hasVariantResult("reference"));
+
+    experiment.addVariantResult("variant_003");
+    assertTrue(experiment.hasVariantResult("variant_003"));
+  }
+
+}
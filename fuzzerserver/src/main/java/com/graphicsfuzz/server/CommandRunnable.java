@@ -79,6 +79,10 @@ public class CommandRunnable implements Runnable {
     return command;
   }
 
+  public String getQueueName() {
+    return queueName;
+  }
+
   public String getLogFile() {
     return logFile;
   }
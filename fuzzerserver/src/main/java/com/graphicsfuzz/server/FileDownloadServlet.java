@@ -19,7 +19,6 @@ package com.graphicsfuzz.server;
 import static com.graphicsfuzz.server.thrift.FuzzerServiceConstants.DOWNLOAD_FIELD_NAME_TOKEN;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
@@ -29,7 +28,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,19 +78,33 @@ public class FileDownloadServlet extends HttpServlet {
       throw new IOException("Invalid path!");
     }
 
-    try (FileInputStream fis = new FileInputStream(file)) {
-      response.setStatus(HttpServletResponse.SC_OK);
-      String contentType = "text/plain";
-      try {
-        contentType = Files.probeContentType(pathOfFile);
-      } catch (IOException exception) {
-        LOGGER.info("Failed to probe content type of file path: {}", pathOfFile, exception);
-      }
-      response.setContentType(contentType);
-      try (OutputStream out = response.getOutputStream()) {
-        IOUtils.copy(fis, out);
-      }
+    if (!file.isFile()) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType(getContentType(pathOfFile));
+    response.setContentLengthLong(file.length());
+    try (OutputStream out = response.getOutputStream()) {
+      Files.copy(pathOfFile, out);
     }
 
   }
+
+  private String getContentType(Path pathOfFile) {
+    // The container's table of types is held in memory, whereas probing may read the file.
+    final String contentType = getServletContext().getMimeType(pathOfFile.toString());
+    if (contentType != null) {
+      return contentType;
+    }
+    try {
+      final String probedContentType = Files.probeContentType(pathOfFile);
+      if (probedContentType != null) {
+        return probedContentType;
+      }
+    } catch (IOException exception) {
+      LOGGER.info("Failed to probe content type of file path: {}", pathOfFile, exception);
+    }
+    return "text/plain";
+  }
 }
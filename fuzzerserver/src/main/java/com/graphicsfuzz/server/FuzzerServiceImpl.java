@@ -36,7 +36,13 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import org.apache.commons.io.FileUtils;
 import org.apache.thrift.TException;
@@ -56,19 +62,77 @@ public class FuzzerServiceImpl implements FuzzerService.Iface {
 
   private final WorkQueue reductionWorkQueue;
 
+  // Jobs are given IDs as they are handed out; see IServerJob.getJob.
+  private final AtomicLong handedOutJobIds = new AtomicLong();
+
   private final Pattern validTokenPattern = Pattern.compile("[a-zA-Z_0-9-]+");
 
+  // How long a getJob request is held when there is no job for the worker, so that a job
+  // submitted in the meantime is delivered at once instead of on the worker's next poll.
+  public static final long DEFAULT_JOB_WAIT_MILLIS = 5000;
+
+  // Thrift's servlet handles a request synchronously, so a held request keeps a Jetty thread
+  // busy.  This allows a quarter of Jetty's default pool of 200 threads to be held, leaving the
+  // rest for results, commands and the web UI.
+  public static final int DEFAULT_MAX_HELD_JOB_REQUESTS = 50;
+
+  private final long jobWaitMillis;
+
+  // Permits to hold a request for a job; a request that gets none is answered at once.
+  private final Semaphore heldJobRequests;
+
+  private final int maxHeldJobRequests;
+
+  private static final int REDUCTION_PRIORITY = 1;
+
+  private final int maxConcurrentCommands;
+
+  // Reductions run on the server, other than the rendering they ask workers to do.
+  public static final int DEFAULT_MAX_CONCURRENT_REDUCTIONS =
+      Runtime.getRuntime().availableProcessors();
+
   public FuzzerServiceImpl(
       IArtifactManager shaderSetManager,
       String processingDir,
       ExecutorService executorService) {
+    this(shaderSetManager, processingDir, executorService, DEFAULT_JOB_WAIT_MILLIS,
+        DEFAULT_MAX_HELD_JOB_REQUESTS, 1, DEFAULT_MAX_CONCURRENT_REDUCTIONS);
+  }
+
+  /**
+   * Creates the service.
+   * @param executorService Runs queued commands; see WorkQueue.newScheduler.
+   * @param jobWaitMillis How long to hold a request for a job when there is none.
+   * @param maxHeldJobRequests How many requests for jobs may be held at once, across all workers;
+   *                           further requests for which there is no job are answered at once,
+   *                           and the worker polls again.
+   * @param maxConcurrentCommands How many commands queued for a worker may run at once.
+   * @param maxConcurrentReductions How many reductions, across all workers, may run at once.
+   */
+  public FuzzerServiceImpl(
+      IArtifactManager shaderSetManager,
+      String processingDir,
+      ExecutorService executorService,
+      long jobWaitMillis,
+      int maxHeldJobRequests,
+      int maxConcurrentCommands,
+      int maxConcurrentReductions) {
 
     this.shaderSetManager = shaderSetManager;
     this.processingDir = processingDir;
     this.executorService = executorService;
+    this.jobWaitMillis = jobWaitMillis;
+    this.heldJobRequests = new Semaphore(maxHeldJobRequests);
+    this.maxHeldJobRequests = maxHeldJobRequests;
+    this.maxConcurrentCommands = maxConcurrentCommands;
+
+    reductionWorkQueue = new WorkQueue(this.executorService, "Reduction Work Queue",
+        REDUCTION_PRIORITY, maxConcurrentReductions);
 
-    reductionWorkQueue = new WorkQueue(this.executorService, "Reduction Work Queue");
+  }
 
+  int getNumHeldJobRequests() {
+    return maxHeldJobRequests - heldJobRequests.availablePermits();
   }
 
   public WorkQueue getReductionWorkQueue() {
@@ -130,6 +194,11 @@ public class FuzzerServiceImpl implements FuzzerService.Iface {
       return new GetTokenResult().setError(TokenError.INVALID_PLATFORM_INFO);
     }
 
+    // Workers that report the same platform info are pooled, unless they report nothing that
+    // identifies the device.
+    final String devicePool =
+        info.getAsJsonObject("platform_info").entrySet().isEmpty() ? null : clientInfoString;
+
     // Read old client info String
     String oldClientInfoString = "";
 
@@ -164,7 +233,8 @@ public class FuzzerServiceImpl implements FuzzerService.Iface {
     if (oldToken != null && (oldClientInfoString.isEmpty() || clientInfoString
         .equals(oldClientInfoString))) {
       LOGGER.info("Using provided token.");
-      sessions.putIfAbsent(oldToken, new Session(oldToken, platformInfo, executorService));
+      sessions.putIfAbsent(oldToken, new Session(oldToken, platformInfo, devicePool,
+          executorService, maxConcurrentCommands));
       token = oldToken;
     } else {
       LOGGER.info("Generating new token. Old then new platform info: \n{}\n{}", oldClientInfoString,
@@ -186,7 +256,8 @@ public class FuzzerServiceImpl implements FuzzerService.Iface {
         tokenStr = tokenStr.replace(' ', '_');
         token = new String(tokenStr);
         if (sessions.putIfAbsent(token, dummy)) {
-          Session newSession = new Session(token, platformInfo, executorService);
+          Session newSession = new Session(token, platformInfo, devicePool,
+              executorService, maxConcurrentCommands);
           sessions.replace(token, dummy, newSession);
           break;
         }
@@ -227,44 +298,110 @@ public class FuzzerServiceImpl implements FuzzerService.Iface {
       throw new TokenNotFoundException().setToken(token);
     }
 
-    return sessions.lockSessionAndExecute(token, session -> {
-      try {
-        MDC.put("token", token);
-        LOGGER.info("getJob");
-        session.touch();
+    final int stolen = sessions.stealJobs(token);
+    if (stolen > 0) {
+      LOGGER.info("Worker {} took {} jobs from its device pool.", token, stolen);
+    }
 
-        while (true) {
-          if (session.jobQueue.size() == 0) {
-            LOGGER.info("no job");
-            return new Job().setJobId(0).setNoJob(new NoJob());
-          }
-          Job res = session.jobQueue.peek().getJob();
-          if (res == null) {
-            LOGGER.info("There was a server job but it returned null, so it will be removed.");
-            session.jobQueue.remove();
-            continue;
+    final boolean mayHold = heldJobRequests.tryAcquire();
+    final long deadline = System.currentTimeMillis() + (mayHold ? jobWaitMillis : 0);
+
+    try {
+      return sessions.lockSessionAndExecute(token, session -> {
+        try {
+          MDC.put("token", token);
+          LOGGER.info("getJob");
+          session.touch();
+
+          while (true) {
+            // Hold the request until a job arrives, rather than have the worker poll again.
+            if (!session.awaitJob(deadline)) {
+              LOGGER.info("no job");
+              return new Job().setJobId(0).setNoJob(new NoJob());
+            }
+            session.touch();
+            Job res = session.jobQueue.peek().getJob(handedOutJobIds.incrementAndGet());
+            if (res == null) {
+              LOGGER.info("There was a server job but it returned null, so it will be removed.");
+              session.jobQueue.remove();
+              continue;
+            }
+            logJobHandedOut(token, res);
+            return res;
           }
-          StringBuilder logmsg = new StringBuilder();
-          logmsg.append("getJob(): worker '" + token
-              + "' gets job " + res.getJobId());
-          if (res.isSetSkipJob()) {
-            logmsg.append(" (skip)");
-          } else if (res.isSetImageJob()) {
-            logmsg.append("(name: ");
-            logmsg.append(res.getImageJob().getName());
-            logmsg.append(")");
-          } else {
-            logmsg.append("(job neither skip nor image? should not happen!)");
+        } catch (ServerJobException | InterruptedException exception) {
+          throw new TException(exception);
+        } finally {
+          MDC.remove("token");
+        }
+      });
+    } finally {
+      if (mayHold) {
+        heldJobRequests.release();
+      }
+    }
+
+  }
+
+  @Override
+  public List<Job> getJobs(String token, int maxJobs) throws TException {
+
+    if (!sessions.containsToken(token)) {
+      throw new TokenNotFoundException().setToken(token);
+    }
+
+    if (maxJobs <= 0) {
+      throw new TException("maxJobs must be positive.");
+    }
+
+    final int stolen = sessions.stealJobs(token);
+    if (stolen > 0) {
+      LOGGER.info("Worker {} took {} jobs from its device pool.", token, stolen);
+    }
+
+    final boolean mayHold = heldJobRequests.tryAcquire();
+    final long deadline = System.currentTimeMillis() + (mayHold ? jobWaitMillis : 0);
+
+    try {
+      return sessions.lockSessionAndExecute(token, session -> {
+        try {
+          MDC.put("token", token);
+          LOGGER.info("getJobs {}", maxJobs);
+          session.touch();
+
+          final List<Job> result = new ArrayList<>();
+          while (result.isEmpty()) {
+            if (!session.awaitJob(deadline)) {
+              LOGGER.info("no job");
+              return result;
+            }
+            session.touch();
+            // Each server job keeps its own retry count, so handing out a batch again after a
+            // worker crash counts as one more attempt at each of the jobs in it.
+            final Iterator<IServerJob> serverJobs = session.jobQueue.iterator();
+            while (serverJobs.hasNext() && result.size() < maxJobs) {
+              final Job res = serverJobs.next().getJob(handedOutJobIds.incrementAndGet());
+              if (res == null) {
+                LOGGER.info("There was a server job but it returned null, so it will be removed.");
+                serverJobs.remove();
+                continue;
+              }
+              logJobHandedOut(token, res);
+              result.add(res);
+            }
           }
-          LOGGER.info(logmsg.toString());
-          return res;
+          return result;
+        } catch (ServerJobException | InterruptedException exception) {
+          throw new TException(exception);
+        } finally {
+          MDC.remove("token");
         }
-      } catch (ServerJobException exception) {
-        throw new TException(exception);
-      } finally {
-        MDC.remove("token");
+      });
+    } finally {
+      if (mayHold) {
+        heldJobRequests.release();
       }
-    });
+    }
 
   }
 
@@ -285,15 +422,29 @@ public class FuzzerServiceImpl implements FuzzerService.Iface {
           logmsg.append(" job status: " + job.getImageJob().getResult().getStatus());
         }
         LOGGER.info(logmsg.toString());
-        final IServerJob serverJob = session.jobQueue.peek();
+        finishJobs(session, Collections.singletonList(job));
+        return null;
+      } catch (ServerJobException exception) {
+        throw new TException(exception);
+      } finally {
+        MDC.remove("token");
+      }
+    });
+  }
 
-        // Execute finish job on the server job and see if it should be removed.
-        boolean remove = serverJob.finishJob(job);
+  @Override
+  public void jobsDone(String token, List<Job> jobs) throws TException {
 
-        LOGGER.info("Returned from finishJob. Removing job? {}", remove);
-        if (remove) {
-          session.jobQueue.remove();
-        }
+    if (!sessions.containsToken(token)) {
+      throw new TokenNotFoundException().setToken(token);
+    }
+
+    sessions.lockSessionAndExecute(token, session -> {
+      try {
+        MDC.put("token", token);
+        LOGGER.info("jobsDone(): {} jobs. Queue has size: {}", jobs.size(),
+            session.jobQueue.size());
+        finishJobs(session, jobs);
         return null;
       } catch (ServerJobException exception) {
         throw new TException(exception);
@@ -302,4 +453,54 @@ public class FuzzerServiceImpl implements FuzzerService.Iface {
       }
     });
   }
+
+  /**
+   * Finishes the server jobs that the given jobs, returned by a worker, are for.  The whole batch
+   * is checked before any job is finished, so that a batch with a job that matches no queued job,
+   * or that reports the same job twice, is rejected without any effect.
+   */
+  private static void finishJobs(Session session, List<Job> jobs) throws ServerJobException {
+    final List<IServerJob> serverJobs = new ArrayList<>();
+    for (Job job : jobs) {
+      IServerJob serverJob = null;
+      for (IServerJob candidate : session.jobQueue) {
+        if (candidate.isJobFor(job)) {
+          serverJob = candidate;
+          break;
+        }
+      }
+      if (serverJob == null) {
+        throw new ServerJobException("Client tried to finish job " + job.getJobId()
+            + ", which does not match any job handed out to it.");
+      }
+      if (serverJobs.contains(serverJob)) {
+        throw new ServerJobException("Client tried to finish job " + job.getJobId()
+            + " twice.");
+      }
+      serverJobs.add(serverJob);
+    }
+    for (int i = 0; i < jobs.size(); i++) {
+      final boolean remove = serverJobs.get(i).finishJob(jobs.get(i));
+      LOGGER.info("Finished job {}. Removing job? {}", jobs.get(i).getJobId(), remove);
+      if (remove) {
+        session.jobQueue.remove(serverJobs.get(i));
+      }
+    }
+  }
+
+  private static void logJobHandedOut(String token, Job res) {
+    StringBuilder logmsg = new StringBuilder();
+    logmsg.append("getJob(): worker '" + token
+        + "' gets job " + res.getJobId());
+    if (res.isSetSkipJob()) {
+      logmsg.append(" (skip)");
+    } else if (res.isSetImageJob()) {
+      logmsg.append("(name: ");
+      logmsg.append(res.getImageJob().getName());
+      logmsg.append(")");
+    } else {
+      logmsg.append("(job neither skip nor image? should not happen!)");
+    }
+    LOGGER.info(logmsg.toString());
+  }
 }
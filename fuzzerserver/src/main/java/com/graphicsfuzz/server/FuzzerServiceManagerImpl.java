@@ -21,6 +21,7 @@ import com.graphicsfuzz.server.thrift.CommandResult;
 import com.graphicsfuzz.server.thrift.FuzzerServiceManager;
 import com.graphicsfuzz.server.thrift.ImageJob;
 import com.graphicsfuzz.server.thrift.Job;
+import com.graphicsfuzz.server.thrift.QueueMetrics;
 import com.graphicsfuzz.server.thrift.ServerInfo;
 import com.graphicsfuzz.server.thrift.TokenNotFoundException;
 import com.graphicsfuzz.server.thrift.WorkerInfo;
@@ -34,7 +35,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,16 +45,17 @@ public class FuzzerServiceManagerImpl implements FuzzerServiceManager.Iface {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(FuzzerServiceManagerImpl.class);
 
-  private FuzzerServiceImpl service;
+  // Commands that run this tool are queued on the server's reduction queue rather than on the
+  // command queue of the worker they are for.
+  private static final String REDUCTION_COMMAND = "reduce_variant";
 
-  private final AtomicLong jobIdCounter;
+  private FuzzerServiceImpl service;
 
   private final ICommandDispatcher commandDispatcher;
 
   public FuzzerServiceManagerImpl(FuzzerServiceImpl service,
         ICommandDispatcher commandDispatcher) {
     this.service = service;
-    this.jobIdCounter = new AtomicLong();
     this.commandDispatcher = commandDispatcher;
   }
 
@@ -60,6 +63,8 @@ public class FuzzerServiceManagerImpl implements FuzzerServiceManager.Iface {
   public void clearClientJobQueue(String forClient) throws TException {
     try {
       service.getClientWorkQueue(forClient).clearQueue();
+      service.getReductionWorkQueue().clearQueue(item -> item instanceof CommandRunnable
+          && forClient.equals(((CommandRunnable) item).getQueueName()));
     } catch (InterruptedException exception) {
       throw new TException(exception);
     }
@@ -67,34 +72,31 @@ public class FuzzerServiceManagerImpl implements FuzzerServiceManager.Iface {
 
   @Override
   public Job submitJob(Job job, String forClient, int retryLimit) throws TException {
+    try {
+      return submitJobAsync(job, forClient, retryLimit).get();
+    } catch (InterruptedException | ExecutionException exception) {
+      throw new TException(exception);
+    }
+  }
+
+  /**
+   * Queues a job for a worker without waiting for it to be done.
+   * @return A future that is completed with the finished job, with its result set.
+   */
+  public CompletableFuture<Job> submitJobAsync(Job job, String forClient, int retryLimit)
+        throws TException {
     LOGGER.info("submitJob {}", forClient);
-    Job[] result = new Job[1];
 
     if (!service.getSessionMap().containsToken(forClient)) {
       throw new TokenNotFoundException().setToken(forClient);
     }
 
+    final CompletableFuture<Job> result = new CompletableFuture<>();
     service.getSessionMap().lockSessionAndExecute(forClient, session -> {
-      session.jobQueue.add(new SingleJob(job, job1 -> {
-        synchronized (result) {
-          result[0] = job1;
-          result.notifyAll();
-        }
-      }, jobIdCounter, retryLimit));
+      session.addJob(new SingleJob(job, result::complete, retryLimit));
       return null;
     });
-
-    synchronized (result) {
-      while (result[0] == null) {
-        try {
-          result.wait();
-        } catch (InterruptedException exception) {
-          throw new TException(exception);
-        }
-      }
-    }
-
-    return result[0];
+    return result;
   }
 
   @Override
@@ -133,17 +135,22 @@ public class FuzzerServiceManagerImpl implements FuzzerServiceManager.Iface {
         }
       }
 
-      service.getSessionMap().lockSessionAndExecute(
-          token, session -> {
-            session.workQueue.add(new CommandRunnable(
-                name,
-                command,
-                queueName,
-                logFile,
-                this,
-                commandDispatcher));
-            return null;
-          });
+      final CommandRunnable commandRunnable = new CommandRunnable(
+          name,
+          command,
+          queueName,
+          logFile,
+          this,
+          commandDispatcher);
+      if (command.get(0).equals(REDUCTION_COMMAND)) {
+        service.getReductionWorkQueue().add(commandRunnable);
+      } else {
+        service.getSessionMap().lockSessionAndExecute(
+            token, session -> {
+              session.workQueue.add(commandRunnable);
+              return null;
+            });
+      }
     } catch (Exception ex) {
       LOGGER.error("", ex);
       throw new TException(ex);
@@ -173,14 +180,8 @@ public class FuzzerServiceManagerImpl implements FuzzerServiceManager.Iface {
   public ServerInfo getServerState() throws TException {
 
     // Get reduction queue.
-    List<CommandInfo> reductionQueue = new ArrayList<>();
-
-    {
-      List<String> reductionQueueStr = service.getReductionWorkQueue().queueToStringList();
-      for (String reductionCommand : reductionQueueStr) {
-        reductionQueue.add(new CommandInfo().setName(reductionCommand));
-      }
-    }
+    List<CommandInfo> reductionQueue =
+        service.getReductionWorkQueue().getQueueAsCommandInfoList();
 
     // Get workers
     List<WorkerInfo> workers = new ArrayList<>();
@@ -196,6 +197,7 @@ public class FuzzerServiceManagerImpl implements FuzzerServiceManager.Iface {
                       .setCommandQueue(session.workQueue.getQueueAsCommandInfoList())
                       .setJobQueue(getJobQueueAsJobInfoList(session.jobQueue))
                       .setLive(session.isLive())
+                      .setCommandQueueMetrics(toQueueMetrics(session.workQueue.getMetrics()))
           );
 
           return null;
@@ -206,9 +208,19 @@ public class FuzzerServiceManagerImpl implements FuzzerServiceManager.Iface {
     return
           new ServerInfo()
                 .setReductionQueue(reductionQueue)
+                .setReductionQueueMetrics(
+                    toQueueMetrics(service.getReductionWorkQueue().getMetrics()))
                 .setWorkers(workers);
   }
 
+  private static QueueMetrics toQueueMetrics(WorkQueue.Metrics metrics) {
+    return new QueueMetrics()
+        .setCompleted(metrics.getCompleted())
+        .setTotalWaitMillis(metrics.getTotalWaitMillis())
+        .setMaxWaitMillis(metrics.getMaxWaitMillis())
+        .setTotalRunMillis(metrics.getTotalRunMillis());
+  }
+
   private List<String> getJobQueueAsJobInfoList(Queue<IServerJob> jobQueue) {
     List<String> res = new ArrayList<>();
     for (IServerJob job : jobQueue) {
@@ -21,15 +21,30 @@ import com.graphicsfuzz.server.thrift.Job;
 public interface IServerJob {
 
   /**
-   * Get a job.
+   * Get a job, to be handed out with the given ID.  The server assigns the ID, and no two jobs
+   * handed out by a server share one, so a worker's result can be matched with its job whichever
+   * queue the job came from.
+   * @param jobId The ID to give the job that is handed out
    * @return null if this IServerJob should be removed from the job list.
    * @throws ServerJobException to handle communication problems with server
    */
-  Job getJob() throws ServerJobException;
+  Job getJob(long jobId) throws ServerJobException;
 
   /**
-   * Report that job is finished.
+   * Report that job is finished.  The job should be one for which isJobFor holds.
    * @return true if this IServerJob should be removed from the job list.
    */
   boolean finishJob(Job job) throws ServerJobException;
+
+  /**
+   * Determine whether a job returned by a worker is the one most recently handed out by this
+   * IServerJob, so that results reported in a batch can be matched up with their server jobs.
+   */
+  boolean isJobFor(Job job);
+
+  /**
+   * Determine whether a job has been handed out to a worker, in which case it may be in progress
+   * and should not be moved to another worker while the worker is live.
+   */
+  boolean isHandedOut();
 }
@@ -17,8 +17,12 @@
 package com.graphicsfuzz.server;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Queue;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -28,13 +32,19 @@ public final class SessionMap {
 
   public static class Session {
 
-    public final Queue<IServerJob> jobQueue = new ArrayDeque<>();
+    public final Deque<IServerJob> jobQueue = new ArrayDeque<>();
     public String platformInfo;
+    // Workers whose sessions have the same non-null device pool run on equivalent devices, so
+    // any of them can do jobs queued for another.
+    public final String devicePool;
     private final Object mutex = new Object();
     private volatile long touched = System.currentTimeMillis();
 
     private static final long FIVE_MINUTES = 5 * 60 * 1000;
 
+    // Commands queued for workers go after reductions queued on the server.
+    private static final int WORKER_COMMAND_PRIORITY = 0;
+
     public void touch() {
       touched = System.currentTimeMillis();
     }
@@ -43,6 +53,34 @@ public final class SessionMap {
       return System.currentTimeMillis() - touched < FIVE_MINUTES;
     }
 
+    /**
+     * Queues a job and wakes up any worker request that is waiting for one.
+     */
+    public void addJob(IServerJob job) {
+      synchronized (mutex) {
+        jobQueue.add(job);
+        mutex.notifyAll();
+      }
+    }
+
+    /**
+     * Waits until the job queue is non-empty or the deadline passes.  Must be called with the
+     * session locked; the lock is released while waiting, so that jobs can be queued meanwhile.
+     * @param deadline Time, in milliseconds since the epoch, after which to give up.
+     * @return true if and only if there is a job in the queue.
+     */
+    public boolean awaitJob(long deadline) throws InterruptedException {
+      assert Thread.holdsLock(mutex);
+      while (jobQueue.isEmpty()) {
+        final long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          return false;
+        }
+        mutex.wait(remaining);
+      }
+      return true;
+    }
+
     // Uses its own internal mutex:
     public final WorkQueue workQueue;
 
@@ -51,14 +89,19 @@ public final class SessionMap {
      */
     public Session() {
       workQueue = null;
+      devicePool = null;
     }
 
     public Session(
         String token,
         String platformInfo,
-        ExecutorService executorService) {
+        String devicePool,
+        ExecutorService executorService,
+        int maxConcurrentCommands) {
       this.platformInfo = platformInfo;
-      workQueue = new WorkQueue(executorService, "WorkQueue(" + token + ")");
+      this.devicePool = devicePool;
+      workQueue = new WorkQueue(executorService, "WorkQueue(" + token + ")",
+          WORKER_COMMAND_PRIORITY, maxConcurrentCommands);
     }
   }
 
@@ -105,6 +148,69 @@ public final class SessionMap {
     return sessions.get(token).workQueue;
   }
 
+  /**
+   * Yields the tokens of the other sessions in the same device pool as the given session.
+   */
+  public List<String> getPoolPeers(String token) {
+    final List<String> result = new ArrayList<>();
+    final Session session = sessions.get(token);
+    if (session == null || session.devicePool == null) {
+      return result;
+    }
+    for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+      if (!entry.getKey().equals(token)
+          && session.devicePool.equals(entry.getValue().devicePool)) {
+        result.add(entry.getKey());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * If the given session has no jobs, moves jobs to it from a peer in its device pool: all jobs
+   * of a peer that is no longer live, or else the most recently queued job that a live peer has
+   * not yet handed out to its worker.  Only one session is locked at a time.
+   * @return the number of jobs moved.
+   */
+  public int stealJobs(String token) {
+    final Session thief = sessions.get(token);
+    synchronized (thief.mutex) {
+      if (!thief.jobQueue.isEmpty()) {
+        return 0;
+      }
+    }
+    for (String peerToken : getPoolPeers(token)) {
+      final Session peer = sessions.get(peerToken);
+      if (peer == null) {
+        continue;
+      }
+      final List<IServerJob> stolen = new ArrayList<>();
+      synchronized (peer.mutex) {
+        if (!peer.isLive()) {
+          stolen.addAll(peer.jobQueue);
+          peer.jobQueue.clear();
+        } else {
+          final Iterator<IServerJob> waiting = peer.jobQueue.descendingIterator();
+          while (waiting.hasNext()) {
+            final IServerJob job = waiting.next();
+            if (!job.isHandedOut()) {
+              waiting.remove();
+              stolen.add(job);
+              break;
+            }
+          }
+        }
+      }
+      if (!stolen.isEmpty()) {
+        for (IServerJob job : stolen) {
+          thief.addJob(job);
+        }
+        return stolen.size();
+      }
+    }
+    return 0;
+  }
+
   public <T, E extends Throwable> T lockSessionAndExecute(String token,
       SessionWorkerEx<T, E> sessionWorker) throws E {
     Session session = sessions.get(token);
@@ -21,7 +21,6 @@ import com.graphicsfuzz.server.thrift.Job;
 import com.graphicsfuzz.server.thrift.JobStatus;
 import com.graphicsfuzz.server.thrift.ResultConstant;
 import com.graphicsfuzz.server.thrift.SkipJob;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class SingleJob implements IServerJob {
 
@@ -35,24 +34,28 @@ public class SingleJob implements IServerJob {
   private Job skipJob;
   private ISingleJobCompleter completer;
 
-  private final AtomicLong skipJobIdCounter;
+  // The ID the job was submitted with, which is restored when the job is completed.  While the
+  // job is handed out it carries the ID assigned by the server instead.
+  private final long submittedJobId;
+  private long handedOutJobId;
 
   private int counter;
   private final int limit;
 
-  public SingleJob(Job job, ISingleJobCompleter completer, AtomicLong skipJobIdCounter,
-      int retryLimit) {
+  public SingleJob(Job job, ISingleJobCompleter completer, int retryLimit) {
     this.job = job;
     this.completer = completer;
-    this.skipJobIdCounter = skipJobIdCounter;
+    this.submittedJobId = job.getJobId();
+    this.handedOutJobId = -1;
     this.limit = retryLimit + 1;
   }
 
   @Override
-  public Job getJob() throws ServerJobException {
+  public Job getJob(long jobId) throws ServerJobException {
+    handedOutJobId = jobId;
     if (counter + 1 >= limit) {
       skipJob = new Job()
-          .setJobId(skipJobIdCounter.incrementAndGet())
+          .setJobId(jobId)
           .setSkipJob(new SkipJob());
       job.getImageJob()
           .setResult(
@@ -63,32 +66,33 @@ public class SingleJob implements IServerJob {
     } else {
       ++counter;
     }
-    return job;
+    return job.setJobId(jobId);
+  }
+
+  @Override
+  public boolean isJobFor(Job returnedJob) {
+    return isHandedOut() && returnedJob.getJobId() == handedOutJobId;
+  }
+
+  @Override
+  public boolean isHandedOut() {
+    return counter > 0 || skipJob != null;
   }
 
   @Override
   public boolean finishJob(Job returnedJob) throws ServerJobException {
 
+    if (!isJobFor(returnedJob)) {
+      throw new ServerJobException("Client tried to finish a job that did not match "
+          + "the job most recently handed out.");
+    }
+
     if (skipJob != null) {
-      if (returnedJob.getJobId() != skipJob.getJobId()) {
-        throw new ServerJobException("Client tried to finish a job that did not match"
-            + "the current skip job.");
-      }
-      if (job == null) {
-        // this call to jobDone() may be due to an old crash, in which case skipjob is null,
-        // and so is job. Hence, complete the returnedJob.
-        completer.completeJob(returnedJob);
-      } else {
-        completer.completeJob(job);
-      }
+      completer.completeJob(job.setJobId(submittedJobId));
       return true;
     }
 
-    if (returnedJob.getJobId() != job.getJobId()) {
-      throw new ServerJobException("Client tried to finish a job that did not match"
-          + "the currently queued job.");
-    }
-    completer.completeJob(returnedJob);
+    completer.completeJob(returnedJob.setJobId(submittedJobId));
     return true;
   }
 }
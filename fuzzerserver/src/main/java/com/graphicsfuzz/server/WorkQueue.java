@@ -17,110 +17,177 @@
 package com.graphicsfuzz.server;
 
 import com.graphicsfuzz.server.thrift.CommandInfo;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
+/**
+ * A queue of work items, run in order on a shared executor.  Up to maxConcurrent items of a queue
+ * run at once.  Each running item occupies an executor thread, and when it finishes the queue goes
+ * to the back of the line for its next item; on an executor made by newScheduler, queues of higher
+ * priority go first, so that a bounded pool is shared fairly between queues.
+ */
 public class WorkQueue {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(WorkQueue.class);
 
+  // Commands mostly wait for workers, so a scheduler can have many more threads than there are
+  // cores.
+  public static final int DEFAULT_SCHEDULER_THREADS = 256;
+
+  private static final AtomicLong slotCounter = new AtomicLong();
+
   private final ExecutorService executor;
-  private final ArrayList<Runnable> workQueue = new ArrayList<>();
+  private final Deque<QueuedItem> waiting = new ArrayDeque<>();
+  private final Map<Thread, QueuedItem> running = new LinkedHashMap<>();
   private final Object mutex = new Object();
   private final String name;
+  private final int priority;
+  private final int maxConcurrent;
+
+  // Slots submitted to the executor that have not yet finished, including running ones.
+  private int scheduled;
 
-  private final MyWorker myWorker = new MyWorker();
-  private boolean running;
-  private Future future = null;
-  private final int timeLimit = 60;
-  private final int consecutiveFailureLimit = 5;
+  private long completed;
+  private long totalWaitMillis;
+  private long maxWaitMillis;
+  private long totalRunMillis;
 
   public WorkQueue(ExecutorService executor, String name) {
+    this(executor, name, 0, 1);
+  }
+
+  public WorkQueue(ExecutorService executor, String name, int priority, int maxConcurrent) {
+    if (maxConcurrent < 1) {
+      throw new IllegalArgumentException("maxConcurrent must be positive.");
+    }
     this.executor = executor;
     this.name = name;
+    this.priority = priority;
+    this.maxConcurrent = maxConcurrent;
   }
 
-  private class MyWorker implements Runnable {
+  /**
+   * Makes a bounded executor for work queues, which runs the items of higher priority queues
+   * first and otherwise serves queues in turn.  Only work queues may submit to it.
+   */
+  public static ExecutorService newScheduler(int threads) {
+    return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new PriorityBlockingQueue<>());
+  }
+
+  private static final class QueuedItem {
+    private final Runnable runnable;
+    private final long queuedAt = System.currentTimeMillis();
+
+    private QueuedItem(Runnable runnable) {
+      this.runnable = runnable;
+    }
+  }
+
+  /**
+   * The right of a queue to run one item on the executor.
+   */
+  private final class Slot implements Runnable, Comparable<Slot> {
+
+    private final long sequenceNumber = slotCounter.incrementAndGet();
+
+    @Override
+    public int compareTo(Slot other) {
+      if (getPriority() != other.getPriority()) {
+        return Integer.compare(other.getPriority(), getPriority());
+      }
+      return Long.compare(sequenceNumber, other.sequenceNumber);
+    }
+
+    private int getPriority() {
+      return priority;
+    }
 
     @Override
     public void run() {
-      Runnable runnable = null;
-      while (true) {
-        synchronized (mutex) {
-          assert running;
-          // Remove previously completed (or failed) work item r.
-          if (runnable != null) {
-            // Edge case:
-            if (workQueue.isEmpty()) {
-              LOGGER.info(name
-                  + ": front work item failed but queue is now empty. "
-                  + "The queue was probably interrupted and cleared. "
-                  + "Stopping.");
-              running = false;
-              return;
-            }
-            Runnable removed = workQueue.remove(0);
-            assert removed == runnable;
-            // If r failed, add to back of queue.
-          }
-          // Main exit condition.
-          if (workQueue.isEmpty()) {
-            LOGGER.info(name + " queue is empty. Stopping.");
-            running = false;
-            return;
-          }
-          runnable = workQueue.get(0);
+      final QueuedItem item;
+      synchronized (mutex) {
+        item = waiting.pollFirst();
+        if (item == null) {
+          LOGGER.info(name + " queue is empty. Stopping.");
+          scheduled--;
+          mutex.notifyAll();
+          return;
         }
-        // Must execute runnable outside of synchronized block, as
-        // runnables may add work.
-        // Should not use "return" below:
-        try {
-          MDC.put("token", name + ":" + runnable.toString());
-          LOGGER.info("Dequeued work item. Running it now.");
-          runnable.run();
-        } catch (Throwable ex) {
-          LOGGER.error("Throwable", ex);
-        } finally {
-          MDC.remove("token");
+        running.put(Thread.currentThread(), item);
+      }
+      final long startTime = System.currentTimeMillis();
+      final long waitMillis = startTime - item.queuedAt;
+      // Should not use "return" below:
+      try {
+        MDC.put("token", name + ":" + item.runnable.toString());
+        LOGGER.info("Dequeued work item after {} ms. Running it now.", waitMillis);
+        item.runnable.run();
+      } catch (Throwable ex) {
+        LOGGER.error("Throwable", ex);
+      } finally {
+        final long runMillis = System.currentTimeMillis() - startTime;
+        LOGGER.info("Work item finished after {} ms.", runMillis);
+        MDC.remove("token");
+        synchronized (mutex) {
+          running.remove(Thread.currentThread());
+          completed++;
+          totalWaitMillis += waitMillis;
+          maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+          totalRunMillis += runMillis;
+          scheduled--;
+          scheduleSlots();
+          mutex.notifyAll();
         }
+        // Do not leave an interrupt from clearQueue to the next user of the thread.
+        Thread.interrupted();
       }
     }
   }
 
-  public void addNext(Runnable runnable) {
-    add(runnable, 1);
+  // Must be called with mutex held.
+  private void scheduleSlots() {
+    final int unstarted = scheduled - running.size();
+    final int needed = Math.min(maxConcurrent - scheduled, waiting.size() - unstarted);
+    for (int i = 0; i < needed; i++) {
+      try {
+        executor.execute(new Slot());
+        scheduled++;
+      } catch (RejectedExecutionException exception) {
+        LOGGER.error(name + ": could not schedule work item.", exception);
+        return;
+      }
+    }
   }
 
-  public void add(Runnable runnable) {
-    add(runnable, -1);
+  public void addNext(Runnable runnable) {
+    synchronized (mutex) {
+      waiting.addFirst(new QueuedItem(runnable));
+      scheduleSlots();
+    }
   }
 
-  public void add(Runnable runnable, int pos) {
-    // boolean startWorker = false;
+  public void add(Runnable runnable) {
     synchronized (mutex) {
-      if (pos < 0 || workQueue.isEmpty()) {
-        workQueue.add(runnable);
-      } else {
-        workQueue.add(pos, runnable);
-      }
-      if (!running) {
-        running = true;
-        // startWorker = true;
-        future = executor.submit(myWorker);
-      }
+      waiting.addLast(new QueuedItem(runnable));
+      scheduleSlots();
     }
-
-//    if(startWorker) {
-//      executor.execute(myWorker);
-//    }
   }
 
   public String queueToString() {
@@ -133,11 +200,7 @@ public class WorkQueue {
   }
 
   public List<String> queueToStringList() {
-    List<String> res;
-    synchronized (mutex) {
-      res = workQueue.stream().map(Object::toString).collect(Collectors.toList());
-    }
-    return res;
+    return getQueueCopy().stream().map(Object::toString).collect(Collectors.toList());
   }
 
   public List<CommandInfo> getQueueAsCommandInfoList() {
@@ -159,33 +222,92 @@ public class WorkQueue {
     return res;
   }
 
+  /**
+   * Yields the running work items, followed by those waiting to run.
+   */
   public List<Runnable> getQueueCopy() {
     synchronized (mutex) {
-      return new ArrayList<>(workQueue);
+      return Stream.concat(running.values().stream(), waiting.stream())
+          .map(item -> item.runnable)
+          .collect(Collectors.toList());
     }
   }
 
+  public Metrics getMetrics() {
+    synchronized (mutex) {
+      return new Metrics(completed, totalWaitMillis, maxWaitMillis, totalRunMillis);
+    }
+  }
+
+  /**
+   * Removes all waiting work items, interrupts the running ones and waits for them to stop.
+   */
   public void clearQueue() throws InterruptedException {
-    Future theFuture;
+    clearQueue(item -> true);
+  }
+
+  /**
+   * Removes the waiting work items accepted by the filter, interrupts the accepted running ones and
+   * waits for them to stop.
+   */
+  public void clearQueue(Predicate<Runnable> filter) throws InterruptedException {
     synchronized (mutex) {
-      workQueue.clear();
-      theFuture = future;
-      if (theFuture != null) {
-        theFuture.cancel(true);
+      waiting.removeIf(item -> filter.test(item.runnable));
+      final List<QueuedItem> stopping = new ArrayList<>();
+      for (Map.Entry<Thread, QueuedItem> entry : running.entrySet()) {
+        // A work item may clear its own queue, so do not wait for the current thread.
+        if (entry.getKey() != Thread.currentThread() && filter.test(entry.getValue().runnable)) {
+          entry.getKey().interrupt();
+          stopping.add(entry.getValue());
+        }
       }
+      while (stopping.stream().anyMatch(running::containsValue)) {
+        mutex.wait();
+      }
+    }
+  }
+
+  /**
+   * Queue-wait and run-time statistics for the work items a queue has completed.
+   */
+  public static final class Metrics {
 
+    private final long completed;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+    private final long totalRunMillis;
+
+    private Metrics(long completed, long totalWaitMillis, long maxWaitMillis,
+        long totalRunMillis) {
+      this.completed = completed;
+      this.totalWaitMillis = totalWaitMillis;
+      this.maxWaitMillis = maxWaitMillis;
+      this.totalRunMillis = totalRunMillis;
     }
 
-    try {
-      if (theFuture != null) {
-        theFuture.get();
-      }
-    } catch (ExecutionException exception) {
-      LOGGER.info("Error waiting for work queue to stop:", exception);
-    } catch (CancellationException exception) {
-      // ignore
+    public long getCompleted() {
+      return completed;
+    }
+
+    public long getTotalWaitMillis() {
+      return totalWaitMillis;
+    }
+
+    public long getMaxWaitMillis() {
+      return maxWaitMillis;
     }
 
+    public long getTotalRunMillis() {
+      return totalRunMillis;
+    }
+
+    @Override
+    public String toString() {
+      return "completed: " + completed
+          + ", mean wait: " + (completed == 0 ? 0 : totalWaitMillis / completed) + " ms"
+          + ", max wait: " + maxWaitMillis + " ms"
+          + ", mean run time: " + (completed == 0 ? 0 : totalRunMillis / completed) + " ms";
+    }
   }
 
 }
@@ -20,8 +20,11 @@ import static junit.framework.TestCase.assertNotNull;
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
 
 import com.google.gson.Gson;
+import com.graphicsfuzz.server.thrift.CommandInfo;
 import com.graphicsfuzz.server.thrift.FuzzerService;
 import com.graphicsfuzz.server.thrift.FuzzerServiceManager;
 import com.graphicsfuzz.server.thrift.GetTokenResult;
@@ -29,13 +32,22 @@ import com.graphicsfuzz.server.thrift.ImageJob;
 import com.graphicsfuzz.server.thrift.ImageJobResult;
 import com.graphicsfuzz.server.thrift.Job;
 import com.graphicsfuzz.server.thrift.JobStatus;
+import com.graphicsfuzz.server.thrift.ServerInfo;
 import com.graphicsfuzz.server.thrift.TokenError;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.apache.thrift.TException;
 import org.junit.Before;
 import org.junit.Rule;
@@ -115,6 +127,202 @@ public class FuzzerServerIntegrationTests {
     assertEquals(result.getImageJob().getResult().getStatus(), JobStatus.UNEXPECTED_ERROR);
   }
 
+  @Test
+  public void willHoldAJobRequestUntilAJobIsSubmitted() throws Exception {
+    final String token = newToken();
+
+    assertNotNull(token);
+    final Future<Job> requesting = this.submit(() -> this.fuzzerService.getJob(token));
+    Thread.sleep(100);
+    assertFalse(requesting.isDone());
+
+    final Job job = new Job().setImageJob(new ImageJob()).setJobId(1);
+    final CompletableFuture<Job> submitted = ((FuzzerServiceManagerImpl) fuzzerServiceManager)
+        .submitJobAsync(job, token, 1);
+
+    final Job todo = requesting.get().deepCopy();
+    assertTrue(todo.toString(), todo.isSetImageJob());
+    assertFalse(submitted.isDone());
+    todo.getImageJob().setResult(new ImageJobResult().setStatus(JobStatus.SUCCESS));
+    this.fuzzerService.jobDone(token, todo);
+
+    assertEquals(JobStatus.SUCCESS, submitted.get().getImageJob().getResult().getStatus());
+  }
+
+  @Test
+  public void willAnswerAtOnceWhenTooManyJobRequestsAreHeld() throws Exception {
+    final String processing = testFolder.newFolder("limited").toString();
+    final FuzzerServiceImpl limitedService = new FuzzerServiceImpl(
+        new LocalArtifactManager(testFolder.newFolder("limitedShaderfamilies").toString(),
+            processing),
+        processing, executorService, 60000, 1, 1, 1);
+    final String first = limitedService.getToken("{}", "").getToken();
+    final String second = limitedService.getToken("{}", "").getToken();
+
+    final Future<Job> held = this.submit(() -> limitedService.getJob(first));
+    while (limitedService.getNumHeldJobRequests() == 0) {
+      Thread.sleep(10);
+    }
+    final long start = System.currentTimeMillis();
+    assertTrue(limitedService.getJob(second).isSetNoJob());
+    assertTrue(limitedService.getJobs(second, 2).isEmpty());
+    assertTrue(System.currentTimeMillis() - start < 30000);
+    assertFalse(held.isDone());
+
+    final Job job = new Job().setImageJob(new ImageJob()).setJobId(1);
+    new FuzzerServiceManagerImpl(limitedService, (command, manager) -> { })
+        .submitJobAsync(job, first, 1);
+    assertTrue(held.get().isSetImageJob());
+    assertEquals(0, limitedService.getNumHeldJobRequests());
+  }
+
+  @Test
+  public void willHandOutAndFinishJobsInBatches() throws Exception {
+    final String token = newToken();
+
+    assertNotNull(token);
+    final FuzzerServiceManagerImpl manager = (FuzzerServiceManagerImpl) fuzzerServiceManager;
+    final CompletableFuture<Job> first = manager.submitJobAsync(
+        new Job().setImageJob(new ImageJob().setName("first")).setJobId(1), token, 1);
+    final CompletableFuture<Job> second = manager.submitJobAsync(
+        new Job().setImageJob(new ImageJob().setName("second")).setJobId(2), token, 1);
+
+    final List<Job> todo = this.fuzzerService.getJobs(token, 5);
+    assertEquals(2, todo.size());
+    assertEquals(1, todo.get(0).getJobId());
+    assertEquals(2, todo.get(1).getJobId());
+
+    final List<Job> done = new ArrayList<>();
+    done.add(todo.get(1).deepCopy());
+    done.add(todo.get(0).deepCopy());
+    done.get(0).getImageJob().setResult(new ImageJobResult().setStatus(JobStatus.CRASH));
+    done.get(1).getImageJob().setResult(new ImageJobResult().setStatus(JobStatus.SUCCESS));
+    this.fuzzerService.jobsDone(token, done);
+
+    assertEquals(JobStatus.SUCCESS, first.get().getImageJob().getResult().getStatus());
+    assertEquals(JobStatus.CRASH, second.get().getImageJob().getResult().getStatus());
+  }
+
+  @Test
+  public void willTellApartJobsSubmittedWithTheSameId() throws Exception {
+    final String token = newToken();
+
+    // Two submitters, each numbering its own jobs from 1.
+    final FuzzerServiceManagerImpl manager = (FuzzerServiceManagerImpl) fuzzerServiceManager;
+    final FuzzerServiceManagerImpl otherManager = new FuzzerServiceManagerImpl(
+        (FuzzerServiceImpl) fuzzerService, (command, unused) -> { });
+    final CompletableFuture<Job> first = manager.submitJobAsync(
+        new Job().setImageJob(new ImageJob().setName("first")).setJobId(1), token, 1);
+    final CompletableFuture<Job> second = otherManager.submitJobAsync(
+        new Job().setImageJob(new ImageJob().setName("second")).setJobId(1), token, 1);
+
+    final List<Job> todo = this.fuzzerService.getJobs(token, 5);
+    assertEquals(2, todo.size());
+    assertNotEquals(todo.get(0).getJobId(), todo.get(1).getJobId());
+
+    final Job secondDone = todo.get(1).deepCopy();
+    secondDone.getImageJob().setResult(new ImageJobResult().setStatus(JobStatus.CRASH));
+    this.fuzzerService.jobDone(token, secondDone);
+    assertFalse(first.isDone());
+    assertEquals("second", second.get().getImageJob().getName());
+    assertEquals(JobStatus.CRASH, second.get().getImageJob().getResult().getStatus());
+    // Submitters get their jobs back with the IDs they gave them.
+    assertEquals(1, second.get().getJobId());
+
+    final Job firstDone = todo.get(0).deepCopy();
+    firstDone.getImageJob().setResult(new ImageJobResult().setStatus(JobStatus.SUCCESS));
+    this.fuzzerService.jobDone(token, firstDone);
+    assertEquals("first", first.get().getImageJob().getName());
+    assertEquals(JobStatus.SUCCESS, first.get().getImageJob().getResult().getStatus());
+    assertEquals(1, first.get().getJobId());
+  }
+
+  @Test
+  public void willRejectABatchWithAnUnknownJobWithoutFinishingAny() throws Exception {
+    final String token = newToken();
+
+    final FuzzerServiceManagerImpl manager = (FuzzerServiceManagerImpl) fuzzerServiceManager;
+    final CompletableFuture<Job> submitted = manager.submitJobAsync(
+        new Job().setImageJob(new ImageJob()).setJobId(1), token, 1);
+
+    final Job todo = this.fuzzerService.getJobs(token, 5).get(0).deepCopy();
+    todo.getImageJob().setResult(new ImageJobResult().setStatus(JobStatus.SUCCESS));
+    final Job unknown = todo.deepCopy().setJobId(todo.getJobId() + 1000);
+
+    try {
+      this.fuzzerService.jobsDone(token, Arrays.asList(todo, unknown));
+      fail("A batch with an unknown job should be rejected.");
+    } catch (TException exception) {
+      // Expected.
+    }
+    try {
+      this.fuzzerService.jobsDone(token, Arrays.asList(todo, todo));
+      fail("A batch that reports a job twice should be rejected.");
+    } catch (TException exception) {
+      // Expected.
+    }
+    assertFalse(submitted.isDone());
+
+    this.fuzzerService.jobsDone(token, Collections.singletonList(todo));
+    assertEquals(JobStatus.SUCCESS, submitted.get().getImageJob().getResult().getStatus());
+  }
+
+  @Test
+  public void willRunReductionsOnTheReductionQueue() throws Exception {
+    final String token = newToken();
+    final CountDownLatch started = new CountDownLatch(2);
+    final CountDownLatch release = new CountDownLatch(1);
+    final FuzzerServiceManager.Iface manager = new FuzzerServiceManagerImpl(
+        (FuzzerServiceImpl) fuzzerService,
+        (command, serviceManager) -> {
+          started.countDown();
+          release.await();
+        });
+
+    manager.queueCommand("reduction", Arrays.asList("reduce_variant", "variant.frag"), token,
+        null);
+    manager.queueCommand("run", Arrays.asList("run_shader_set", "shaderset"), token, null);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    ServerInfo serverInfo = manager.getServerState();
+    assertEquals(Collections.singletonList("reduction"), serverInfo.getReductionQueue().stream()
+        .map(CommandInfo::getName).collect(Collectors.toList()));
+    assertEquals(Collections.singletonList("run"), serverInfo.getWorkers().get(0)
+        .getCommandQueue().stream().map(CommandInfo::getName).collect(Collectors.toList()));
+
+    // Clearing the worker's queue also stops the reductions that are for the worker.
+    manager.clearClientJobQueue(token);
+    serverInfo = manager.getServerState();
+    assertTrue(serverInfo.getReductionQueue().isEmpty());
+    assertTrue(serverInfo.getWorkers().get(0).getCommandQueue().isEmpty());
+    assertEquals(1, serverInfo.getReductionQueueMetrics().getCompleted());
+    assertEquals(1, serverInfo.getWorkers().get(0).getCommandQueueMetrics().getCompleted());
+  }
+
+  @Test
+  public void willTakeAWaitingJobFromAnEquivalentWorker() throws Exception {
+    final String platformInfo = "{\"manufacturer\": \"ABCD\", \"model\": \"12345\"}";
+    final String busy = this.fuzzerService.getToken(platformInfo, "").getToken();
+    final String idle = this.fuzzerService.getToken(platformInfo, "").getToken();
+    final String other = newToken();
+
+    final FuzzerServiceManagerImpl manager = (FuzzerServiceManagerImpl) fuzzerServiceManager;
+    final CompletableFuture<Job> first = manager.submitJobAsync(
+        new Job().setImageJob(new ImageJob()).setJobId(1), busy, 1);
+    final CompletableFuture<Job> second = manager.submitJobAsync(
+        new Job().setImageJob(new ImageJob()).setJobId(2), busy, 1);
+
+    assertEquals(1, this.fuzzerService.getJob(busy).getJobId());
+    // Only the job that the busy worker has not started can move, and only within the pool.
+    assertEquals(0, ((FuzzerServiceImpl) fuzzerService).getSessionMap().stealJobs(other));
+    final Job todo = this.fuzzerService.getJob(idle).deepCopy();
+    assertEquals(2, todo.getJobId());
+    todo.getImageJob().setResult(new ImageJobResult().setStatus(JobStatus.SUCCESS));
+    this.fuzzerService.jobDone(idle, todo);
+
+    assertEquals(JobStatus.SUCCESS, second.get().getImageJob().getResult().getStatus());
+    assertFalse(first.isDone());
+  }
+
   @Test
   public void willSetSkippedAfterFailures() throws Exception {
 
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class WorkQueueTest {
+
+  private final ExecutorService scheduler = WorkQueue.newScheduler(1);
+
+  @After
+  public void shutdownScheduler() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void testHigherPriorityQueueRunsFirst() throws Exception {
+    final WorkQueue blocker = new WorkQueue(scheduler, "blocker");
+    final WorkQueue low = new WorkQueue(scheduler, "low", 0, 1);
+    final WorkQueue high = new WorkQueue(scheduler, "high", 1, 1);
+    final List<String> order = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(3);
+    final CompletableFuture<WorkQueue.Metrics> lowMetrics = new CompletableFuture<>();
+
+    // Occupy the only thread so that the other items have to wait for it.
+    blocker.add(() -> awaitQuietly(release));
+    low.add(() -> {
+      order.add("low 1");
+      done.countDown();
+    });
+    low.add(() -> {
+      order.add("low 2");
+      done.countDown();
+    });
+    // Metrics are recorded once an item has returned, which is before the queue's next item
+    // starts.
+    low.add(() -> lowMetrics.complete(low.getMetrics()));
+    high.add(() -> {
+      order.add("high");
+      done.countDown();
+    });
+    release.countDown();
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("high", "low 1", "low 2"), order);
+    assertEquals(2, lowMetrics.get(10, TimeUnit.SECONDS).getCompleted());
+  }
+
+  @Test
+  public void testItemsOfAQueueRunConcurrently() throws Exception {
+    final ExecutorService pool = WorkQueue.newScheduler(4);
+    try {
+      final WorkQueue queue = new WorkQueue(pool, "queue", 0, 2);
+      final CountDownLatch bothStarted = new CountDownLatch(2);
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch allFinished = new CountDownLatch(3);
+      for (int i = 0; i < 3; i++) {
+        queue.add(() -> {
+          bothStarted.countDown();
+          awaitQuietly(release);
+          allFinished.countDown();
+        });
+      }
+      assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+      // Two items are running and the third is waiting for one of them.
+      assertEquals(3, queue.getQueueCopy().size());
+      release.countDown();
+      assertTrue(allFinished.await(10, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testClearQueueStopsOnlyAcceptedItems() throws Exception {
+    final ExecutorService pool = WorkQueue.newScheduler(4);
+    try {
+      final WorkQueue queue = new WorkQueue(pool, "queue", 0, 2);
+      final CountDownLatch bothStarted = new CountDownLatch(2);
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch keptFinished = new CountDownLatch(1);
+      final Runnable stopped = () -> {
+        bothStarted.countDown();
+        awaitQuietly(release);
+      };
+      final Runnable kept = () -> {
+        bothStarted.countDown();
+        awaitQuietly(release);
+        if (!Thread.currentThread().isInterrupted()) {
+          keptFinished.countDown();
+        }
+      };
+      final Runnable removed = () -> { };
+      queue.add(stopped);
+      queue.add(kept);
+      queue.add(removed);
+      assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+
+      // Returns once the stopped item has been interrupted and has returned.
+      queue.clearQueue(item -> item != kept);
+      assertEquals(Collections.singletonList(kept), queue.getQueueCopy());
+      release.countDown();
+      assertTrue(keptFinished.await(10, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
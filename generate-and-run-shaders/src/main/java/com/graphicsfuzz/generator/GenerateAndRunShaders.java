@@ -23,9 +23,12 @@ import com.graphicsfuzz.shadersets.ShaderDispatchException;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
@@ -37,6 +40,8 @@ public class GenerateAndRunShaders {
 
   private static final int LIMIT = 10000;
 
+  private static final int DEFAULT_QUEUE_CAPACITY = 16;
+
   private static Namespace parse(String[] args) {
     ArgumentParser parser = ArgumentParsers.newArgumentParser("GenerateAndRunShaders")
           .defaultHelp(true)
@@ -60,7 +65,8 @@ public class GenerateAndRunShaders {
           .type(String.class);
 
     parser.addArgument("token")
-          .help("Token for worker.")
+          .help("Token for worker.  May be a comma-separated list of tokens, in which case "
+                + "variants are shared between the workers.")
           .type(String.class);
 
     parser.addArgument("glsl_version")
@@ -70,6 +76,17 @@ public class GenerateAndRunShaders {
     // Optional arguments
     Generate.addGeneratorCommonArguments(parser);
 
+    parser.addArgument("--producers")
+          .help("Number of threads generating variants.")
+          .setDefault(1)
+          .type(Integer.class);
+
+    parser.addArgument("--queue_capacity")
+          .help("Maximum number of generated variants waiting to be run; generation pauses when "
+                + "this many are waiting.")
+          .setDefault(DEFAULT_QUEUE_CAPACITY)
+          .type(Integer.class);
+
     try {
       return parser.parseArgs(args);
     } catch (ArgumentParserException exception) {
@@ -100,31 +117,58 @@ public class GenerateAndRunShaders {
         : ShadingLanguageVersion.fromVersionString(ns.get("glsl_version"));
     final boolean replaceFloatLiterals = ns.getBoolean("replace_float_literals");
 
+    final int producers = ns.getInt("producers");
+    if (producers < 1) {
+      throw new IllegalArgumentException("At least one producer is required.");
+    }
+    final int queueCapacity = ns.getInt("queue_capacity");
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("Queue capacity must be positive.");
+    }
+    final List<String> tokens = Arrays.asList(ns.getString("token").split(","));
+
     final List<File> referenceShaders = populateReferenceShaders(referencesDir);
 
-    final BlockingQueue<ReferenceVariantPair> queue = new LinkedBlockingQueue<>();
-
-    new Thread(new ShaderConsumer(
-          LIMIT,
-          queue,
-          outputDir,
-          ns.get("server"),
-          ns.get("token"),
-          referenceShaders,
-        shadingLanguageVersion,
-          replaceFloatLiterals
-    )).start();
-
-    new Thread(new ShaderProducer(
-          LIMIT,
-          queue,
-          outputDir,
-          referenceShaders,
-        shadingLanguageVersion,
-          replaceFloatLiterals,
-          donors,
-          ns
-    )).start();
+    final Map<File, File> referenceShaderToPreparedReferenceShader =
+          ShaderConsumer.prepareReferenceShaders(referenceShaders, outputDir,
+              shadingLanguageVersion, replaceFloatLiterals);
+
+    final BlockingQueue<ReferenceVariantPair> queue = new LinkedBlockingQueue<>(queueCapacity);
+
+    final AtomicInteger received = new AtomicInteger();
+    for (String token : tokens) {
+      // Each worker renders the references itself, so they must not share an output directory.
+      final File referenceImageDir = tokens.size() == 1
+            ? outputDir
+            : new File(outputDir, "references_" + token);
+      new Thread(new ShaderConsumer(
+            LIMIT,
+            received,
+            queue,
+            outputDir,
+            referenceImageDir,
+            ns.get("server"),
+            token,
+            referenceShaderToPreparedReferenceShader
+      )).start();
+    }
+
+    final AtomicInteger counter = new AtomicInteger();
+    final AtomicInteger sent = new AtomicInteger();
+    for (int i = 0; i < producers; i++) {
+      new Thread(new ShaderProducer(
+            LIMIT,
+            counter,
+            sent,
+            queue,
+            outputDir,
+            referenceShaders,
+          shadingLanguageVersion,
+            replaceFloatLiterals,
+            donors,
+            ns
+      )).start();
+    }
 
   }
 
@@ -36,37 +36,48 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
+/**
+ * Takes variants from a queue and runs them on a worker.  Several consumers, each with its own
+ * worker, may share a queue, in which case they must share the counter of variants received.
+ * Each consumer renders the references on its own worker, so that variants are compared with
+ * reference images from the same device.
+ */
 public class ShaderConsumer implements Runnable {
 
   private final int limit;
+  private final AtomicInteger received;
   private final BlockingQueue<ReferenceVariantPair> queue;
   private final File outputDir;
+  private final File referenceImageDir;
   private final String server;
   private final String token;
-  private final List<File> referenceShaders;
-  private final ShadingLanguageVersion shadingLanguageVersion;
-  private final boolean replaceFloatLiterals;
+  private final Map<File, File> referenceShaderToPreparedReferenceShader;
 
+  /**
+   * Creates a consumer.  Reference images are rendered to referenceImageDir, which should differ
+   * between consumers sharing an output directory.
+   */
   public ShaderConsumer(
         int limit,
+        AtomicInteger received,
         BlockingQueue<ReferenceVariantPair> queue,
         File outputDir,
+        File referenceImageDir,
         String server,
         String token,
-        List<File> referenceShaders,
-        ShadingLanguageVersion shadingLanguageVersion,
-        boolean replaceFloatLiterals) {
+        Map<File, File> referenceShaderToPreparedReferenceShader) {
     this.limit = limit;
+    this.received = received;
     this.queue = queue;
     this.outputDir = outputDir;
+    this.referenceImageDir = referenceImageDir;
     this.server = server;
     this.token = token;
-    this.referenceShaders = referenceShaders;
-    this.shadingLanguageVersion = shadingLanguageVersion;
-    this.replaceFloatLiterals = replaceFloatLiterals;
+    this.referenceShaderToPreparedReferenceShader = referenceShaderToPreparedReferenceShader;
   }
 
   @Override
@@ -78,31 +89,28 @@ public class ShaderConsumer implements Runnable {
             server + "/manageAPI",
             token);
       final Map<File, ImageData> referenceToImageData = new HashMap<>();
-      final Map<File, File> referenceShaderToPreparedReferenceShader =
-            prepareReferenceShaders(referenceShaders, outputDir,
-                shadingLanguageVersion, replaceFloatLiterals);
+      FileUtils.forceMkdir(referenceImageDir);
 
-      for (File reference : referenceShaders) {
-        final File preparedReferenceShader =
-              referenceShaderToPreparedReferenceShader.get(reference);
+      for (Map.Entry<File, File> entry : referenceShaderToPreparedReferenceShader.entrySet()) {
+        final File preparedReferenceShader = entry.getValue();
         final ImageJobResult referenceResult =
               RunShaderSet.runShader(
                     preparedReferenceShader,
-                    outputDir,
+                    referenceImageDir,
                     imageGenerator,
                     Optional.empty());
         if (referenceResult.status != JobStatus.SUCCESS) {
           throw new RuntimeException("Error rendering reference shader "
                 + preparedReferenceShader.getAbsolutePath());
         }
-        final File referenceImage = new File(
-              FilenameUtils.removeExtension(preparedReferenceShader.getAbsolutePath()) + ".png");
+        final File referenceImage = new File(referenceImageDir,
+              FilenameUtils.getBaseName(preparedReferenceShader.getName()) + ".png");
         assert referenceImage.exists();
-        referenceToImageData.put(reference,
+        referenceToImageData.put(entry.getKey(),
               new ImageData(referenceImage));
       }
 
-      for (int received = 0; received < limit; received++) {
+      while (received.getAndIncrement() < limit) {
         final ReferenceVariantPair generatedShader = queue.take();
         final String outputFilenamePrefix
               = FilenameUtils.removeExtension(generatedShader.getVariant().getName());
@@ -118,13 +126,16 @@ public class ShaderConsumer implements Runnable {
               imageGenerator,
               Optional.of(referenceToImageData.get(generatedShader.getReference())));
       }
-    } catch (InterruptedException | IOException | ShaderDispatchException
-          | ParseTimeoutException exception) {
+    } catch (InterruptedException | IOException | ShaderDispatchException exception) {
       throw new RuntimeException(exception);
     }
   }
 
-  private static Map<File, File> prepareReferenceShaders(List<File> references,
+  /**
+   * Prepares the given references in the output directory, yielding a map from each reference to
+   * its prepared version.
+   */
+  public static Map<File, File> prepareReferenceShaders(List<File> references,
         File outputDir,
         ShadingLanguageVersion shadingLanguageVersion,
         boolean replaceFloatLiterals) throws IOException, ParseTimeoutException {
@@ -17,22 +17,30 @@
 package com.graphicsfuzz.generator;
 
 import com.graphicsfuzz.common.glslversion.ShadingLanguageVersion;
-import com.graphicsfuzz.common.util.IRandom;
-import com.graphicsfuzz.common.util.RandomWrapper;
 import com.graphicsfuzz.generator.tool.EnabledTransformations;
 import com.graphicsfuzz.generator.tool.Generate;
 import com.graphicsfuzz.generator.tool.GeneratorArguments;
 import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.sourceforge.argparse4j.inf.Namespace;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
+/**
+ * Generates variants and places them on a queue for consumption.  Several producers may share a
+ * queue, in which case they must share the counters that number variants and count the variants
+ * sent.  The seed used to generate each variant is derived from the master seed and the variant's
+ * index, so that a variant does not depend on which producer generates it.
+ */
 public class ShaderProducer implements Runnable {
 
   private final int limit;
+  private final AtomicInteger counter;
+  private final AtomicInteger sent;
   private final BlockingQueue<ReferenceVariantPair> queue;
   private final File outputDir;
   private final List<File> referenceShaders;
@@ -43,6 +51,8 @@ public class ShaderProducer implements Runnable {
 
   public ShaderProducer(
         int limit,
+        AtomicInteger counter,
+        AtomicInteger sent,
         BlockingQueue<ReferenceVariantPair> queue,
         File outputDir,
         List<File> referenceShaders,
@@ -51,6 +61,8 @@ public class ShaderProducer implements Runnable {
         File donors,
         Namespace ns) {
     this.limit = limit;
+    this.counter = counter;
+    this.sent = sent;
     this.queue = queue;
     this.outputDir = outputDir;
     this.referenceShaders = referenceShaders;
@@ -63,15 +75,15 @@ public class ShaderProducer implements Runnable {
   @Override
   public void run() {
     try {
-      final IRandom generator = new RandomWrapper(ns.get("seed"));
+      final int seed = ns.get("seed");
 
       final EnabledTransformations enabledTransformations =
             Generate.getTransformationDisablingFlags(ns);
 
-      int sent = 0;
-      int counter = 0;
-      while (sent < limit) {
-        final int index = counter++;
+      // A variant is only generated once a place for it among the variants to be sent has been
+      // claimed, so that no variant is left on disk without being sent.
+      while (sent.getAndUpdate(numSent -> Math.min(numSent + 1, limit)) < limit) {
+        final int index = counter.getAndIncrement();
         final File reference = referenceShaders.get(index % referenceShaders.size());
         final String referencePrefix = FilenameUtils.removeExtension(reference.getAbsolutePath());
 
@@ -81,7 +93,7 @@ public class ShaderProducer implements Runnable {
         final GeneratorArguments generatorArguments =
               new GeneratorArguments(shadingLanguageVersion,
                     referencePrefix,
-                    generator.nextInt(Integer.MAX_VALUE),
+                    getVariantSeed(seed, index),
                     ns.getBoolean("small"),
                     ns.getBoolean("avoid_long_loops"),
                     ns.getBoolean("multi_pass"),
@@ -100,6 +112,8 @@ public class ShaderProducer implements Runnable {
           FileUtils.writeStringToFile(
                 new File(outputDir, outputFilenamePrefix + ".error"),
                 exception.toString(), StandardCharsets.UTF_8);
+          // Give up the claimed place; this producer then claims it again for its next variant.
+          sent.decrementAndGet();
           continue;
         }
         final File generatedShader = new File(outputDir, outputFilenamePrefix + ".frag");
@@ -109,10 +123,14 @@ public class ShaderProducer implements Runnable {
         FileUtils.writeStringToFile(generatedShaderFlags, generatorArguments.toString(),
               StandardCharsets.UTF_8);
         queue.put(new ReferenceVariantPair(reference, generatedShader));
-        sent++;
       }
     } catch (Throwable exception) {
       throw new RuntimeException(exception);
     }
   }
+
+  static int getVariantSeed(int seed, int index) {
+    return new Random(((long) seed << 32) | (index & 0xffffffffL)).nextInt(Integer.MAX_VALUE);
+  }
+
 }
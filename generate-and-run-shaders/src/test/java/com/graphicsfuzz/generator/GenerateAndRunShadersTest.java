@@ -17,6 +17,7 @@
 package com.graphicsfuzz.generator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -131,4 +132,12 @@ public class GenerateAndRunShadersTest {
     }
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testVariantSeedsDependOnlyOnSeedAndIndex() throws Exception {
+    assertEquals(ShaderProducer.getVariantSeed(42, 7), ShaderProducer.getVariantSeed(42, 7));
+    assertNotEquals(ShaderProducer.getVariantSeed(42, 7), ShaderProducer.getVariantSeed(42, 8));
+    assertNotEquals(ShaderProducer.getVariantSeed(42, 7), ShaderProducer.getVariantSeed(43, 7));
+    assertTrue(ShaderProducer.getVariantSeed(-1, -1) >= 0);
+  }
+
+}
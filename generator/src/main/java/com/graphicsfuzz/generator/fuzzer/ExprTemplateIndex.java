@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.generator.fuzzer;
+
+import com.graphicsfuzz.common.ast.type.Type;
+import com.graphicsfuzz.generator.fuzzer.templates.IExprTemplate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The templates of a fixed collection that can make an expression of a given type, looked up by
+ * that type and by whether the expression must be an l-value, must be constant and must take no
+ * arguments.  Every lookup yields a precomputed list, in the order of the original collection.
+ */
+final class ExprTemplateIndex {
+
+  private static final int LVALUE = 1;
+  private static final int CONST = 2;
+  private static final int NO_ARGUMENTS = 4;
+  private static final int NUM_RESTRICTIONS = 8;
+
+  // Maps each result type to a list of templates per combination of restrictions, indexed by a
+  // bit set of the restrictions.
+  private final Map<Type, List<List<IExprTemplate>>> templatesByResultType;
+
+  ExprTemplateIndex(List<IExprTemplate> templates) {
+    this.templatesByResultType = new HashMap<>();
+    for (IExprTemplate template : templates) {
+      final List<List<IExprTemplate>> lists = templatesByResultType.computeIfAbsent(
+          template.getResultType(), item -> makeLists());
+      for (int restrictions = 0; restrictions < NUM_RESTRICTIONS; restrictions++) {
+        if (satisfies(template, restrictions)) {
+          lists.get(restrictions).add(template);
+        }
+      }
+    }
+    for (List<List<IExprTemplate>> lists : templatesByResultType.values()) {
+      for (int restrictions = 0; restrictions < NUM_RESTRICTIONS; restrictions++) {
+        lists.set(restrictions, Collections.unmodifiableList(lists.get(restrictions)));
+      }
+    }
+  }
+
+  /**
+   * Yields the templates whose result type equals resultType and that meet the given
+   * restrictions.
+   */
+  List<IExprTemplate> get(Type resultType, boolean isLValue, boolean isConst,
+      boolean noArguments) {
+    final List<List<IExprTemplate>> lists = templatesByResultType.get(resultType);
+    if (lists == null) {
+      return Collections.emptyList();
+    }
+    return lists.get((isLValue ? LVALUE : 0) | (isConst ? CONST : 0)
+        | (noArguments ? NO_ARGUMENTS : 0));
+  }
+
+  /**
+   * Determines whether a template, whose result type is already known to be suitable, meets the
+   * given restrictions.
+   */
+  static boolean satisfies(IExprTemplate template, boolean isLValue, boolean isConst,
+      boolean noArguments) {
+    return (!isLValue || template.isLValue())
+        && (!isConst || template.isConst())
+        && (!noArguments || template.getNumArguments() == 0);
+  }
+
+  private static boolean satisfies(IExprTemplate template, int restrictions) {
+    return satisfies(template, (restrictions & LVALUE) != 0, (restrictions & CONST) != 0,
+        (restrictions & NO_ARGUMENTS) != 0);
+  }
+
+  private static List<List<IExprTemplate>> makeLists() {
+    final List<List<IExprTemplate>> result = new ArrayList<>();
+    for (int restrictions = 0; restrictions < NUM_RESTRICTIONS; restrictions++) {
+      result.add(new ArrayList<>());
+    }
+    return result;
+  }
+
+}
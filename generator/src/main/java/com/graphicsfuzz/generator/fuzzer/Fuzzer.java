@@ -59,13 +59,10 @@ import com.graphicsfuzz.generator.fuzzer.templates.IExprTemplate;
 import com.graphicsfuzz.generator.fuzzer.templates.VariableIdentifierExprTemplate;
 import com.graphicsfuzz.generator.util.GenerationParams;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class Fuzzer {
 
@@ -84,7 +81,7 @@ public class Fuzzer {
   private int nextId;
   private FuzzingContext fuzzingContext;
 
-  private Collection<IExprTemplate> builtinTemplates;
+  private final ExprTemplateIndex builtinTemplates;
 
   private final GenerationParams generationParams;
 
@@ -102,7 +99,7 @@ public class Fuzzer {
     this.shadingLanguageVersion = shadingLanguageVersion;
     this.generator = generator;
     this.generationParams = generationParams;
-    this.builtinTemplates = Templates.get(shadingLanguageVersion);
+    this.builtinTemplates = Templates.getIndex(shadingLanguageVersion);
     this.nextId = 0;
     this.fuzzedDeclarationPrefix = fuzzedDeclarationPrefix;
   }
@@ -139,34 +136,31 @@ public class Fuzzer {
     }
     if (targetType instanceof BasicType) {
 
-      List<IExprTemplate> applicableTemplates = availableTemplates()
-            .filter(item -> item.getResultType().equals(targetType)).collect(Collectors.toList());
-      if (isLValue) {
-        applicableTemplates = applicableTemplates.stream().filter(item -> item.isLValue())
-              .collect(Collectors.toList());
-      }
-      if (constContext) {
-        applicableTemplates = applicableTemplates.stream().filter(item -> item.isConst())
-              .collect(Collectors.toList());
-      }
-      if (isTooDeep(depth)) {
-        applicableTemplates = applicableTemplates.stream()
-              .filter(item -> item.getNumArguments() == 0)
-              .collect(Collectors.toList());
-      }
-
-      if (applicableTemplates.size() == 0) {
+      final boolean noArguments = isTooDeep(depth);
+      // The builtin templates are looked up in the index; only the templates for the variables
+      // and functions in scope need filtering.  A template is then chosen from the builtin
+      // templates followed by those from the context, without copying them into one list.
+      final List<IExprTemplate> applicableBuiltinTemplates =
+            builtinTemplates.get(targetType, isLValue, constContext, noArguments);
+      final List<IExprTemplate> applicableContextTemplates =
+            applicableTemplatesFromContext(targetType, isLValue, constContext, noArguments);
+      final int numApplicableTemplates = applicableBuiltinTemplates.size()
+            + applicableContextTemplates.size();
+
+      if (numApplicableTemplates == 0) {
         throw new FuzzedIntoACornerException();
       }
 
-      IExprTemplate template = applicableTemplates
-            .get(generator.nextInt(applicableTemplates.size()));
+      final int templateIndex = generator.nextInt(numApplicableTemplates);
+      IExprTemplate template = templateIndex < applicableBuiltinTemplates.size()
+            ? applicableBuiltinTemplates.get(templateIndex)
+            : applicableContextTemplates.get(templateIndex - applicableBuiltinTemplates.size());
 
       List<Expr> args = new ArrayList<Expr>();
+      final List<List<? extends Type>> argumentTypes = template.getArgumentTypes();
       for (int i = 0; i < template.getNumArguments(); i++) {
-        List<? extends Type> possibleArgTypes = template.getArgumentTypes().get(i);
-        Type argType = possibleArgTypes.stream().collect(Collectors.toList())
-              .get(generator.nextInt(possibleArgTypes.size()));
+        List<? extends Type> possibleArgTypes = argumentTypes.get(i);
+        Type argType = possibleArgTypes.get(generator.nextInt(possibleArgTypes.size()));
         args.add(makeExpr(argType, template.requiresLValueForArgument(i), constContext,
               depth + 1));
       }
@@ -215,21 +209,34 @@ public class Fuzzer {
     return false;
   }
 
-  private Stream<IExprTemplate> availableTemplates() {
-    return Stream.concat(builtinTemplates.stream(),
-          availableTemplatesFromContext());
-  }
-
-  private Stream<IExprTemplate> availableTemplatesFromContext() {
-    List<IExprTemplate> available = new LinkedList<>();
+  private List<IExprTemplate> applicableTemplatesFromContext(Type targetType, boolean isLValue,
+        boolean constContext, boolean noArguments) {
+    List<IExprTemplate> applicable = Collections.emptyList();
     for (String name : fuzzingContext.getCurrentScope().namesOfAllVariablesInScope()) {
-      available.add(new VariableIdentifierExprTemplate(name,
-            fuzzingContext.getCurrentScope().lookupType(name)));
+      applicable = addIfApplicable(applicable, new VariableIdentifierExprTemplate(name,
+            fuzzingContext.getCurrentScope().lookupType(name)), targetType, isLValue,
+            constContext, noArguments);
     }
     for (FunctionPrototype proto : fuzzingContext.getFunctionPrototypes()) {
-      available.add(new FunctionCallExprTemplate(proto));
+      if (proto.getReturnType().equals(targetType)) {
+        applicable = addIfApplicable(applicable, new FunctionCallExprTemplate(proto), targetType,
+              isLValue, constContext, noArguments);
+      }
+    }
+    return applicable;
+  }
+
+  private static List<IExprTemplate> addIfApplicable(List<IExprTemplate> applicable,
+        IExprTemplate template, Type targetType, boolean isLValue, boolean constContext,
+        boolean noArguments) {
+    if (!template.getResultType().equals(targetType)
+          || !ExprTemplateIndex.satisfies(template, isLValue, constContext, noArguments)) {
+      return applicable;
     }
-    return available.stream();
+    // Most lookups find nothing in the context, so a list is only made when needed.
+    final List<IExprTemplate> result = applicable.isEmpty() ? new ArrayList<>() : applicable;
+    result.add(template);
+    return result;
   }
 
   public static void main(String[] args) {
@@ -49,6 +49,9 @@ public class Templates {
   private static ConcurrentMap<ShadingLanguageVersion, List<IExprTemplate>> templates
         = new ConcurrentHashMap<>();
 
+  private static ConcurrentMap<ShadingLanguageVersion, ExprTemplateIndex> indexes
+        = new ConcurrentHashMap<>();
+
   private Templates() {
     // Utility class
   }
@@ -60,6 +63,15 @@ public class Templates {
     return Collections.unmodifiableList(templates.get(shadingLanguageVersion));
   }
 
+  /**
+   * Yields the templates for the given version, indexed by result type and by the restrictions
+   * that fuzzing places on expressions.
+   */
+  static ExprTemplateIndex getIndex(ShadingLanguageVersion shadingLanguageVersion) {
+    return indexes.computeIfAbsent(shadingLanguageVersion,
+        item -> new ExprTemplateIndex(get(item)));
+  }
+
   public static List<IExprTemplate> makeTemplates(ShadingLanguageVersion shadingLanguageVersion) {
 
     // TODO: assignment operators, array, vector and matrix lookups
@@ -51,6 +51,7 @@ import com.graphicsfuzz.generator.transformation.structifier.Structification;
 import com.graphicsfuzz.generator.transformation.vectorizer.VectorizeStatements;
 import com.graphicsfuzz.generator.util.GenerationParams;
 import com.graphicsfuzz.generator.util.TransformationProbabilities;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -230,9 +231,9 @@ public class Generate {
 
     Helper.emitShader(args.getShadingLanguageVersion(), shaderKind, referenceShader,
             Helper.readLicenseFile(args.getLicense()),
-            new PrintStream(new FileOutputStream(
+            new PrintStream(new BufferedOutputStream(new FileOutputStream(
                     new File(args.getOutputFolder(), args.getOutputPrefix()
-                            + shaderKind.getFileExtension()))));
+                            + shaderKind.getFileExtension())))));
   }
 
   public static void main(String[] args) throws IOException {
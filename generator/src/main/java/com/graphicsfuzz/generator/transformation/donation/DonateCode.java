@@ -42,8 +42,6 @@ import com.graphicsfuzz.common.typing.ScopeTreeBuilder;
 import com.graphicsfuzz.common.typing.Typer;
 import com.graphicsfuzz.common.util.IRandom;
 import com.graphicsfuzz.common.util.OpenGlConstants;
-import com.graphicsfuzz.common.util.ParseHelper;
-import com.graphicsfuzz.common.util.ParseTimeoutException;
 import com.graphicsfuzz.generator.fuzzer.FuzzedIntoACornerException;
 import com.graphicsfuzz.generator.fuzzer.Fuzzer;
 import com.graphicsfuzz.generator.fuzzer.FuzzingContext;
@@ -54,7 +52,6 @@ import com.graphicsfuzz.generator.transformation.injection.InjectionPoints;
 import com.graphicsfuzz.generator.util.GenerationParams;
 import com.graphicsfuzz.generator.util.TransformationProbabilities;
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -73,6 +70,7 @@ public abstract class DonateCode implements ITransformation {
   private final List<FunctionPrototype> functionPrototypes;
   private final Map<String, Type> globalVariables;
   private final Set<String> structNames;
+  private final DonorCorpus donorCorpus;
   private final List<File> donorFiles;
   final GenerationParams generationParams;
   private int translationUnitCount;
@@ -84,13 +82,10 @@ public abstract class DonateCode implements ITransformation {
     this.functionPrototypes = new ArrayList<>();
     this.globalVariables = new HashMap<>();
     this.structNames = new HashSet<>();
-    this.donorFiles = new ArrayList<>();
+    this.donorCorpus = DonorCorpus.get(donorsDirectory);
+    this.donorFiles = new ArrayList<>(donorCorpus.getDonorFiles());
     this.generationParams = generationParams;
     this.translationUnitCount = 0;
-    assert donorsDirectory.exists();
-    donorFiles.addAll(Arrays.asList(donorsDirectory.listFiles(
-        pathname -> pathname.getName().endsWith(".frag"))));
-    donorFiles.sort((first, second) -> first.compareTo(second));
   }
 
   /**
@@ -102,10 +97,12 @@ public abstract class DonateCode implements ITransformation {
    */
   abstract void adaptTranslationUnitForSpecificDonation(TranslationUnit tu, IRandom generator);
 
-  private TranslationUnit prepareTranslationUnit(File donorFile, IRandom generator)
-        throws IOException, ParseTimeoutException {
-    TranslationUnit tu = ParseHelper.parse(donorFile, false);
-    addPrefixes(tu, getDeclaredFunctionNames(tu));
+  private TranslationUnit prepareTranslationUnit(File donorFile, IRandom generator) {
+    // The donor is parsed once per process; we work on a copy of it, as prefixes are specific to
+    // this donation.
+    final DonorCorpus.Donor donor = donorCorpus.getDonor(donorFile);
+    TranslationUnit tu = donor.getTranslationUnitCopy();
+    addPrefixes(tu, donor.getDeclaredFunctionNames());
     // Add prefixed versions of these builtins, in case they are used
     tu.addDeclaration(new VariablesDeclaration(
           BasicType.VEC4,
@@ -158,26 +155,6 @@ public abstract class DonateCode implements ITransformation {
     }.visit(tu);
   }
 
-  private Set<String> getDeclaredFunctionNames(TranslationUnit tu) {
-    return new StandardVisitor() {
-
-      private Set<String> names = new HashSet<>();
-
-      @Override
-      public void visitFunctionPrototype(FunctionPrototype functionPrototype) {
-        super.visitFunctionPrototype(functionPrototype);
-        names.add(functionPrototype.getName());
-      }
-
-      Set<String> getDeclaredFunctionNames(TranslationUnit tu) {
-        visit(tu);
-        return names;
-      }
-
-    }.getDeclaredFunctionNames(tu);
-  }
-
-
   abstract Stmt prepareStatementToDonate(IInjectionPoint injectionPoint,
         DonationContext donationContext, TransformationProbabilities probabilities,
         IRandom generator, ShadingLanguageVersion shadingLanguageVersion);
@@ -545,18 +522,14 @@ public abstract class DonateCode implements ITransformation {
   private TranslationUnit getDonorTranslationUnit(File donorFile, IRandom generator)
         throws IncompatibleDonorException {
     if (!donorsToTranslationUnits.containsKey(donorFile)) {
-      try {
-        TranslationUnit donor = prepareTranslationUnit(donorFile, generator);
-        if (!compatibleDonor(donor)) {
-          throw new IncompatibleDonorException();
-        }
-        functionPrototypes.addAll(AstUtil.getFunctionPrototypesFromShader(donor));
-        globalVariables.putAll(getGlobalVariablesFromShader(donor));
-        structNames.addAll(getStructNamesFromShader(donor));
-        donorsToTranslationUnits.put(donorFile, donor);
-      } catch (IOException | ParseTimeoutException exception) {
-        throw new RuntimeException("An exception occurred during donor parsing.", exception);
+      TranslationUnit donor = prepareTranslationUnit(donorFile, generator);
+      if (!compatibleDonor(donor)) {
+        throw new IncompatibleDonorException();
       }
+      functionPrototypes.addAll(AstUtil.getFunctionPrototypesFromShader(donor));
+      globalVariables.putAll(getGlobalVariablesFromShader(donor));
+      structNames.addAll(getStructNamesFromShader(donor));
+      donorsToTranslationUnits.put(donorFile, donor);
     }
     return donorsToTranslationUnits.get(donorFile);
   }
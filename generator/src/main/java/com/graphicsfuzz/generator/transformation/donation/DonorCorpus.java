@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.generator.transformation.donation;
+
+import com.graphicsfuzz.common.ast.TranslationUnit;
+import com.graphicsfuzz.common.ast.decl.FunctionPrototype;
+import com.graphicsfuzz.common.ast.visitors.StandardVisitor;
+import com.graphicsfuzz.common.util.ParseHelper;
+import com.graphicsfuzz.common.util.ParseTimeoutException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The donor shaders in a directory, each parsed at most once per process and shared by all
+ * donation transformations, on any thread, that draw on the directory.  The parsed donors are never
+ * modified: each donation works on its own copy.
+ */
+public final class DonorCorpus {
+
+  private static final ConcurrentMap<File, DonorCorpus> corpora = new ConcurrentHashMap<>();
+
+  private final List<File> donorFiles;
+  private final ConcurrentMap<File, Donor> donors;
+
+  private DonorCorpus(File donorsDirectory) {
+    final List<File> files = new ArrayList<>(Arrays.asList(donorsDirectory.listFiles(
+        pathname -> pathname.getName().endsWith(".frag"))));
+    files.sort((first, second) -> first.compareTo(second));
+    this.donorFiles = Collections.unmodifiableList(files);
+    this.donors = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Yields the corpus for the given directory, creating it on first use.
+   */
+  public static DonorCorpus get(File donorsDirectory) {
+    assert donorsDirectory.exists();
+    return corpora.computeIfAbsent(donorsDirectory.getAbsoluteFile(), DonorCorpus::new);
+  }
+
+  /**
+   * Yields the donor files in the corpus, in a fixed order.
+   */
+  public List<File> getDonorFiles() {
+    return donorFiles;
+  }
+
+  /**
+   * Yields the donor for the given file, parsing it if this has not been done already.
+   */
+  public Donor getDonor(File donorFile) {
+    return donors.computeIfAbsent(donorFile, Donor::new);
+  }
+
+  /**
+   * A parsed donor shader, together with information about it that donation needs.
+   */
+  public static final class Donor {
+
+    private final TranslationUnit translationUnit;
+    private final Set<String> declaredFunctionNames;
+
+    private Donor(File donorFile) {
+      try {
+        this.translationUnit = ParseHelper.parse(donorFile, false);
+      } catch (IOException | ParseTimeoutException exception) {
+        throw new RuntimeException("An exception occurred during donor parsing.", exception);
+      }
+      this.declaredFunctionNames = Collections.unmodifiableSet(
+          getDeclaredFunctionNames(translationUnit));
+    }
+
+    /**
+     * Yields a fresh copy of the donor, which the caller is free to modify.
+     */
+    public TranslationUnit getTranslationUnitCopy() {
+      return translationUnit.cloneAndPatchUp();
+    }
+
+    public Set<String> getDeclaredFunctionNames() {
+      return declaredFunctionNames;
+    }
+
+    private static Set<String> getDeclaredFunctionNames(TranslationUnit tu) {
+      final Set<String> names = new HashSet<>();
+      new StandardVisitor() {
+        @Override
+        public void visitFunctionPrototype(FunctionPrototype functionPrototype) {
+          super.visitFunctionPrototype(functionPrototype);
+          names.add(functionPrototype.getName());
+        }
+      }.visit(tu);
+      return names;
+    }
+
+  }
+
+}
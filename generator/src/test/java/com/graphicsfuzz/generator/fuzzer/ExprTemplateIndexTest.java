@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.generator.fuzzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.graphicsfuzz.common.ast.type.BasicType;
+import com.graphicsfuzz.common.glslversion.ShadingLanguageVersion;
+import com.graphicsfuzz.generator.fuzzer.templates.IExprTemplate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class ExprTemplateIndexTest {
+
+  @Test
+  public void testIndexAgreesWithFiltering() {
+    for (ShadingLanguageVersion shadingLanguageVersion : Arrays.asList(
+        ShadingLanguageVersion.ESSL_100, ShadingLanguageVersion.ESSL_310,
+        ShadingLanguageVersion.GLSL_440)) {
+      final List<IExprTemplate> templates = Templates.get(shadingLanguageVersion);
+      final ExprTemplateIndex index = Templates.getIndex(shadingLanguageVersion);
+      assertSame(index, Templates.getIndex(shadingLanguageVersion));
+      for (BasicType type : BasicType.allBasicTypes()) {
+        for (boolean isLValue : new boolean[] { false, true }) {
+          for (boolean isConst : new boolean[] { false, true }) {
+            for (boolean noArguments : new boolean[] { false, true }) {
+              final List<IExprTemplate> expected = templates.stream()
+                  .filter(item -> item.getResultType().equals(type))
+                  .filter(item -> !isLValue || item.isLValue())
+                  .filter(item -> !isConst || item.isConst())
+                  .filter(item -> !noArguments || item.getNumArguments() == 0)
+                  .collect(Collectors.toList());
+              assertEquals(expected, index.get(type, isLValue, isConst, noArguments));
+            }
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.generator.transformation.donation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.graphicsfuzz.common.ast.TranslationUnit;
+import com.graphicsfuzz.common.ast.decl.StructDeclaration;
+import com.graphicsfuzz.common.ast.decl.VariablesDeclaration;
+import com.graphicsfuzz.common.ast.type.StructType;
+import com.graphicsfuzz.common.tool.PrettyPrinterVisitor;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DonorCorpusTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void testDonorsAreParsedOnceAndCopied() throws Exception {
+    final File donorsDirectory = testFolder.newFolder();
+    final File donorFile = new File(donorsDirectory, "donor.frag");
+    FileUtils.writeStringToFile(donorFile,
+        "float f(float x) { return x; } void main() { f(1.0); }", StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(new File(donorsDirectory, "notadonor.json"), "{ }",
+        StandardCharsets.UTF_8);
+
+    final DonorCorpus corpus = DonorCorpus.get(donorsDirectory);
+    assertSame(corpus, DonorCorpus.get(donorsDirectory));
+    assertEquals(Arrays.asList(donorFile), corpus.getDonorFiles());
+
+    final DonorCorpus.Donor donor = corpus.getDonor(donorFile);
+    assertSame(donor, corpus.getDonor(donorFile));
+    assertEquals(new HashSet<>(Arrays.asList("f", "main")), donor.getDeclaredFunctionNames());
+
+    // Changes to one copy must not be seen by later donations.
+    final TranslationUnit first = donor.getTranslationUnitCopy();
+    final String expected = PrettyPrinterVisitor.prettyPrintAsString(first);
+    first.setTopLevelDeclarations(first.getTopLevelDeclarations().subList(0, 1));
+    final TranslationUnit second = donor.getTranslationUnitCopy();
+    assertNotSame(first, second);
+    assertEquals(expected, PrettyPrinterVisitor.prettyPrintAsString(second));
+  }
+
+  @Test
+  public void testCopiesUseTheirOwnStructDeclarations() throws Exception {
+    final File donorsDirectory = testFolder.newFolder();
+    final File donorFile = new File(donorsDirectory, "donor.frag");
+    FileUtils.writeStringToFile(donorFile,
+        "struct S { int a; }; uniform S s; void main() { }", StandardCharsets.UTF_8);
+
+    final TranslationUnit copy =
+        DonorCorpus.get(donorsDirectory).getDonor(donorFile).getTranslationUnitCopy();
+    final StructType declaredType =
+        ((StructDeclaration) copy.getTopLevelDeclarations().get(0)).getType();
+    final VariablesDeclaration variablesDeclaration =
+        (VariablesDeclaration) copy.getTopLevelDeclarations().get(1);
+    // Renaming the struct in a donation must also rename its uses.
+    assertSame(declaredType, variablesDeclaration.getBaseType().getWithoutQualifiers());
+  }
+
+}
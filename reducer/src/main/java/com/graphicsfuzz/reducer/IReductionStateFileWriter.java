@@ -17,10 +17,17 @@
 package com.graphicsfuzz.reducer;
 
 import java.io.FileNotFoundException;
+import java.util.Map;
 
 public interface IReductionStateFileWriter {
 
   void writeFilesFromState(IReductionState state, String outputFilesPrefix)
       throws FileNotFoundException;
 
+  /**
+   * Gives the contents of the files that writeFilesFromState would write, keyed by file
+   * extension (e.g. ".frag").
+   */
+  Map<String, String> getFileContentsFromState(IReductionState state);
+
 }
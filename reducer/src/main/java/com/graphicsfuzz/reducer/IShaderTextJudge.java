@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer;
+
+import java.util.Map;
+
+/**
+ * A judge for shader jobs held in memory, so that reduction steps need not be written to disk in
+ * order to be judged.
+ */
+public interface IShaderTextJudge {
+
+  /**
+   * Determines whether the shader job named shaderJobName is interesting.  shaderJobFiles maps
+   * file extensions (e.g. ".frag", ".json") to the contents that the shader job's files would
+   * have.
+   */
+  boolean isInteresting(String shaderJobName, Map<String, String> shaderJobFiles)
+      throws FileJudgeException;
+
+  /**
+   * Determines whether this judge can judge shader jobs in memory.  A judge that wraps another
+   * can only do so if the judge it wraps can.
+   */
+  default boolean supportsInMemory() {
+    return true;
+  }
+
+  /**
+   * Determines whether the given file judge can also judge shader jobs in memory.
+   */
+  static boolean canJudgeInMemory(IFileJudge judge) {
+    return judge instanceof IShaderTextJudge && ((IShaderTextJudge) judge).supportsInMemory();
+  }
+
+}
@@ -31,10 +31,19 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -50,7 +59,11 @@ public class ReductionDriver {
   private static final int NUM_INITIAL_TRIES = 5;
 
   private final boolean verbose;
-  private final IReductionPlan plan;
+  private IReductionPlan plan;
+
+  // For each candidate of the current batch but the last, a copy of the plan as it was once the
+  // candidate had been derived, before the plan was told that the candidate was not interesting.
+  private final List<IReductionPlan> plansAfterCandidates;
 
   private IReductionState newState;
 
@@ -64,9 +77,15 @@ public class ReductionDriver {
   public ReductionDriver(ReductionOpportunityContext reductionOpportunityContext,
         boolean verbose,
         IReductionState initialState) {
+    this(new MasterPlan(reductionOpportunityContext, verbose), verbose, initialState);
+  }
+
+  ReductionDriver(IReductionPlan plan,
+        boolean verbose,
+        IReductionState initialState) {
     this.verbose = verbose;
-    this.plan = new MasterPlan(
-          reductionOpportunityContext, verbose);
+    this.plan = plan;
+    this.plansAfterCandidates = new ArrayList<>();
     this.newState = initialState;
     this.failHashes = new HashSet<>();
     this.passHashes = new HashSet<>();
@@ -80,6 +99,67 @@ public class ReductionDriver {
         IFileJudge judge,
         File workDir,
         int stepLimit) throws IOException {
+    return doReduction(initialFilePrefix, fileCountOffset, fileWriter,
+        Collections.singletonList(judge), workDir, stepLimit);
+  }
+
+  /**
+   * Performs a reduction in which up to judges.size() candidate states are derived from the
+   * current state and judged concurrently, candidate i being judged by judges.get(i).  The first
+   * interesting candidate, in the order the candidates were generated, is committed, so the
+   * outcome does not depend on the order in which judges finish.  With a single judge this is
+   * exactly the sequential reduction.
+   */
+  public String doReduction(
+        String initialFilePrefix,
+        int fileCountOffset, // Used when continuing a reduction - added on to the number associated
+        // with each reduction step during the current reduction.
+        IReductionStateFileWriter fileWriter,
+        List<IFileJudge> judges,
+        File workDir,
+        int stepLimit) throws IOException {
+    return doReductionHelper(initialFilePrefix, fileCountOffset, fileWriter,
+        new FileStepJudges(judges, workDir), workDir, stepLimit);
+  }
+
+  /**
+   * As for doReduction, except that reduction steps are judged in memory rather than being
+   * written to the work directory.  If trace is not null, the steps are recorded in it,
+   * asynchronously; otherwise only the final result is written.  The trace is closed on return.
+   */
+  public String doInMemoryReduction(
+        String initialFilePrefix,
+        int fileCountOffset,
+        IReductionStateFileWriter fileWriter,
+        List<IShaderTextJudge> judges,
+        ReductionStepTrace trace,
+        File workDir,
+        int stepLimit) throws IOException {
+    try {
+      return doReductionHelper(initialFilePrefix, fileCountOffset, fileWriter,
+          new InMemoryStepJudges(judges, trace), workDir, stepLimit);
+    } finally {
+      if (trace != null) {
+        trace.close();
+      }
+    }
+  }
+
+  private String doReductionHelper(
+        String initialFilePrefix,
+        int fileCountOffset,
+        IReductionStateFileWriter fileWriter,
+        IStepJudges judges,
+        File workDir,
+        int stepLimit) throws IOException {
+
+    if (judges.size() == 0) {
+      throw new IllegalArgumentException("At least one judge is required.");
+    }
+
+    final ExecutorService judgeExecutor = judges.size() > 1
+        ? Executors.newFixedThreadPool(judges.size())
+        : null;
 
     try {
 
@@ -87,8 +167,9 @@ public class ReductionDriver {
         LOGGER.info("Continuing reduction for {}", initialFilePrefix);
       } else {
         LOGGER.info("Starting reduction for {}", initialFilePrefix);
+        final Map<String, String> initialFiles = fileWriter.getFileContentsFromState(newState);
         for (int i = 1; ; i++) {
-          if (judge.isInteresting(initialFilePrefix)) {
+          if (judges.isInteresting(0, initialFilePrefix, initialFiles)) {
             break;
           }
           LOGGER.info("Result from initial state is not interesting (attempt " + i + ")");
@@ -109,17 +190,42 @@ public class ReductionDriver {
       boolean stoppedEarly = false;
       while (true) {
         notifyNewStateInteresting(isInteresting);
-        IReductionState newState = doReductionStep();
-        if (newState == null) {
+        final List<IReductionState> candidates = doReductionSteps(judges.size());
+        if (candidates.isEmpty()) {
           break;
         }
-        ++stepCount;
-        final int currentReductionAttempt = numReductionAttempts + fileCountOffset;
-        String outputFilesPrefix = getReductionStepFilenamePrefix(variantName,
-            currentReductionAttempt);
-        fileWriter.writeFilesFromState(newState, outputFilesPrefix);
-        isInteresting = isInterestingWithCache(judge, outputFilesPrefix);
-        renameReductionStepFiles(isInteresting, variantName, currentReductionAttempt, workDir);
+        // Steps are numbered from 1, following on from any steps of a continued reduction.
+        final int firstReductionAttempt =
+            numReductionAttempts - candidates.size() + 1 + fileCountOffset;
+        final List<String> outputFilesPrefixes = new ArrayList<>();
+        final List<Map<String, String>> candidateFiles = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+          final String outputFilesPrefix = getReductionStepFilenamePrefix(variantName,
+              firstReductionAttempt + i);
+          final Map<String, String> files =
+              fileWriter.getFileContentsFromState(candidates.get(i));
+          judges.beforeJudging(outputFilesPrefix, files);
+          outputFilesPrefixes.add(outputFilesPrefix);
+          candidateFiles.add(files);
+        }
+        final int committed = judgeCandidates(judges, judgeExecutor, outputFilesPrefixes,
+            candidateFiles);
+        for (int i = 0; i < candidates.size(); i++) {
+          // Interesting candidates generated after the committed one are recorded as failures:
+          // the reduction does not continue from them.
+          judges.afterJudging(outputFilesPrefixes.get(i),
+              getReductionStepFilenamePrefix(variantName, firstReductionAttempt + i,
+                  Optional.of(i == committed ? "success" : "fail")),
+              candidateFiles.get(i));
+        }
+        isInteresting = committed >= 0;
+        if (isInteresting && committed < candidates.size() - 1) {
+          // The plan has been told that the candidates after the committed one were not
+          // interesting; it goes back to where it was when the committed candidate was derived.
+          plan = plansAfterCandidates.get(committed);
+        }
+        newState = candidates.get(isInteresting ? committed : candidates.size() - 1);
+        stepCount += candidates.size();
 
         if (stepLimit > -1 && stepCount >= stepLimit) {
           LOGGER.info("Stopping reduction due to hitting step limit {}.", stepLimit);
@@ -134,7 +240,8 @@ public class ReductionDriver {
       String finalOutputFilePrefix = variantName + "_reduced_final";
       fileWriter.writeFilesFromState(finalState, finalOutputFilePrefix);
 
-      if (!judge.isInteresting(finalOutputFilePrefix)) {
+      if (!judges.isInteresting(0, finalOutputFilePrefix,
+          fileWriter.getFileContentsFromState(finalState))) {
         LOGGER.info(
               "Failed to simplify final reduction state! Reverting to the non-simplified state.");
         fileWriter.writeFilesFromState(finalState, finalOutputFilePrefix);
@@ -148,19 +255,81 @@ public class ReductionDriver {
       return finalOutputFilePrefix;
     } catch (FileNotFoundException | FileJudgeException exception) {
       throw new RuntimeException(exception);
+    } finally {
+      if (judgeExecutor != null) {
+        judgeExecutor.shutdownNow();
+      }
     }
   }
 
-  private boolean isInterestingWithCache(IFileJudge judge, String outputFilesPrefix)
-        throws FileJudgeException, IOException {
-    final String hash = getMD5(outputFilesPrefix);
+  /**
+   * Judges the candidates with the given prefixes and file contents, returning the index of the
+   * first interesting candidate, or -1 if none is interesting.  Candidates whose result is known
+   * from the cache are not dispatched.
+   */
+  private int judgeCandidates(IStepJudges judges, ExecutorService judgeExecutor,
+        List<String> outputFilesPrefixes, List<Map<String, String>> candidateFiles)
+        throws FileJudgeException {
+    if (judgeExecutor == null) {
+      assert outputFilesPrefixes.size() == 1;
+      return isInterestingWithCache(judges, outputFilesPrefixes.get(0), candidateFiles.get(0))
+          ? 0 : -1;
+    }
+    final List<String> hashes = new ArrayList<>();
+    final List<Future<Boolean>> results = new ArrayList<>();
+    for (int i = 0; i < outputFilesPrefixes.size(); i++) {
+      final String hash = getMD5(candidateFiles.get(i));
+      hashes.add(hash);
+      if (failHashes.contains(hash) || hashes.indexOf(hash) < i) {
+        // Known to be uninteresting, or a duplicate of an earlier candidate in this batch (which
+        // takes precedence anyway).
+        results.add(null);
+        continue;
+      }
+      if (passHashes.contains(hash)) {
+        throw new RuntimeException("Reduction loop detected!");
+      }
+      final int judgeIndex = i;
+      results.add(judgeExecutor.submit(() -> judges.isInteresting(judgeIndex,
+          outputFilesPrefixes.get(judgeIndex), candidateFiles.get(judgeIndex))));
+    }
+    int committed = -1;
+    for (int i = 0; i < results.size(); i++) {
+      if (results.get(i) == null) {
+        continue;
+      }
+      final boolean result;
+      try {
+        result = results.get(i).get();
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+        throw new FileJudgeException(exception);
+      } catch (ExecutionException exception) {
+        if (exception.getCause() instanceof FileJudgeException) {
+          throw (FileJudgeException) exception.getCause();
+        }
+        throw new FileJudgeException(exception.getCause());
+      }
+      if (!result) {
+        failHashes.add(hashes.get(i));
+      } else if (committed < 0) {
+        passHashes.add(hashes.get(i));
+        committed = i;
+      }
+    }
+    return committed;
+  }
+
+  private boolean isInterestingWithCache(IStepJudges judges, String outputFilesPrefix,
+        Map<String, String> files) throws FileJudgeException {
+    final String hash = getMD5(files);
     if (failHashes.contains(hash)) {
       return false;
     }
     if (passHashes.contains(hash)) {
       throw new RuntimeException("Reduction loop detected!");
     }
-    boolean result = judge.isInteresting(outputFilesPrefix);
+    boolean result = judges.isInteresting(0, outputFilesPrefix, files);
     if (result) {
       passHashes.add(hash);
     } else {
@@ -182,54 +351,50 @@ public class ReductionDriver {
     return getReductionStepFilenamePrefix(variantName, currentReductionAttempt, Optional.empty());
   }
 
-  private void renameReductionStepFiles(boolean isInteresting, String variantName,
-        int currentReductionAttempt,
-        File workDir) throws IOException {
-    for (String fileName : workDir.list((dir, name) -> FilenameUtils.removeExtension(name)
-          .equals(getReductionStepFilenamePrefix(variantName, currentReductionAttempt)))) {
-      final File srcFile = new File(workDir, fileName);
-      final File dstFile = new File(workDir, getReductionStepFilenamePrefix(variantName,
-          currentReductionAttempt,
-          Optional.of(isInteresting ? "success" : "fail"))
-          + "." + FilenameUtils.getExtension(fileName));
-      FileUtils.moveFile(
-          srcFile,
-          dstFile);
-    }
+  private String getMD5(Map<String, String> files) {
+    return DigestUtils.md5Hex(files.getOrDefault(".vert", "")
+        + files.getOrDefault(".frag", ""));
   }
 
-  private String getMD5(String filesPrefix) throws IOException {
-    final File vertexShaderFile = new File(filesPrefix + ".vert");
-    final File fragmentShaderFile = new File(filesPrefix + ".frag");
-    byte[] vertexData = vertexShaderFile.exists()
-        ? FileUtils.readFileToByteArray(vertexShaderFile)
-        : new byte[0];
-    byte[] fragmentData = fragmentShaderFile.exists()
-        ? FileUtils.readFileToByteArray(fragmentShaderFile)
-        : new byte[0];
-    byte[] combinedData = new byte[vertexData.length + fragmentData.length];
-    System.arraycopy(vertexData, 0, combinedData, 0, vertexData.length);
-    System.arraycopy(fragmentData, 0, combinedData, vertexData.length, fragmentData.length);
-    return DigestUtils.md5Hex(combinedData);
+  public IReductionState doReductionStep() {
+    final List<IReductionState> candidates = doReductionSteps(1);
+    newState = candidates.isEmpty() ? null : candidates.get(0);
+    return newState;
   }
 
-  public IReductionState doReductionStep() {
+  /**
+   * Derives up to maxCandidates candidate states from the current state.  Before each candidate
+   * after the first, the plan is told that the previous candidate was not interesting, so that if
+   * none of the candidates turns out to be interesting the plan is exactly where it would be had
+   * the candidates been generated and judged one at a time.  A copy of the plan is kept from
+   * before each such notification, to go back to should the candidate turn out to be interesting.
+   * Fewer candidates are returned if the plan runs out of reductions; an empty list means there is
+   * nothing more to reduce.
+   */
+  private List<IReductionState> doReductionSteps(int maxCandidates) {
     LOGGER.info("Trying reduction attempt " + numReductionAttempts + " (" + numSuccessfulReductions
           + " successful so far).");
     if (newState != null) {
       throw new IllegalStateException("Called doReductionStep yet a newState is already set.");
     }
-    while (true) {
+    final List<IReductionState> candidates = new ArrayList<>();
+    plansAfterCandidates.clear();
+    while (candidates.size() < maxCandidates) {
+      if (!candidates.isEmpty()) {
+        plansAfterCandidates.add(plan.copy());
+        plan.update(false);
+      }
       try {
-        final IReductionState reductionStepResult = applyReduction(state);
+        candidates.add(applyReduction(state));
         numReductionAttempts++;
-        newState = reductionStepResult;
-        return newState;
       } catch (NoMoreToReduceException exception) {
-        LOGGER.info("No more to reduce; stopping.");
-        return null;
+        if (candidates.isEmpty()) {
+          LOGGER.info("No more to reduce; stopping.");
+        }
+        break;
       }
     }
+    return candidates;
   }
 
   private IReductionState applyReduction(IReductionState state) throws NoMoreToReduceException {
@@ -304,4 +469,114 @@ public class ReductionDriver {
   }
 
 
+  /**
+   * The means by which reduction steps reach the judges.
+   */
+  private interface IStepJudges {
+
+    int size();
+
+    boolean isInteresting(int judgeIndex, String filesPrefix, Map<String, String> files)
+        throws FileJudgeException;
+
+    /**
+     * Called for each reduction step before it is judged.
+     */
+    void beforeJudging(String filesPrefix, Map<String, String> files) throws IOException;
+
+    /**
+     * Called for each reduction step once it is known whether the reduction continues from it;
+     * resultFilesPrefix records the outcome in its name.
+     */
+    void afterJudging(String filesPrefix, String resultFilesPrefix, Map<String, String> files)
+        throws IOException;
+
+  }
+
+  /**
+   * Judges reduction steps by writing them to the work directory.
+   */
+  private static class FileStepJudges implements IStepJudges {
+
+    private final List<IFileJudge> judges;
+    private final File workDir;
+
+    private FileStepJudges(List<IFileJudge> judges, File workDir) {
+      this.judges = judges;
+      this.workDir = workDir;
+    }
+
+    @Override
+    public int size() {
+      return judges.size();
+    }
+
+    @Override
+    public boolean isInteresting(int judgeIndex, String filesPrefix, Map<String, String> files)
+        throws FileJudgeException {
+      return judges.get(judgeIndex).isInteresting(filesPrefix);
+    }
+
+    @Override
+    public void beforeJudging(String filesPrefix, Map<String, String> files) throws IOException {
+      for (Map.Entry<String, String> file : files.entrySet()) {
+        FileUtils.writeStringToFile(new File(filesPrefix + file.getKey()), file.getValue(),
+            StandardCharsets.UTF_8);
+      }
+    }
+
+    @Override
+    public void afterJudging(String filesPrefix, String resultFilesPrefix,
+        Map<String, String> files) throws IOException {
+      // Judges may have written further files with the step's prefix, so rename all of them.
+      final String baseName = FilenameUtils.getName(filesPrefix);
+      for (String fileName : workDir.list((dir, name) -> FilenameUtils.removeExtension(name)
+          .equals(baseName))) {
+        FileUtils.moveFile(
+            new File(workDir, fileName),
+            new File(resultFilesPrefix + "." + FilenameUtils.getExtension(fileName)));
+      }
+    }
+
+  }
+
+  /**
+   * Judges reduction steps in memory, optionally tracing them to the work directory.
+   */
+  private static class InMemoryStepJudges implements IStepJudges {
+
+    private final List<IShaderTextJudge> judges;
+    private final ReductionStepTrace trace;
+
+    private InMemoryStepJudges(List<IShaderTextJudge> judges, ReductionStepTrace trace) {
+      this.judges = judges;
+      this.trace = trace;
+    }
+
+    @Override
+    public int size() {
+      return judges.size();
+    }
+
+    @Override
+    public boolean isInteresting(int judgeIndex, String filesPrefix, Map<String, String> files)
+        throws FileJudgeException {
+      return judges.get(judgeIndex).isInteresting(FilenameUtils.getName(filesPrefix), files);
+    }
+
+    @Override
+    public void beforeJudging(String filesPrefix, Map<String, String> files) {
+      // Nothing to do: the step is judged in memory.
+    }
+
+    @Override
+    public void afterJudging(String filesPrefix, String resultFilesPrefix,
+        Map<String, String> files) throws IOException {
+      if (trace != null) {
+        trace.record(resultFilesPrefix, files);
+      }
+    }
+
+  }
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Records the files of reduction steps in the background, in batches, so that a reduction judged
+ * in memory does not wait on the file system.  Files are written under their final names, and
+ * the trace must be closed to ensure that all recorded steps have been written.
+ */
+public class ReductionStepTrace implements AutoCloseable {
+
+  private static final int DEFAULT_BATCH_SIZE = 16;
+
+  private final int batchSize;
+  private final ExecutorService writer;
+  private final List<Future<?>> pendingWrites;
+  private List<Map.Entry<String, Map<String, String>>> batch;
+
+  public ReductionStepTrace() {
+    this(DEFAULT_BATCH_SIZE);
+  }
+
+  public ReductionStepTrace(int batchSize) {
+    this.batchSize = batchSize;
+    this.writer = Executors.newSingleThreadExecutor();
+    this.pendingWrites = new ArrayList<>();
+    this.batch = new ArrayList<>();
+  }
+
+  /**
+   * Schedules the files of a shader job, given as a map from file extension to contents, to be
+   * written with the given prefix.
+   */
+  public void record(String filesPrefix, Map<String, String> shaderJobFiles) throws IOException {
+    checkPendingWrites();
+    batch.add(new SimpleEntry<>(filesPrefix, shaderJobFiles));
+    if (batch.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Schedules any recorded steps that have not yet been scheduled to be written.
+   */
+  public void flush() {
+    if (batch.isEmpty()) {
+      return;
+    }
+    final List<Map.Entry<String, Map<String, String>>> toWrite = batch;
+    batch = new ArrayList<>();
+    pendingWrites.add(writer.submit(() -> {
+      for (Map.Entry<String, Map<String, String>> step : toWrite) {
+        for (Map.Entry<String, String> file : step.getValue().entrySet()) {
+          FileUtils.writeStringToFile(new File(step.getKey() + file.getKey()), file.getValue(),
+              StandardCharsets.UTF_8);
+        }
+      }
+      return null;
+    }));
+  }
+
+  /**
+   * Writes all recorded steps, waiting for writing to complete.
+   */
+  @Override
+  public void close() throws IOException {
+    flush();
+    writer.shutdown();
+    try {
+      for (Future<?> pendingWrite : pendingWrites) {
+        waitFor(pendingWrite);
+      }
+    } finally {
+      pendingWrites.clear();
+    }
+  }
+
+  private void checkPendingWrites() throws IOException {
+    // Surface write errors promptly, and forget about batches that have been written.
+    while (!pendingWrites.isEmpty() && pendingWrites.get(0).isDone()) {
+      waitFor(pendingWrites.remove(0));
+    }
+  }
+
+  private static void waitFor(Future<?> pendingWrite) throws IOException {
+    try {
+      pendingWrite.get();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new IOException(exception);
+    } catch (ExecutionException exception) {
+      if (exception.getCause() instanceof IOException) {
+        throw (IOException) exception.getCause();
+      }
+      throw new IOException(exception.getCause());
+    }
+  }
+
+}
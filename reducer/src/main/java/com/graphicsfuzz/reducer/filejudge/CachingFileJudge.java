@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.filejudge;
+
+import com.graphicsfuzz.reducer.FileJudgeException;
+import com.graphicsfuzz.reducer.IFileJudge;
+import com.graphicsfuzz.reducer.IShaderTextJudge;
+import java.io.IOException;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consults a persistent cache of interesting shader jobs before delegating to another judge, so
+ * that shader jobs already found interesting with the same configuration on the same device are
+ * not dispatched again.  Shader jobs that are not interesting are always judged afresh.  The
+ * delegate should be one whose results can be reused; see {@link JudgeResultCache}.
+ * In-memory judging is supported if the delegate supports it.
+ */
+public class CachingFileJudge implements IFileJudge, IShaderTextJudge {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CachingFileJudge.class);
+
+  private final IFileJudge delegate;
+  private final JudgeResultCache cache;
+  private final String judgeConfiguration;
+  private final String deviceToken;
+
+  public CachingFileJudge(IFileJudge delegate, JudgeResultCache cache,
+        String judgeConfiguration, String deviceToken) {
+    this.delegate = delegate;
+    this.cache = cache;
+    this.judgeConfiguration = judgeConfiguration;
+    this.deviceToken = deviceToken;
+  }
+
+  @Override
+  public boolean isInteresting(String filesPrefix) throws FileJudgeException {
+    try {
+      final byte[] key = JudgeResultCache.getKey(judgeConfiguration, deviceToken, filesPrefix);
+      if (cache.isKnownInteresting(key)) {
+        LOGGER.info("Using cached judge result: interesting.");
+        return true;
+      }
+      final boolean result = delegate.isInteresting(filesPrefix);
+      if (result) {
+        cache.recordInteresting(key);
+      }
+      return result;
+    } catch (IOException exception) {
+      throw new FileJudgeException(exception);
+    }
+  }
+
+  @Override
+  public boolean isInteresting(String shaderJobName, Map<String, String> shaderJobFiles)
+      throws FileJudgeException {
+    if (!supportsInMemory()) {
+      throw new FileJudgeException(
+          "The underlying judge does not support judging shader jobs in memory.");
+    }
+    try {
+      final byte[] key =
+          JudgeResultCache.getKey(judgeConfiguration, deviceToken, shaderJobFiles);
+      if (cache.isKnownInteresting(key)) {
+        LOGGER.info("Using cached judge result: interesting.");
+        return true;
+      }
+      final boolean result = ((IShaderTextJudge) delegate).isInteresting(shaderJobName,
+          shaderJobFiles);
+      if (result) {
+        cache.recordInteresting(key);
+      }
+      return result;
+    } catch (IOException exception) {
+      throw new FileJudgeException(exception);
+    }
+  }
+
+  @Override
+  public boolean supportsInMemory() {
+    return IShaderTextJudge.canJudgeInMemory(delegate);
+  }
+
+}
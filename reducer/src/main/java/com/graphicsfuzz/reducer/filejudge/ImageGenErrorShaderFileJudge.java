@@ -18,6 +18,7 @@ package com.graphicsfuzz.reducer.filejudge;
 
 import com.graphicsfuzz.reducer.FileJudgeException;
 import com.graphicsfuzz.reducer.IFileJudge;
+import com.graphicsfuzz.reducer.IShaderTextJudge;
 import com.graphicsfuzz.reducer.util.ShaderJudgeUtil;
 import com.graphicsfuzz.server.thrift.ImageJobResult;
 import com.graphicsfuzz.shadersets.IShaderDispatcher;
@@ -25,12 +26,13 @@ import com.graphicsfuzz.shadersets.ShaderDispatchException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.Map;
 import java.util.regex.Pattern;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ImageGenErrorShaderFileJudge implements IFileJudge {
+public class ImageGenErrorShaderFileJudge implements IFileJudge, IShaderTextJudge {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ImageGenErrorShaderFileJudge.class);
 
@@ -73,30 +75,61 @@ public class ImageGenErrorShaderFileJudge implements IFileJudge {
       File outputText = new File(workingDir,
           filesPrefix + ".txt");
 
-      switch (imageRes.getStatus()) {
-        case SUCCESS:
-        case SAME_AS_REFERENCE:
-          LOGGER.info("Get_image succeeded on shader. Not interesting.");
-          return false;
-        default:
-          LOGGER.info("get_image failed...which is good.");
-          FileUtils.writeStringToFile(outputText, imageRes.getLog(), Charset.defaultCharset());
-          if (pattern == null) {
-            LOGGER.info("Interesting.");
-            return true;
-          }
-          if (pattern.matcher(imageRes.getLog()).matches()) {
-            LOGGER.info("Regex matched. Interesting");
-            return true;
-          }
-          LOGGER.info("Regex did not match. Not interesting");
-
-          return false;
-      }
+      return isResultInteresting(imageRes, outputText);
     } catch (InterruptedException | IllegalStateException | IOException
           | ShaderDispatchException exception) {
       LOGGER.info("Error occurred while checking if file was interesting.", exception);
       throw new FileJudgeException(exception);
     }
   }
+
+  @Override
+  public boolean isInteresting(String shaderJobName, Map<String, String> shaderJobFiles)
+        throws FileJudgeException {
+
+    File outputImage = null;
+    try {
+      if (!ShaderJudgeUtil.shadersAreValid(shaderJobFiles, throwExceptionOnValidationError)) {
+        return false;
+      }
+      outputImage = File.createTempFile(shaderJobName, ".png");
+      ImageJobResult imageRes = imageGenerator.getImage(
+          ShaderJudgeUtil.getImageJob(shaderJobName, shaderJobFiles, skipRender), outputImage);
+      return isResultInteresting(imageRes, null);
+    } catch (InterruptedException | IllegalStateException | IOException
+          | ShaderDispatchException exception) {
+      LOGGER.info("Error occurred while checking if shader job was interesting.", exception);
+      throw new FileJudgeException(exception);
+    } finally {
+      if (outputImage != null) {
+        FileUtils.deleteQuietly(outputImage);
+      }
+    }
+  }
+
+  private boolean isResultInteresting(ImageJobResult imageRes, File outputText)
+        throws IOException {
+    switch (imageRes.getStatus()) {
+      case SUCCESS:
+      case SAME_AS_REFERENCE:
+        LOGGER.info("Get_image succeeded on shader. Not interesting.");
+        return false;
+      default:
+        LOGGER.info("get_image failed...which is good.");
+        if (outputText != null) {
+          FileUtils.writeStringToFile(outputText, imageRes.getLog(), Charset.defaultCharset());
+        }
+        if (pattern == null) {
+          LOGGER.info("Interesting.");
+          return true;
+        }
+        if (pattern.matcher(imageRes.getLog()).matches()) {
+          LOGGER.info("Regex matched. Interesting");
+          return true;
+        }
+        LOGGER.info("Regex did not match. Not interesting");
+
+        return false;
+    }
+  }
 }
@@ -18,6 +18,7 @@ package com.graphicsfuzz.reducer.filejudge;
 
 import com.graphicsfuzz.reducer.FileJudgeException;
 import com.graphicsfuzz.reducer.IFileJudge;
+import com.graphicsfuzz.reducer.IShaderTextJudge;
 import com.graphicsfuzz.reducer.util.ShaderJudgeUtil;
 import com.graphicsfuzz.server.thrift.ImageJobResult;
 import com.graphicsfuzz.server.thrift.JobStatus;
@@ -28,12 +29,13 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.Map;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ImageShaderFileJudge implements IFileJudge {
+public class ImageShaderFileJudge implements IFileJudge, IShaderTextJudge {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ImageShaderFileJudge.class);
 
@@ -78,42 +80,79 @@ public class ImageShaderFileJudge implements IFileJudge {
       ImageJobResult imageRes = imageGenerator
             .getImage(filesPrefix, outputImage, false);
 
-      switch (imageRes.getStatus()) {
-        case SUCCESS:
-          if (imageRes.isSetPNG()) {
-            FileUtils.writeByteArrayToFile(outputImage, imageRes.getPNG());
-          }
-          break;
-        case SAME_AS_REFERENCE:
-          FileUtils.writeStringToFile(
-                outputText,
-                JobStatus.SAME_AS_REFERENCE.toString() + "\n",
-                StandardCharsets.UTF_8);
-          outputImage = getReferenceImageInWorkDir(workDir);
-          break;
-        default:
-          LOGGER.info("Failed to run get_image on shader. Not interesting.");
-          FileUtils.writeStringToFile(outputText, imageRes.getLog(),
-              StandardCharsets.UTF_8);
-          return false;
-      }
+      // 3.
+      return isResultInteresting(imageRes, outputImage, outputText);
+    } catch (InterruptedException | ShaderDispatchException | IOException exception) {
+      LOGGER.info("Error occurred while checking if file was interesting.", exception);
+      throw new FileJudgeException(exception);
+    }
 
-      // Success or same as ref:
+  }
 
-      // 3.
-      if (!fileComparator.areFilesInteresting(getReferenceImageInWorkDir(workDir), outputImage)) {
-        LOGGER.info("Shader image was not deemed interesting by file comparator. Not interesting.");
+  @Override
+  public boolean isInteresting(String shaderJobName, Map<String, String> shaderJobFiles)
+        throws FileJudgeException {
+
+    // As above, but the image is only written to a temporary file, and no log is kept.
+
+    File outputImage = null;
+    try {
+      // 1.
+      if (!ShaderJudgeUtil.shadersAreValid(shaderJobFiles, throwExceptionOnValidationError)) {
         return false;
       }
-      LOGGER.info("Interesting.");
-      return true;
+      // 2.
+      outputImage = File.createTempFile(shaderJobName, ".png");
+      ImageJobResult imageRes = imageGenerator
+            .getImage(ShaderJudgeUtil.getImageJob(shaderJobName, shaderJobFiles, false),
+                  outputImage);
+
+      // 3.
+      return isResultInteresting(imageRes, outputImage, null);
     } catch (InterruptedException | ShaderDispatchException | IOException exception) {
-      LOGGER.info("Error occurred while checking if file was interesting.", exception);
+      LOGGER.info("Error occurred while checking if shader job was interesting.", exception);
       throw new FileJudgeException(exception);
+    } finally {
+      if (outputImage != null) {
+        FileUtils.deleteQuietly(outputImage);
+      }
     }
-
   }
 
+  private boolean isResultInteresting(ImageJobResult imageRes, File outputImage,
+        File outputText) throws IOException {
+    switch (imageRes.getStatus()) {
+      case SUCCESS:
+        if (imageRes.isSetPNG()) {
+          FileUtils.writeByteArrayToFile(outputImage, imageRes.getPNG());
+        }
+        break;
+      case SAME_AS_REFERENCE:
+        if (outputText != null) {
+          FileUtils.writeStringToFile(
+                outputText,
+                JobStatus.SAME_AS_REFERENCE.toString() + "\n",
+                StandardCharsets.UTF_8);
+        }
+        outputImage = getReferenceImageInWorkDir(workDir);
+        break;
+      default:
+        LOGGER.info("Failed to run get_image on shader. Not interesting.");
+        if (outputText != null) {
+          FileUtils.writeStringToFile(outputText, imageRes.getLog(),
+              StandardCharsets.UTF_8);
+        }
+        return false;
+    }
+
+    // Success or same as ref:
 
+    if (!fileComparator.areFilesInteresting(getReferenceImageInWorkDir(workDir), outputImage)) {
+      LOGGER.info("Shader image was not deemed interesting by file comparator. Not interesting.");
+      return false;
+    }
+    LOGGER.info("Interesting.");
+    return true;
+  }
 
 }
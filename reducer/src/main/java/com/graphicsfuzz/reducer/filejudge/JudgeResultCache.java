@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.filejudge;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A store of shader jobs known to be interesting, which persists across reductions, keyed by a
+ * digest of everything that can influence the result of judging a shader job: the shader and
+ * uniform files, the judge configuration and the device the shaders are rendered on.
+ *
+ * <p>Only interesting results are kept.  A shader job that was once judged not interesting, e.g.
+ * because the device failed to render it, may be interesting when judged again, and the reducer
+ * relies on trying again in some cases; whereas the reduction only ever moves on from an
+ * interesting shader job.  For the same reason the cache should only be used with judges whose
+ * positive results can be trusted to hold, and that have no side effects that must happen on
+ * every judgement.</p>
+ *
+ * <p>Results are kept in an append-only index file of fixed-size records, each being a SHA-256
+ * digest followed by a byte recording that the shader job was interesting.  Several caches, in
+ * this or other processes, may share a directory: a record is appended with a single write, and
+ * when a shader job is not found, records appended since the index was last read are read.  A
+ * partially-written trailing record, e.g. due to a crash, is ignored.</p>
+ */
+public class JudgeResultCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JudgeResultCache.class);
+
+  private static final String INDEX_FILE_NAME = "judge_results.idx";
+
+  private static final int DIGEST_LENGTH = 32;
+
+  private static final int RECORD_LENGTH = DIGEST_LENGTH + 1;
+
+  private static final String[] SHADER_JOB_EXTENSIONS = new String[] { ".vert", ".frag", ".json" };
+
+  private final File indexFile;
+  private final Set<ByteBuffer> interesting;
+
+  // How much of the index file has been read.
+  private long indexBytesRead;
+
+  public JudgeResultCache(File cacheDir) throws IOException {
+    FileUtils.forceMkdir(cacheDir);
+    this.indexFile = new File(cacheDir, INDEX_FILE_NAME);
+    this.interesting = new HashSet<>();
+    this.indexBytesRead = 0;
+    readNewRecords();
+    LOGGER.info("Loaded {} cached judge results from {}.", interesting.size(), indexFile);
+  }
+
+  /**
+   * Computes the key under which the result of judging the shader job with prefix filesPrefix is
+   * stored.
+   */
+  public static byte[] getKey(String judgeConfiguration, String deviceToken, String filesPrefix)
+      throws IOException {
+    final MessageDigest digest = getDigest();
+    update(digest, judgeConfiguration.getBytes(StandardCharsets.UTF_8));
+    update(digest, deviceToken.getBytes(StandardCharsets.UTF_8));
+    for (String extension : SHADER_JOB_EXTENSIONS) {
+      final File file = new File(filesPrefix + extension);
+      update(digest, file.isFile() ? FileUtils.readFileToByteArray(file) : new byte[0]);
+    }
+    return digest.digest();
+  }
+
+  /**
+   * As above, for a shader job held in memory as a map from file extension to file contents.
+   * Yields the same key as the shader job would once written to disk.
+   */
+  public static byte[] getKey(String judgeConfiguration, String deviceToken,
+      Map<String, String> shaderJobFiles) {
+    final MessageDigest digest = getDigest();
+    update(digest, judgeConfiguration.getBytes(StandardCharsets.UTF_8));
+    update(digest, deviceToken.getBytes(StandardCharsets.UTF_8));
+    for (String extension : SHADER_JOB_EXTENSIONS) {
+      update(digest, shaderJobFiles.containsKey(extension)
+          ? shaderJobFiles.get(extension).getBytes(StandardCharsets.UTF_8)
+          : new byte[0]);
+    }
+    return digest.digest();
+  }
+
+  /**
+   * Determines whether the shader job with the given key is known to be interesting, by this or
+   * any other cache sharing the directory.
+   */
+  public synchronized boolean isKnownInteresting(byte[] key) throws IOException {
+    final ByteBuffer wrappedKey = ByteBuffer.wrap(key);
+    if (interesting.contains(wrappedKey)) {
+      return true;
+    }
+    readNewRecords();
+    return interesting.contains(wrappedKey);
+  }
+
+  public synchronized void recordInteresting(byte[] key) throws IOException {
+    assert key.length == DIGEST_LENGTH;
+    if (!interesting.add(ByteBuffer.wrap(key.clone()))) {
+      return;
+    }
+    final byte[] record = new byte[RECORD_LENGTH];
+    System.arraycopy(key, 0, record, 0, DIGEST_LENGTH);
+    record[DIGEST_LENGTH] = 1;
+    // A single write in append mode, so that records from concurrent writers do not interleave.
+    try (OutputStream out = new FileOutputStream(indexFile, true)) {
+      out.write(record);
+    }
+  }
+
+  public synchronized int size() {
+    return interesting.size();
+  }
+
+  private void readNewRecords() throws IOException {
+    if (!indexFile.isFile()) {
+      return;
+    }
+    final long numNewRecords = (indexFile.length() - indexBytesRead) / RECORD_LENGTH;
+    if (numNewRecords <= 0) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(indexFile)))) {
+      IOUtils.skipFully(in, indexBytesRead);
+      for (long i = 0; i < numNewRecords; i++) {
+        final byte[] key = new byte[DIGEST_LENGTH];
+        in.readFully(key);
+        // Indexes written by earlier versions also record shader jobs that were not interesting.
+        if (in.readByte() != 0) {
+          interesting.add(ByteBuffer.wrap(key));
+        }
+        indexBytesRead += RECORD_LENGTH;
+      }
+    }
+  }
+
+  private static void update(MessageDigest digest, byte[] data) {
+    // Length-prefix each component so that distinct inputs cannot produce the same byte stream.
+    digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(data.length).array());
+    digest.update(data);
+  }
+
+  private static MessageDigest getDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException exception) {
+      throw new RuntimeException(exception);
+    }
+  }
+
+}
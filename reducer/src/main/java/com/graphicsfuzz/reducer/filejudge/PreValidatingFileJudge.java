@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.filejudge;
+
+import com.graphicsfuzz.common.ast.TranslationUnit;
+import com.graphicsfuzz.common.util.Helper;
+import com.graphicsfuzz.common.util.ParseTimeoutException;
+import com.graphicsfuzz.reducer.FileJudgeException;
+import com.graphicsfuzz.reducer.IFileJudge;
+import com.graphicsfuzz.reducer.IShaderTextJudge;
+import com.graphicsfuzz.reducer.util.ShaderPreValidator;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rejects shader jobs that are certainly invalid, as found by a ShaderPreValidator, before
+ * delegating to another judge; a shader job that the delegate would only have run the external
+ * validator on, to reject it, is then rejected without starting a process.  For use with judges
+ * that deem invalid shader jobs not interesting.  In-memory judging is supported if the delegate
+ * supports it.
+ */
+public class PreValidatingFileJudge implements IFileJudge, IShaderTextJudge {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PreValidatingFileJudge.class);
+
+  private final IFileJudge delegate;
+  private final ShaderPreValidator preValidator;
+  private final boolean throwExceptionOnInvalid;
+
+  public PreValidatingFileJudge(IFileJudge delegate, ShaderPreValidator preValidator,
+        boolean throwExceptionOnInvalid) {
+    this.delegate = delegate;
+    this.preValidator = preValidator;
+    this.throwExceptionOnInvalid = throwExceptionOnInvalid;
+  }
+
+  @Override
+  public boolean isInteresting(String filesPrefix) throws FileJudgeException {
+    for (String extension : Arrays.asList(".frag", ".vert")) {
+      final File shaderFile = new File(filesPrefix + extension);
+      if (shaderFile.isFile() && isCertainlyInvalid(shaderFile.getName(),
+          () -> Helper.parse(shaderFile, true))) {
+        return false;
+      }
+    }
+    return delegate.isInteresting(filesPrefix);
+  }
+
+  @Override
+  public boolean isInteresting(String shaderJobName, Map<String, String> shaderJobFiles)
+      throws FileJudgeException {
+    if (!supportsInMemory()) {
+      throw new FileJudgeException(
+          "The underlying judge does not support judging shader jobs in memory.");
+    }
+    for (String extension : Arrays.asList(".frag", ".vert")) {
+      if (shaderJobFiles.containsKey(extension) && isCertainlyInvalid(shaderJobName + extension,
+          () -> Helper.parse(shaderJobFiles.get(extension), true))) {
+        return false;
+      }
+    }
+    return ((IShaderTextJudge) delegate).isInteresting(shaderJobName, shaderJobFiles);
+  }
+
+  @Override
+  public boolean supportsInMemory() {
+    return IShaderTextJudge.canJudgeInMemory(delegate);
+  }
+
+  private boolean isCertainlyInvalid(String shaderName, ShaderParser parser) {
+    final TranslationUnit tu;
+    try {
+      tu = parser.parse();
+    } catch (IOException | ParseTimeoutException | RuntimeException exception) {
+      // Our parser is not the arbiter of validity; the delegate's validator decides.
+      return false;
+    }
+    final Optional<String> error = preValidator.findError(tu);
+    if (!error.isPresent()) {
+      return false;
+    }
+    LOGGER.info("Shader {} is invalid: {}.  Not interesting; {} of {} validator runs avoided.",
+        shaderName, error.get(), preValidator.getNumRejected(), preValidator.getNumChecked());
+    if (throwExceptionOnInvalid) {
+      throw new RuntimeException("Validation failed during reduction.");
+    }
+    return true;
+  }
+
+  @FunctionalInterface
+  private interface ShaderParser {
+
+    TranslationUnit parse() throws IOException, ParseTimeoutException;
+  }
+
+}
@@ -23,9 +23,13 @@ import com.graphicsfuzz.common.util.Helper;
 import com.graphicsfuzz.common.util.ShaderKind;
 import com.graphicsfuzz.reducer.IReductionState;
 import com.graphicsfuzz.reducer.IReductionStateFileWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class GlslReductionStateFileWriter implements IReductionStateFileWriter {
 
@@ -48,13 +52,37 @@ public class GlslReductionStateFileWriter implements IReductionStateFileWriter {
         new PrintStream(new FileOutputStream(outputFilesPrefix + ".json")));
   }
 
+  @Override
+  public Map<String, String> getFileContentsFromState(IReductionState state) {
+    final Map<String, String> result = new LinkedHashMap<>();
+    if (state.hasVertexShader()) {
+      result.put(ShaderKind.VERTEX.getFileExtension(),
+          getShaderText(state.getVertexShader(), ShaderKind.VERTEX));
+    }
+    if (state.hasFragmentShader()) {
+      result.put(ShaderKind.FRAGMENT.getFileExtension(),
+          getShaderText(state.getFragmentShader(), ShaderKind.FRAGMENT));
+    }
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Helper.emitUniformsInfo(state.getUniformsInfo(), new PrintStream(bytes));
+    result.put(".json", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    return result;
+  }
+
   private void writeFile(TranslationUnit shader, ShaderKind shaderKind, String outputFilesPrefix)
       throws FileNotFoundException {
-    PrintStream ps = new PrintStream(outputFilesPrefix + shaderKind.getFileExtension());
+    // The shader is printed in memory and then written in one go, rather than being printed
+    // piece by piece to the file.
+    try (PrintStream ps = new PrintStream(outputFilesPrefix + shaderKind.getFileExtension())) {
+      ps.append(getShaderText(shader, shaderKind));
+    }
+  }
+
+  private String getShaderText(TranslationUnit shader, ShaderKind shaderKind) {
     // TODO: should we pass a license through the reduction process?
-    Helper.emitDefines(ps, shadingLanguageVersion, shaderKind, true);
-    new PrettyPrinterVisitor(ps).visit(shader);
-    ps.flush();
-    ps.close();
+    final StringBuilder result = Helper.getDefinesString(shadingLanguageVersion, shaderKind,
+        true);
+    new PrettyPrinterVisitor(result).visit(shader);
+    return result.toString();
   }
 }
@@ -27,4 +27,9 @@ public interface IReductionPlan {
 
   void replenish();
 
+  /**
+   * Yields a copy of this plan in its current state, which goes on independently of this plan.
+   */
+  IReductionPlan copy();
+
 }
@@ -40,6 +40,7 @@ public class MasterPlan implements IReductionPlan {
 
   private ShaderKind shaderKind;
   private List<IReductionPlan> plans;
+  private final WorkingCopies workingCopies;
 
   public MasterPlan(
         ReductionOpportunityContext reductionOpportunityContext,
@@ -51,10 +52,26 @@ public class MasterPlan implements IReductionPlan {
     this.currentPassSteps = 0;
     this.somePassMadeProgress = false;
     this.shaderKind = ShaderKind.FRAGMENT;
+    this.workingCopies = new WorkingCopies();
     resetPlans();
 
   }
 
+  private MasterPlan(MasterPlan other) {
+    this.verbose = other.verbose;
+    this.reductionOpportunityContext = other.reductionOpportunityContext;
+    this.fullPassesCompleted = other.fullPassesCompleted;
+    this.passIndex = other.passIndex;
+    this.currentPassSteps = other.currentPassSteps;
+    this.somePassMadeProgress = other.somePassMadeProgress;
+    this.shaderKind = other.shaderKind;
+    this.workingCopies = other.workingCopies;
+    this.plans = new ArrayList<>();
+    for (IReductionPlan plan : other.plans) {
+      this.plans.add(plan.copy());
+    }
+  }
+
   private void resetPlans() {
     this.plans = new ArrayList<>();
     for (IReductionOpportunityFinder ops : new IReductionOpportunityFinder[]{
@@ -86,7 +103,8 @@ public class MasterPlan implements IReductionPlan {
       plans.add(new SimplePlan(reductionOpportunityContext,
             shaderKind,
             verbose,
-            ops));
+            ops,
+            workingCopies));
     }
   }
 
@@ -152,6 +170,11 @@ public class MasterPlan implements IReductionPlan {
     // Do nothing
   }
 
+  @Override
+  public IReductionPlan copy() {
+    return new MasterPlan(this);
+  }
+
   public IReductionPlan getCurrentPlan() {
     return plans.get(passIndex);
   }
@@ -24,6 +24,7 @@ import com.graphicsfuzz.reducer.reductionopportunities.Compatibility;
 import com.graphicsfuzz.reducer.reductionopportunities.IReductionOpportunity;
 import com.graphicsfuzz.reducer.reductionopportunities.IReductionOpportunityFinder;
 import com.graphicsfuzz.reducer.reductionopportunities.ReductionOpportunityContext;
+import com.graphicsfuzz.reducer.reductionopportunities.TranslationUnitAnalysis;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -38,6 +39,7 @@ public class SimplePlan implements IReductionPlan {
   private final ShaderKind shaderKind;
   private final boolean verbose;
   private final IReductionOpportunityFinder<?> opportunitiesFinder;
+  private final WorkingCopies workingCopies;
 
   private int percentageToReduce;
   private int replenishCount;
@@ -47,16 +49,26 @@ public class SimplePlan implements IReductionPlan {
         ReductionOpportunityContext reductionOpportunityContext,
         ShaderKind shaderKind,
         boolean verbose,
-        IReductionOpportunityFinder<?> opportunitiesFinder) {
+        IReductionOpportunityFinder<?> opportunitiesFinder,
+        WorkingCopies workingCopies) {
     this.reductionOpportunityContext = reductionOpportunityContext;
     this.shaderKind = shaderKind;
     this.verbose = verbose;
     this.opportunitiesFinder = opportunitiesFinder;
+    this.workingCopies = workingCopies;
     this.percentageToReduce = reductionOpportunityContext.getMaxPercentageToReduce();
     this.replenishCount = 0;
     this.history = new ArrayList<>();
   }
 
+  private SimplePlan(SimplePlan other) {
+    this(other.reductionOpportunityContext, other.shaderKind, other.verbose,
+          other.opportunitiesFinder, other.workingCopies);
+    this.percentageToReduce = other.percentageToReduce;
+    this.replenishCount = other.replenishCount;
+    this.history.addAll(other.history);
+  }
+
   @Override
   public void update(boolean interesting) {
     if (interesting) {
@@ -70,30 +82,38 @@ public class SimplePlan implements IReductionPlan {
   @Override
   public IReductionState applyReduction(IReductionState state)
       throws NoMoreToReduceException {
-    final TranslationUnit workingShader = getWorkingShader(state);
+    final TranslationUnit shader = getShader(state);
+    final TranslationUnit workingShader = workingCopies.take(shader);
+    final TranslationUnitAnalysis analysis =
+          workingCopies.getAnalysis(workingShader, reductionOpportunityContext);
+    // An attempt that fails leaves the working shader unchanged, so the opportunities found for it
+    // serve every attempt up to and including the first that succeeds.
+    final List<? extends IReductionOpportunity> initialReductionOpportunities =
+          getSortedReductionOpportunities(workingShader, analysis);
     int localPercentageToReduce = percentageToReduce;
     while (true) {
-      if (attemptToTransform(workingShader, localPercentageToReduce)) {
+      if (attemptToTransform(workingShader, initialReductionOpportunities,
+            localPercentageToReduce)) {
         return stateFromWorkingShader(workingShader, state);
       }
       localPercentageToReduce /= 2;
       if (localPercentageToReduce > 0) {
         history.clear();
       } else {
+        workingCopies.giveBack(shader, workingShader, analysis);
         throw new NoMoreToReduceException();
       }
     }
   }
 
-  private boolean attemptToTransform(TranslationUnit workingShader, int localPercentageToReduce) {
+  private boolean attemptToTransform(TranslationUnit workingShader,
+        List<? extends IReductionOpportunity> initialReductionOpportunities,
+        int localPercentageToReduce) {
     LOGGER.info("Looking for opportunities of kind: " + opportunitiesFinder.getName());
     if (verbose) {
       LOGGER.info("Applying " + localPercentageToReduce + "% reduction");
     }
 
-    final List<? extends IReductionOpportunity> initialReductionOpportunities =
-          getSortedReductionOpportunities(workingShader);
-
     // We don't want to initially take any of the opportunities that were previously ineffective
     // when we took them first.  So find out the initial opportunities that do apply - get their
     // list indices.
@@ -144,9 +164,14 @@ public class SimplePlan implements IReductionPlan {
 
     for (; taken < maxOpportunitiesToTake; taken++) {
 
+      // Taking an opportunity changes the working shader, so the analysis it was searched with no
+      // longer holds; a new one is made and shared by the searches of this iteration.
+      final TranslationUnitAnalysis currentAnalysis =
+            new TranslationUnitAnalysis(workingShader,
+                  reductionOpportunityContext.getShadingLanguageVersion());
       final List<? extends IReductionOpportunity> currentReductionOpportunities =
             opportunitiesFinder.findOpportunities(
-                  workingShader, reductionOpportunityContext);
+                  workingShader, reductionOpportunityContext.withAnalysis(currentAnalysis));
       if (currentReductionOpportunities.isEmpty()) {
         break;
       }
@@ -169,10 +194,11 @@ public class SimplePlan implements IReductionPlan {
   }
 
   private List<? extends IReductionOpportunity> getSortedReductionOpportunities(
-        TranslationUnit workingShader) {
+        TranslationUnit workingShader, TranslationUnitAnalysis analysis) {
     // Get the available reduction opportunities.
     final List<? extends IReductionOpportunity> initialReductionOpportunities =
-          opportunitiesFinder.findOpportunities(workingShader, reductionOpportunityContext);
+          opportunitiesFinder.findOpportunities(workingShader,
+                reductionOpportunityContext.withAnalysis(analysis));
 
     initialReductionOpportunities.sort((first, second) -> first.depth().compareTo(second.depth()));
     return initialReductionOpportunities;
@@ -218,19 +244,24 @@ public class SimplePlan implements IReductionPlan {
     percentageToReduce = Math.max(percentageToReduce, 1);
   }
 
-  private TranslationUnit getWorkingShader(IReductionState state) {
-    TranslationUnit workingShader;
+  @Override
+  public IReductionPlan copy() {
+    return new SimplePlan(this);
+  }
+
+  private TranslationUnit getShader(IReductionState state) {
+    TranslationUnit shader;
     switch (shaderKind) {
       case FRAGMENT:
-        workingShader = state.getFragmentShader();
+        shader = state.getFragmentShader();
         break;
       case VERTEX:
-        workingShader = state.getVertexShader();
+        shader = state.getVertexShader();
         break;
       default:
         throw new RuntimeException("Unsupported shader kind: " + shaderKind);
     }
-    return workingShader.cloneAndPatchUp();
+    return shader;
   }
 
   private IReductionState stateFromWorkingShader(TranslationUnit workingShader,
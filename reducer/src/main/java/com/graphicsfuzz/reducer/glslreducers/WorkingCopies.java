@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.glslreducers;
+
+import com.graphicsfuzz.common.ast.TranslationUnit;
+import com.graphicsfuzz.reducer.reductionopportunities.ReductionOpportunityContext;
+import com.graphicsfuzz.reducer.reductionopportunities.TranslationUnitAnalysis;
+
+/**
+ * Supplies the copies of reduction state shaders that plans transform.  A plan that finds nothing
+ * to reduce leaves its copy untouched; rather than being thrown away, such a copy is handed back,
+ * together with its analysis, so that the next plan to work on the same shader can use it instead
+ * of making a copy and an analysis of its own.
+ *
+ * <p>This relies on the shaders of a reduction state never changing once the state exists, which
+ * holds because plans only ever transform copies.</p>
+ */
+final class WorkingCopies {
+
+  private TranslationUnit original;
+  private TranslationUnit unchangedCopy;
+  private TranslationUnitAnalysis unchangedCopyAnalysis;
+
+  WorkingCopies() {
+    clear();
+  }
+
+  /**
+   * Yields a copy of the given shader that the caller is free to change.
+   */
+  TranslationUnit take(TranslationUnit shader) {
+    if (unchangedCopy != null && original == shader) {
+      final TranslationUnit result = unchangedCopy;
+      unchangedCopy = null;
+      return result;
+    }
+    clear();
+    return shader.cloneAndPatchUp();
+  }
+
+  /**
+   * Yields the analysis handed back with the given copy, if any, and otherwise a fresh analysis.
+   */
+  TranslationUnitAnalysis getAnalysis(TranslationUnit copy, ReductionOpportunityContext context) {
+    if (unchangedCopyAnalysis != null && unchangedCopyAnalysis.getTranslationUnit() == copy) {
+      return unchangedCopyAnalysis;
+    }
+    return context.getAnalysis(copy);
+  }
+
+  /**
+   * Hands back a copy of the given shader that has not been changed since it was taken, for reuse.
+   */
+  void giveBack(TranslationUnit shader, TranslationUnit copy, TranslationUnitAnalysis analysis) {
+    assert analysis.getTranslationUnit() == copy;
+    this.original = shader;
+    this.unchangedCopy = copy;
+    this.unchangedCopyAnalysis = analysis;
+  }
+
+  private void clear() {
+    this.original = null;
+    this.unchangedCopy = null;
+    this.unchangedCopyAnalysis = null;
+  }
+
+}
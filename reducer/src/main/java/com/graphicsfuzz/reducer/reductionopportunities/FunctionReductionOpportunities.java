@@ -43,7 +43,7 @@ public class FunctionReductionOpportunities extends StandardVisitor {
   private final List<FunctionPrototype> declaredFunctions; // All functions declared in the shader
 
   private FunctionReductionOpportunities(TranslationUnit tu, ReductionOpportunityContext context) {
-    this.typer = new Typer(tu, context.getShadingLanguageVersion());
+    this.typer = context.getAnalysis(tu).getTyper();
     this.opportunities = new ArrayList<>();
     this.calledFunctions = new HashSet<>();
     this.declaredFunctions = Collections
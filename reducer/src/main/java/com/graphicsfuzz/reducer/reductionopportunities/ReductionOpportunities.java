@@ -39,6 +39,9 @@ public final class ReductionOpportunities {
    */
   public static List<IReductionOpportunity> getReductionOpportunities(
         TranslationUnit tu, ReductionOpportunityContext context) {
+    // None of the finders changes the translation unit, so they can all share one analysis of it.
+    final ReductionOpportunityContext sharingContext =
+          context.withAnalysis(context.getAnalysis(tu));
     final List<IReductionOpportunity> opportunities = new ArrayList<>();
     for (IReductionOpportunityFinder<?> ros : Arrays.asList(
         IReductionOpportunityFinder.loopMergeFinder(),
@@ -63,7 +66,7 @@ public final class ReductionOpportunities {
         IReductionOpportunityFinder.unusedParamFinder(),
         IReductionOpportunityFinder.foldConstantFinder())) {
       final List<? extends IReductionOpportunity> currentOpportunities = ros
-            .findOpportunities(tu, context);
+            .findOpportunities(tu, sharingContext);
       if (ReductionDriver.DEBUG_REDUCER) {
         opportunities.addAll(currentOpportunities.stream()
               .map(item -> new CheckValidReductionOpportunityDecorator(item, tu,
@@ -60,12 +60,13 @@ public abstract class ReductionOpportunitiesBase
    *                only to reverse transformations
    */
   public ReductionOpportunitiesBase(TranslationUnit tu, ReductionOpportunityContext context) {
+    final TranslationUnitAnalysis analysis = context.getAnalysis(tu);
     this.opportunities = new ArrayList<>();
     this.injectionTracker = new InjectionTracker();
-    this.notReferencedFromLiveContext = new NotReferencedFromLiveContext(tu);
+    this.notReferencedFromLiveContext = analysis.getNotReferencedFromLiveContext();
     this.context = context;
     this.enclosingFunctionName = null;
-    this.parentMap = IParentMap.createParentMap(tu);
+    this.parentMap = analysis.getParentMap();
     this.numEnclosingLValues = 0;
   }
 
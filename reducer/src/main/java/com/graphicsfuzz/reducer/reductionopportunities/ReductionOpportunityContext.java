@@ -16,6 +16,7 @@
 
 package com.graphicsfuzz.reducer.reductionopportunities;
 
+import com.graphicsfuzz.common.ast.TranslationUnit;
 import com.graphicsfuzz.common.glslversion.ShadingLanguageVersion;
 import com.graphicsfuzz.common.util.IRandom;
 import com.graphicsfuzz.common.util.IdGenerator;
@@ -31,24 +32,55 @@ public class ReductionOpportunityContext {
   private final IdGenerator idGenerator;
   private final int maxPercentageToReduce;
   private final int aggressionDecreaseStep;
+  private final TranslationUnitAnalysis analysis;
 
   public ReductionOpportunityContext(boolean reduceEverywhere,
       ShadingLanguageVersion shadingLanguageVersion,
       IRandom random, IdGenerator idGenerator, int maxPercentageToReduce,
       int aggressionDecreaseStep) {
+    this(reduceEverywhere, shadingLanguageVersion, random, idGenerator, maxPercentageToReduce,
+        aggressionDecreaseStep, null);
+  }
+
+  public ReductionOpportunityContext(boolean reduceEverywhere,
+      ShadingLanguageVersion shadingLanguageVersion,
+      IRandom random, IdGenerator idGenerator) {
+    this(reduceEverywhere, shadingLanguageVersion, random, idGenerator,
+          DEFAULT_MAX_PERCENTAGE_TO_REDUCE, DEFAULT_AGGRESSION_DECREASE_STEP);
+  }
+
+  private ReductionOpportunityContext(boolean reduceEverywhere,
+      ShadingLanguageVersion shadingLanguageVersion,
+      IRandom random, IdGenerator idGenerator, int maxPercentageToReduce,
+      int aggressionDecreaseStep, TranslationUnitAnalysis analysis) {
     this.reduceEverywhere = reduceEverywhere;
     this.shadingLanguageVersion = shadingLanguageVersion;
     this.random = random;
     this.idGenerator = idGenerator;
     this.maxPercentageToReduce = maxPercentageToReduce;
     this.aggressionDecreaseStep = aggressionDecreaseStep;
+    this.analysis = analysis;
   }
 
-  public ReductionOpportunityContext(boolean reduceEverywhere,
-      ShadingLanguageVersion shadingLanguageVersion,
-      IRandom random, IdGenerator idGenerator) {
-    this(reduceEverywhere, shadingLanguageVersion, random, idGenerator,
-          DEFAULT_MAX_PERCENTAGE_TO_REDUCE, DEFAULT_AGGRESSION_DECREASE_STEP);
+  /**
+   * Yields a context that is identical to this one, except that finders searching the translation
+   * unit of the given analysis will share the analysis rather than computing their own.  The
+   * resulting context must only be used while that translation unit is unchanged.
+   */
+  public ReductionOpportunityContext withAnalysis(TranslationUnitAnalysis analysis) {
+    return new ReductionOpportunityContext(reduceEverywhere, shadingLanguageVersion, random,
+        idGenerator, maxPercentageToReduce, aggressionDecreaseStep, analysis);
+  }
+
+  /**
+   * Yields the shared analysis of the given translation unit if this context carries one, and
+   * otherwise a fresh analysis.
+   */
+  public TranslationUnitAnalysis getAnalysis(TranslationUnit tu) {
+    if (analysis != null && analysis.getTranslationUnit() == tu) {
+      return analysis;
+    }
+    return new TranslationUnitAnalysis(tu, shadingLanguageVersion);
   }
 
   public boolean reduceEverywhere() {
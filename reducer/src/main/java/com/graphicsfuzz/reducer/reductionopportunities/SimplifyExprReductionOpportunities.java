@@ -41,7 +41,7 @@ abstract class SimplifyExprReductionOpportunities
         TranslationUnit tu,
         ReductionOpportunityContext context) {
     super(tu, context);
-    this.typer = new Typer(tu, context.getShadingLanguageVersion());
+    this.typer = context.getAnalysis(tu).getTyper();
     this.inLiveInjectedStmtOrDeclaration = false;
   }
 
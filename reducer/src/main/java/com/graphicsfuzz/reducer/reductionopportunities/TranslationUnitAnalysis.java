@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.reductionopportunities;
+
+import com.graphicsfuzz.common.ast.IParentMap;
+import com.graphicsfuzz.common.ast.TranslationUnit;
+import com.graphicsfuzz.common.glslversion.ShadingLanguageVersion;
+import com.graphicsfuzz.common.typing.Typer;
+
+/**
+ * The analyses of a translation unit that reduction opportunity finders need: its parent map, the
+ * types of its expressions, and the functions called from code that might be live.  Each analysis
+ * is computed on first use, and then shared by every finder that searches the translation unit via
+ * a context carrying this object.
+ *
+ * <p>The analyses describe the translation unit as it was when they were computed, so this object
+ * must be discarded as soon as the translation unit changes, e.g. when a reduction opportunity is
+ * applied to it.  It is not thread-safe.</p>
+ */
+public final class TranslationUnitAnalysis {
+
+  private final TranslationUnit tu;
+  private final ShadingLanguageVersion shadingLanguageVersion;
+
+  private IParentMap parentMap;
+  private Typer typer;
+  private NotReferencedFromLiveContext notReferencedFromLiveContext;
+
+  public TranslationUnitAnalysis(TranslationUnit tu,
+        ShadingLanguageVersion shadingLanguageVersion) {
+    this.tu = tu;
+    this.shadingLanguageVersion = shadingLanguageVersion;
+    this.parentMap = null;
+    this.typer = null;
+    this.notReferencedFromLiveContext = null;
+  }
+
+  public TranslationUnit getTranslationUnit() {
+    return tu;
+  }
+
+  public IParentMap getParentMap() {
+    if (parentMap == null) {
+      parentMap = IParentMap.createParentMap(tu);
+    }
+    return parentMap;
+  }
+
+  public Typer getTyper() {
+    if (typer == null) {
+      typer = new Typer(tu, shadingLanguageVersion);
+    }
+    return typer;
+  }
+
+  NotReferencedFromLiveContext getNotReferencedFromLiveContext() {
+    if (notReferencedFromLiveContext == null) {
+      notReferencedFromLiveContext = new NotReferencedFromLiveContext(tu);
+    }
+    return notReferencedFromLiveContext;
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.tool;
+
+import com.graphicsfuzz.common.util.Helper;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * The distinct crashes found by a ReducerBugPoint campaign.  Crashes are told apart by their
+ * signature: the type of the exception at the root of the crash and the top of its stack trace.
+ * For each signature, the smallest shader whose reduction led to the crash is kept, in a directory
+ * of its own.
+ *
+ * <p>May be used by concurrent searches.</p>
+ */
+class BugPointCrashes {
+
+  private static final int SIGNATURE_FRAMES = 5;
+
+  static final String REPRODUCER_SHADER = "reproducer.frag";
+  static final String REPRODUCER_JSON = "reproducer.json";
+  static final String EXCEPTION_FILE = "exception.txt";
+
+  private final File crashesDir;
+
+  // Guarded by this.
+  private final Map<String, Crash> crashes;
+
+  BugPointCrashes(File crashesDir) {
+    this.crashesDir = crashesDir;
+    this.crashes = new HashMap<>();
+  }
+
+  static String getSignature(Throwable throwable) {
+    Throwable root = throwable;
+    while (root.getCause() != null && root.getCause() != root) {
+      root = root.getCause();
+    }
+    final StringBuilder result = new StringBuilder(root.getClass().getName());
+    final StackTraceElement[] frames = root.getStackTrace();
+    for (int i = 0; i < Math.min(SIGNATURE_FRAMES, frames.length); i++) {
+      result.append("\n  at ").append(frames[i]);
+    }
+    return result.toString();
+  }
+
+  /**
+   * Records that reducing a shader led to a crash.  The shader, its JSON file and the exception
+   * are kept if this is the first crash with its signature, or if the shader is smaller than the
+   * one kept for the signature so far.
+   * @param throwable The exception that the reduction crashed with
+   * @param shader The shader that was being reduced
+   * @param seed The seed of the search that found the crash
+   * @return true if and only if the shader was kept
+   */
+  synchronized boolean record(Throwable throwable, File shader, int seed) throws IOException {
+    final String signature = getSignature(throwable);
+    final long size = shader.length();
+    Crash crash = crashes.get(signature);
+    if (crash == null) {
+      crash = new Crash(new File(crashesDir, "crash_" + crashes.size()));
+      crashes.put(signature, crash);
+    } else if (crash.reproducerSize <= size) {
+      return false;
+    }
+    crash.reproducerSize = size;
+    FileUtils.copyFile(shader, new File(crash.dir, REPRODUCER_SHADER));
+    FileUtils.copyFile(new File(Helper.jsonFilenameForShader(shader.getAbsolutePath())),
+        new File(crash.dir, REPRODUCER_JSON));
+    final StringWriter stackTrace = new StringWriter();
+    throwable.printStackTrace(new PrintWriter(stackTrace));
+    FileUtils.writeStringToFile(new File(crash.dir, EXCEPTION_FILE),
+        "Seed: " + seed + "\n\n" + signature + "\n\n" + stackTrace,
+        StandardCharsets.UTF_8);
+    return true;
+  }
+
+  synchronized int getNumSignatures() {
+    return crashes.size();
+  }
+
+  private static final class Crash {
+
+    private final File dir;
+    private long reproducerSize;
+
+    private Crash(File dir) {
+      this.dir = dir;
+      this.reproducerSize = Long.MAX_VALUE;
+    }
+  }
+
+}
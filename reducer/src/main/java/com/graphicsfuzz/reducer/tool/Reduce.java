@@ -29,15 +29,21 @@ import com.graphicsfuzz.common.util.ReductionProgressHelper;
 import com.graphicsfuzz.common.util.UniformsInfo;
 import com.graphicsfuzz.reducer.IFileJudge;
 import com.graphicsfuzz.reducer.IReductionStateFileWriter;
+import com.graphicsfuzz.reducer.IShaderTextJudge;
 import com.graphicsfuzz.reducer.ReductionDriver;
 import com.graphicsfuzz.reducer.ReductionKind;
+import com.graphicsfuzz.reducer.ReductionStepTrace;
+import com.graphicsfuzz.reducer.filejudge.CachingFileJudge;
 import com.graphicsfuzz.reducer.filejudge.FuzzingFileJudge;
 import com.graphicsfuzz.reducer.filejudge.ImageGenErrorShaderFileJudge;
 import com.graphicsfuzz.reducer.filejudge.ImageShaderFileJudge;
+import com.graphicsfuzz.reducer.filejudge.JudgeResultCache;
+import com.graphicsfuzz.reducer.filejudge.PreValidatingFileJudge;
 import com.graphicsfuzz.reducer.filejudge.ValidatorErrorShaderFileJudge;
 import com.graphicsfuzz.reducer.glslreducers.GlslReductionState;
 import com.graphicsfuzz.reducer.glslreducers.GlslReductionStateFileWriter;
 import com.graphicsfuzz.reducer.reductionopportunities.ReductionOpportunityContext;
+import com.graphicsfuzz.reducer.util.ShaderPreValidator;
 import com.graphicsfuzz.server.thrift.FuzzerServiceManager;
 import com.graphicsfuzz.server.thrift.ImageComparisonMetric;
 import com.graphicsfuzz.shadersets.ExactImageFileComparator;
@@ -50,15 +56,20 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -185,6 +196,38 @@ public class Reduce {
           .help("Carry on from where a previous reduction attempt left off.")
           .action(Arguments.storeTrue());
 
+    parser.addArgument("--parallel_judges")
+          .help("Number of candidate reduction steps to judge concurrently, each on its own "
+                + "worker.  When used with --server, --token may be a comma-separated list of "
+                + "tokens, which are assigned to the workers in turn.")
+          .setDefault(1)
+          .type(Integer.class);
+
+    parser.addArgument("--judge_cache")
+          .help("Directory of a persistent cache of judge results, which may be shared between "
+                + "reductions.  Shader jobs already found interesting with the same reduction "
+                + "options on the same device are not dispatched again.  Not supported by the "
+                + ReductionKind.FUZZ + " and " + ReductionKind.ALWAYS_REDUCE + " kinds.")
+          .type(File.class);
+
+    parser.addArgument("--in_memory")
+          .help("Judge reduction steps in memory, rather than writing the shaders of every step "
+                + "to the output directory before judging them.")
+          .action(Arguments.storeTrue());
+
+    parser.addArgument("--pre_validate")
+          .help("Check the shaders of each reduction step for errors that certainly make them "
+                + "invalid, such as an undeclared variable, and reject steps with such errors "
+                + "without running the validator.  Only for reduction kinds that require valid "
+                + "shaders.")
+          .action(Arguments.storeTrue());
+
+    parser.addArgument("--no_step_trace")
+          .help("With --in_memory, do not record reduction steps in the output directory; only "
+                + "the final result is written.  A reduction run in this way cannot be continued "
+                + "with --continue_previous_reduction.")
+          .action(Arguments.storeTrue());
+
     return parser;
 
   }
@@ -262,6 +305,20 @@ public class Reduce {
 
       final Boolean continuePreviousReduction = ns.get("continue_previous_reduction");
 
+      final int parallelJudges = ns.get("parallel_judges");
+      if (parallelJudges < 1) {
+        throw new ArgumentParserException("--parallel_judges must be at least 1", parser);
+      }
+
+      final File judgeCacheDir = ns.get("judge_cache");
+
+      final boolean inMemory = ns.get("in_memory");
+      final boolean noStepTrace = ns.get("no_step_trace");
+      final boolean preValidate = ns.get("pre_validate");
+      if (noStepTrace && !inMemory) {
+        throw new ArgumentParserException("--no_step_trace requires --in_memory", parser);
+      }
+
       if (managerOverride != null && (server == null || token == null)) {
         throw new ArgumentParserException(
               "Must supply server (dummy string) and token when executing in server process.",
@@ -308,81 +365,84 @@ public class Reduce {
             ImageShaderFileJudge.getReferenceImageInWorkDir(workDir));
       }
 
-      IFileJudge fileJudge;
-
-      IShaderDispatcher imageGenerator =
-
-            server == null || server.isEmpty() || server.equals(".")
-                  ? new LocalShaderDispatcher(usingSwiftshader)
-                  : new RemoteShaderDispatcher(
-                        server + "/manageAPI",
-                        token,
-                        managerOverride,
-                        new AtomicLong(),
-                        retryLimit);
-
-      File corpus = new File(workDir, "corpus");
-
-      switch (reductionKind) {
-        case NO_IMAGE:
-          fileJudge =
-                new ImageGenErrorShaderFileJudge(
-                      workDir,
-                      (errorString == null || errorString.isEmpty()) ? null
-                            : Pattern.compile(".*" + errorString + ".*", Pattern.DOTALL),
-                      imageGenerator,
-                      skipRender,
-                      stopOnError);
-          break;
-        case NOT_IDENTICAL:
-          fileJudge = new ImageShaderFileJudge(workDir,
-                new ExactImageFileComparator(false),
-                imageGenerator,
-                stopOnError);
-          break;
-        case IDENTICAL:
-          fileJudge = new ImageShaderFileJudge(workDir,
-                new ExactImageFileComparator(true),
-                imageGenerator,
-                stopOnError);
-          break;
-        case BELOW_THRESHOLD:
-          fileJudge = new ImageShaderFileJudge(workDir,
-                new MetricImageFileComparator(threshold, false, metric),
-                imageGenerator,
-                stopOnError);
-          break;
-        case ABOVE_THRESHOLD:
-          fileJudge = new ImageShaderFileJudge(workDir,
-                new MetricImageFileComparator(threshold, true, metric),
-                imageGenerator,
-                stopOnError);
-          break;
-        case VALIDATOR_ERROR:
-          fileJudge = new ValidatorErrorShaderFileJudge(errorString.isEmpty() ? null
-                : Pattern.compile(".*" + errorString + ".*", Pattern.DOTALL));
-          break;
-        case ALWAYS_REDUCE:
-          fileJudge = item -> true;
-          break;
-        case FUZZ:
-          fileJudge = new FuzzingFileJudge(workDir, corpus, imageGenerator);
-          break;
-        default:
-          throw new ArgumentParserException(
-                "Unsupported reduction kind: " + reductionKind,
-                parser);
+      final boolean usingServer = !(server == null || server.isEmpty() || server.equals("."));
+      if (judgeCacheDir != null && !supportsJudgeCache(reductionKind)) {
+        throw new ArgumentParserException("Reduction kind " + reductionKind
+              + " does not support --judge_cache", parser);
+      }
+      final JudgeResultCache judgeResultCache = judgeCacheDir == null
+            ? null
+            : new JudgeResultCache(judgeCacheDir);
+      final String judgeConfiguration = judgeResultCache == null
+            ? null
+            : getJudgeConfiguration(reductionKind, metric, threshold, errorString, skipRender,
+                  workDir);
+
+      if (preValidate && !requiresValidShaders(reductionKind)) {
+        throw new ArgumentParserException("Reduction kind " + reductionKind
+              + " does not support --pre_validate", parser);
+      }
+      // Shared by the judges, so that it counts the validator runs avoided by all of them.
+      final ShaderPreValidator preValidator = preValidate
+            ? new ShaderPreValidator(getGlslVersionForShaderJob(shaderJobPrefix))
+            : null;
+
+      final List<IFileJudge> fileJudges = new ArrayList<>();
+      final AtomicLong jobCounter = new AtomicLong();
+      for (int i = 0; i < parallelJudges; i++) {
+        final IShaderDispatcher imageGenerator =
+              !usingServer
+                    ? new LocalShaderDispatcher(usingSwiftshader)
+                    : new RemoteShaderDispatcher(
+                          server + "/manageAPI",
+                          getWorkerToken(token, i),
+                          managerOverride,
+                          jobCounter,
+                          retryLimit);
+        IFileJudge fileJudge = createFileJudge(reductionKind, workDir, imageGenerator,
+              errorString, skipRender, stopOnError, threshold, metric, parser);
+        if (judgeResultCache != null) {
+          fileJudge = new CachingFileJudge(fileJudge, judgeResultCache, judgeConfiguration,
+                usingServer
+                      ? server + "/" + getWorkerToken(token, i)
+                      : (usingSwiftshader ? "swiftshader" : "local"));
+        }
+        if (preValidator != null) {
+          fileJudge = new PreValidatingFileJudge(fileJudge, preValidator, stopOnError);
+        }
+        if (inMemory && !IShaderTextJudge.canJudgeInMemory(fileJudge)) {
+          throw new ArgumentParserException("Reduction kind " + reductionKind
+                + " does not support --in_memory", parser);
+        }
+        fileJudges.add(fileJudge);
       }
 
-      doReductionHelper(
-          shaderJobPrefix,
-          seed,
-          fileJudge,
-          workDir,
-          maxSteps,
-          reduceEverywhere,
-          continuePreviousReduction,
-          verbose);
+      if (inMemory) {
+        doInMemoryReductionHelper(
+            shaderJobPrefix,
+            seed,
+            fileJudges.stream().map(item -> (IShaderTextJudge) item).collect(Collectors.toList()),
+            !noStepTrace,
+            workDir,
+            maxSteps,
+            reduceEverywhere,
+            continuePreviousReduction,
+            verbose);
+      } else {
+        doReductionHelper(
+            shaderJobPrefix,
+            seed,
+            fileJudges,
+            workDir,
+            maxSteps,
+            reduceEverywhere,
+            continuePreviousReduction,
+            verbose);
+      }
+      if (preValidator != null) {
+        LOGGER.info("Pre-validation rejected {} of {} shaders, avoiding as many validator runs.",
+            preValidator.getNumRejected(), preValidator.getNumChecked());
+      }
 
     } catch (Throwable ex) {
 
@@ -400,6 +460,114 @@ public class Reduce {
     }
   }
 
+  /**
+   * Describes the options that affect whether a shader job is deemed interesting, for use in
+   * keying cached judge results.
+   */
+  private static String getJudgeConfiguration(
+        ReductionKind reductionKind,
+        ImageComparisonMetric metric,
+        double threshold,
+        String errorString,
+        boolean skipRender,
+        File workDir) throws IOException {
+    final File referenceImage = ImageShaderFileJudge.getReferenceImageInWorkDir(workDir);
+    return reductionKind
+          + ";metric=" + metric
+          + ";threshold=" + threshold
+          + ";error_string=" + errorString
+          + ";skip_render=" + skipRender
+          + ";reference_image=" + (referenceImage.isFile()
+                ? DigestUtils.sha256Hex(FileUtils.readFileToByteArray(referenceImage))
+                : "");
+  }
+
+  private static boolean requiresValidShaders(ReductionKind reductionKind) {
+    switch (reductionKind) {
+      case NO_IMAGE:
+      case NOT_IDENTICAL:
+      case IDENTICAL:
+      case BELOW_THRESHOLD:
+      case ABOVE_THRESHOLD:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Determines whether interesting results of the judge for a reduction kind may be reused.  The
+   * fuzzing judge has to run every time, as it records what it finds, and always reducing needs
+   * no judge at all.
+   */
+  private static boolean supportsJudgeCache(ReductionKind reductionKind) {
+    switch (reductionKind) {
+      case FUZZ:
+      case ALWAYS_REDUCE:
+        return false;
+      default:
+        return true;
+    }
+  }
+
+  private static String getWorkerToken(String tokens, int workerIndex) {
+    final String[] workerTokens = tokens.split(",");
+    return workerTokens[workerIndex % workerTokens.length].trim();
+  }
+
+  private static IFileJudge createFileJudge(
+        ReductionKind reductionKind,
+        File workDir,
+        IShaderDispatcher imageGenerator,
+        String errorString,
+        boolean skipRender,
+        boolean stopOnError,
+        double threshold,
+        ImageComparisonMetric metric,
+        ArgumentParser parser) throws ArgumentParserException {
+    switch (reductionKind) {
+      case NO_IMAGE:
+        return new ImageGenErrorShaderFileJudge(
+              workDir,
+              (errorString == null || errorString.isEmpty()) ? null
+                    : Pattern.compile(".*" + errorString + ".*", Pattern.DOTALL),
+              imageGenerator,
+              skipRender,
+              stopOnError);
+      case NOT_IDENTICAL:
+        return new ImageShaderFileJudge(workDir,
+              new ExactImageFileComparator(false),
+              imageGenerator,
+              stopOnError);
+      case IDENTICAL:
+        return new ImageShaderFileJudge(workDir,
+              new ExactImageFileComparator(true),
+              imageGenerator,
+              stopOnError);
+      case BELOW_THRESHOLD:
+        return new ImageShaderFileJudge(workDir,
+              new MetricImageFileComparator(threshold, false, metric),
+              imageGenerator,
+              stopOnError);
+      case ABOVE_THRESHOLD:
+        return new ImageShaderFileJudge(workDir,
+              new MetricImageFileComparator(threshold, true, metric),
+              imageGenerator,
+              stopOnError);
+      case VALIDATOR_ERROR:
+        return new ValidatorErrorShaderFileJudge(errorString.isEmpty() ? null
+              : Pattern.compile(".*" + errorString + ".*", Pattern.DOTALL));
+      case ALWAYS_REDUCE:
+        return item -> true;
+      case FUZZ:
+        return new FuzzingFileJudge(workDir, new File(workDir, "corpus"), imageGenerator);
+      default:
+        throw new ArgumentParserException(
+              "Unsupported reduction kind: " + reductionKind,
+              parser);
+    }
+  }
+
   private static void copyFileToWorkDirIfNeeded(File file, File workDir) throws IOException {
     if (file.exists() && !FileUtils.directoryContains(workDir, file)) {
       FileUtils.copyFile(file, Paths.get(workDir.toString(),
@@ -446,13 +614,84 @@ public class Reduce {
       boolean continuePreviousReduction,
       boolean verbose)
       throws IOException, ParseTimeoutException {
+    doReductionHelper(shaderJobPrefix,
+        seed,
+        Collections.singletonList(fileJudge),
+        workDir,
+        stepLimit,
+        reduceEverywhere,
+        continuePreviousReduction,
+        verbose);
+  }
+
+  public static void doReductionHelper(
+      String shaderJobPrefix,
+      int seed,
+      List<IFileJudge> fileJudges,
+      File workDir,
+      int stepLimit,
+      boolean reduceEverywhere,
+      boolean continuePreviousReduction,
+      boolean verbose)
+      throws IOException, ParseTimeoutException {
+    final int fileCountOffset = getFileCountOffset(shaderJobPrefix, workDir,
+          continuePreviousReduction);
+    final IReductionStateFileWriter fileWriter = new GlslReductionStateFileWriter(
+        getGlslVersionForShaderJob(shaderJobPrefix));
+    createReductionDriver(shaderJobPrefix, seed, workDir, reduceEverywhere,
+          continuePreviousReduction, verbose)
+          .doReduction(shaderJobPrefix,
+                fileCountOffset,
+                fileWriter,
+                fileJudges,
+                workDir,
+                stepLimit);
+  }
+
+  /**
+   * As for doReductionHelper, except that reduction steps are judged in memory.  If traceSteps
+   * holds, the steps are also written to the work directory, off the critical path of the
+   * reduction, so that the reduction can later be continued.
+   */
+  public static void doInMemoryReductionHelper(
+      String shaderJobPrefix,
+      int seed,
+      List<IShaderTextJudge> judges,
+      boolean traceSteps,
+      File workDir,
+      int stepLimit,
+      boolean reduceEverywhere,
+      boolean continuePreviousReduction,
+      boolean verbose)
+      throws IOException, ParseTimeoutException {
+    final int fileCountOffset = getFileCountOffset(shaderJobPrefix, workDir,
+          continuePreviousReduction);
+    final IReductionStateFileWriter fileWriter = new GlslReductionStateFileWriter(
+        getGlslVersionForShaderJob(shaderJobPrefix));
+    createReductionDriver(shaderJobPrefix, seed, workDir, reduceEverywhere,
+          continuePreviousReduction, verbose)
+          .doInMemoryReduction(shaderJobPrefix,
+                fileCountOffset,
+                fileWriter,
+                judges,
+                traceSteps ? new ReductionStepTrace() : null,
+                workDir,
+                stepLimit);
+  }
+
+  private static ReductionDriver createReductionDriver(
+      String shaderJobPrefix,
+      int seed,
+      File workDir,
+      boolean reduceEverywhere,
+      boolean continuePreviousReduction,
+      boolean verbose)
+      throws IOException, ParseTimeoutException {
     final ShadingLanguageVersion shadingLanguageVersion =
         getGlslVersionForShaderJob(shaderJobPrefix);
     final IRandom random = new RandomWrapper(seed);
     final IdGenerator idGenerator = new IdGenerator();
 
-    final int fileCountOffset = getFileCountOffset(shaderJobPrefix, workDir,
-          continuePreviousReduction);
     final String startingShaderJobPrefix = getStartingShaderJobPrefix(shaderJobPrefix, workDir,
           continuePreviousReduction);
 
@@ -462,20 +701,12 @@ public class Reduce {
     }
 
     GlslReductionState initialState = createInitialReductionState(startingShaderJobPrefix);
-    IReductionStateFileWriter fileWriter = new GlslReductionStateFileWriter(
-        shadingLanguageVersion);
 
-    new ReductionDriver(new ReductionOpportunityContext(
+    return new ReductionDriver(new ReductionOpportunityContext(
           reduceEverywhere,
         shadingLanguageVersion,
           random,
-          idGenerator), verbose, initialState)
-          .doReduction(shaderJobPrefix,
-                fileCountOffset,
-                fileWriter,
-                fileJudge,
-                workDir,
-                stepLimit);
+          idGenerator), verbose, initialState);
   }
 
   private static GlslReductionState createInitialReductionState(String shaderJobPrefix)
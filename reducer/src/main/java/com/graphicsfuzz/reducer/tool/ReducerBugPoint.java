@@ -32,10 +32,15 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
@@ -71,10 +76,22 @@ public class ReducerBugPoint {
           .type(Integer.class);
 
     parser.addArgument("--seed")
-          .help("Seed to initialize random number generator with.")
+          .help("Seed to initialize random number generator with.  The seeds of a campaign are "
+                + "consecutive, starting from this one.")
           .setDefault(new Random().nextInt())
           .type(Integer.class);
 
+    parser.addArgument("--num_seeds")
+          .help("Number of seeds to search with.  Each seed searches independently, in its own "
+                + "subdirectory of the output directory.")
+          .setDefault(1)
+          .type(Integer.class);
+
+    parser.addArgument("--threads")
+          .help("Number of seeds to search with concurrently.")
+          .setDefault(Runtime.getRuntime().availableProcessors())
+          .type(Integer.class);
+
     parser.addArgument("--reduce_everywhere")
           .help("Reduce arbitrary parts of the shader.")
           .action(Arguments.storeTrue());
@@ -102,12 +119,59 @@ public class ReducerBugPoint {
   }
 
 
-  public static void main(String[] args)
-        throws IOException, ParseTimeoutException, InterruptedException {
+  public static void main(String[] args) throws InterruptedException {
 
     final Namespace ns = parse(args);
 
     final int seed = ns.get("seed");
+    final int numSeeds = ns.get("num_seeds");
+    final int threads = ns.get("threads");
+    if (numSeeds < 1 || threads < 1) {
+      throw new IllegalArgumentException("The number of seeds and of threads must be positive.");
+    }
+
+    final File outputDir = ns.get("output");
+    final BugPointCrashes crashes = new BugPointCrashes(new File(outputDir, "crashes"));
+
+    final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    int numFailedSearches = 0;
+    try {
+      final List<Future<?>> searches = new ArrayList<>();
+      for (int i = 0; i < numSeeds; i++) {
+        final int searchSeed = seed + i;
+        searches.add(executorService.submit(() -> {
+          search(ns, searchSeed, new File(outputDir, "seed_" + searchSeed), crashes);
+          return null;
+        }));
+      }
+      for (int i = 0; i < numSeeds; i++) {
+        try {
+          searches.get(i).get();
+        } catch (ExecutionException exception) {
+          System.err.println("Search with seed " + (seed + i) + " failed:");
+          exception.getCause().printStackTrace();
+          numFailedSearches++;
+        }
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    System.err.println("Found " + crashes.getNumSignatures() + " distinct crash(es); the smallest "
+        + "reproducer of each is in " + new File(outputDir, "crashes"));
+    if (numFailedSearches == numSeeds) {
+      System.err.println("Every search failed.");
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Searches for a crash in the reducer, starting from the shader given on the command line, and
+   * whenever reduction crashes carries on from the last shader the reduction found interesting.
+   * The search gives up once it has made the maximum number of iterations without a crash.
+   */
+  private static void search(Namespace ns, int seed, File seedDir, BugPointCrashes crashes)
+        throws IOException, ParseTimeoutException {
 
     final int maxIterations = ns.get("max_iterations");
 
@@ -121,7 +185,8 @@ public class ReducerBugPoint {
 
     final IRandom generator = new RandomWrapper(seed);
 
-    final File interestingFile = new File("interesting.frag");
+    FileUtils.forceMkdir(seedDir);
+    final File interestingFile = new File(seedDir, "interesting.frag");
     final File interestingJson = new File(Helper.jsonFilenameForShader(
           interestingFile.getAbsolutePath()));
     if (interestingFile.exists()) {
@@ -141,11 +206,14 @@ public class ReducerBugPoint {
 
     TranslationUnit interestingTranslationUnit = Helper.parse(interestingFile, true);
 
+    final File workDir = new File(seedDir, "temp");
+
     for (int i = 0; i < maxIterations; i++) {
 
-      File workDir = Files.createDirectory(Paths.get("temp")).toFile();
+      FileUtils.deleteDirectory(workDir);
+      Files.createDirectory(workDir.toPath());
 
-      System.err.println("Trying iteration " + i);
+      System.err.println("Seed " + seed + ": trying iteration " + i);
 
       GlslReductionState initialState = new GlslReductionState(
           Optional.empty(),
@@ -178,12 +246,23 @@ public class ReducerBugPoint {
           final FileFilter fileFilter = new WildcardFileFilter("*success.frag");
           File[] files = workDir.listFiles(fileFilter);
           if (files.length == 0) {
+            // The reduction crashed before finding anything interesting, so the shader it started
+            // from is the smallest reproducer there is.
+            if (crashes.record(throwable, interestingFile, seed)) {
+              System.err.println("Seed " + seed + ": kept a reproducer for "
+                  + BugPointCrashes.getSignature(throwable));
+            }
             continue;
           }
           final File maxSuccess =
                 Arrays.stream(files)
                       .max((item1, item2) -> Integer.compare(getStep(item1), getStep(item2))).get();
 
+          if (crashes.record(throwable, maxSuccess, seed)) {
+            System.err.println("Seed " + seed + ": kept a reproducer for "
+                + BugPointCrashes.getSignature(throwable));
+          }
+
           FileUtils.copyFile(maxSuccess, interestingFile);
           interestingJson.delete();
           FileUtils.copyFile(new File(Helper.jsonFilenameForShader(maxSuccess.getAbsolutePath())),
@@ -193,10 +272,9 @@ public class ReducerBugPoint {
 
           i = 0;
         }
-      } finally {
-        FileUtils.deleteDirectory(workDir);
       }
     }
+    FileUtils.deleteDirectory(workDir);
   }
 
   private static int getStep(File file) {
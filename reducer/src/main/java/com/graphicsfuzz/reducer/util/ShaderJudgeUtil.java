@@ -1,10 +1,19 @@
 package com.graphicsfuzz.reducer.util;
 
+import com.graphicsfuzz.server.thrift.ImageJob;
 import com.graphicsfuzz.util.ExecHelper;
 import com.graphicsfuzz.util.ExecResult;
 import com.graphicsfuzz.util.ToolHelper;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,26 +22,81 @@ public class ShaderJudgeUtil {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ShaderJudgeUtil.class);
 
-  @SuppressWarnings("RedundantIfStatement")
   public static boolean shadersAreValid(String shaderFilesPrefix, boolean throwExceptionOnInvalid)
       throws IOException, InterruptedException {
-    final File fragmentShaderFile = new File(shaderFilesPrefix + ".frag");
-    final File vertexShaderFile = new File(shaderFilesPrefix + ".vert");
-    if (fragmentShaderFile.isFile() && !shaderIsValid(fragmentShaderFile,
-        throwExceptionOnInvalid)) {
-      return false;
+    final List<File> shaderFiles = new ArrayList<>();
+    for (String extension : Arrays.asList(".frag", ".vert")) {
+      final File shaderFile = new File(shaderFilesPrefix + extension);
+      if (shaderFile.isFile()) {
+        shaderFiles.add(shaderFile);
+      }
     }
-    if (vertexShaderFile.isFile() && !shaderIsValid(vertexShaderFile, throwExceptionOnInvalid)) {
-      return false;
+    return allShadersAreValid(shaderFiles, throwExceptionOnInvalid);
+  }
+
+  /**
+   * Validates the shaders of a shader job held in memory, given as a map from file extension to
+   * file contents.
+   */
+  public static boolean shadersAreValid(Map<String, String> shaderJobFiles,
+      boolean throwExceptionOnInvalid) throws IOException, InterruptedException {
+    // The validator reads the shaders from disk, and determines the kind of each shader from its
+    // file extension.
+    final List<File> shaderFiles = new ArrayList<>();
+    try {
+      for (String extension : Arrays.asList(".frag", ".vert")) {
+        if (!shaderJobFiles.containsKey(extension)) {
+          continue;
+        }
+        final File shaderFile = File.createTempFile("shader", extension);
+        shaderFiles.add(shaderFile);
+        FileUtils.writeStringToFile(shaderFile, shaderJobFiles.get(extension),
+            StandardCharsets.UTF_8);
+      }
+      return allShadersAreValid(shaderFiles, throwExceptionOnInvalid);
+    } finally {
+      for (File shaderFile : shaderFiles) {
+        FileUtils.deleteQuietly(shaderFile);
+      }
     }
-    return true;
+  }
+
+  /**
+   * Builds an image job from the files of a shader job held in memory, given as a map from file
+   * extension to file contents.
+   */
+  public static ImageJob getImageJob(String shaderJobName, Map<String, String> shaderJobFiles,
+      boolean skipRender) {
+    final ImageJob imageJob = new ImageJob()
+        .setSkipRender(skipRender)
+        .setName(shaderJobName)
+        .setUniformsInfo(shaderJobFiles.get(".json"));
+    if (shaderJobFiles.containsKey(".frag")) {
+      imageJob.setFragmentSource(shaderJobFiles.get(".frag"));
+    }
+    if (shaderJobFiles.containsKey(".vert")) {
+      imageJob.setVertexSource(shaderJobFiles.get(".vert"));
+    }
+    return imageJob;
   }
 
   public static boolean shaderIsValid(File shaderFile, boolean throwExceptionOnValidationError)
       throws IOException, InterruptedException {
-    ExecResult res = ToolHelper.runValidatorOnShader(ExecHelper.RedirectType.TO_LOG, shaderFile);
+    return allShadersAreValid(Collections.singletonList(shaderFile),
+        throwExceptionOnValidationError);
+  }
+
+  // All of the shaders are validated by one run of the validator, rather than one run each.
+  private static boolean allShadersAreValid(List<File> shaderFiles,
+      boolean throwExceptionOnValidationError) throws IOException, InterruptedException {
+    if (shaderFiles.isEmpty()) {
+      return true;
+    }
+    ExecResult res = ToolHelper.runValidatorOnShaders(ExecHelper.RedirectType.TO_LOG, shaderFiles);
     if (res.res != 0) {
-      LOGGER.warn("Shader {} failed to validate.", shaderFile.getName());
+      LOGGER.warn("Shaders {} failed to validate{}.",
+          shaderFiles.stream().map(File::getName).collect(Collectors.joining(", ")),
+          res.timedOut ? " (timed out)" : "");
       if (throwExceptionOnValidationError) {
         throw new RuntimeException("Validation failed during reduction.");
       }
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.util;
+
+import com.graphicsfuzz.common.ast.TranslationUnit;
+import com.graphicsfuzz.common.ast.decl.FunctionPrototype;
+import com.graphicsfuzz.common.ast.decl.InterfaceBlock;
+import com.graphicsfuzz.common.ast.decl.ScalarInitializer;
+import com.graphicsfuzz.common.ast.decl.VariableDeclInfo;
+import com.graphicsfuzz.common.ast.decl.VariablesDeclaration;
+import com.graphicsfuzz.common.ast.expr.BinOp;
+import com.graphicsfuzz.common.ast.expr.BinaryExpr;
+import com.graphicsfuzz.common.ast.expr.Expr;
+import com.graphicsfuzz.common.ast.expr.FunctionCallExpr;
+import com.graphicsfuzz.common.ast.expr.VariableIdentifierExpr;
+import com.graphicsfuzz.common.ast.stmt.DoStmt;
+import com.graphicsfuzz.common.ast.stmt.ForStmt;
+import com.graphicsfuzz.common.ast.stmt.IfStmt;
+import com.graphicsfuzz.common.ast.stmt.ReturnStmt;
+import com.graphicsfuzz.common.ast.stmt.WhileStmt;
+import com.graphicsfuzz.common.ast.type.BasicType;
+import com.graphicsfuzz.common.ast.type.Type;
+import com.graphicsfuzz.common.ast.type.VoidType;
+import com.graphicsfuzz.common.ast.visitors.StandardVisitor;
+import com.graphicsfuzz.common.glslversion.ShadingLanguageVersion;
+import com.graphicsfuzz.common.typing.ScopeTreeBuilder;
+import com.graphicsfuzz.common.typing.Typer;
+import com.graphicsfuzz.common.typing.TyperHelper;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds errors in a shader that make it certain to fail validation, using the project's own scope
+ * and type information, so that such a shader can be rejected without running the external
+ * validator.
+ *
+ * <p>The typer is approximate, so only errors that it cannot get wrong are reported: a variable
+ * that is not in scope, a call to a user-defined function with no overload taking that number of
+ * arguments, a numeric condition, a return statement that does not match its function, and an
+ * initialization or assignment between numeric types of different sizes.  A shader in which no
+ * error is found may still be invalid; the external validator decides.</p>
+ *
+ * <p>A validator may be shared by threads; it counts the shaders it has checked and rejected.</p>
+ */
+public final class ShaderPreValidator {
+
+  // Any builtin, in any version: a call to a function with one of these names is never checked,
+  // as the builtin tables are not complete enough to say that the call is wrong.
+  private static final Set<String> builtinFunctionNames;
+
+  static {
+    final Set<String> names = new HashSet<>();
+    for (ShadingLanguageVersion version : ShadingLanguageVersion.allShadingLanguageVersions()) {
+      names.addAll(TyperHelper.getBuiltins(version).keySet());
+    }
+    builtinFunctionNames = Collections.unmodifiableSet(names);
+  }
+
+  private final ShadingLanguageVersion shadingLanguageVersion;
+  private final AtomicLong numChecked;
+  private final AtomicLong numRejected;
+
+  public ShaderPreValidator(ShadingLanguageVersion shadingLanguageVersion) {
+    this.shadingLanguageVersion = shadingLanguageVersion;
+    this.numChecked = new AtomicLong();
+    this.numRejected = new AtomicLong();
+  }
+
+  /**
+   * Yields a description of an error that makes the shader certainly invalid, if one is found.
+   */
+  public Optional<String> findError(TranslationUnit tu) {
+    numChecked.incrementAndGet();
+    Optional<String> result;
+    try {
+      result = new ErrorFinder(tu, new Typer(tu, shadingLanguageVersion)).find();
+    } catch (RuntimeException | AssertionError exception) {
+      // The typer and scope builder assume shaders that are largely well formed; if they fail,
+      // nothing can be concluded and the external validator must decide.
+      result = Optional.empty();
+    }
+    if (result.isPresent()) {
+      numRejected.incrementAndGet();
+    }
+    return result;
+  }
+
+  public long getNumChecked() {
+    return numChecked.get();
+  }
+
+  /**
+   * Yields the number of shaders rejected so far, each of which is a run of the external validator
+   * avoided.
+   */
+  public long getNumRejected() {
+    return numRejected.get();
+  }
+
+  private static final class ErrorFinder extends ScopeTreeBuilder {
+
+    private final TranslationUnit tu;
+    private final Typer typer;
+    private final Set<String> interfaceBlockNames;
+    private Optional<String> error;
+
+    private ErrorFinder(TranslationUnit tu, Typer typer) {
+      this.tu = tu;
+      this.typer = typer;
+      this.interfaceBlockNames = new HashSet<>();
+      this.error = Optional.empty();
+    }
+
+    private Optional<String> find() {
+      // Interface block members are not added to scopes, so are gathered up front.
+      new StandardVisitor() {
+        @Override
+        public void visitInterfaceBlock(InterfaceBlock interfaceBlock) {
+          super.visitInterfaceBlock(interfaceBlock);
+          interfaceBlockNames.addAll(interfaceBlock.getMemberNames());
+          if (interfaceBlock.hasIdentifierName()) {
+            interfaceBlockNames.add(interfaceBlock.getInstanceName());
+          }
+        }
+      }.visit(tu);
+      visit(tu);
+      return error;
+    }
+
+    private void reportError(String message) {
+      if (!error.isPresent()) {
+        error = Optional.of(message);
+      }
+    }
+
+    @Override
+    public void visitVariableIdentifierExpr(VariableIdentifierExpr variableIdentifierExpr) {
+      super.visitVariableIdentifierExpr(variableIdentifierExpr);
+      final String name = variableIdentifierExpr.getName();
+      if (currentScope.lookupType(name) == null
+          && !name.startsWith("gl_")
+          && !interfaceBlockNames.contains(name)) {
+        reportError("'" + name + "' is not declared");
+      }
+    }
+
+    @Override
+    public void visitFunctionCallExpr(FunctionCallExpr functionCallExpr) {
+      super.visitFunctionCallExpr(functionCallExpr);
+      final String callee = functionCallExpr.getCallee();
+      final Set<FunctionPrototype> prototypes = typer.getUserDefinedFunctions().get(callee);
+      if (prototypes == null || builtinFunctionNames.contains(callee)) {
+        return;
+      }
+      if (prototypes.stream().noneMatch(prototype ->
+          prototype.getNumParameters() == functionCallExpr.getNumArgs())) {
+        reportError("No overload of '" + callee + "' takes " + functionCallExpr.getNumArgs()
+            + " arguments");
+      }
+    }
+
+    @Override
+    public void visitIfStmt(IfStmt ifStmt) {
+      super.visitIfStmt(ifStmt);
+      checkCondition(ifStmt.getCondition());
+    }
+
+    @Override
+    public void visitWhileStmt(WhileStmt whileStmt) {
+      super.visitWhileStmt(whileStmt);
+      checkCondition(whileStmt.getCondition());
+    }
+
+    @Override
+    public void visitDoStmt(DoStmt doStmt) {
+      super.visitDoStmt(doStmt);
+      checkCondition(doStmt.getCondition());
+    }
+
+    @Override
+    public void visitForStmt(ForStmt forStmt) {
+      super.visitForStmt(forStmt);
+      if (forStmt.getCondition() != null) {
+        checkCondition(forStmt.getCondition());
+      }
+    }
+
+    @Override
+    public void visitReturnStmt(ReturnStmt returnStmt) {
+      super.visitReturnStmt(returnStmt);
+      if (enclosingFunction == null) {
+        return;
+      }
+      final Type returnType =
+          enclosingFunction.getPrototype().getReturnType().getWithoutQualifiers();
+      if (returnType == VoidType.VOID) {
+        if (returnStmt.hasExpr()) {
+          reportError("A void function returns a value");
+        }
+        return;
+      }
+      if (!returnStmt.hasExpr()) {
+        reportError("A non-void function returns no value");
+        return;
+      }
+      checkSizesMatch(returnType, returnStmt.getExpr(), "returned value");
+    }
+
+    @Override
+    public void visitVariablesDeclaration(VariablesDeclaration variablesDeclaration) {
+      super.visitVariablesDeclaration(variablesDeclaration);
+      for (VariableDeclInfo declInfo : variablesDeclaration.getDeclInfos()) {
+        if (declInfo.hasArrayInfo() || !(declInfo.getInitializer() instanceof ScalarInitializer)) {
+          continue;
+        }
+        checkSizesMatch(variablesDeclaration.getBaseType().getWithoutQualifiers(),
+            ((ScalarInitializer) declInfo.getInitializer()).getExpr(),
+            "initializer of '" + declInfo.getName() + "'");
+      }
+    }
+
+    @Override
+    public void visitBinaryExpr(BinaryExpr binaryExpr) {
+      super.visitBinaryExpr(binaryExpr);
+      if (binaryExpr.getOp() != BinOp.ASSIGN) {
+        return;
+      }
+      final Type lhsType = typer.lookupType(binaryExpr.getLhs());
+      if (lhsType != null) {
+        checkSizesMatch(lhsType.getWithoutQualifiers(), binaryExpr.getRhs(), "assigned value");
+      }
+    }
+
+    private void checkCondition(Expr condition) {
+      final Type type = typer.lookupType(condition);
+      // Comparisons of vectors are typed as boolean vectors even when they are not, so only
+      // numeric types are known to be wrong.
+      if (type != null && type.getWithoutQualifiers() instanceof BasicType
+          && !((BasicType) type.getWithoutQualifiers()).isBoolean()) {
+        reportError("A condition has type " + type.getWithoutQualifiers());
+      }
+    }
+
+    private void checkSizesMatch(Type expectedType, Expr expr, String description) {
+      final Type actualType = typer.lookupType(expr);
+      if (!(expectedType instanceof BasicType) || actualType == null
+          || !(actualType.getWithoutQualifiers() instanceof BasicType)) {
+        return;
+      }
+      final BasicType expected = (BasicType) expectedType;
+      final BasicType actual = (BasicType) actualType.getWithoutQualifiers();
+      // No conversion changes the number of elements.  Boolean results are left alone, as above.
+      if (!expected.isBoolean() && !actual.isBoolean()
+          && expected.getNumElements() != actual.getNumElements()) {
+        reportError("The " + description + " has type " + actual + " where " + expected
+            + " is required");
+      }
+    }
+
+  }
+
+}
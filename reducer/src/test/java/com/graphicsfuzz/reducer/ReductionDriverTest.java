@@ -34,10 +34,13 @@ import com.graphicsfuzz.common.util.IdGenerator;
 import com.graphicsfuzz.common.util.ParseHelper;
 import com.graphicsfuzz.common.util.ParseTimeoutException;
 import com.graphicsfuzz.common.util.RandomWrapper;
+import com.graphicsfuzz.common.util.ReductionProgressHelper;
 import com.graphicsfuzz.common.util.ShaderKind;
 import com.graphicsfuzz.common.util.UniformsInfo;
 import com.graphicsfuzz.reducer.glslreducers.GlslReductionState;
 import com.graphicsfuzz.reducer.glslreducers.GlslReductionStateFileWriter;
+import com.graphicsfuzz.reducer.glslreducers.IReductionPlan;
+import com.graphicsfuzz.reducer.glslreducers.NoMoreToReduceException;
 import com.graphicsfuzz.reducer.reductionopportunities.IReductionOpportunity;
 import com.graphicsfuzz.reducer.reductionopportunities.ReductionOpportunities;
 import com.graphicsfuzz.reducer.reductionopportunities.ReductionOpportunityContext;
@@ -46,9 +49,11 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.junit.Rule;
@@ -412,6 +417,43 @@ public class ReductionDriverTest {
 
   }
 
+  @Test
+  public void testContinuedReductionNumbersStepsAfterExistingOnes() throws Exception {
+    final String program = ""
+          + "void main() {"
+          + "  int a;"
+          + "  int b;"
+          + "  int c;"
+          + "  int d;"
+          + "  int e;"
+          + "  a = 1;"
+          + "  b = 2;"
+          + "  c = 3;"
+          + "  d = 4;"
+          + "  e = 5;"
+          + "}";
+    reduce(item -> true, program, "{ }", false, true, 3, 0);
+    final File workDir = testFolder.getRoot();
+    final int lastStep = ReductionProgressHelper.getLatestReductionStepAny(workDir, "temp").get();
+    assertEquals(3, lastStep);
+
+    // Continue as Reduce does with --continue_previous_reduction.
+    final ShadingLanguageVersion version = ShadingLanguageVersion.ESSL_100;
+    final File fragmentShader = new File(workDir, "temp_reduced_0003_success.frag");
+    final GlslReductionState state = new GlslReductionState(Optional.empty(),
+        Optional.of(Helper.parse(fragmentShader, true)),
+        new UniformsInfo(new File(workDir, "temp.json")));
+    new ReductionDriver(new ReductionOpportunityContext(true, version, new RandomWrapper(0),
+        new IdGenerator()), false, state)
+        .doReduction(getPrefix(new File(workDir, "temp.frag")), lastStep,
+            new GlslReductionStateFileWriter(version), item -> true, workDir, 2);
+
+    assertTrue(new File(workDir, "temp_reduced_0003_success.frag").exists());
+    assertTrue(new File(workDir, "temp_reduced_0004_success.frag").exists());
+    assertTrue(new File(workDir, "temp_reduced_0005_success.frag").exists());
+    assertEquals(5, (int) ReductionProgressHelper.getLatestReductionStepAny(workDir, "temp").get());
+  }
+
   @Test
   public void testNoReductionLoop() throws Exception {
     String program = "void main()\n"
@@ -505,6 +547,183 @@ public class ReductionDriverTest {
         new File(resultFilesPrefix + ".vert"), true));
   }
 
+  @Test
+  public void testParallelJudges() throws Exception {
+    final String program = "void main() {"
+        + "  int a;"
+        + "  int keep;"
+        + "  int b;"
+        + "  keep = 1;"
+        + "  a = 2;"
+        + "  b = 3;"
+        + "}";
+    final File tempFile = testFolder.newFile("temp.frag");
+    final File tempJsonFile = testFolder.newFile("temp.json");
+    FileUtils.writeStringToFile(tempFile, program, StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(tempJsonFile, "{ }", StandardCharsets.UTF_8);
+
+    final ShadingLanguageVersion version = ShadingLanguageVersion.ESSL_100;
+    final GlslReductionState state = new GlslReductionState(Optional.empty(),
+        Optional.of(ParseHelper.parse(tempFile, false)), new UniformsInfo(tempJsonFile));
+
+    final IFileJudge keepsAssignment = filesPrefix -> {
+      try {
+        return FileUtils.readFileToString(new File(filesPrefix + ".frag"), StandardCharsets.UTF_8)
+            .contains("keep = 1");
+      } catch (IOException exception) {
+        throw new FileJudgeException(exception);
+      }
+    };
+
+    final String resultFilesPrefix = new ReductionDriver(
+        new ReductionOpportunityContext(true, version, new RandomWrapper(0), new IdGenerator()),
+        false, state)
+        .doReduction(getPrefix(tempFile), 0, new GlslReductionStateFileWriter(version),
+            Arrays.asList(keepsAssignment, keepsAssignment, keepsAssignment, keepsAssignment),
+            testFolder.getRoot(), -1);
+
+    CompareAsts.assertEqualAsts("void main() { int keep; keep = 1; }",
+        ParseHelper.parse(new File(resultFilesPrefix + ".frag"), true));
+  }
+
+  @Test
+  public void testPlanLearnsOnlyOfCandidatesBeforeTheCommittedOne() throws Exception {
+    final File tempJsonFile = testFolder.newFile("temp.json");
+    FileUtils.writeStringToFile(tempJsonFile, "{ }", StandardCharsets.UTF_8);
+    final UniformsInfo uniformsInfo = new UniformsInfo(tempJsonFile);
+    final ShadingLanguageVersion version = ShadingLanguageVersion.ESSL_100;
+    final GlslReductionState state = new GlslReductionState(Optional.empty(),
+        Optional.of(ParseHelper.parse("void main() { int initial; int candidate2; }", false)),
+        uniformsInfo);
+
+    // Of the four candidates judged together, only the third is interesting.
+    final IShaderTextJudge isThirdCandidate = (shaderJobName, shaderJobFiles) ->
+        shaderJobFiles.get(".frag").contains("candidate2");
+    final RecordingPlan plan = new RecordingPlan(4, uniformsInfo);
+
+    new ReductionDriver(plan, false, state)
+        .doInMemoryReduction(getPrefix(testFolder.newFile("temp.frag")), 0,
+            new GlslReductionStateFileWriter(version),
+            Arrays.asList(isThirdCandidate, isThirdCandidate, isThirdCandidate, isThirdCandidate),
+            null, testFolder.getRoot(), -1);
+
+    // The success is reported to the plan that derived the third candidate, which has been told of
+    // the failure of only the two candidates before it.
+    assertEquals(Arrays.asList(
+        Arrays.asList("success"),
+        Arrays.asList("success", "candidate0", "fail", "candidate1", "fail", "candidate2",
+            "success")),
+        plan.eventsOnSuccess);
+  }
+
+  @Test
+  public void testInMemoryReductionWithTrace() throws Exception {
+    final String program = "void main() {"
+        + "  int a;"
+        + "  int keep;"
+        + "  keep = 1;"
+        + "  a = 2;"
+        + "}";
+    final File tempFile = testFolder.newFile("temp.frag");
+    final File tempJsonFile = testFolder.newFile("temp.json");
+    FileUtils.writeStringToFile(tempFile, program, StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(tempJsonFile, "{ }", StandardCharsets.UTF_8);
+
+    final ShadingLanguageVersion version = ShadingLanguageVersion.ESSL_100;
+    final GlslReductionState state = new GlslReductionState(Optional.empty(),
+        Optional.of(ParseHelper.parse(tempFile, false)), new UniformsInfo(tempJsonFile));
+
+    final IShaderTextJudge keepsAssignment = (shaderJobName, shaderJobFiles) ->
+        shaderJobFiles.get(".frag").contains("keep = 1");
+
+    final String resultFilesPrefix = new ReductionDriver(
+        new ReductionOpportunityContext(true, version, new RandomWrapper(0), new IdGenerator()),
+        false, state)
+        .doInMemoryReduction(getPrefix(tempFile), 0, new GlslReductionStateFileWriter(version),
+            Arrays.asList(keepsAssignment, keepsAssignment), new ReductionStepTrace(2),
+            testFolder.getRoot(), -1);
+
+    CompareAsts.assertEqualAsts("void main() { int keep; keep = 1; }",
+        ParseHelper.parse(new File(resultFilesPrefix + ".frag"), true));
+
+    // The trace has been flushed on return, so the successful steps are available for a
+    // subsequent reduction to continue from.
+    final File[] successfulSteps = testFolder.getRoot().listFiles(
+        (dir, name) -> name.matches("temp_reduced_[0-9]+_success\\.frag"));
+    assertNotNull(successfulSteps);
+    assertTrue(successfulSteps.length > 0);
+    for (File step : successfulSteps) {
+      assertTrue(FileUtils.readFileToString(step, StandardCharsets.UTF_8).contains("keep = 1"));
+      assertTrue(new File(FilenameUtils.removeExtension(step.getAbsolutePath()) + ".json")
+          .isFile());
+    }
+  }
+
+  /**
+   * A plan that derives a given number of candidates, each declaring a differently named variable,
+   * and records what it is told.  Copies of the plan record separately, but share the record of
+   * what each copy had been told whenever it was told of a success.
+   */
+  private static class RecordingPlan implements IReductionPlan {
+
+    private final int numCandidates;
+    private final UniformsInfo uniformsInfo;
+    private final List<String> events;
+    private final List<List<String>> eventsOnSuccess;
+    private final AtomicInteger nextCandidate;
+
+    RecordingPlan(int numCandidates, UniformsInfo uniformsInfo) {
+      this(numCandidates, uniformsInfo, new ArrayList<>(), new ArrayList<>(), new AtomicInteger());
+    }
+
+    private RecordingPlan(int numCandidates, UniformsInfo uniformsInfo, List<String> events,
+        List<List<String>> eventsOnSuccess, AtomicInteger nextCandidate) {
+      this.numCandidates = numCandidates;
+      this.uniformsInfo = uniformsInfo;
+      this.events = events;
+      this.eventsOnSuccess = eventsOnSuccess;
+      this.nextCandidate = nextCandidate;
+    }
+
+    @Override
+    public void update(boolean interesting) {
+      events.add(interesting ? "success" : "fail");
+      if (interesting) {
+        eventsOnSuccess.add(new ArrayList<>(events));
+      }
+    }
+
+    @Override
+    public IReductionState applyReduction(IReductionState state)
+        throws NoMoreToReduceException {
+      final int candidate = nextCandidate.getAndIncrement();
+      if (candidate >= numCandidates) {
+        throw new NoMoreToReduceException();
+      }
+      events.add("candidate" + candidate);
+      try {
+        return new GlslReductionState(Optional.empty(),
+            Optional.of(ParseHelper.parse("void main() { int candidate" + candidate + "; }",
+                false)),
+            uniformsInfo);
+      } catch (IOException | ParseTimeoutException exception) {
+        throw new RuntimeException(exception);
+      }
+    }
+
+    @Override
+    public void replenish() {
+      // Nothing to replenish.
+    }
+
+    @Override
+    public IReductionPlan copy() {
+      return new RecordingPlan(numCandidates, uniformsInfo, new ArrayList<>(events),
+          eventsOnSuccess, nextCandidate);
+    }
+
+  }
+
   private String getPrefix(File tempFile) {
     return FilenameUtils.removeExtension(tempFile.getAbsolutePath());
   }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.filejudge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.graphicsfuzz.reducer.IFileJudge;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CachingFileJudgeTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void testResultsPersistAcrossCaches() throws Exception {
+    final File cacheDir = testFolder.newFolder("cache");
+    final String prefix = writeShaderJob("a", "void main() { }");
+
+    final AtomicInteger judgeCalls = new AtomicInteger(0);
+    final IFileJudge countingJudge = filesPrefix -> {
+      judgeCalls.incrementAndGet();
+      return true;
+    };
+
+    assertTrue(new CachingFileJudge(countingJudge, new JudgeResultCache(cacheDir),
+        "config", "device").isInteresting(prefix));
+    assertEquals(1, judgeCalls.get());
+
+    // A fresh cache over the same directory, as for a resumed reduction, knows the result.
+    final JudgeResultCache reloaded = new JudgeResultCache(cacheDir);
+    assertEquals(1, reloaded.size());
+    assertTrue(new CachingFileJudge(countingJudge, reloaded, "config", "device")
+        .isInteresting(prefix));
+    assertEquals(1, judgeCalls.get());
+
+    // The same shader job judged under another configuration or on another device is dispatched.
+    assertTrue(new CachingFileJudge(countingJudge, reloaded, "other config", "device")
+        .isInteresting(prefix));
+    assertTrue(new CachingFileJudge(countingJudge, reloaded, "config", "other device")
+        .isInteresting(prefix));
+    assertEquals(3, judgeCalls.get());
+  }
+
+  @Test
+  public void testKeyDependsOnShaderContents() throws Exception {
+    final File cacheDir = testFolder.newFolder("cache");
+    final IFileJudge judge = filesPrefix -> filesPrefix.endsWith("a");
+    final JudgeResultCache cache = new JudgeResultCache(cacheDir);
+    assertTrue(new CachingFileJudge(judge, cache, "config", "device")
+        .isInteresting(writeShaderJob("a", "void main() { }")));
+    assertFalse(new CachingFileJudge(judge, cache, "config", "device")
+        .isInteresting(writeShaderJob("b", "void main() { int x; }")));
+    // Identical contents under a different name hit the cache.
+    assertTrue(new CachingFileJudge(judge, cache, "config", "device")
+        .isInteresting(writeShaderJob("c", "void main() { }")));
+  }
+
+  @Test
+  public void testUninterestingResultsAreNotCached() throws Exception {
+    final String prefix = writeShaderJob("a", "void main() { }");
+    final AtomicInteger judgeCalls = new AtomicInteger(0);
+    // Not interesting at first, as if the device failed to render the shader, then interesting.
+    final IFileJudge flakyJudge = filesPrefix -> judgeCalls.incrementAndGet() > 1;
+    final CachingFileJudge cachingJudge = new CachingFileJudge(flakyJudge,
+        new JudgeResultCache(testFolder.newFolder("cache")), "config", "device");
+    assertFalse(cachingJudge.isInteresting(prefix));
+    assertTrue(cachingJudge.isInteresting(prefix));
+    assertTrue(cachingJudge.isInteresting(prefix));
+    assertEquals(2, judgeCalls.get());
+  }
+
+  @Test
+  public void testResultsAreSharedBetweenLiveCaches() throws Exception {
+    final File cacheDir = testFolder.newFolder("cache");
+    final String prefix = writeShaderJob("a", "void main() { }");
+    // Caches over the same directory, as in two reductions running at once.
+    final JudgeResultCache first = new JudgeResultCache(cacheDir);
+    final JudgeResultCache second = new JudgeResultCache(cacheDir);
+
+    final AtomicInteger judgeCalls = new AtomicInteger(0);
+    final IFileJudge countingJudge = filesPrefix -> {
+      judgeCalls.incrementAndGet();
+      return true;
+    };
+    assertTrue(new CachingFileJudge(countingJudge, first, "config", "device")
+        .isInteresting(prefix));
+    assertTrue(new CachingFileJudge(countingJudge, second, "config", "device")
+        .isInteresting(prefix));
+    assertEquals(1, judgeCalls.get());
+    assertEquals(1, second.size());
+  }
+
+  private String writeShaderJob(String name, String fragmentShader) throws Exception {
+    final File prefix = new File(testFolder.getRoot(), name);
+    FileUtils.writeStringToFile(new File(prefix + ".frag"), fragmentShader,
+        StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(new File(prefix + ".json"), "{ }", StandardCharsets.UTF_8);
+    return prefix.getAbsolutePath();
+  }
+
+}
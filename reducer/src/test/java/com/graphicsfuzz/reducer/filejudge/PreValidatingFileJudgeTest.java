@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.filejudge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.graphicsfuzz.common.glslversion.ShadingLanguageVersion;
+import com.graphicsfuzz.reducer.IFileJudge;
+import com.graphicsfuzz.reducer.IShaderTextJudge;
+import com.graphicsfuzz.reducer.util.ShaderPreValidator;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PreValidatingFileJudgeTest {
+
+  private static final String HEADER = "#version 100\n// END OF GENERATED HEADER\n";
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  private final AtomicInteger judgeCalls = new AtomicInteger(0);
+
+  private class CountingJudge implements IFileJudge, IShaderTextJudge {
+
+    @Override
+    public boolean isInteresting(String filesPrefix) {
+      judgeCalls.incrementAndGet();
+      return true;
+    }
+
+    @Override
+    public boolean isInteresting(String shaderJobName, Map<String, String> shaderJobFiles) {
+      judgeCalls.incrementAndGet();
+      return true;
+    }
+
+  }
+
+  @Test
+  public void testInvalidShaderJobsAreNotDelegated() throws Exception {
+    final ShaderPreValidator preValidator = new ShaderPreValidator(ShadingLanguageVersion.ESSL_100);
+    final PreValidatingFileJudge judge = new PreValidatingFileJudge(new CountingJudge(),
+        preValidator, false);
+
+    final File prefix = new File(testFolder.getRoot(), "a");
+    FileUtils.writeStringToFile(new File(prefix + ".frag"),
+        HEADER + "void main() { float x = y; }", StandardCharsets.UTF_8);
+    assertFalse(judge.isInteresting(prefix.getAbsolutePath()));
+
+    final Map<String, String> shaderJobFiles = new HashMap<>();
+    shaderJobFiles.put(".json", "{ }");
+    shaderJobFiles.put(".frag", HEADER + "void main() { float y; float x = y; }");
+    assertTrue(judge.isInteresting("b", shaderJobFiles));
+
+    assertEquals(1, judgeCalls.get());
+    assertEquals(2, preValidator.getNumChecked());
+    assertEquals(1, preValidator.getNumRejected());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testInvalidShaderJobCanBeAnError() throws Exception {
+    final Map<String, String> shaderJobFiles = new HashMap<>();
+    shaderJobFiles.put(".frag", HEADER + "void main() { float x = y; }");
+    new PreValidatingFileJudge(new CountingJudge(),
+        new ShaderPreValidator(ShadingLanguageVersion.ESSL_100), true)
+        .isInteresting("a", shaderJobFiles);
+  }
+
+  @Test
+  public void testInMemorySupportFollowsTheInnermostJudge() throws Exception {
+    final ShaderPreValidator preValidator = new ShaderPreValidator(ShadingLanguageVersion.ESSL_100);
+    final JudgeResultCache cache = new JudgeResultCache(testFolder.newFolder("cache"));
+    final IFileJudge fileOnlyJudge = filesPrefix -> true;
+    // Decorators implement IShaderTextJudge whatever they wrap.
+    assertFalse(IShaderTextJudge.canJudgeInMemory(fileOnlyJudge));
+    assertFalse(IShaderTextJudge.canJudgeInMemory(new PreValidatingFileJudge(
+        new CachingFileJudge(fileOnlyJudge, cache, "config", "device"), preValidator, false)));
+    assertTrue(IShaderTextJudge.canJudgeInMemory(new PreValidatingFileJudge(
+        new CachingFileJudge(new CountingJudge(), cache, "config", "device"), preValidator,
+        false)));
+  }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.glslreducers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.graphicsfuzz.common.ast.TranslationUnit;
+import com.graphicsfuzz.common.glslversion.ShadingLanguageVersion;
+import com.graphicsfuzz.common.tool.PrettyPrinterVisitor;
+import com.graphicsfuzz.common.util.IdGenerator;
+import com.graphicsfuzz.common.util.ParseHelper;
+import com.graphicsfuzz.common.util.RandomWrapper;
+import com.graphicsfuzz.reducer.reductionopportunities.ReductionOpportunityContext;
+import com.graphicsfuzz.reducer.reductionopportunities.TranslationUnitAnalysis;
+import org.junit.Test;
+
+public class WorkingCopiesTest {
+
+  private final ReductionOpportunityContext context = new ReductionOpportunityContext(false,
+      ShadingLanguageVersion.ESSL_100, new RandomWrapper(0), new IdGenerator());
+
+  @Test
+  public void testUnchangedCopyIsReused() throws Exception {
+    final TranslationUnit shader = ParseHelper.parse("struct S { int x; }; "
+        + "void main() { S s = S(1); }", false);
+    final WorkingCopies workingCopies = new WorkingCopies();
+
+    final TranslationUnit copy = workingCopies.take(shader);
+    assertNotSame(shader, copy);
+    assertEquals(PrettyPrinterVisitor.prettyPrintAsString(shader),
+        PrettyPrinterVisitor.prettyPrintAsString(copy));
+    final TranslationUnitAnalysis analysis = workingCopies.getAnalysis(copy, context);
+    assertSame(copy, analysis.getTranslationUnit());
+
+    workingCopies.giveBack(shader, copy, analysis);
+    assertSame(copy, workingCopies.take(shader));
+    assertSame(analysis, workingCopies.getAnalysis(copy, context));
+
+    // A copy that was not handed back may have been changed, so must not be handed out again.
+    final TranslationUnit secondCopy = workingCopies.take(shader);
+    assertNotSame(copy, secondCopy);
+    assertNotSame(analysis, workingCopies.getAnalysis(secondCopy, context));
+  }
+
+  @Test
+  public void testCopyOfOtherShaderIsNotReused() throws Exception {
+    final TranslationUnit shader = ParseHelper.parse("void main() { }", false);
+    final TranslationUnit otherShader = ParseHelper.parse("void main() { }", false);
+    final WorkingCopies workingCopies = new WorkingCopies();
+
+    final TranslationUnit copy = workingCopies.take(shader);
+    workingCopies.giveBack(shader, copy, workingCopies.getAnalysis(copy, context));
+    final TranslationUnit otherCopy = workingCopies.take(otherShader);
+    assertNotSame(copy, otherCopy);
+    assertNotSame(otherShader, otherCopy);
+  }
+
+}
@@ -18,6 +18,8 @@ package com.graphicsfuzz.reducer.reductionopportunities;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import com.graphicsfuzz.common.ast.TranslationUnit;
 import com.graphicsfuzz.common.glslversion.ShadingLanguageVersion;
@@ -644,4 +646,34 @@ public class ReductionOpportunitiesTest {
           PrettyPrinterVisitor.prettyPrintAsString(tu));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testFindersShareAnalysisOfUnchangedTranslationUnit() throws Exception {
+    final String program = "int unused; float f(float x) { return x * 2.0; }"
+          + "void main() { float a = f(1.0); if (" + Constants.GLF_DEAD + "(false)) { a = 2.0; } }";
+    final TranslationUnit tu = ParseHelper.parse(program, false);
+    final ReductionOpportunityContext context = new ReductionOpportunityContext(true,
+          ShadingLanguageVersion.ESSL_100, new RandomWrapper(0), new IdGenerator());
+
+    final TranslationUnitAnalysis analysis = context.getAnalysis(tu);
+    assertNotSame(analysis, context.getAnalysis(tu));
+    final ReductionOpportunityContext sharingContext = context.withAnalysis(analysis);
+    assertSame(analysis, sharingContext.getAnalysis(tu));
+    assertSame(analysis.getTyper(), sharingContext.getAnalysis(tu).getTyper());
+    assertNotSame(analysis, sharingContext.getAnalysis(ParseHelper.parse(program, false)));
+
+    // Sharing the analysis must not change the opportunities that are found.
+    final List<String> expected = new ArrayList<>();
+    for (IReductionOpportunity opportunity : ReductionOpportunities.getReductionOpportunities(
+          ParseHelper.parse(program, false), context)) {
+      expected.add(opportunity.getClass().getName());
+    }
+    final List<String> actual = new ArrayList<>();
+    for (IReductionOpportunity opportunity : ReductionOpportunities.getReductionOpportunities(tu,
+          sharingContext)) {
+      actual.add(opportunity.getClass().getName());
+    }
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, actual);
+  }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.tool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BugPointCrashesTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void testSignatureIgnoresMessageAndWrapping() throws Exception {
+    // Made at the same place, so that the stack traces match.
+    final RuntimeException[] exceptions = new RuntimeException[2];
+    for (int i = 0; i < exceptions.length; i++) {
+      exceptions[i] = new RuntimeException("message " + i);
+    }
+    final RuntimeException first = exceptions[0];
+    final RuntimeException second = exceptions[1];
+    assertEquals(BugPointCrashes.getSignature(first), BugPointCrashes.getSignature(second));
+    assertEquals(BugPointCrashes.getSignature(first),
+        BugPointCrashes.getSignature(new RuntimeException(first)));
+    assertNotEquals(BugPointCrashes.getSignature(first),
+        BugPointCrashes.getSignature(new IllegalStateException()));
+  }
+
+  @Test
+  public void testSmallestReproducerIsKeptPerSignature() throws Exception {
+    final File crashesDir = new File(testFolder.getRoot(), "crashes");
+    final BugPointCrashes crashes = new BugPointCrashes(crashesDir);
+    final RuntimeException exception = new RuntimeException("message");
+
+    assertTrue(crashes.record(exception, writeShader("medium", "void main() { f(); }"), 1));
+    assertFalse(crashes.record(exception, writeShader("large", "void main() { f(); g(); }"), 2));
+    assertTrue(crashes.record(exception, writeShader("small", "void main() { }"), 3));
+    assertTrue(crashes.record(new IllegalStateException(),
+        writeShader("other", "void main() { h(); }"), 4));
+    assertEquals(2, crashes.getNumSignatures());
+
+    final File crashDir = new File(crashesDir, "crash_0");
+    assertEquals("void main() { }", FileUtils.readFileToString(
+        new File(crashDir, BugPointCrashes.REPRODUCER_SHADER), StandardCharsets.UTF_8));
+    assertEquals("{ \"small\": 1 }", FileUtils.readFileToString(
+        new File(crashDir, BugPointCrashes.REPRODUCER_JSON), StandardCharsets.UTF_8));
+    assertTrue(FileUtils.readFileToString(new File(crashDir, BugPointCrashes.EXCEPTION_FILE),
+        StandardCharsets.UTF_8).startsWith("Seed: 3\n"));
+    assertTrue(new File(crashesDir, "crash_1").isDirectory());
+  }
+
+  private File writeShader(String name, String text) throws Exception {
+    final File shader = testFolder.newFile(name + ".frag");
+    FileUtils.writeStringToFile(shader, text, StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(testFolder.newFile(name + ".json"), "{ \"" + name + "\": 1 }",
+        StandardCharsets.UTF_8);
+    return shader;
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.reducer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.graphicsfuzz.common.glslversion.ShadingLanguageVersion;
+import com.graphicsfuzz.common.util.ParseHelper;
+import org.junit.Test;
+
+public class ShaderPreValidatorTest {
+
+  private static final String[] VALID_PROGRAMS = {
+      "void main() { }",
+      "uniform vec2 resolution; void main() {"
+          + " vec2 uv = gl_FragCoord.xy / resolution;"
+          + " if (uv == resolution) { gl_FragColor = vec4(uv, 0.0, 1.0); } }",
+      "struct S { int a; float b; }; float f(S s) { return s.b; } float f(float x, float y) {"
+          + " return x; } void main() { S s = S(1, 2.0); float z = f(s) + f(1.0, 2.0); }",
+      "bool g(vec3 v) { bool b = v == vec3(1.0); return b; }"
+          + " void main() { float x = 1.0; for (int i = 0; i < 10; i++) { x = x * 2.0; }"
+          + " while (g(vec3(x))) { x = 0.0; } }",
+      "mat2 m; void main() { vec2 v = m * vec2(1.0); float x = v.x; v = vec2(x); }"
+  };
+
+  @Test
+  public void testValidProgramsAreNotRejected() throws Exception {
+    final ShaderPreValidator preValidator = new ShaderPreValidator(ShadingLanguageVersion.ESSL_100);
+    for (String program : VALID_PROGRAMS) {
+      assertFalse(program, preValidator.findError(ParseHelper.parse(program, false)).isPresent());
+    }
+    assertEquals(VALID_PROGRAMS.length, preValidator.getNumChecked());
+    assertEquals(0, preValidator.getNumRejected());
+  }
+
+  @Test
+  public void testUndeclaredVariable() throws Exception {
+    checkRejected("void main() { float x = y; }");
+    // Declared, but no longer in scope.
+    checkRejected("void main() { { float y; } float x = y; }");
+  }
+
+  @Test
+  public void testUserDefinedFunctionArity() throws Exception {
+    checkRejected("float f(float x) { return x; } void main() { f(1.0, 2.0); }");
+  }
+
+  @Test
+  public void testNumericCondition() throws Exception {
+    checkRejected("void main() { if (1.0) { } }");
+    checkRejected("void main() { int i = 1; while (i) { } }");
+  }
+
+  @Test
+  public void testMismatchedReturn() throws Exception {
+    checkRejected("void f() { return 1.0; } void main() { }");
+    checkRejected("float f() { return; } void main() { }");
+    checkRejected("vec2 f() { return vec3(1.0); } void main() { }");
+  }
+
+  @Test
+  public void testMismatchedSizes() throws Exception {
+    checkRejected("void main() { vec2 v = vec3(1.0); }");
+    checkRejected("void main() { vec4 v; v = vec3(1.0); }");
+  }
+
+  private static void checkRejected(String program) throws Exception {
+    final ShaderPreValidator preValidator = new ShaderPreValidator(ShadingLanguageVersion.ESSL_100);
+    assertTrue(program, preValidator.findError(ParseHelper.parse(program, false)).isPresent());
+    assertEquals(1, preValidator.getNumRejected());
+  }
+
+}
@@ -16,22 +16,23 @@
 
 package com.graphicsfuzz.serverpublic;
 
-import com.graphicsfuzz.server.FileDownloadServlet;
 import com.graphicsfuzz.server.FuzzerServiceImpl;
 import com.graphicsfuzz.server.FuzzerServiceManagerImpl;
 import com.graphicsfuzz.server.LocalArtifactManager;
+import com.graphicsfuzz.server.WorkQueue;
 import com.graphicsfuzz.server.thrift.FuzzerService;
 import com.graphicsfuzz.server.thrift.FuzzerServiceManager;
 import com.graphicsfuzz.util.ToolPaths;
 import java.nio.file.Paths;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TJSONProtocol;
 import org.apache.thrift.server.TServlet;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AllowSymLinkAliasChecker;
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.servlet.DefaultServlet;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.slf4j.Logger;
@@ -44,7 +45,8 @@ public final class FuzzerServer {
   private final String shaderSetsDir = "shaderfamilies";
   private final String processingDir = "processing";
 
-  private final ExecutorService executorService = Executors.newCachedThreadPool();
+  private final ExecutorService executorService =
+      WorkQueue.newScheduler(WorkQueue.DEFAULT_SCHEDULER_THREADS);
 
   private final int port;
 
@@ -72,6 +74,8 @@ public final class FuzzerServer {
 
     ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
     context.setContextPath("/");
+    // The static directory may be reached through symbolic links.
+    context.addAliasCheck(new AllowSymLinkAliasChecker());
 
     {
       ServletHolder sh = new ServletHolder();
@@ -90,12 +94,7 @@ public final class FuzzerServer {
       context.addServlet(shManager, "/manageAPI");
     }
 
-    final String staticDir = ToolPaths.getStaticDir();
-    context.addServlet(
-          new ServletHolder(
-                new FileDownloadServlet(
-                    (pathInfo, token) -> Paths.get(staticDir, pathInfo).toFile(), staticDir)),
-          "/static/*");
+    context.addServlet(fileServlet(ToolPaths.getStaticDir()), "/static/*");
 
     HandlerList handlerList = new HandlerList();
     handlerList.addHandler(context);
@@ -109,4 +108,23 @@ public final class FuzzerServer {
     server.start();
     server.join();
   }
+
+  /**
+   * Makes a servlet that serves the files under a directory.  Jetty's default servlet answers
+   * conditional and range requests, using ETag and Last-Modified headers, and caches content types
+   * and the contents of small files, which it sends from memory-mapped buffers.
+   */
+  private static ServletHolder fileServlet(String resourceBase) {
+    final ServletHolder holder = new ServletHolder(new DefaultServlet());
+    holder.setInitParameter("resourceBase", resourceBase);
+    holder.setInitParameter("pathInfoOnly", "true");
+    holder.setInitParameter("dirAllowed", "false");
+    holder.setInitParameter("etags", "true");
+    holder.setInitParameter("acceptRanges", "true");
+    holder.setInitParameter("useFileMappedBuffer", "true");
+    holder.setInitParameter("maxCachedFiles", "4096");
+    holder.setInitParameter("maxCachedFileSize", Integer.toString(1024 * 1024));
+    holder.setInitParameter("maxCacheSize", Integer.toString(128 * 1024 * 1024));
+    return holder;
+  }
 }
@@ -19,16 +19,18 @@ package com.graphicsfuzz.server;
 import com.graphicsfuzz.server.thrift.FuzzerService;
 import com.graphicsfuzz.server.thrift.FuzzerServiceManager;
 import com.graphicsfuzz.server.webui.WebUi;
+import com.graphicsfuzz.server.webui.WebUiConstants;
 import com.graphicsfuzz.util.ToolPaths;
 import java.nio.file.Paths;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TJSONProtocol;
 import org.apache.thrift.server.TServlet;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AllowSymLinkAliasChecker;
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.servlet.DefaultServlet;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.slf4j.Logger;
@@ -41,17 +43,30 @@ public final class FuzzerServer {
   private final String shaderSetsDir = "shaderfamilies";
   private final String processingDir = "processing";
 
-  private final ExecutorService executorService = Executors.newCachedThreadPool();
+  private final ExecutorService executorService;
 
   private final int port;
 
+  private final int maxConcurrentCommands;
+
+  private final int maxConcurrentReductions;
+
   public FuzzerServer(int port) {
     this("", port);
   }
 
   public FuzzerServer(String workingDir, int port) {
+    this(workingDir, port, WorkQueue.DEFAULT_SCHEDULER_THREADS, 1,
+        FuzzerServiceImpl.DEFAULT_MAX_CONCURRENT_REDUCTIONS);
+  }
+
+  public FuzzerServer(String workingDir, int port, int schedulerThreads,
+      int maxConcurrentCommands, int maxConcurrentReductions) {
     this.workingDir = workingDir;
     this.port = port;
+    this.executorService = WorkQueue.newScheduler(schedulerThreads);
+    this.maxConcurrentCommands = maxConcurrentCommands;
+    this.maxConcurrentReductions = maxConcurrentReductions;
   }
 
   public void start() throws Exception {
@@ -62,7 +77,11 @@ public final class FuzzerServer {
             Paths.get(workingDir, processingDir).toString()
         ),
         Paths.get(workingDir, processingDir).toString(),
-        executorService);
+        executorService,
+        FuzzerServiceImpl.DEFAULT_JOB_WAIT_MILLIS,
+        FuzzerServiceImpl.DEFAULT_MAX_HELD_JOB_REQUESTS,
+        maxConcurrentCommands,
+        maxConcurrentReductions);
 
     FuzzerService.Processor processor =
         new FuzzerService.Processor<FuzzerService.Iface>(fuzzerService);
@@ -74,6 +93,8 @@ public final class FuzzerServer {
 
     ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
     context.setContextPath("/");
+    // Shader families and results are often symbolic links into other directories.
+    context.addAliasCheck(new AllowSymLinkAliasChecker());
 
     {
       ServletHolder sh = new ServletHolder();
@@ -94,12 +115,13 @@ public final class FuzzerServer {
 
     context.addServlet(new ServletHolder(new WebUi()), "/webui/*");
 
-    final String staticDir = ToolPaths.getStaticDir();
-    context.addServlet(
-        new ServletHolder(
-            new FileDownloadServlet(
-                (pathInfo, token) -> Paths.get(staticDir, pathInfo).toFile(), staticDir)),
-        "/static/*");
+    // Result images and other files linked from the web UI are relative to the current directory.
+    // They are rewritten while the server runs, so they are not memory-mapped: on Windows a mapped
+    // file cannot be rewritten or deleted.
+    context.addServlet(fileServlet(Paths.get("").toAbsolutePath().toString(), false),
+        "/webui/" + WebUiConstants.FILE_ROUTE + "/*");
+
+    context.addServlet(fileServlet(ToolPaths.getStaticDir(), true), "/static/*");
 
     HandlerList handlerList = new HandlerList();
     handlerList.addHandler(context);
@@ -113,4 +135,24 @@ public final class FuzzerServer {
     server.start();
     server.join();
   }
+
+  /**
+   * Makes a servlet that serves the files under a directory.  Jetty's default servlet answers
+   * conditional and range requests, using ETag and Last-Modified headers, and caches content types
+   * and the contents of small files, which it sends from memory-mapped buffers if
+   * useFileMappedBuffer holds.  Mapping suits only files that do not change while the server runs.
+   */
+  private static ServletHolder fileServlet(String resourceBase, boolean useFileMappedBuffer) {
+    final ServletHolder holder = new ServletHolder(new DefaultServlet());
+    holder.setInitParameter("resourceBase", resourceBase);
+    holder.setInitParameter("pathInfoOnly", "true");
+    holder.setInitParameter("dirAllowed", "false");
+    holder.setInitParameter("etags", "true");
+    holder.setInitParameter("acceptRanges", "true");
+    holder.setInitParameter("useFileMappedBuffer", Boolean.toString(useFileMappedBuffer));
+    holder.setInitParameter("maxCachedFiles", "4096");
+    holder.setInitParameter("maxCachedFileSize", Integer.toString(1024 * 1024));
+    holder.setInitParameter("maxCacheSize", Integer.toString(128 * 1024 * 1024));
+    return holder;
+  }
 }
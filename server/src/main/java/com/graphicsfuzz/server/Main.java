@@ -31,10 +31,26 @@ public class Main {
         .setDefault(8080)
         .type(Integer.class);
 
+    parser.addArgument("--scheduler_threads")
+        .help("Maximum number of queued commands, across all workers, that may run at once.")
+        .setDefault(WorkQueue.DEFAULT_SCHEDULER_THREADS)
+        .type(Integer.class);
+
+    parser.addArgument("--commands_per_worker")
+        .help("Maximum number of commands queued for a worker that may run at once.")
+        .setDefault(1)
+        .type(Integer.class);
+
+    parser.addArgument("--concurrent_reductions")
+        .help("Maximum number of reductions, across all workers, that may run at once.")
+        .setDefault(FuzzerServiceImpl.DEFAULT_MAX_CONCURRENT_REDUCTIONS)
+        .type(Integer.class);
+
     try {
       Namespace ns = parser.parseArgs(args);
 
-      new FuzzerServer(ns.get("port")).start();
+      new FuzzerServer("", ns.get("port"), ns.get("scheduler_threads"),
+          ns.get("commands_per_worker"), ns.get("concurrent_reductions")).start();
 
     } catch (ArgumentParserException ex) {
       ex.getParser().handleError(ex);
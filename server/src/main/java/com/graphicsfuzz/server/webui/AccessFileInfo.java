@@ -19,74 +19,107 @@ package com.graphicsfuzz.server.webui;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Wrapper to access JSON info files. Caches results to speed up the UI. Update results when file
  * is modified.
+ *
+ * <p>May be used by concurrent requests.  Each cache holds a bounded number of files, discarding
+ * the least recently used; files are parsed outside of any lock, so a slow read does not hold up
+ * other requests.  The JSON objects returned are shared, and must not be modified.</p>
  */
-
 public class AccessFileInfo {
 
-  Gson gson;
+  private static final int DEFAULT_MAX_CACHED_FILES = 10000;
 
-  HashMap<String, JsonObject> workerInfoMap;
-  HashMap<String, Long> workerInfoLastModified;
+  private final Gson gson;
 
-  HashMap<String, JsonObject> resultInfoMap;
-  HashMap<String, Long> resultInfoLastModified;
+  private final Map<String, CachedInfo> workerInfoCache;
+  private final Map<String, CachedInfo> resultInfoCache;
 
   public AccessFileInfo() {
+    this(DEFAULT_MAX_CACHED_FILES);
+  }
+
+  public AccessFileInfo(int maxCachedFiles) {
     gson = new Gson();
-    workerInfoMap = new HashMap<String, JsonObject>();
-    workerInfoLastModified = new HashMap<String, Long>();
-    resultInfoMap = new HashMap<String, JsonObject>();
-    resultInfoLastModified = new HashMap<String, Long>();
+    workerInfoCache = makeCache(maxCachedFiles);
+    resultInfoCache = makeCache(maxCachedFiles);
   }
 
   // Worker info ==============================================================
 
-  public JsonObject getWorkerInfo(String workerName) throws  FileNotFoundException {
+  public JsonObject getWorkerInfo(String workerName) throws IOException {
     File workerInfoFile = new File(WebUiConstants.WORKER_DIR
         + "/" + workerName
         + "/" + WebUiConstants.WORKER_INFO_FILE);
-    if (workerInfoMap.containsKey(workerName)
-        && workerInfoFile.lastModified() == workerInfoLastModified.get(workerName).longValue()) {
-      return workerInfoMap.get(workerName);
-    } else {
-      JsonObject workerInfo = readWorkerInfoFromFile(workerInfoFile);
-      workerInfoMap.put(workerName, workerInfo);
-      workerInfoLastModified.put(workerName, new Long(workerInfoFile.lastModified()));
-      return workerInfo;
-    }
+    return getInfo(workerInfoCache, workerName, workerInfoFile, this::readWorkerInfoFromFile);
   }
 
-  private JsonObject readWorkerInfoFromFile(File workerInfoFile) throws FileNotFoundException {
-    JsonObject json = gson
-        .fromJson(new FileReader(workerInfoFile), JsonObject.class)
-        .getAsJsonObject("platform_info");
-    return json;
+  private JsonObject readWorkerInfoFromFile(File workerInfoFile) throws IOException {
+    try (Reader reader = new FileReader(workerInfoFile)) {
+      return gson.fromJson(reader, JsonObject.class).getAsJsonObject("platform_info");
+    }
   }
 
   // Result info ==============================================================
 
-  public JsonObject getResultInfo(File resultInfoFile) throws FileNotFoundException {
-    String resultPath = resultInfoFile.getPath();
-    if (resultInfoMap.containsKey(resultPath)
-        && resultInfoFile.lastModified() == resultInfoLastModified.get(resultPath).longValue()) {
-      return resultInfoMap.get(resultPath);
-    } else {
-      JsonObject resultInfo = readResultInfoFromFile(resultInfoFile);
-      resultInfoMap.put(resultPath, resultInfo);
-      resultInfoLastModified.put(resultPath, new Long(resultInfoFile.lastModified()));
-      return resultInfo;
+  public JsonObject getResultInfo(File resultInfoFile) throws IOException {
+    return getInfo(resultInfoCache, resultInfoFile.getPath(), resultInfoFile,
+        this::readResultInfoFromFile);
+  }
+
+  private JsonObject readResultInfoFromFile(File resultInfoFile) throws IOException {
+    try (Reader reader = new FileReader(resultInfoFile)) {
+      return gson.fromJson(reader, JsonObject.class);
+    }
+  }
+
+  // Caching ==================================================================
+
+  private static JsonObject getInfo(Map<String, CachedInfo> cache, String key, File file,
+      InfoReader infoReader) throws IOException {
+    // Taken before reading, so that a file modified during the read is read again next time.
+    final long lastModified = file.lastModified();
+    final CachedInfo cached = cache.get(key);
+    if (cached != null && cached.lastModified == lastModified) {
+      return cached.info;
+    }
+    final JsonObject info = infoReader.read(file);
+    cache.put(key, new CachedInfo(lastModified, info));
+    return info;
+  }
+
+  private static Map<String, CachedInfo> makeCache(int maxCachedFiles) {
+    return Collections.synchronizedMap(new LinkedHashMap<String, CachedInfo>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedInfo> eldest) {
+        return size() > maxCachedFiles;
+      }
+    });
+  }
+
+  private static final class CachedInfo {
+
+    private final long lastModified;
+    private final JsonObject info;
+
+    private CachedInfo(long lastModified, JsonObject info) {
+      this.lastModified = lastModified;
+      this.info = info;
     }
   }
 
-  private JsonObject readResultInfoFromFile(File resultInfoFile) throws FileNotFoundException {
-    return gson.fromJson(new FileReader(resultInfoFile), JsonObject.class);
+  @FunctionalInterface
+  private interface InfoReader {
+
+    JsonObject read(File file) throws IOException;
   }
 
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.server.webui;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A page of the web UI, written to the response as it is built rather than being assembled in
+ * memory first.  Each request renders its own page, so that concurrent requests cannot interfere.
+ *
+ * <p>The response's writer is only obtained when the page is first written to, so a request may
+ * still set its content type, or report an error, up to that point.</p>
+ */
+class HtmlPage {
+
+  private final HttpServletResponse response;
+  private final long startTime;
+  private PrintWriter out;
+
+  HtmlPage(HttpServletResponse response) {
+    this.response = response;
+    this.startTime = System.currentTimeMillis();
+    this.out = null;
+  }
+
+  void append(String str) throws IOException {
+    getOut().print(str);
+  }
+
+  void appendLn(String... args) throws IOException {
+    final PrintWriter writer = getOut();
+    for (String a : args) {
+      writer.print(a);
+    }
+    writer.print("\n");
+  }
+
+  void header(String title) throws IOException {
+    headerImplem(title, true);
+  }
+
+  void headerResultTable(String title) throws IOException {
+    headerImplem(title, false);
+  }
+
+  private void headerImplem(String title, boolean withContainer) throws IOException {
+    appendLn(
+        "<!DOCTYPE html>\n",
+        "<html>\n",
+        "<head>\n",
+        "<meta charset='utf-8' />\n",
+        "<meta http-equiv='X-UA-Compatible' content='IE=edge,chrome=1' />\n",
+        "<meta name='viewport' content='width=device-width,",
+        " initial-scale=1.0, maximum-scale=1.0'>\n",
+        "<title>",
+        title,
+        " - GraphicsFuzz</title>\n",
+        "<link href='/static/semantic/semantic.min.css'",
+        " rel='stylesheet' type='text/css' />\n",
+        "<link href='/webui/graphicsfuzz.css' rel='stylesheet' type='text/css' />\n",
+        "<script src='/static/jquery/jquery-3.1.1.min.js'></script>\n",
+        "<script src='/static/semantic/semantic.min.js'></script>\n",
+        "<script src='/webui/graphicsfuzz.js'></script>\n",
+        "</head>\n",
+        "<body>\n",
+        withContainer ? "<div class='ui container'>\n" : "<div class='resultmain'>",
+        "<div class='ui basic segment'>\n",
+        "<a href='/webui'><img class='ui small image' src='/webui/GraphicsFuzz_logo.png'></a>\n",
+        "</div>\n");
+  }
+
+  void footer() throws IOException {
+    appendLn(
+        "<pre>Page generated in: ",
+        Long.toString(System.currentTimeMillis() - startTime),
+        "ms</pre>\n",
+        "<div class='ui center aligned basic segment'>",
+        "<p>Powered by <a href='https://www.graphicsfuzz.com'>GraphicsFuzz</a></p>",
+        "</div>\n",
+        "</div>\n",
+        "</body>\n</html>\n");
+  }
+
+  private PrintWriter getOut() throws IOException {
+    if (out == null) {
+      out = response.getWriter();
+    }
+    return out;
+  }
+
+}
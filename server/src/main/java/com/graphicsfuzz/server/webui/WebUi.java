@@ -25,6 +25,8 @@ import com.graphicsfuzz.reducer.ReductionKind;
 import com.graphicsfuzz.server.thrift.CommandInfo;
 import com.graphicsfuzz.server.thrift.CommandResult;
 import com.graphicsfuzz.server.thrift.FuzzerServiceManager;
+import com.graphicsfuzz.server.thrift.QueueMetrics;
+import com.graphicsfuzz.server.thrift.ServerInfo;
 import com.graphicsfuzz.server.thrift.WorkerInfo;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -64,8 +66,8 @@ import org.apache.thrift.transport.TTransport;
  *
  * <p>The two entry points are doGet() and doPost(). They dispatche response handling based on the
  * HTTP request path, which we call 'route'. Dedicated functions build the relevant web response.
- * The StringBuilder field 'html' is used to progressively construct the HTML, and is eventually
- * send back as a response.
+ * Each request renders its own HtmlPage, which streams the HTML back as it is constructed; the
+ * servlet itself holds no per-request state, so that requests can be served concurrently.
  *
  * <p>Routes from http://example.org/webui :
  * /file/ : serve a file content from filesystem, rooted at the working dir of the server process
@@ -80,9 +82,7 @@ import org.apache.thrift.transport.TTransport;
  */
 public class WebUi extends HttpServlet {
 
-  private StringBuilder html;
-  private String deqpRoot = "/path/to/deqp"; //
-  private long startTime;
+  private volatile String deqpRoot = "/path/to/deqp"; //
   private final AccessFileInfo accessFileInfo = new AccessFileInfo();
 
   private final FilenameFilter variantFragFilter =
@@ -123,7 +123,7 @@ public class WebUi extends HttpServlet {
     int nbSlightlyDifferentImage;
     int nbWrongImage;
 
-    ShadersetExp(String name, String worker) throws FileNotFoundException {
+    ShadersetExp(String name, String worker) throws IOException {
       this.name = name;
       this.worker = worker;
       this.dir = new File(WebUiConstants.WORKER_DIR + "/" + worker + "/" + name + "_exp");
@@ -197,27 +197,30 @@ public class WebUi extends HttpServlet {
     NOREDUCTION, ONGOING, FINISHED, NOTINTERESTING, EXCEPTION, INCOMPLETE
   }
 
-  private FuzzerServiceManager.Iface fuzzerServiceManagerProxy;
+  // Thread-safe, so shared by the Thrift clients of all requests.
+  private CloseableHttpClient httpClient;
 
   public void init() throws ServletException {
+    httpClient = HttpClients.createDefault();
+  }
 
-    html = new StringBuilder();
+  // Thrift clients are not thread-safe, so each use gets its own; they are cheap to create, as
+  // the HTTP connections are pooled by the shared HTTP client.
+  private FuzzerServiceManager.Iface getFuzzerServiceManagerProxy() throws TException {
+    TTransport transport = new THttpClient("http://localhost:8080/manageAPI", httpClient);
+    transport.open();
+    TProtocol protocol = new TBinaryProtocol(transport);
+    return new FuzzerServiceManager.Client(protocol);
+  }
 
+  public void destroy() {
     try {
-      CloseableHttpClient httpClient = HttpClients.createDefault();
-      TTransport transport = new THttpClient("http://localhost:8080/manageAPI", httpClient);
-      transport.open();
-      TProtocol protocol = new TBinaryProtocol(transport);
-      fuzzerServiceManagerProxy = new FuzzerServiceManager.Client(protocol);
-    } catch (TException ex) {
+      httpClient.close();
+    } catch (IOException ex) {
       ex.printStackTrace();
     }
   }
 
-  public void destroy() {
-    // do nothing.
-  }
-
   private String getResourceContent(String resourceName) throws IOException {
     InputStream is = this.getClass().getResourceAsStream("/private/" + resourceName);
     java.util.Scanner scanner = new java.util.Scanner(is, "UTF-8").useDelimiter("\\A");
@@ -272,7 +275,7 @@ public class WebUi extends HttpServlet {
   }
 
   private List<WorkerInfo> getLiveWorkers() throws TException {
-    List<WorkerInfo> workers = fuzzerServiceManagerProxy.getServerState().getWorkers();
+    List<WorkerInfo> workers = getFuzzerServiceManagerProxy().getServerState().getWorkers();
     workers.sort((workerInfo, t1) -> {
       Comparator<String> comparator = Comparator.naturalOrder();
       return comparator.compare(workerInfo.getToken(), t1.getToken());
@@ -281,6 +284,15 @@ public class WebUi extends HttpServlet {
     return workers;
   }
 
+  private static String queueMetricsToString(QueueMetrics metrics) {
+    final long completed = metrics.getCompleted();
+    return "Completed: " + completed
+        + " | Mean wait: " + (completed == 0 ? 0 : metrics.getTotalWaitMillis() / completed) + " ms"
+        + " | Max wait: " + metrics.getMaxWaitMillis() + " ms"
+        + " | Mean run time: "
+        + (completed == 0 ? 0 : metrics.getTotalRunMillis() / completed) + " ms";
+  }
+
   //Get list of all shaderset directories
   private List<File> getAllShadersets(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
@@ -305,10 +317,11 @@ public class WebUi extends HttpServlet {
       throws ServletException, IOException, TException {
 
     response.setContentType("text/html");
-    htmlHeader("Homepage");
+    final HtmlPage html = new HtmlPage(response);
+    html.header("Homepage");
 
     // General actions
-    htmlAppendLn(
+    html.appendLn(
         "<div class='ui segment'>\n",
         "<h3>General actions</h3>\n",
         "<p>\n",
@@ -333,23 +346,35 @@ public class WebUi extends HttpServlet {
         "</div>\n");
 
     // Connected workers
-    htmlAppendLn(
+    html.appendLn(
         "<div class='ui segment'>\n",
         "<h3>Connected workers</h3>\n",
         "<div class='ui selection animated celled list'>\n");
     List<String> tokens = new ArrayList<>();
     for (WorkerInfo worker : getLiveWorkers()) {
-      htmlAppendLn("<a class='item' href='/webui/worker/", worker.getToken(), "'>",
+      html.appendLn("<a class='item' href='/webui/worker/", worker.getToken(), "'>",
           "<i class='large middle aligned mobile icon'></i><div class='content'>",
           "<div class='header'>", worker.getToken(), "</div>",
           "#queued jobs: ",
           Integer.toString(worker.getCommandQueueSize()), "</div></a>");
       tokens.add(worker.getToken());
     }
-    htmlAppendLn("</div></div>");
+    html.appendLn("</div></div>");
+
+    // Reductions, which run on the server for all workers
+    final ServerInfo serverInfo = getFuzzerServiceManagerProxy().getServerState();
+    html.appendLn(
+        "<div class='ui segment'>\n",
+        "<h3>Reductions</h3>\n",
+        "<p>", queueMetricsToString(serverInfo.getReductionQueueMetrics()), "</p>\n",
+        "<div class='ui celled list'>");
+    for (CommandInfo ci : serverInfo.getReductionQueue()) {
+      html.appendLn("<div class='item'><div class='header'>", ci.name, "</div></div>");
+    }
+    html.appendLn("</div></div>");
 
     // Disconnected workers
-    htmlAppendLn(
+    html.appendLn(
         "<div class='ui segment'>\n",
         "<h3>Disconnected workers</h3>\n",
         "<button class='ui black basic button' onclick='toggleDiv(this)'",
@@ -359,15 +384,15 @@ public class WebUi extends HttpServlet {
     if (workers != null) {
       for (File worker : workers) {
         if (!tokens.contains(worker.getName())) {
-          htmlAppendLn("<a class='item' href='/webui/worker/", worker.getName(), "'>",
+          html.appendLn("<a class='item' href='/webui/worker/", worker.getName(), "'>",
               worker.getName(), "</a>");
         }
       }
     }
-    htmlAppendLn("</div></div>");
+    html.appendLn("</div></div>");
 
     //List of shadersets
-    htmlAppendLn(
+    html.appendLn(
         "<div class='ui segment'>\n",
         "<h3>Shader Families</h3>\n",
         "<div class='ui middle aligned selection animated celled list'>\n");
@@ -376,26 +401,24 @@ public class WebUi extends HttpServlet {
     if (shadersets.size() > 0) {
       for (File file : shadersets) {
         Shaderset shaderset = new Shaderset(file.getName());
-        htmlAppendLn("<a class='item' href='/webui/shaderset/", shaderset.name, "'>",
+        html.appendLn("<a class='item' href='/webui/shaderset/", shaderset.name, "'>",
             "<img class='ui mini image' src='/webui/file/", shaderset.preview.getPath(), "'>",
             "<div class='content'><div class='header'>", shaderset.name,
             "</div>#variants: ", Integer.toString(shaderset.nbVariants),
             "</div></a>");
       }
     }
-    htmlAppendLn("</div></div>");
+    html.appendLn("</div></div>");
 
     // Server log
-    htmlAppendLn(
+    html.appendLn(
         "<div class='ui segment'>\n",
         "<h3>Server Log</h3>\n",
         "<textarea id='ServerLog' readonly rows='20' cols='100'>",
         getFileContents(new File(WebUiConstants.WORKER_DIR + "/server.log")),
         "</textarea></div>");
 
-    htmlFooter();
-
-    response.getWriter().println(html);
+    html.footer();
   }
 
   // ==========================================================================
@@ -403,6 +426,7 @@ public class WebUi extends HttpServlet {
   private void worker(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException, TException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
     // Get worker name
     String[] path = request.getPathInfo().split("/");
@@ -417,10 +441,10 @@ public class WebUi extends HttpServlet {
       return;
     }
 
-    htmlHeader(workerName);
+    html.header(workerName);
 
     // Main actions
-    htmlAppendLn("<div class='ui segment'>",
+    html.appendLn("<div class='ui segment'>",
         "<h3>Worker: ", workerName, "</h3>\n",
         "<p><a class='ui button' href='/webui/experiment'>",
         "Run shader families</a></p>\n",
@@ -444,7 +468,7 @@ public class WebUi extends HttpServlet {
     String infoPath = WebUiConstants.WORKER_DIR + "/" + workerName
         + "/" + WebUiConstants.WORKER_INFO_FILE;
 
-    htmlAppendLn("<div class='ui segment'>",
+    html.appendLn("<div class='ui segment'>",
         "<h3>Worker info</h3>\n",
         "<button class='ui black basic button' onclick='toggleDiv(this)'",
         " data-hide='worker-info'>Show/Hide</button>\n",
@@ -453,11 +477,11 @@ public class WebUi extends HttpServlet {
 
     JsonObject info = accessFileInfo.getWorkerInfo(workerName);
 
-    htmlAppendLn("<table class='worker-info invisible ui celled compact table'>",
+    html.appendLn("<table class='worker-info invisible ui celled compact table'>",
         "<thead><tr><th>Attribute</th><th>Value</th></tr></thead>",
         "<tbody>");
     for (Map.Entry<String,JsonElement> entry: info.entrySet()) {
-      htmlAppendLn("<tr><td>", entry.getKey(), "</td><td>");
+      html.appendLn("<tr><td>", entry.getKey(), "</td><td>");
       JsonElement value = entry.getValue();
       // we consider values are either array of primitives, or just a primitive
       if (value.isJsonArray()) {
@@ -468,12 +492,12 @@ public class WebUi extends HttpServlet {
       } else {
         html.append(value.getAsString());
       }
-      htmlAppendLn("</td>");
+      html.appendLn("</td>");
     }
-    htmlAppendLn("</tbody></table></div>");
+    html.appendLn("</tbody></table></div>");
 
     // Worker job queue
-    htmlAppendLn("<div class='ui segment'><h3>Worker job queue</h3>");
+    html.appendLn("<div class='ui segment'><h3>Worker job queue</h3>");
     //String jobQueue = "No Jobs";
     List<WorkerInfo> workers;
     boolean atLeastOne = false;
@@ -483,29 +507,34 @@ public class WebUi extends HttpServlet {
         List<CommandInfo> commands = worker.getCommandQueue();
         if (commands.size() > 0) {
           atLeastOne = true;
-          htmlAppendLn("<button class='ui black basic button'onclick='toggleDiv(this)'",
+          html.appendLn("<button class='ui black basic button'onclick='toggleDiv(this)'",
               " data-hide='job-queue'>Show/Hide</button>\n",
               "<div class='job-queue ui celled list'>");
           for (CommandInfo ci : commands) {
-            htmlAppendLn("<div class='item'><div class='header'>", ci.name, "</div></div>");
+            html.appendLn("<div class='item'><div class='header'>", ci.name, "</div></div>");
           }
-          htmlAppendLn("</div>");
+          html.appendLn("</div>");
           break;
         }
       }
     }
 
     if (!atLeastOne) {
-      htmlAppendLn("<p>No job queued</p>");
+      html.appendLn("<p>No job queued</p>");
+    }
+    for (WorkerInfo worker : getLiveWorkers()) {
+      if (worker.getToken().equals(workerName)) {
+        html.appendLn("<p>", queueMetricsToString(worker.getCommandQueueMetrics()), "</p>");
+      }
     }
-    htmlAppendLn("</div>");
+    html.appendLn("</div>");
 
     // Links to all experiment results for the worker
-    htmlAppendLn("<div class='ui segment'>\n",
+    html.appendLn("<div class='ui segment'>\n",
         "<h3>Results</h3>\n",
         "<a href='/webui/worker/", workerName, "/all' class='ui button'>View all results</a>");
 
-    htmlAppendLn("<div class='ui middle aligned selection animated celled list'>");
+    html.appendLn("<div class='ui middle aligned selection animated celled list'>");
 
     File[] expDirs = workerDir.listFiles();
     Arrays.sort(expDirs, (f1, f2) -> new AlphanumComparator().compare(f1.getName(), f2.getName()));
@@ -519,7 +548,7 @@ public class WebUi extends HttpServlet {
       String shadersetName = expName.substring(0, expName.length() - 4);
       ShadersetExp shadersetExp = new ShadersetExp(shadersetName, workerName);
 
-      htmlAppendLn(
+      html.appendLn(
           "<a class='item' href='/webui/worker/", workerName, "/", expName, "'>",
           "<img class='ui mini image' src='/webui/file/", WebUiConstants.WORKER_DIR, "/",
           workerName, "/", expName, "/reference.png'>",
@@ -531,16 +560,16 @@ public class WebUi extends HttpServlet {
           " | Errors: ", Integer.toString(shadersetExp.nbErrors),
           "</div></a>");
     }
-    htmlAppendLn("</div></div>");
+    html.appendLn("</div></div>");
 
-    htmlFooter();
-    response.getWriter().println(html);
+    html.footer();
   }
 
   //Page to view results of an experiment run by a worker: /webui/worker/<worker-name>/<exp-name>
   private void workerExperiment(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
     //Get worker name and experiment name
     String[] path = request.getPathInfo().split("/");
@@ -550,9 +579,9 @@ public class WebUi extends HttpServlet {
     String expName = path[3];
     String workerSlashExp = workerName + "/" + expName;
 
-    htmlHeaderResultTable(workerSlashExp);
+    html.headerResultTable(workerSlashExp);
 
-    htmlAppendLn("<div class='ui segment'><h3>Results for: ", workerSlashExp, "</h3>\n",
+    html.appendLn("<div class='ui segment'><h3>Results for: ", workerSlashExp, "</h3>\n",
         "<form method='post' id='deleteForm'>\n",
         "<input type='hidden' name='path' value='processing/", workerSlashExp, "'/>\n",
         "<input type='hidden' name='type' value='delete'/>\n",
@@ -562,40 +591,34 @@ public class WebUi extends HttpServlet {
         "Delete these results</div>\n",
         "</form>");
 
-    htmlAppendLn("</div>");
+    html.appendLn("</div>");
 
     // Shader family results table
 
-    htmlAppendLn("<div class='ui segment'>\n",
+    html.appendLn("<div class='ui segment'>\n",
         "<h3>Results table</h3>");
     String shaderFamily = expName.replace("_exp", "");
     String[] workers = new String[1];
     workers[0] = workerName;
 
-    htmlComparativeTable(shaderFamily, workers);
+    htmlComparativeTable(html, shaderFamily, workers);
 
-    htmlAppendLn("</div>");
+    html.appendLn("</div>");
 
-    htmlFooter();
-    response.getWriter().println(html);
+    html.footer();
   }
 
   //Results page to view all experiment results by a worker: /webui/worker/<worker-name>/all
   private void workerAllExperiments(HttpServletRequest request, HttpServletResponse response)
       throws IOException, ServletException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
     //Get worker name
     String[] path = request.getPathInfo().split("/");
     assert (path.length >= 4);
     String workerName = path[2];
 
-    htmlHeaderResultTable(workerName + " all results");
-
-    htmlAppendLn("<div class='ui segment'>",
-        "<h3>All results for worker: ",  workerName, "</h3>",
-        "</div>");
-
     //Get worker directory and all results within
     File workerDir = new File(WebUiConstants.WORKER_DIR + "/" + workerName);
     if (!workerDir.isDirectory()) {
@@ -603,6 +626,12 @@ public class WebUi extends HttpServlet {
       return;
     }
 
+    html.headerResultTable(workerName + " all results");
+
+    html.appendLn("<div class='ui segment'>",
+        "<h3>All results for worker: ",  workerName, "</h3>",
+        "</div>");
+
     //Iterate through files in workerDir - get experiment results
     File[] expDirs = workerDir.listFiles(shaderFamilyExperimentFilter);
     Arrays.sort(expDirs, (f1, f2) -> new AlphanumComparator().compare(f1.getName(), f2.getName()));
@@ -612,15 +641,14 @@ public class WebUi extends HttpServlet {
 
       String shaderFamily = expName.replace("_exp", "");
 
-      htmlAppendLn("<div class='ui segment'>\n",
+      html.appendLn("<div class='ui segment'>\n",
           "<h3>", shaderFamily, "</h3>");
       workers[0] = workerName;
-      htmlComparativeTable(shaderFamily, workers);
-      htmlAppendLn("</div>");
+      htmlComparativeTable(html, shaderFamily, workers);
+      html.appendLn("</div>");
     }
 
-    htmlFooter();
-    response.getWriter().println(html);
+    html.footer();
   }
 
   //Page to setup experiments using multiple workers/shadersets - /webui/experiment
@@ -628,21 +656,22 @@ public class WebUi extends HttpServlet {
       throws ServletException, IOException, TException {
 
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
-    htmlHeader("Run shader families");
+    html.header("Run shader families");
 
-    htmlAppendLn("<div class='ui segment'>",
+    html.appendLn("<div class='ui segment'>",
         "<h3>Select workers and shader families</h3>",
         "<form class='ui form' method='post'>");
 
     List<WorkerInfo> workers = getLiveWorkers();
 
-    htmlAppendLn("<h4 class='ui dividing header'>Workers</h4>");
+    html.appendLn("<h4 class='ui dividing header'>Workers</h4>");
     if (workers.size() == 0) {
-      htmlAppendLn("<p>No connected worker</p>");
+      html.appendLn("<p>No connected worker</p>");
     } else {
 
-      htmlAppendLn("<button type='button' class='ui black basic button'",
+      html.appendLn("<button type='button' class='ui black basic button'",
           " onclick='applyAllCheckboxes(workercheck, true)'>",
           "Select all</button>",
           "<button type='button' class='ui black basic button'",
@@ -652,7 +681,7 @@ public class WebUi extends HttpServlet {
 
       int dataNum = 0;
       for (WorkerInfo workerInfo: workers) {
-        htmlAppendLn("<div class='field'>",
+        html.appendLn("<div class='field'>",
             "<div class='ui checkbox'>",
             "<input tabindex='0' class='hidden' type='checkbox' name='workercheck'",
             " data-num='", Integer.toString(dataNum), "' onclick='applyCheckbox(event);'",
@@ -666,11 +695,11 @@ public class WebUi extends HttpServlet {
 
     List<File> shadersets = getAllShadersets(request, response);
 
-    htmlAppendLn("<h4 class='ui dividing header'>Shader families</h4>");
+    html.appendLn("<h4 class='ui dividing header'>Shader families</h4>");
     if (shadersets.size() == 0) {
-      htmlAppendLn("<p>No shader families detected</p>");
+      html.appendLn("<p>No shader families detected</p>");
     } else {
-      htmlAppendLn("<button type='button' class='ui black basic button'",
+      html.appendLn("<button type='button' class='ui black basic button'",
           " onclick='applyAllCheckboxes(shadersetcheck, true)'>",
           "Select all</button>",
           "<button type='button' class='ui black basic button'",
@@ -680,7 +709,7 @@ public class WebUi extends HttpServlet {
 
       int dataNum = 0;
       for (File f : shadersets) {
-        htmlAppendLn("<div class='field'>",
+        html.appendLn("<div class='field'>",
             "<div class='ui checkbox'>",
             "<input tabindex='0' class='hidden' type='checkbox' name='shadersetcheck'",
             " data-num='", Integer.toString(dataNum), "' onclick='applyCheckbox(event);'",
@@ -692,24 +721,24 @@ public class WebUi extends HttpServlet {
       }
     }
 
-    htmlAppendLn("<button class='ui button' type='submit'>Run jobs</button>",
+    html.appendLn("<button class='ui button' type='submit'>Run jobs</button>",
         "<input type='hidden' name='type' value='experiment'/>",
         "</form></div>");
 
-    htmlFooter();
-    response.getWriter().println(html);
+    html.footer();
   }
 
   //Results page for a shaderset showing results by all workers - /webui/shaderset/<shaderset-name>
   private void shadersetResults(HttpServletRequest request, HttpServletResponse response)
       throws IOException, ServletException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
     String shaderFamily = request.getPathInfo().split("/")[2];
 
-    htmlHeaderResultTable(shaderFamily + " all results");
+    html.headerResultTable(shaderFamily + " all results");
 
-    htmlAppendLn("<div class='ui segment'>\n",
+    html.appendLn("<div class='ui segment'>\n",
         "<h3>All results for shader family: ", shaderFamily, "</h3>");
 
     // FIXME: how to cleanly get an array of worker names? (the list-to-array below is ugly)
@@ -726,11 +755,10 @@ public class WebUi extends HttpServlet {
       workers[i] = workerList.get(i);
     }
 
-    htmlComparativeTable(shaderFamily, workers);
+    htmlComparativeTable(html, shaderFamily, workers);
 
-    htmlAppendLn("</div>");
-    htmlFooter();
-    response.getWriter().println(html);
+    html.appendLn("</div>");
+    html.footer();
   }
 
   // ==========================================================================
@@ -738,6 +766,7 @@ public class WebUi extends HttpServlet {
   private void viewShader(HttpServletRequest request, HttpServletResponse response)
       throws IOException, TException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
     //Get shader path
     String[] path = request.getPathInfo().split("/");
@@ -750,12 +779,12 @@ public class WebUi extends HttpServlet {
     String shaderset = shader.getParentFile().getName();
     String shaderName = FilenameUtils.removeExtension(shader.getName());
 
-    htmlHeader(shaderName);
+    html.header(shaderName);
 
-    htmlAppendLn("<div class='ui segment'><h3>Shader: ", shaderName, "</h3>");
+    html.appendLn("<div class='ui segment'><h3>Shader: ", shaderName, "</h3>");
 
     if (shaderName.contains("_reduced_final")) {
-      htmlAppendLn("<form class='ui form' action='/webui/deqpExport' method='post'>",
+      html.appendLn("<form class='ui form' action='/webui/deqpExport' method='post'>",
           "<input type='hidden' name='type' value='deqpExport'>",
           "<input type='hidden' name='path' value='", shaderPath.toString(), "'>",
           "<p>This is a reduced shader: ",
@@ -763,43 +792,43 @@ public class WebUi extends HttpServlet {
           "</p></form>");
     }
 
-    htmlAppendLn("<a class='ui button' href='/webui/run/", shaderPath.toString(),
+    html.appendLn("<a class='ui button' href='/webui/run/", shaderPath.toString(),
         "'>Run shader</a>");
 
-    htmlAppendLn("<a class='ui button' href='/webui/file/", shaderPath.toString(),
+    html.appendLn("<a class='ui button' href='/webui/file/", shaderPath.toString(),
         "'>Get shader source code</a>");
 
     String jsonPath = FilenameUtils.removeExtension(shaderPath.toString()) + ".json";
 
-    htmlAppendLn("<a class='ui button' href='/webui/file/", jsonPath,
+    html.appendLn("<a class='ui button' href='/webui/file/", jsonPath,
         "'>See uniform init values as JSON file</a>");
 
     //Show shader file contents in textarea
     String shaderContents = getFileContents(new File(shaderPath.toString()));
 
-    htmlAppendLn("</div><div class='ui segment'><h3>Shader source code</h3>\n",
+    html.appendLn("</div><div class='ui segment'><h3>Shader source code</h3>\n",
         "<textarea readonly rows='25' cols='80'>");
-    htmlAppendLn(shaderContents);
-    htmlAppendLn("</textarea>");
+    html.appendLn(shaderContents);
+    html.appendLn("</textarea>");
 
     String jsonContents = getFileContents(new File(jsonPath));
 
-    htmlAppendLn("<div class='ui divider'></div>",
+    html.appendLn("<div class='ui divider'></div>",
         "<p>Uniform values:</p>",
         "<textarea readonly rows='25' cols='80'>");
-    htmlAppendLn(jsonContents);
-    htmlAppendLn("</textarea>");
+    html.appendLn(jsonContents);
+    html.appendLn("</textarea>");
 
-    htmlAppendLn("</div>");
+    html.appendLn("</div>");
 
-    htmlFooter();
-    response.getWriter().println(html);
+    html.footer();
   }
 
   // Page to view the result from a single shader by a worker - /webui/result/<result-filepath>
   private void viewResult(HttpServletRequest request, HttpServletResponse response)
       throws IOException, ServletException, TException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
     //Get result path
     final String[] path = request.getPathInfo().split("/");
@@ -824,14 +853,14 @@ public class WebUi extends HttpServlet {
     String shaderPath = "shaderfamilies/" + shaderExp.replace("_exp", "" + "/");
     shaderPath += resultFilename + ".frag";
 
-    htmlHeader("Single result");
-    htmlAppendLn("<div class='ui segment'><h3>Single result</h3>",
+    html.header("Single result");
+    html.appendLn("<div class='ui segment'><h3>Single result</h3>",
         "<p>Shader <b><a href='/webui/shader/", shaderPath, "'>",
         resultFilename, "</a></b> of <b>", shaderExp, "</b>",
         " run on <b>", token, "</b><br>",
         "Status: <b>", status, "</b></p>");
 
-    htmlAppendLn("<form method='post' id='deleteForm'>\n",
+    html.appendLn("<form method='post' id='deleteForm'>\n",
         "<input type='hidden' name='path' value='", resultPath, "'/>\n",
         "<input type='hidden' name='type' value='delete'/>\n",
         "<input type='hidden' name='num_back' value='2'/>\n",
@@ -843,20 +872,20 @@ public class WebUi extends HttpServlet {
 
     String referencePngPath = resultPath.replace(resultFilename, "reference.png");
 
-    htmlAppendLn("<p>Reference image:</p>",
+    html.appendLn("<p>Reference image:</p>",
         "<img src='/webui/file/", referencePngPath, "'>");
 
     String pngPath = prefix + resultFilename + ".png";
     File pngFile = new File(pngPath);
     if (pngFile.exists()) {
-      htmlAppendLn("<p>Result image:</p>",
+      html.appendLn("<p>Result image:</p>",
           "<img src='/webui/file/", pngPath, "'>");
     }
 
     String gifPath = prefix + resultFilename + ".gif";
     File gifFile = new File(gifPath);
     if (gifFile.exists()) {
-      htmlAppendLn("<p>Results non-deterministic animation:</p>",
+      html.appendLn("<p>Results non-deterministic animation:</p>",
           "<img src='/webui/file/", gifPath, "'>",
           "<p>Here are the second-to-last and last renderings:</p>\n",
           "<img src='/webui/file/",
@@ -868,15 +897,15 @@ public class WebUi extends HttpServlet {
     }
 
     if (!(pngFile.exists()) && !(gifFile.exists())) {
-      htmlAppendLn("<p>No image to display for this result status</p>");
+      html.appendLn("<p>No image to display for this result status</p>");
     }
 
-    htmlAppendLn("</div>\n",
+    html.appendLn("</div>\n",
         "<div class='ui segment'>\n",
         "<h3>Run log</h3>\n",
         "<textarea readonly rows='12' cols='80'>");
-    htmlAppendLn(getFileContents(new File(prefix + resultFilename + ".txt")));
-    htmlAppendLn("</textarea>\n",
+    html.appendLn(getFileContents(new File(prefix + resultFilename + ".txt")));
+    html.appendLn("</textarea>\n",
         "</div>");
 
     // Get result file
@@ -896,23 +925,23 @@ public class WebUi extends HttpServlet {
 
     //Get results from reductions
 
-    htmlAppendLn("<div class='ui segment'>\n",
+    html.appendLn("<div class='ui segment'>\n",
         "<h3>Reduction results</h3>");
 
     String reductionHtml = "";
     final ReductionStatus reductionStatus = getReductionStatus(token, shaderset, shader);
 
-    htmlAppendLn("<p>Reduction status: <b>", reductionStatus.toString(), "</b></p>");
+    html.appendLn("<p>Reduction status: <b>", reductionStatus.toString(), "</b></p>");
 
     if (reductionStatus == ReductionStatus.NOREDUCTION) {
-      htmlAppendLn("<button class='ui button' onclick='toggleDiv(this)'",
+      html.appendLn("<button class='ui button' onclick='toggleDiv(this)'",
           " data-hide='reduce-menu'>Reduce result</button>",
           "<div class='reduce-menu invisible'>");
-      htmlReductionForm(shaderDir + shader + ".frag", reductionDir.getPath(), workerName,
+      htmlReductionForm(html, shaderDir + shader + ".frag", reductionDir.getPath(), workerName,
           referenceRes.getPath(), result.getPath(), status);
-      htmlAppendLn("</div>");
+      html.appendLn("</div>");
     } else {
-      htmlAppendLn("<p><form method='post' id='deleteReductionForm'>\n",
+      html.appendLn("<p><form method='post' id='deleteReductionForm'>\n",
           "<input type='hidden' name='path' value='", reductionDir.getPath(), "'/>\n",
           "<input type='hidden' name='type' value='delete'/>\n",
           "<input type='hidden' name='num_back' value='2'/>\n",
@@ -928,15 +957,15 @@ public class WebUi extends HttpServlet {
     switch (reductionStatus) {
 
       case NOREDUCTION:
-        htmlAppendLn("<p>Reduction does not exist for this result.</p>");
+        html.appendLn("<p>Reduction does not exist for this result.</p>");
         break;
 
       case NOTINTERESTING:
-        htmlAppendLn("<p>Reduction failed: initial reduction step was not interesting.</p>");
+        html.appendLn("<p>Reduction failed: initial reduction step was not interesting.</p>");
         break;
 
       case EXCEPTION:
-        htmlAppendLn("<p>Reduction failed with an exception:</p>",
+        html.appendLn("<p>Reduction failed with an exception:</p>",
             "<textarea readonly rows='25' cols='80'>\n",
             getFileContents(ReductionProgressHelper.getReductionExceptionFile(shader,
                 ReductionFilesHelper.getReductionDir(token, shaderset, shader))),
@@ -947,21 +976,21 @@ public class WebUi extends HttpServlet {
         final Optional<Integer> reductionStep = ReductionProgressHelper
               .getLatestReductionStepAny(ReductionFilesHelper
                     .getReductionDir(token, shaderset, shader), "variant");
-        htmlAppendLn("<p>Reduction not finished for this result: ",
+        html.appendLn("<p>Reduction not finished for this result: ",
             (reductionStep.isPresent() ? "made " + reductionStep.get() + " step(s)"
                 : "no steps made yet"),
             ".</p>");
         break;
 
       case FINISHED:
-        produceDiff(shader, reductionDir, referenceShader);
+        produceDiff(html, shader, reductionDir, referenceShader);
         break;
 
       case INCOMPLETE:
         File reductionIncompleteResult = new File(reductionDir,
             shader + "_incomplete_reduced_final.frag");
-        htmlAppendLn("<p>Reduction hit the step limit.</p>");
-        produceDiff(shader, reductionDir, referenceShader);
+        html.appendLn("<p>Reduction hit the step limit.</p>");
+        produceDiff(html, shader, reductionDir, referenceShader);
         break;
 
       default:
@@ -972,20 +1001,19 @@ public class WebUi extends HttpServlet {
     final File logFile = new File(ReductionFilesHelper.getReductionDir(token, shaderset, shader),
           "command.log");
     if (logFile.exists()) {
-      htmlAppendLn("<p>Contents of reduction log file:</p>",
+      html.appendLn("<p>Contents of reduction log file:</p>",
           "<textarea readonly rows='25' cols='80'>\n",
           getFileContents(logFile),
           "</textarea>");
     }
 
-    htmlAppendLn("</div>");
+    html.appendLn("</div>");
 
-    htmlFooter();
-    response.getWriter().println(html);
+    html.footer();
   }
 
-  private void produceDiff(String shader, File reductionDir, File referenceShader)
-        throws TException {
+  private void produceDiff(HtmlPage html, String shader, File reductionDir, File referenceShader)
+        throws TException, IOException {
     File reductionResult = new File(reductionDir, shader + "_reduced_final.frag");
     List<String> args = new ArrayList<>();
     args.add("diff");
@@ -995,30 +1023,30 @@ public class WebUi extends HttpServlet {
     // TODO: make the reducer do the diff at the end of reduction, or at least do the diff
     // here locally without resorting to the server!
     CommandResult commandResult;
-    commandResult = fuzzerServiceManagerProxy.executeCommand("diff", args);
+    commandResult = getFuzzerServiceManagerProxy().executeCommand("diff", args);
 
-    htmlAppendLn("<a class='ui button' href='/webui/shader/", referenceShader.getPath(),
+    html.appendLn("<a class='ui button' href='/webui/shader/", referenceShader.getPath(),
         "'>View reference shader</a>");
-    htmlAppendLn("<a class='ui button' href='/webui/shader/", reductionResult.getPath(),
+    html.appendLn("<a class='ui button' href='/webui/shader/", reductionResult.getPath(),
         "'>View reduced shader</a>");
 
     // Watch out, diff exits with 1 if there is a difference.
     switch (commandResult.getExitCode()) {
       case 0:
         // files are similar! That's suspicious
-        htmlAppendLn("<p>Reduced variant is similar to reduced reference? ",
+        html.appendLn("<p>Reduced variant is similar to reduced reference? ",
             "(diff returns 0)</p>");
         break;
       case 1:
         // files differ
-        htmlAppendLn("<p>Differences in reduced shader:</p>",
+        html.appendLn("<p>Differences in reduced shader:</p>",
             "<textarea readonly rows='25' cols='80'>\n",
             commandResult.getOutput(),
             "</textarea>");
         break;
       default:
         // probably a diff error
-        htmlAppendLn("<p>Attempt to diff shaders failed with exit code ",
+        html.appendLn("<p>Attempt to diff shaders failed with exit code ",
             Integer.toString(commandResult.getExitCode()), "</p>",
             "<textarea readonly rows='25' cols='80'>\n",
             commandResult.getError(),
@@ -1055,8 +1083,9 @@ public class WebUi extends HttpServlet {
   private void startRunShader(HttpServletRequest request, HttpServletResponse response)
       throws IOException, ServletException, TException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
-    htmlHeader("Run shader");
+    html.header("Run shader");
 
     String[] path = request.getPathInfo().split("/");
     StringBuilder shaderPath = new StringBuilder();
@@ -1067,12 +1096,12 @@ public class WebUi extends HttpServlet {
 
 
     // TODO: make it so that it compares with the reference, and get rid of this message
-    htmlAppendLn("<script>",
+    html.appendLn("<script>",
         "window.onload = alert('Warning - results of running a single shader manually",
         " are always flagged as issue results -- never SAME_AS_REFERENCE')",
         "</script>");
 
-    htmlAppendLn("<div class='ui segment'>",
+    html.appendLn("<div class='ui segment'>",
         "<h3>Run shader:", shaderPath.toString(), "</h3>\n",
         "<a class='ui button' href='/webui/shader/", shaderPath.toString(), "'>",
         "Go back to shader page</a>\n",
@@ -1089,7 +1118,7 @@ public class WebUi extends HttpServlet {
 
     int dataNum = 0;
     for (WorkerInfo workerInfo: getLiveWorkers()) {
-      htmlAppendLn("<div class='ui field'>",
+      html.appendLn("<div class='ui field'>",
           "<div class='ui checkbox'>",
           "<input tabindex='0' class='hidden' type='checkbox' name='workercheck'",
           " data-num='", Integer.toString(dataNum), "' onclick='applyCheckbox(event);'",
@@ -1100,15 +1129,14 @@ public class WebUi extends HttpServlet {
       dataNum += 1;
     }
     if (dataNum == 0) {
-      htmlAppendLn("<p><b>No worker connected</b></p>");
+      html.appendLn("<p><b>No worker connected</b></p>");
     }
 
-    htmlAppendLn("<div class='ui divider'></div>\n",
+    html.appendLn("<div class='ui divider'></div>\n",
         "<button class='ui button' type='submit'>Run shader</button>\n",
         "</form></div>");
 
-    htmlFooter();
-    response.getWriter().println(html);
+    html.footer();
   }
 
   //POST - Attempts to run experiments, returns result of attempts (String message for user)
@@ -1116,6 +1144,7 @@ public class WebUi extends HttpServlet {
   //         whether the job has been scheduled or not. Then call this POST with AJAX.
   private void startExperiment(HttpServletRequest request, HttpServletResponse response)
       throws IOException, TException {
+    final HtmlPage html = new HtmlPage(response);
     StringBuilder msg = new StringBuilder();
 
     String[] workers = request.getParameterValues("workercheck");
@@ -1139,20 +1168,17 @@ public class WebUi extends HttpServlet {
           commands.add("--output");
           commands.add("processing/" + worker + "/" + shaderset + "_exp/");
           commands.add(WebUiConstants.SHADERSET_DIR + "/" + shaderset);
-          fuzzerServiceManagerProxy.queueCommand("run_shader_set: " + shaderset, commands, worker,
-              "processing/" + worker + "/" + shaderset + "_exp/command.log");
+          getFuzzerServiceManagerProxy().queueCommand("run_shader_set: " + shaderset, commands,
+              worker, "processing/" + worker + "/" + shaderset + "_exp/command.log");
           msg.append(" started successfully!\\n");
         }
       }
     }
 
-    html.setLength(0);
-    htmlAppendLn("<script>\n",
+    html.appendLn("<script>\n",
         getResourceContent("goBack.js"), "\n",
         "window.onload = goBack('", msg.toString(), "', 1);\n",
         "</script>");
-
-    response.getWriter().println(html);
   }
 
   // Page for selecting workers/shadersets to compare results - /webui/compareResults
@@ -1160,22 +1186,22 @@ public class WebUi extends HttpServlet {
       throws IOException, ServletException {
 
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
-    htmlHeaderResultTable("Compare Results");
+    html.headerResultTable("Compare Results");
 
-    htmlAppendLn("<div class='ui segment'>\n",
+    html.appendLn("<div class='ui segment'>\n",
         "<h3>Comparative results</h3>\n");
 
     String[] shaderFamilies = request.getParameterValues("shadersetcheck");
     String[] workers = request.getParameterValues("workercheck");
 
     for (String shaderFamily: shaderFamilies) {
-      htmlAppendLn("<h4 class='ui dividing header'>", shaderFamily, "</h4>");
-      htmlComparativeTable(shaderFamily, workers);
+      html.appendLn("<h4 class='ui dividing header'>", shaderFamily, "</h4>");
+      htmlComparativeTable(html, shaderFamily, workers);
     }
-    htmlAppendLn("</div>");
-    htmlFooter();
-    response.getWriter().println(html);
+    html.appendLn("</div>");
+    html.footer();
   }
 
   // Page for selecting workers/shadersets to compare results - /webui/compare
@@ -1183,10 +1209,11 @@ public class WebUi extends HttpServlet {
       throws IOException, ServletException {
 
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
-    htmlHeader("Compare workers");
+    html.header("Compare workers");
 
-    htmlAppendLn("<div class='ui segment'>\n",
+    html.appendLn("<div class='ui segment'>\n",
         "<h3>Compare results of workers</h3>\n",
         "<h4>Select workers</h4>\n",
         //"<button class='ui black basic button' onclick='toggleDiv(this)'",
@@ -1203,7 +1230,7 @@ public class WebUi extends HttpServlet {
 
     int dataNum = 0;
     for (File workerFile: getAllWorkers(request, response)) {
-      htmlAppendLn("<div class='ui field'>",
+      html.appendLn("<div class='ui field'>",
           "<div class='ui checkbox'>",
           "<input tabindex='0' class='hidden' type='checkbox' name='workercheck'",
           " data-num='", Integer.toString(dataNum), "' onclick='applyCheckbox(event);'",
@@ -1214,10 +1241,10 @@ public class WebUi extends HttpServlet {
       dataNum += 1;
     }
     if (dataNum == 0) {
-      htmlAppendLn("<p><b>No worker found.</b></p>");
+      html.appendLn("<p><b>No worker found.</b></p>");
     }
 
-    htmlAppendLn(//"</div>\n", // Hugues: end matching div to show/hide workers
+    html.appendLn(//"</div>\n", // Hugues: end matching div to show/hide workers
         "<div class='ui divider'></div>\n",
         "<h4>Select shader families</h4>\n",
         // Hugues: this refuses to work, I'm not sure why.
@@ -1235,7 +1262,7 @@ public class WebUi extends HttpServlet {
 
     dataNum = 0;
     for (File shaderFamily: getAllShadersets(request, response)) {
-      htmlAppendLn("<div class='ui field'>",
+      html.appendLn("<div class='ui field'>",
           "<div class='ui checkbox'>",
           "<input tabindex='0' class='hidden' type='checkbox' name='shadersetcheck'",
           " data-num='", Integer.toString(dataNum), "' onclick='applyCheckbox(event);'",
@@ -1246,22 +1273,22 @@ public class WebUi extends HttpServlet {
       dataNum += 1;
     }
     if (dataNum == 0) {
-      htmlAppendLn("<p><b>No shader family found.</b></p>");
+      html.appendLn("<p><b>No shader family found.</b></p>");
     }
 
-    htmlAppendLn(//"</div>\n", // Hugues: matching end of div for show/hide
+    html.appendLn(//"</div>\n", // Hugues: matching end of div for show/hide
         "<div class='ui divider'></div>\n",
         "<button class='ui button' type='submit'>Compare</button>\n",
         "</form></div>");
 
-    htmlFooter();
-    response.getWriter().println(html);
+    html.footer();
   }
 
   //POST - Deletes a given file - /webui/delete/<result-filepath>
   private void delete(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
     //Find file
     File file = new File(request.getParameter("path"));
     if (!file.exists()) {
@@ -1291,19 +1318,17 @@ public class WebUi extends HttpServlet {
     String deleteJs = getResourceContent("goBack.js")
         + "\nwindow.onload = goBack('" + file.getPath() + " deleted!', " + numBack + ");";
 
-    html.setLength(0);
-    htmlAppendLn("<script>\n",
+    html.appendLn("<script>\n",
         getResourceContent("goBack.js"), "\n",
         "window.onload = goBack('", file.getPath(), " deleted!', ", numBack, ");\n",
         "</script>");
-
-    response.getWriter().println(html);
   }
 
   //POST - Link to start reductions on a result
   private void reduce(HttpServletRequest request, HttpServletResponse response)
       throws IOException, ServletException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
     List<String> args = new ArrayList<>();
     args.add("reduce_variant");
@@ -1371,7 +1396,7 @@ public class WebUi extends HttpServlet {
 
     String message;
     try {
-      fuzzerServiceManagerProxy.queueCommand(
+      getFuzzerServiceManagerProxy().queueCommand(
           args.get(0) + ":" + shaderPath, args, token, output + "/command.log");
       message = "Reduction started successfully!";
     } catch (TException exception) {
@@ -1379,13 +1404,10 @@ public class WebUi extends HttpServlet {
     }
     reduceReference(shaderPath, token);
 
-    html.setLength(0);
-    htmlAppendLn("<script>\n",
+    html.appendLn("<script>\n",
         getResourceContent("goBack.js"), "\n",
         "window.onload = goBack('", message, "', 1);\n",
         "</script>");
-
-    response.getWriter().println(html);
   }
 
   private void reduceReference(String shaderPath, String worker) {
@@ -1420,7 +1442,7 @@ public class WebUi extends HttpServlet {
     args.add("http://localhost:8080/manageAPI");
     System.out.println(args);
     try {
-      fuzzerServiceManagerProxy.queueCommand(
+      getFuzzerServiceManagerProxy().queueCommand(
           "Reference Reduction: " + shaderset,
           args,
           worker,
@@ -1435,6 +1457,7 @@ public class WebUi extends HttpServlet {
   private void clear(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
     String queueType = request.getParameter("queueType");
     String token = request.getParameter("token");
@@ -1443,7 +1466,7 @@ public class WebUi extends HttpServlet {
     if (queueType.equals("worker")) {
       //Attempt to clear worker job queue
       try {
-        fuzzerServiceManagerProxy.clearClientJobQueue(token);
+        getFuzzerServiceManagerProxy().clearClientJobQueue(token);
         msg = "Queue for worker " + token + " cleared!";
       } catch (TException exception) {
         msg = "Worker " + token + " has no queued commands!";
@@ -1453,19 +1476,17 @@ public class WebUi extends HttpServlet {
       return;
     }
 
-    html.setLength(0);
-    htmlAppendLn("<script>\n",
+    html.appendLn("<script>\n",
         getResourceContent("goBack.js"), "\n",
         "window.onload = goBack('", msg, "', 1);\n",
         "</script>");
-
-    response.getWriter().println(html);
   }
 
   //Renames a worker (token) (renames dir in the filesystem) and redirects to new worker page
   private void renameWorker(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
 
     //Get details of worker to rename
     String query = request.getQueryString();
@@ -1522,18 +1543,16 @@ public class WebUi extends HttpServlet {
       }
     }
 
-    html.setLength(0);
-    htmlAppendLn("<script>\n",
+    html.appendLn("<script>\n",
         getResourceContent("redirect.js"), "\n",
         "window.onload = redirect('", msg, "', '/webui/worker/",  name, "');\n",
         "</script>");
-
-    response.getWriter().println(html);
   }
 
   private void runShader(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
     response.setContentType("text/html");
+    final HtmlPage html = new HtmlPage(response);
     String shaderPath = request.getParameter("shaderpath");
     File shader = new File(shaderPath);
     String shaderset = shader.getParentFile().getName();
@@ -1554,7 +1573,7 @@ public class WebUi extends HttpServlet {
         commands.add("--output");
         commands.add("processing/" + worker + "/" + shaderset + "_exp/");
         try {
-          fuzzerServiceManagerProxy
+          getFuzzerServiceManagerProxy()
               .queueCommand("run_shader_set: " + shaderPath, commands, worker,
                   "processing/" + worker + "/" + shaderset + "_exp/command.log");
         } catch (TException exception) {
@@ -1569,14 +1588,9 @@ public class WebUi extends HttpServlet {
       javascript += "\nwindow.onload = goBack('Please select a worker', 1);";
     }
 
-
-
-    html.setLength(0);
-    htmlAppendLn("<script>\n",
+    html.appendLn("<script>\n",
         javascript, "\n",
         "</script>");
-
-    response.getWriter().println(html);
   }
 
   private void err404(HttpServletRequest request, HttpServletResponse response, String msg)
@@ -1610,36 +1624,19 @@ public class WebUi extends HttpServlet {
     copyStream(resourceAsStream, response.getOutputStream());
   }
 
-  private void file(HttpServletRequest request, HttpServletResponse response)
-      throws ServletException, IOException {
-    String prefix = "/" + WebUiConstants.FILE_ROUTE + "/";
-    if (!request.getPathInfo().startsWith(prefix)) {
-      err404(request, response);
-      return;
-    }
-    String filename = request.getPathInfo().substring(prefix.length());
-    File file = new File(filename);
-    if ((!file.exists()) || file.isDirectory()) {
-      err404(request, response);
-      return;
-    }
-    response.setContentType(getContentType(filename));
-    ServletOutputStream outputStream = response.getOutputStream();
-    outputStream.write(Files.readAllBytes(Paths.get(filename)));
-  }
-
   private void settings(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
 
     response.setContentType("text/html");
-    htmlHeader("Settings");
+    final HtmlPage html = new HtmlPage(response);
+    html.header("Settings");
 
     final String newDeqpRoot = request.getParameter("deqp_root");
     if (newDeqpRoot != null) {
       deqpRoot = newDeqpRoot;
     }
 
-    htmlAppendLn("<div class='ui segment'> <h3>Settings</h3>");
+    html.appendLn("<div class='ui segment'> <h3>Settings</h3>");
 
     html.append("<p>Current dEQP directory: <em>");
     if (deqpRoot.isEmpty()) {
@@ -1653,26 +1650,21 @@ public class WebUi extends HttpServlet {
     }
     html.append("</p>\n");
 
-    htmlAppendLn("<form action='/webui/settings' class='ui form'>",
+    html.appendLn("<form action='/webui/settings' class='ui form'>",
         "<div class='inline field'>",
         "<label>New dEQP directory:</label>",
         "<input type='text' name='deqp_root' placeholder='/path/to/deqp'>",
         "<button class='ui button' type='submit'>Update</button>",
         "</div></form>");
 
-    htmlAppendLn("</div>");
-    htmlFooter();
-    response.getWriter().println(html);
+    html.appendLn("</div>");
+    html.footer();
   }
 
   private void deqpExport(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
     response.setContentType("text/html");
-
-    htmlHeader("Export to dEQP");
-
-    htmlAppendLn("<div class='ui segment'>\n",
-        "<h3>Export shader to dEQP</h3>");
+    final HtmlPage html = new HtmlPage(response);
 
     File graphicsFuzzRoot = new File(deqpRoot + "/external/graphicsfuzz");
     if (!graphicsFuzzRoot.isDirectory()) {
@@ -1689,6 +1681,11 @@ public class WebUi extends HttpServlet {
       return;
     }
 
+    html.header("Export to dEQP");
+
+    html.appendLn("<div class='ui segment'>\n",
+        "<h3>Export shader to dEQP</h3>");
+
     String[] files = path.split("/");
     assert (files[0].equals("processing"));
     String device = files[1];
@@ -1723,9 +1720,8 @@ public class WebUi extends HttpServlet {
         + " recompile dEQP to see the new reduced variant appear.</b></p>");
 
 
-    htmlAppendLn("</div>");
-    htmlFooter();
-    response.getWriter().println(html);
+    html.appendLn("</div>");
+    html.footer();
   }
 
   // ========================= "GET" requests dispatcher =======================================
@@ -1733,8 +1729,6 @@ public class WebUi extends HttpServlet {
   public void doGet(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
 
-    startTime = System.currentTimeMillis();
-
     // Dispatch based on path structure
     String path = request.getPathInfo();
     if (path == null) {
@@ -1746,9 +1740,6 @@ public class WebUi extends HttpServlet {
       if (actions.length == 0) {
         // 'webui/' : homepage
         homepage(request, response);
-      } else if (actions[1].equals(WebUiConstants.FILE_ROUTE)) {
-        // serve a 'raw file', proxy to the filesystem
-        file(request, response);
       } else if (actions[1].equals("worker")) {
         if (actions.length >= 4 && actions[3].equals("all")) {
           workerAllExperiments(request, response);
@@ -1787,8 +1778,6 @@ public class WebUi extends HttpServlet {
       throws ServletException, IOException {
     String type = request.getParameter("type");
 
-    startTime = System.currentTimeMillis();
-
     // Hugues: dispatching base on a "type" parameter is NOT ideal.
     // We should scan the resquest path instead.
 
@@ -1823,61 +1812,6 @@ public class WebUi extends HttpServlet {
 
   // HTML functions ===========================================================
 
-  private void htmlAppendLn(String... args) {
-    for (String a: args) {
-      html.append(a);
-    }
-    html.append("\n");
-  }
-
-  private void htmlHeader(String title) {
-    htmlHeaderImplem(title, true);
-  }
-
-  private void htmlHeaderResultTable(String title) {
-    htmlHeaderImplem(title, false);
-  }
-
-  private void htmlHeaderImplem(String title, boolean withContainer) {
-    html.setLength(0);
-
-    htmlAppendLn(
-        "<!DOCTYPE html>\n",
-        "<html>\n",
-        "<head>\n",
-        "<meta charset='utf-8' />\n",
-        "<meta http-equiv='X-UA-Compatible' content='IE=edge,chrome=1' />\n",
-        "<meta name='viewport' content='width=device-width,",
-        " initial-scale=1.0, maximum-scale=1.0'>\n",
-        "<title>",
-        title,
-        " - GraphicsFuzz</title>\n",
-        "<link href='/static/semantic/semantic.min.css'",
-        " rel='stylesheet' type='text/css' />\n",
-        "<link href='/webui/graphicsfuzz.css' rel='stylesheet' type='text/css' />\n",
-        "<script src='/static/jquery/jquery-3.1.1.min.js'></script>\n",
-        "<script src='/static/semantic/semantic.min.js'></script>\n",
-        "<script src='/webui/graphicsfuzz.js'></script>\n",
-        "</head>\n",
-        "<body>\n",
-        withContainer ? "<div class='ui container'>\n" : "<div class='resultmain'>",
-        "<div class='ui basic segment'>\n",
-        "<a href='/webui'><img class='ui small image' src='/webui/GraphicsFuzz_logo.png'></a>\n",
-        "</div>\n");
-  }
-
-  private void htmlFooter() {
-    htmlAppendLn(
-        "<pre>Page generated in: ",
-        Long.toString(System.currentTimeMillis() - startTime),
-        "ms</pre>\n",
-        "<div class='ui center aligned basic segment'>",
-        "<p>Powered by <a href='https://www.graphicsfuzz.com'>GraphicsFuzz</a></p>",
-        "</div>\n",
-        "</div>\n",
-        "</body>\n</html>\n");
-  }
-
   private String reductionLabelColor(ReductionStatus reductionStatus) {
     switch (reductionStatus) {
       case NOREDUCTION:
@@ -1899,8 +1833,8 @@ public class WebUi extends HttpServlet {
     }
   }
 
-  private void htmlVariantResultTableCell(File variantInfoFile, String referencePngPath,
-      ReductionStatus reductionStatus) throws FileNotFoundException {
+  private void htmlVariantResultTableCell(HtmlPage html, File variantInfoFile,
+      String referencePngPath, ReductionStatus reductionStatus) throws IOException {
 
     JsonObject info = accessFileInfo.getResultInfo(variantInfoFile);
     String status = info.get("Status").getAsString();
@@ -1909,12 +1843,12 @@ public class WebUi extends HttpServlet {
     if (status.contentEquals("SUCCESS")) {
 
       if (imageIsIdentical(info)) {
-        htmlAppendLn("<td class='selectable center aligned'><a href='",
+        html.appendLn("<td class='selectable center aligned'><a href='",
             cellHref,
             "'>",
             "<img class='ui centered tiny image' src='/webui/file/", referencePngPath, "'></a>");
       } else {
-        htmlAppendLn("<td class='",
+        html.appendLn("<td class='",
             imageIsAcceptable(info) ? "warnimg" : "wrongimg",
             " selectable center aligned'>",
             "<a href='",
@@ -1930,7 +1864,7 @@ public class WebUi extends HttpServlet {
 
     } else if (status.contentEquals("NONDET")) {
 
-      htmlAppendLn("<td class='selectable nondet center aligned'><a href='",
+      html.appendLn("<td class='selectable nondet center aligned'><a href='",
           cellHref,
           "'>",
           "<img class='ui centered tiny image' src='/webui/file/",
@@ -1942,7 +1876,7 @@ public class WebUi extends HttpServlet {
 
     } else {
 
-      htmlAppendLn("<td class='gfz-error bound-cell-width selectable center aligned'>",
+      html.appendLn("<td class='gfz-error bound-cell-width selectable center aligned'>",
           "<a href='",
           cellHref,
           "'>", status.replace("_", " "), " ",
@@ -1953,15 +1887,15 @@ public class WebUi extends HttpServlet {
           "</div>");
 
     }
-    htmlAppendLn("</td>");
+    html.appendLn("</td>");
   }
 
   // Hugues: This is way too complex, do something *simpler* using semantic-ui
-  private void htmlReductionForm(String shaderPath, String output, String token,
-      String referencePngPath, String variantPath, String resultStatus) {
+  private void htmlReductionForm(HtmlPage html, String shaderPath, String output, String token,
+      String referencePngPath, String variantPath, String resultStatus) throws IOException {
     final boolean crash = resultStatus.equals("CRASH");
 
-    htmlAppendLn(
+    html.appendLn(
         "<form class='ui form' method='post' id='reduceForm'>",
         "<fieldset>",
         "<legend>Reduction Options</legend>",
@@ -2091,10 +2025,10 @@ public class WebUi extends HttpServlet {
         "</form>");
   }
 
-  private void htmlComparativeTable(String shaderFamily, String[] workers)
-      throws FileNotFoundException {
+  private void htmlComparativeTable(HtmlPage html, String shaderFamily, String[] workers)
+      throws IOException {
 
-    htmlAppendLn("<table class='ui celled compact collapsing table'>\n",
+    html.appendLn("<table class='ui celled compact collapsing table'>\n",
         "<thead><tr>");
     File variantsDir = new File(WebUiConstants.SHADERSET_DIR + "/" + shaderFamily);
     File[] variantFragFiles = variantsDir.listFiles(variantFragFilter);
@@ -2105,9 +2039,9 @@ public class WebUi extends HttpServlet {
 
     // First row: variant names
     if (showWorkerNames) {
-      htmlAppendLn("<th class='center aligned'>Worker</th>");
+      html.appendLn("<th class='center aligned'>Worker</th>");
     }
-    htmlAppendLn("<th class='center aligned'>",
+    html.appendLn("<th class='center aligned'>",
         "<a href='/webui/shader/",
         WebUiConstants.SHADERSET_DIR,
         "/",
@@ -2117,26 +2051,26 @@ public class WebUi extends HttpServlet {
         "reference",
         "</a></th>");
     for (File f: variantFragFiles) {
-      htmlAppendLn("<th class='selectable center aligned'>",
+      html.appendLn("<th class='selectable center aligned'>",
           "<a href='/webui/shader/", f.getPath(), "'>",
           f.getName().replace(".frag", ""), "</a></th>");
     }
-    htmlAppendLn("</tr></thead>\n",
+    html.appendLn("</tr></thead>\n",
         "<tbody>");
     // Subsequent rows: results
     for (String worker: workers) {
       String referencePngPath = WebUiConstants.WORKER_DIR + "/" + worker + "/"
           + shaderFamily + "_exp/reference.png";
 
-      htmlAppendLn("<tr>");
+      html.appendLn("<tr>");
       if (showWorkerNames) {
-        htmlAppendLn("<td>", worker, "</td>");
+        html.appendLn("<td>", worker, "</td>");
       }
       if (new File(referencePngPath).exists()) {
-        htmlAppendLn("<td><img class='ui tiny image' src='/webui/file/",
+        html.appendLn("<td><img class='ui tiny image' src='/webui/file/",
             referencePngPath, "'></td>");
       } else {
-        htmlAppendLn("<td class='bound-cell-width center aligned'>No result</td>");
+        html.appendLn("<td class='bound-cell-width center aligned'>No result</td>");
       }
 
       for (File f : variantFragFiles) {
@@ -2147,14 +2081,14 @@ public class WebUi extends HttpServlet {
           ReductionStatus reductionStatus = getReductionStatus(worker, shaderFamily,
               infoFile.getName().replace(".info.json", ""));
 
-          htmlVariantResultTableCell(infoFile, referencePngPath, reductionStatus);
+          htmlVariantResultTableCell(html, infoFile, referencePngPath, reductionStatus);
         } else {
-          htmlAppendLn("<td class='bound-cell-width center aligned'>No result</td>");
+          html.appendLn("<td class='bound-cell-width center aligned'>No result</td>");
         }
       }
-      htmlAppendLn("</tr>");
+      html.appendLn("</tr>");
     }
-    htmlAppendLn("</tbody>\n</table>");
+    html.appendLn("</tbody>\n</table>");
   }
 
 }
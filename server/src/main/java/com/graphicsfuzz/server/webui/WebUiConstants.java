@@ -22,7 +22,7 @@ public final class WebUiConstants {
     // Utility class
   }
 
-  static final String FILE_ROUTE = "file";
+  public static final String FILE_ROUTE = "file";
   static final String WORKER_DIR = "processing";
   static final String SHADERSET_DIR = "shaderfamilies";
   static final String WORKER_INFO_FILE = "client.json";
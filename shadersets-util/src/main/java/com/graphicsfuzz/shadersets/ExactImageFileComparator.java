@@ -24,15 +24,20 @@ public class ExactImageFileComparator implements IImageFileComparator {
 
   private final boolean identicalIsInteresting;
 
+  private final ReferenceImageCache<ImagePixels> referenceCache =
+      new ReferenceImageCache<>(ImagePixels::new);
+
   public ExactImageFileComparator(boolean identicalIsInteresting) {
     this.identicalIsInteresting = identicalIsInteresting;
   }
 
-
   @Override
   public boolean areFilesInteresting(File reference, File variant) {
     try {
-      boolean equalContent = FileUtils.contentEquals(reference, variant);
+      // Identical files certainly have identical pixels; otherwise, the pixels are compared, as
+      // different encoders may produce different files for the same image.
+      boolean equalContent = FileUtils.contentEquals(reference, variant)
+          || referenceCache.get(reference).isIdenticalTo(new ImagePixels(variant));
       if (!equalContent && identicalIsInteresting) {
         System.err.println("Not interesting: images do not match");
         return false;
@@ -17,6 +17,7 @@
 package com.graphicsfuzz.shadersets;
 
 import com.graphicsfuzz.server.thrift.ComputeJobResult;
+import com.graphicsfuzz.server.thrift.ImageJob;
 import com.graphicsfuzz.server.thrift.ImageJobResult;
 import java.io.File;
 
@@ -33,6 +34,16 @@ public interface IShaderDispatcher {
       File tempImageFile,
       boolean skipRender) throws ShaderDispatchException, InterruptedException;
 
+  /**
+   * Gets an image from the shaders held in imageJob, without them needing to be on disk.
+   * As above, if the returned ImageJobResult.getStatus() == SUCCESS,
+   * then the image will EITHER be in ImageJobResult.getImageContents() OR
+   * have been written to tempImageFile.
+   */
+  ImageJobResult getImage(
+      ImageJob imageJob,
+      File tempImageFile) throws ShaderDispatchException, InterruptedException;
+
   /**
    * Gets a result from computeShaderFile.
    */
@@ -16,39 +16,180 @@
 
 package com.graphicsfuzz.shadersets;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import org.bytedeco.javacpp.opencv_core;
-import org.bytedeco.javacpp.opencv_imgcodecs;
-import org.bytedeco.javacpp.opencv_imgproc;
 
 /**
- * Stores data about an image; right now its file and histogram.
- * Could be extended in due course with e.g. PSNR
+ * Stores data about an image: its file, if any, its pixels in HSV form and its hue-saturation
+ * histogram.  The conversion and histogram follow OpenCV's cvtColor(COLOR_BGR2HSV) on 8-bit
+ * images and calcHist with 50 hue and 60 saturation bins, so that metric values, and hence
+ * thresholds, are the same as they were when OpenCV was used.  Instances are immutable, so a
+ * reference image can be decoded once and compared against many others, on any thread.
  */
 public class ImageData {
 
+  private static final int HUE_BINS = 50;
+  private static final int SATURATION_BINS = 60;
+
+  private static final int HSV_SHIFT = 12;
+  private static final int[] SATURATION_DIVISORS = new int[256];
+  private static final int[] HUE_DIVISORS = new int[256];
+
+  static {
+    for (int i = 1; i < 256; i++) {
+      SATURATION_DIVISORS[i] = (int) Math.round((255 << HSV_SHIFT) / (double) i);
+      HUE_DIVISORS[i] = (int) Math.round((180 << HSV_SHIFT) / (6.0 * i));
+    }
+  }
+
   public final File imageFile;
-  private final opencv_core.Mat imageMat;
-  private final opencv_core.Mat histogram;
+  private final int width;
+  private final int height;
+  // One byte per pixel in each plane, to be read as unsigned.
+  private final byte[] hue;
+  private final byte[] saturation;
+  private final byte[] value;
+  private final int[] histogram;
+  private final ImagePixels pixels;
 
-  public ImageData(File imageFile) throws FileNotFoundException {
-    this.imageFile = imageFile;
-    this.imageMat = opencv_imgcodecs.imread(imageFile.getAbsolutePath());
-    opencv_imgproc.cvtColor(this.imageMat, this.imageMat, opencv_imgproc.COLOR_BGR2HSV);
-    this.histogram = ImageUtil.getHistogram(imageFile.getAbsolutePath());
+  public ImageData(File imageFile) throws IOException {
+    this(imageFile, ImageUtil.readImage(imageFile));
   }
 
-  public ImageData(String imageFileName) throws FileNotFoundException {
+  public ImageData(String imageFileName) throws IOException {
     this(new File(imageFileName));
   }
 
+  /**
+   * Decodes an image held in memory, e.g. the PNG of an image job result.
+   */
+  public ImageData(byte[] imageBytes) throws IOException {
+    this(null, ImageUtil.readImage(imageBytes));
+  }
+
+  private ImageData(File imageFile, BufferedImage image) {
+    this.imageFile = imageFile;
+    this.width = image.getWidth();
+    this.height = image.getHeight();
+    this.hue = new byte[width * height];
+    this.saturation = new byte[width * height];
+    this.value = new byte[width * height];
+    this.histogram = new int[HUE_BINS * SATURATION_BINS];
+    convertToHsv(image);
+    this.pixels = new ImagePixels(image);
+  }
+
+  private void convertToHsv(BufferedImage image) {
+    final Raster raster = image.getRaster();
+    final boolean indexed = image.getColorModel() instanceof IndexColorModel;
+    final int bands = raster.getNumBands();
+    // Like OpenCV, keep the most significant 8 bits of deeper samples, and ignore alpha.
+    final int shift = indexed ? 0 : raster.getSampleModel().getSampleSize(0) - 8;
+    final int[] row = new int[width * bands];
+    final int[] rgbRow = new int[width];
+    for (int y = 0; y < height; y++) {
+      if (indexed) {
+        image.getRGB(0, y, width, 1, rgbRow, 0, width);
+      } else {
+        raster.getPixels(0, y, width, 1, row);
+      }
+      for (int x = 0; x < width; x++) {
+        final int r;
+        final int g;
+        final int b;
+        if (indexed) {
+          r = (rgbRow[x] >> 16) & 0xff;
+          g = (rgbRow[x] >> 8) & 0xff;
+          b = rgbRow[x] & 0xff;
+        } else if (bands < 3) {
+          r = row[x * bands] >> shift;
+          g = r;
+          b = r;
+        } else {
+          r = row[x * bands] >> shift;
+          g = row[x * bands + 1] >> shift;
+          b = row[x * bands + 2] >> shift;
+        }
+        setPixel(y * width + x, r, g, b);
+      }
+    }
+  }
+
+  private void setPixel(int index, int red, int green, int blue) {
+    // The integer arithmetic of OpenCV's 8-bit RGB to HSV conversion.
+    final int max = Math.max(blue, Math.max(green, red));
+    final int min = Math.min(blue, Math.min(green, red));
+    final int diff = max - min;
+    final int redIsMax = max == red ? -1 : 0;
+    final int greenIsMax = max == green ? -1 : 0;
+    final int sat = (diff * SATURATION_DIVISORS[max] + (1 << (HSV_SHIFT - 1))) >> HSV_SHIFT;
+    int hueValue = (redIsMax & (green - blue))
+        + (~redIsMax & ((greenIsMax & (blue - red + 2 * diff))
+        + (~greenIsMax & (red - green + 4 * diff))));
+    hueValue = (hueValue * HUE_DIVISORS[diff] + (1 << (HSV_SHIFT - 1))) >> HSV_SHIFT;
+    if (hueValue < 0) {
+      hueValue += 180;
+    }
+    hue[index] = (byte) hueValue;
+    saturation[index] = (byte) sat;
+    value[index] = (byte) max;
+    // Both ranges are [0, 256), as they were given to calcHist.
+    histogram[(hueValue * HUE_BINS >> 8) * SATURATION_BINS + (sat * SATURATION_BINS >> 8)]++;
+  }
+
+  /**
+   * Yields the chi-square distance between the histograms of this image and another, taking
+   * this image as the expected one.
+   */
+  public double getHistogramDistance(ImageData other) {
+    return ImageUtil.compareHistograms(histogram, other.histogram);
+  }
+
+  /**
+   * Yields the peak signal-to-noise ratio between this image and another of the same size,
+   * computed over the hue, saturation and value channels.
+   */
+  public double getPsnr(ImageData other) {
+    if (width != other.width || height != other.height) {
+      throw new IllegalArgumentException("Cannot compute PSNR for images of different sizes.");
+    }
+    long sumOfSquares = 0;
+    sumOfSquares += sumOfSquaredDifferences(hue, other.hue);
+    sumOfSquares += sumOfSquaredDifferences(saturation, other.saturation);
+    sumOfSquares += sumOfSquaredDifferences(value, other.value);
+    final double diff = Math.sqrt(sumOfSquares / (3.0 * width * height));
+    return 20 * Math.log10(255.0 / (diff + Math.ulp(1.0)));
+  }
+
+  private static long sumOfSquaredDifferences(byte[] first, byte[] second) {
+    long result = 0;
+    for (int i = 0; i < first.length; i++) {
+      final int diff = (first[i] & 0xff) - (second[i] & 0xff);
+      result += diff * diff;
+    }
+    return result;
+  }
+
+  /**
+   * Determines whether this image and another have exactly the same pixels.
+   */
+  public boolean isIdenticalTo(ImageData other) {
+    return pixels.isIdenticalTo(other.pixels);
+  }
+
+  int[] getHistogram() {
+    return histogram.clone();
+  }
+
   public Map<String, Double> getImageDiffStats(ImageData other) {
     Map<String, Double> result = new HashMap<>();
-    result.put("histogramDistance", ImageUtil.compareHistograms(this.histogram, other.histogram));
-    result.put("psnr", opencv_core.PSNR(this.imageMat, other.imageMat));
+    result.put("histogramDistance", getHistogramDistance(other));
+    result.put("psnr", getPsnr(other));
     return result;
   }
 
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.shadersets;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The pixels of an image, decoded once into packed ARGB values, for exact comparison.
+ */
+public final class ImagePixels {
+
+  private final int width;
+  private final int height;
+  private final int[] pixels;
+
+  public ImagePixels(File imageFile) throws IOException {
+    this(ImageUtil.readImage(imageFile));
+  }
+
+  /**
+   * Decodes an image held in memory, e.g. the PNG of an image job result.
+   */
+  public ImagePixels(byte[] imageBytes) throws IOException {
+    this(ImageUtil.readImage(imageBytes));
+  }
+
+  ImagePixels(BufferedImage image) {
+    this.width = image.getWidth();
+    this.height = image.getHeight();
+    this.pixels = image.getRGB(0, 0, width, height, null, 0, width);
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Determines whether two images have the same size and the same pixels, regardless of how they
+   * were encoded.
+   */
+  public boolean isIdenticalTo(ImagePixels other) {
+    return width == other.width && height == other.height && findDifferingRow(other) == -1;
+  }
+
+  /**
+   * Yields a row in which two images of the same size differ, or -1 if there is none.  Rows are
+   * visited coarse to fine (row 0, then the middle row, then the quarter rows, and so on), since
+   * the differences between renders tend to cover a region rather than a few scattered pixels; a
+   * difference is then usually found after looking at a small fraction of the rows.
+   */
+  int findDifferingRow(ImagePixels other) {
+    assert width == other.width && height == other.height;
+    if (height == 0) {
+      return -1;
+    }
+    int topStep = 1;
+    while (topStep < height) {
+      topStep <<= 1;
+    }
+    if (!rowsMatch(other, 0)) {
+      return 0;
+    }
+    for (int step = topStep >> 1; step >= 1; step >>= 1) {
+      for (int row = step; row < height; row += 2 * step) {
+        if (!rowsMatch(other, row)) {
+          return row;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private boolean rowsMatch(ImagePixels other, int row) {
+    // No early exit within a row, so that the loop can be vectorized.
+    final int start = row * width;
+    final int end = start + width;
+    int difference = 0;
+    for (int i = start; i < end; i++) {
+      difference |= pixels[i] ^ other.pixels[i];
+    }
+    return difference == 0;
+  }
+
+}
@@ -17,89 +17,74 @@
 package com.graphicsfuzz.shadersets;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import javax.imageio.ImageIO;
-import org.bytedeco.javacpp.opencv_core;
-import org.bytedeco.javacpp.opencv_imgcodecs;
-import org.bytedeco.javacpp.opencv_imgproc;
 
 public class ImageUtil {
 
-  public static opencv_core.Mat getImage(File file) throws FileNotFoundException {
-    if (!file.isFile()) {
-      throw new FileNotFoundException();
-    }
-
-    System.gc();
-
-    opencv_core.Mat mat = opencv_imgcodecs.imread(file.toString());
-    opencv_imgproc.cvtColor(mat, mat, opencv_imgproc.COLOR_BGR2HSV);
-    return mat;
+  public static ImageData getImage(File file) throws IOException {
+    return new ImageData(file);
   }
 
-  public static opencv_core.Mat getHistogram(String file) throws FileNotFoundException {
-    if (!new File(file).isFile()) {
-      throw new FileNotFoundException();
-    }
-
-    System.gc();
-
-    opencv_core.Mat mat = opencv_imgcodecs.imread(file);
-    opencv_imgproc.cvtColor(mat, mat, opencv_imgproc.COLOR_BGR2HSV);
-    opencv_core.Mat hist = new opencv_core.Mat();
-    opencv_imgproc.calcHist(
-        new opencv_core.MatVector(new opencv_core.Mat[]{mat}),
-        new int[]{0, 1},
-        new opencv_core.Mat(),
-        hist,
-        new int[]{50, 60},
-        new float[]{0, 256, 0, 256}
-    );
-    return hist;
+  public static int[] getHistogram(String file) throws IOException {
+    return new ImageData(file).getHistogram();
   }
 
-  public static double compareHistograms(opencv_core.Mat mat1, opencv_core.Mat mat2) {
-    return opencv_imgproc.compareHist(mat1, mat2, opencv_imgproc.HISTCMP_CHISQR);
+  /**
+   * Yields the chi-square distance between two histograms, as computed by OpenCV's compareHist
+   * with HISTCMP_CHISQR: bins that are empty in the first histogram are skipped.
+   */
+  public static double compareHistograms(int[] hist1, int[] hist2) {
+    double result = 0.0;
+    for (int i = 0; i < hist1.length; i++) {
+      if (hist1[i] != 0) {
+        final double diff = hist1[i] - hist2[i];
+        result += diff * diff / hist1[i];
+      }
+    }
+    return result;
   }
 
-  public static double comparePSNR(File file1, File file2) throws FileNotFoundException {
-    opencv_core.Mat image1 = getImage(file1);
-    opencv_core.Mat image2 = getImage(file2);
-    return opencv_core.PSNR(image1, image2);
+  public static double comparePSNR(File file1, File file2) throws IOException {
+    return new ImageData(file1).getPsnr(new ImageData(file2));
   }
 
+  /**
+   * Determines whether two image files have the same pixels, regardless of how they are encoded.
+   * Files that cannot be decoded are never identical.
+   */
   public static boolean identicalImages(File file1, File file2) {
-
-    BufferedImage img1 = null;
-    BufferedImage img2 = null;
-
     try {
-      img1 = ImageIO.read(file1);
-      img2 = ImageIO.read(file2);
+      return new ImagePixels(file1).isIdenticalTo(new ImagePixels(file2));
     } catch (IOException exception) {
       exception.printStackTrace();
-    }
-
-    int height = img1.getHeight();
-    int width = img1.getWidth();
-    if (img2.getHeight() != height || img2.getWidth() != width) {
       return false;
     }
+  }
 
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        if (img1.getRGB(i, j) != img2.getRGB(i, j)) {
-          return false;
-        }
-      }
+  static BufferedImage readImage(File imageFile) throws IOException {
+    if (!imageFile.isFile()) {
+      throw new FileNotFoundException(imageFile.toString());
+    }
+    final BufferedImage image = ImageIO.read(imageFile);
+    if (image == null) {
+      throw new IOException("Could not decode image " + imageFile);
     }
+    return image;
+  }
 
-    return true;
+  static BufferedImage readImage(byte[] imageBytes) throws IOException {
+    final BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+    if (image == null) {
+      throw new IOException("Could not decode image.");
+    }
+    return image;
   }
 
-  public static void main(String[] args) throws FileNotFoundException {
+  public static void main(String[] args) throws IOException {
     System.out.println(compareHistograms(getHistogram(args[0]), getHistogram(args[1])));
   }
 }
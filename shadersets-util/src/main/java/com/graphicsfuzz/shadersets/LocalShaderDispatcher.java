@@ -18,6 +18,7 @@ package com.graphicsfuzz.shadersets;
 
 import com.graphicsfuzz.server.thrift.ComputeJobResult;
 import com.graphicsfuzz.server.thrift.FuzzerServiceConstants;
+import com.graphicsfuzz.server.thrift.ImageJob;
 import com.graphicsfuzz.server.thrift.ImageJobResult;
 import com.graphicsfuzz.server.thrift.JobStatus;
 import com.graphicsfuzz.server.thrift.ResultConstant;
@@ -26,6 +27,8 @@ import com.graphicsfuzz.util.ExecResult;
 import com.graphicsfuzz.util.ToolHelper;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.FileUtils;
 
 public class LocalShaderDispatcher implements IShaderDispatcher {
 
@@ -49,11 +52,7 @@ public class LocalShaderDispatcher implements IShaderDispatcher {
     }
 
     try {
-      ExecResult res = usingSwiftshader
-          ? ToolHelper.runSwiftshaderOnShader(RedirectType.TO_BUFFER, fragmentShaderFile,
-              tempImageFile, skipRender)
-          : ToolHelper.runGenerateImageOnShader(RedirectType.TO_BUFFER, fragmentShaderFile,
-          tempImageFile, skipRender);
+      ExecResult res = runImageTool(fragmentShaderFile, tempImageFile, skipRender);
 
       ImageJobResult imageJobResult = new ImageJobResult();
 
@@ -67,7 +66,10 @@ public class LocalShaderDispatcher implements IShaderDispatcher {
       ResultConstant resultConstant = ResultConstant.ERROR;
       JobStatus status = JobStatus.UNEXPECTED_ERROR;
 
-      if (res.res == FuzzerServiceConstants.COMPILE_ERROR_EXIT_CODE) {
+      if (res.timedOut) {
+        resultConstant = ResultConstant.TIMEOUT;
+        status = JobStatus.TIMEOUT;
+      } else if (res.res == FuzzerServiceConstants.COMPILE_ERROR_EXIT_CODE) {
         resultConstant = ResultConstant.COMPILE_ERROR;
         status = JobStatus.COMPILE_ERROR;
       } else if (res.res == FuzzerServiceConstants.LINK_ERROR_EXIT_CODE) {
@@ -87,9 +89,53 @@ public class LocalShaderDispatcher implements IShaderDispatcher {
     }
   }
 
+  @Override
+  public ImageJobResult getImage(
+      ImageJob imageJob,
+      File tempImageFile) throws ShaderDispatchException, InterruptedException {
+
+    if (imageJob.isSetVertexSource()) {
+      throw new RuntimeException("Not yet supporting vertex shaders in local image generation.");
+    }
+
+    // The image generation tools read shaders and their uniforms from disk, so the fragment shader
+    // and its JSON file are written to scratch files for the duration of the job.
+    File shaderFilesPrefix = null;
+    try {
+      shaderFilesPrefix = File.createTempFile(imageJob.getName(), "");
+      FileUtils.writeStringToFile(new File(shaderFilesPrefix + ".frag"),
+          imageJob.getFragmentSource(), StandardCharsets.UTF_8);
+      FileUtils.writeStringToFile(new File(shaderFilesPrefix + ".json"),
+          imageJob.getUniformsInfo(), StandardCharsets.UTF_8);
+      return getImage(shaderFilesPrefix.getAbsolutePath(), tempImageFile,
+          imageJob.isSkipRender());
+    } catch (IOException exception) {
+      throw new ShaderDispatchException(exception);
+    } finally {
+      if (shaderFilesPrefix != null) {
+        FileUtils.deleteQuietly(new File(shaderFilesPrefix + ".frag"));
+        FileUtils.deleteQuietly(new File(shaderFilesPrefix + ".json"));
+        FileUtils.deleteQuietly(shaderFilesPrefix);
+      }
+    }
+  }
+
   @Override
   public ComputeJobResult dispatchCompute(File computeShaderFile, boolean skipExecution) {
     throw new RuntimeException("Compute shaders are not supported locally.");
   }
 
+  /**
+   * Runs the image generation tool, which reads the uniforms from the JSON file next to the
+   * fragment shader.
+   */
+  ExecResult runImageTool(File fragmentShaderFile, File tempImageFile, boolean skipRender)
+      throws IOException, InterruptedException {
+    return usingSwiftshader
+        ? ToolHelper.runSwiftshaderOnShader(RedirectType.TO_BUFFER, fragmentShaderFile,
+            tempImageFile, skipRender)
+        : ToolHelper.runGenerateImageOnShader(RedirectType.TO_BUFFER, fragmentShaderFile,
+        tempImageFile, skipRender);
+  }
+
 }
@@ -30,6 +30,9 @@ public class MetricImageFileComparator implements IImageFileComparator {
   private final boolean above;
   private final ImageComparisonMetric metric;
 
+  private final ReferenceImageCache<ImageData> referenceCache =
+      new ReferenceImageCache<>(ImageData::new);
+
   public MetricImageFileComparator(double threshold, boolean above, ImageComparisonMetric metric) {
     this.threshold = threshold;
     this.above = above;
@@ -41,16 +44,16 @@ public class MetricImageFileComparator implements IImageFileComparator {
     try {
       LOGGER.info("Comparing: {} and {}.", reference, variant);
 
+      final ImageData referenceData = referenceCache.get(reference);
+      final ImageData variantData = new ImageData(variant);
       double diff = 0.0;
       switch (metric) {
 
         case HISTOGRAM_CHISQR:
-          diff = ImageUtil.compareHistograms(
-              ImageUtil.getHistogram(reference.toString()),
-              ImageUtil.getHistogram(variant.toString()));
+          diff = referenceData.getHistogramDistance(variantData);
           break;
         case PSNR:
-          diff = ImageUtil.comparePSNR(reference, variant);
+          diff = referenceData.getPsnr(variantData);
           break;
         default:
           throw new RuntimeException("Unrecognised image comparison metric: " + metric.toString());
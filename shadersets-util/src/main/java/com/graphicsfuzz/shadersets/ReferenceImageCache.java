@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.shadersets;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Keeps the last reference image decoded by a comparator: the reference rarely changes during a
+ * reduction, while every variant is compared against it.  A cached image is used only while the
+ * file's size and modification time are unchanged.
+ */
+final class ReferenceImageCache<T> {
+
+  @FunctionalInterface
+  interface Decoder<T> {
+
+    T decode(File file) throws IOException;
+  }
+
+  private static final class Entry<T> {
+    private final File file;
+    private final long lastModified;
+    private final long length;
+    private final T image;
+
+    private Entry(File file, long lastModified, long length, T image) {
+      this.file = file;
+      this.lastModified = lastModified;
+      this.length = length;
+      this.image = image;
+    }
+
+    private boolean isFor(File other) {
+      return file.equals(other) && lastModified == other.lastModified()
+          && length == other.length();
+    }
+  }
+
+  private final Decoder<T> decoder;
+  private volatile Entry<T> entry;
+
+  ReferenceImageCache(Decoder<T> decoder) {
+    this.decoder = decoder;
+  }
+
+  T get(File file) throws IOException {
+    final Entry<T> cached = entry;
+    if (cached != null && cached.isFor(file)) {
+      return cached.image;
+    }
+    // Take the file's details before decoding it, so that a change while decoding is noticed.
+    final long lastModified = file.lastModified();
+    final long length = file.length();
+    final Entry<T> result = new Entry<>(file, lastModified, length, decoder.decode(file));
+    entry = result;
+    return result.image;
+  }
+
+}
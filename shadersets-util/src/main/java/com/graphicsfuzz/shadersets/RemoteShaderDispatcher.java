@@ -85,27 +85,44 @@ public class RemoteShaderDispatcher implements IShaderDispatcher {
 
     LOGGER.info("Get image (via server) {}", shaderFilesPrefix);
 
+    final ImageJob imageJob;
+    try {
+      imageJob = getImageJob(shaderFilesPrefix, skipRender);
+    } catch (IOException exception) {
+      throw new ShaderDispatchException(exception);
+    }
+    return getImageHelper(imageJob);
+  }
+
+  @Override
+  public ImageJobResult getImage(
+      ImageJob imageJob,
+      File outputImageFile) throws ShaderDispatchException {
+
+    LOGGER.info("Get image (via server) {}", imageJob.getName());
+
+    return getImageHelper(imageJob);
+  }
+
+  private ImageJobResult getImageHelper(ImageJob imageJob) throws ShaderDispatchException {
     // Optimisation: no need to actually use HTTP if we are on the server.
     if (fuzzerServiceManager != null) {
       try {
-        return getImageHelper(shaderFilesPrefix, fuzzerServiceManager, skipRender);
-      } catch (IOException | TException exception) {
+        return submitImageJob(imageJob, fuzzerServiceManager);
+      } catch (TException exception) {
         throw new ShaderDispatchException(exception);
       }
     } else {
       try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-        return getImageHelper(shaderFilesPrefix, getFuzzerServiceManagerProxy(httpClient),
-            skipRender);
+        return submitImageJob(imageJob, getFuzzerServiceManagerProxy(httpClient));
       } catch (IOException | TException exception) {
         throw new ShaderDispatchException(exception);
       }
     }
   }
 
-  private ImageJobResult getImageHelper(String shaderFilesPrefix,
-      FuzzerServiceManager.Iface fuzzerServiceManagerProxy,
-      boolean skipRender)
-      throws IOException, TException {
+  private ImageJob getImageJob(String shaderFilesPrefix, boolean skipRender)
+      throws IOException {
 
     ImageJob imageJob = new ImageJob()
         .setSkipRender(skipRender)
@@ -132,6 +149,12 @@ public class RemoteShaderDispatcher implements IShaderDispatcher {
       setPrimitives(imageJob, primitivesFile);
     }
 
+    return imageJob;
+  }
+
+  private ImageJobResult submitImageJob(ImageJob imageJob,
+      FuzzerServiceManager.Iface fuzzerServiceManagerProxy) throws TException {
+
     final Job job = new Job()
         .setJobId(jobCounter.incrementAndGet())
         .setImageJob(imageJob);
@@ -28,11 +28,22 @@ import com.graphicsfuzz.server.thrift.ImageJobResult;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.imageio.ImageIO;
 import javax.imageio.stream.FileImageOutputStream;
@@ -83,9 +94,21 @@ public class RunShaderSet {
         .type(String.class);
 
     parser.addArgument("--token")
-        .help("The token of the client used for get image requests. Used with --server.")
+        .help("The token of the client used for get image requests. Used with --server.  May be "
+            + "a comma-separated list of tokens of equivalent workers, in which case the "
+            + "variants are shared between them.")
         .type(String.class);
 
+    parser.addArgument("--local_workers")
+        .help("Number of image generation processes to run at once when not using a server.")
+        .setDefault(1)
+        .type(Integer.class);
+
+    parser.addArgument("--jobs_per_worker")
+        .help("Maximum number of variants in flight at once for each worker.")
+        .setDefault(1)
+        .type(Integer.class);
+
     parser.addArgument("--output")
         .help("Output directory.")
         .setDefault(new File("."))
@@ -103,6 +126,8 @@ public class RunShaderSet {
     final String server = ns.get("server");
     final String token = ns.get("token");
     final File outputDir = ns.get("output");
+    final int localWorkers = ns.get("local_workers");
+    final int jobsPerWorker = ns.get("jobs_per_worker");
 
     if (managerOverride != null && (server == null || token == null)) {
       throw new ArgumentParserException(
@@ -116,14 +141,27 @@ public class RunShaderSet {
       }
     }
 
-    IShaderDispatcher imageGenerator =
-        server == null
-            ? new LocalShaderDispatcher(false)
-            : new RemoteShaderDispatcher(
-                server + "/manageAPI",
-                token,
-                managerOverride,
-                new AtomicLong());
+    if (localWorkers < 1 || jobsPerWorker < 1) {
+      throw new ArgumentParserException(
+          "Numbers of local workers and of jobs per worker must be positive.", parser);
+    }
+
+    final List<IShaderDispatcher> imageGenerators = new ArrayList<>();
+    if (server == null) {
+      for (int i = 0; i < localWorkers; i++) {
+        imageGenerators.add(new LocalShaderDispatcher(false));
+      }
+    } else {
+      // Job ids are shared so that they are unique across the workers.
+      final AtomicLong jobCounter = new AtomicLong();
+      for (String workerToken : token.split(",")) {
+        imageGenerators.add(new RemoteShaderDispatcher(
+            server + "/manageAPI",
+            workerToken,
+            managerOverride,
+            jobCounter));
+      }
+    }
 
     FileUtils.forceMkdir(outputDir);
 
@@ -133,19 +171,32 @@ public class RunShaderSet {
             "Shader set must be a directory or a single .frag shader.", parser);
       }
       // Special case: run get image on a single shader.
-      runShader(shaderSetFile, outputDir, imageGenerator, Optional.empty());
+      runShader(shaderSetFile, outputDir, imageGenerators.get(0), Optional.empty());
       return;
     }
 
     IShaderSet shaderSet = new LocalShaderSet(shaderSetFile);
 
-    runShaderSet(shaderSet, outputDir, imageGenerator);
+    runShaderSet(shaderSet, outputDir, imageGenerators, jobsPerWorker);
   }
 
   public static int runShaderSet(IShaderSet shaderSet, File workDir,
       IShaderDispatcher imageGenerator)
       throws ShaderDispatchException, InterruptedException, IOException {
+    return runShaderSet(shaderSet, workDir, Collections.singletonList(imageGenerator), 1);
+  }
 
+  /**
+   * Runs the reference and then the variants of a shader set, sharing the variants between the
+   * given image generators, each of which has up to jobsPerWorker variants in flight at once.
+   * Variants are handed out one at a time, so faster workers do more of them.
+   * @return The number of shaders run.
+   */
+  public static int runShaderSet(IShaderSet shaderSet, File workDir,
+      List<IShaderDispatcher> imageGenerators, int jobsPerWorker)
+      throws ShaderDispatchException, InterruptedException, IOException {
+
+    final IShaderDispatcher imageGenerator = imageGenerators.get(0);
     int numShadersRun = 0;
 
     IShaderSetExperiment experiment = new LocalShaderSetExperiement(workDir.toString(), shaderSet);
@@ -160,37 +211,95 @@ public class RunShaderSet {
       return numShadersRun;
     }
 
-    for (File variant : shaderSet.getVariants()) {
-
-      boolean foundImageOrTextFile =
-          experiment
-              .getVariantImages()
-              .anyMatch(f ->
-                  FilenameUtils.removeExtension(f.getName())
-                      .equals(FilenameUtils.removeExtension(variant.getName())))
-              ||
-              experiment
-                  .getVariantTextFiles()
-                  .anyMatch(f ->
-                      FilenameUtils.removeExtension(f.getName())
-                          .equals(FilenameUtils.removeExtension(variant.getName())));
-
-      if (foundImageOrTextFile) {
-        LOGGER.info("Skipping {} because we already have a result.", variant);
-      } else {
-        try {
-          runShader(variant, workDir, imageGenerator,
-              Optional.of(new ImageData(experiment.getReferenceImage())));
-        } catch (Exception err) {
-          LOGGER.error("runShader() raise exception on {}", variant);
-          err.printStackTrace();
+    // Decoded once, and shared by all the variants.
+    final ImageData referenceImage = new ImageData(experiment.getReferenceImage());
+
+    final int numThreads = imageGenerators.size() * jobsPerWorker;
+    final ExecutorService executor =
+        numThreads == 1 ? null : Executors.newFixedThreadPool(numThreads);
+    final AtomicInteger numVariantsRun = new AtomicInteger();
+
+    try {
+      // Variants may still be being generated, so look for new ones until a pass over the shader
+      // set finds none.
+      final Set<String> visited = new HashSet<>();
+      while (true) {
+        boolean foundNewVariant = false;
+        final Queue<File> pending = new ConcurrentLinkedQueue<>();
+        for (File variant : shaderSet.getVariants()) {
+          final String variantName = FilenameUtils.removeExtension(variant.getName());
+          if (!visited.add(variantName)) {
+            continue;
+          }
+          foundNewVariant = true;
+          if (experiment.hasVariantResult(variantName)) {
+            LOGGER.info("Skipping {} because we already have a result.", variant);
+          } else {
+            pending.add(variant);
+          }
+        }
+        if (!foundNewVariant) {
+          break;
+        }
+
+        final List<Future<?>> futures = new ArrayList<>();
+        for (IShaderDispatcher worker : imageGenerators) {
+          for (int i = 0; i < jobsPerWorker; i++) {
+            final Runnable runVariants = () -> runVariants(pending, experiment, referenceImage,
+                workDir, worker, numVariantsRun);
+            if (executor == null) {
+              runVariants.run();
+              if (Thread.interrupted()) {
+                throw new InterruptedException();
+              }
+            } else {
+              futures.add(executor.submit(runVariants));
+            }
+          }
         }
-        ++numShadersRun;
+        for (Future<?> future : futures) {
+          try {
+            future.get();
+          } catch (ExecutionException exception) {
+            throw new ShaderDispatchException(exception.getCause());
+          }
+        }
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
       }
     }
+    numShadersRun += numVariantsRun.get();
     return numShadersRun;
   }
 
+  private static void runVariants(Queue<File> pending, IShaderSetExperiment experiment,
+      ImageData referenceImage, File workDir, IShaderDispatcher imageGenerator,
+      AtomicInteger numVariantsRun) {
+    while (true) {
+      final File variant = pending.poll();
+      if (variant == null) {
+        return;
+      }
+      try {
+        final ImageJobResult result = runShader(variant, workDir, imageGenerator,
+            Optional.of(referenceImage));
+        if (result.isSetLog() || result.isSetPNG()) {
+          experiment.addVariantResult(FilenameUtils.removeExtension(variant.getName()));
+        }
+      } catch (InterruptedException exception) {
+        // The caller has given up on the shader set, so the remaining variants are not run.
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ShaderDispatchException | IOException err) {
+        LOGGER.error("runShader() raise exception on {}", variant);
+        err.printStackTrace();
+      }
+      numVariantsRun.incrementAndGet();
+    }
+  }
+
   public static ImageJobResult runShader(File shader, File workDir,
       IShaderDispatcher imageGenerator, Optional<ImageData> referenceImage)
       throws ShaderDispatchException, InterruptedException, IOException {
@@ -247,14 +356,14 @@ public class RunShaderSet {
     // Dump job info in JSON
     File outputJson = new File(workDir,
         FilenameUtils.removeExtension(shader.getName()) + ".info.json");
-    JsonObject infoJson = makeInfoJson(res, outputImage, referenceImage);
+    JsonObject infoJson = makeInfoJson(res, referenceImage);
     FileUtils.writeStringToFile(outputJson,
         JsonHelper.jsonToString(infoJson), Charset.defaultCharset());
 
     return res;
   }
 
-  private static JsonObject makeInfoJson(ImageJobResult res, File outputImage,
+  private static JsonObject makeInfoJson(ImageJobResult res,
       Optional<ImageData> referenceImage) {
     JsonObject infoJson = new JsonObject();
     if (res.isSetTimingInfo()) {
@@ -269,17 +378,17 @@ public class RunShaderSet {
     if (res.isSetPNG() && referenceImage.isPresent()) {
       try {
         // Add image data, e.g. histogram distance
+        final ImageData outputImageData = new ImageData(res.getPNG());
         final Map<String, Double> imageStats = referenceImage.get().getImageDiffStats(
-            new ImageData(outputImage.getAbsolutePath()));
+            outputImageData);
         final JsonObject metrics = new JsonObject();
         for (String key : imageStats.keySet()) {
           metrics.addProperty(key, imageStats.get(key));
         }
-        boolean isIdentical =
-              ImageUtil.identicalImages(outputImage, referenceImage.get().imageFile);
+        boolean isIdentical = referenceImage.get().isIdenticalTo(outputImageData);
         metrics.addProperty("identical", isIdentical);
         infoJson.add("metrics", metrics);
-      } catch (FileNotFoundException err) {
+      } catch (IOException err) {
         err.printStackTrace();
       }
     }
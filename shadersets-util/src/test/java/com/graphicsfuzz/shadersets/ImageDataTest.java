@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.shadersets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import javax.imageio.ImageIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The expected values are those that OpenCV's cvtColor(COLOR_BGR2HSV), calcHist (50 hue and 60
+ * saturation bins over [0, 256)), compareHist(HISTCMP_CHISQR) and PSNR give for the same pixels.
+ */
+public class ImageDataTest {
+
+  private static final int RED = 0xff0000;
+  private static final int GREEN = 0x00ff00;
+  private static final int BLUE = 0x0000ff;
+  private static final int GREY = 0x808080;
+  private static final int ORANGE = 0xff8000;
+  private static final int STEEL = 0x3264c8;
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void testHistogramMatchesOpenCv() throws Exception {
+    final ImageData image = new ImageData(writeImage("colours.png", 3, 2,
+        BufferedImage.TYPE_INT_RGB, RED, GREEN, BLUE, GREY, ORANGE, STEEL));
+    // In OpenCV's HSV: red (0, 255, 255), green (60, 255, 255), blue (120, 255, 255),
+    // grey (0, 0, 128), orange (15, 255, 255) and steel (110, 191, 200).
+    final int[] expected = new int[50 * 60];
+    expected[histogramBin(0, 255)]++;
+    expected[histogramBin(60, 255)]++;
+    expected[histogramBin(120, 255)]++;
+    expected[histogramBin(0, 0)]++;
+    expected[histogramBin(15, 255)]++;
+    expected[histogramBin(110, 191)]++;
+    assertArrayEquals(expected, image.getHistogram());
+    assertEquals(59, histogramBin(0, 255));
+    assertEquals(719, histogramBin(60, 255));
+    assertEquals(1439, histogramBin(120, 255));
+    assertEquals(179, histogramBin(15, 255));
+    assertEquals(1304, histogramBin(110, 191));
+  }
+
+  @Test
+  public void testHistogramDistanceMatchesOpenCv() throws Exception {
+    final ImageData redAndGreen = new ImageData(writeImage("redAndGreen.png", 2, 2,
+        BufferedImage.TYPE_INT_RGB, RED, GREEN, RED, GREEN));
+    final ImageData red = new ImageData(writeImage("red.png", 2, 2,
+        BufferedImage.TYPE_INT_RGB, RED, RED, RED, RED));
+    // Bins that are empty in the first histogram do not count.
+    assertEquals(4.0, redAndGreen.getHistogramDistance(red), 0.0);
+    assertEquals(1.0, red.getHistogramDistance(redAndGreen), 0.0);
+    assertEquals(0.0, red.getHistogramDistance(red), 0.0);
+  }
+
+  @Test
+  public void testPsnrMatchesOpenCv() throws Exception {
+    final ImageData red = new ImageData(writeImage("red.png", 2, 2,
+        BufferedImage.TYPE_INT_RGB, RED, RED, RED, RED));
+    final ImageData green = new ImageData(writeImage("green.png", 2, 2,
+        BufferedImage.TYPE_INT_RGB, GREEN, GREEN, GREEN, GREEN));
+    // Only the hue differs, by 60.
+    assertEquals(17.338991148202854, red.getPsnr(green), 1e-9);
+    assertEquals(361.20199909921956, red.getPsnr(red), 1e-9);
+    assertEquals(red.getPsnr(green),
+        ImageUtil.comparePSNR(red.imageFile, green.imageFile), 0.0);
+  }
+
+  @Test
+  public void testEncodingDoesNotMatter() throws Exception {
+    final ImageData rgb = new ImageData(writeImage("rgb.png", 3, 2,
+        BufferedImage.TYPE_INT_RGB, RED, GREEN, BLUE, GREY, ORANGE, STEEL));
+    final ImageData argb = new ImageData(writeImage("argb.png", 3, 2,
+        BufferedImage.TYPE_INT_ARGB, RED, GREEN, BLUE, GREY, ORANGE, STEEL));
+    final ImageData bgr = new ImageData(writeImage("bgr.png", 3, 2,
+        BufferedImage.TYPE_3BYTE_BGR, RED, GREEN, BLUE, GREY, ORANGE, STEEL));
+    assertArrayEquals(rgb.getHistogram(), argb.getHistogram());
+    assertArrayEquals(rgb.getHistogram(), bgr.getHistogram());
+    assertTrue(rgb.isIdenticalTo(argb));
+    assertTrue(rgb.isIdenticalTo(bgr));
+  }
+
+  private static int histogramBin(int hue, int saturation) {
+    return (hue * 50 / 256) * 60 + saturation * 60 / 256;
+  }
+
+  private File writeImage(String name, int width, int height, int imageType, int... rgb)
+      throws Exception {
+    final BufferedImage image = new BufferedImage(width, height, imageType);
+    for (int i = 0; i < rgb.length; i++) {
+      image.setRGB(i % width, i / width, 0xff000000 | rgb[i]);
+    }
+    final File file = new File(testFolder.getRoot(), name);
+    assertTrue(ImageIO.write(image, "png", file));
+    return file;
+  }
+
+}
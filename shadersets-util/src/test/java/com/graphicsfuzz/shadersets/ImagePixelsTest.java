@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.shadersets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import javax.imageio.ImageIO;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ImagePixelsTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void testFindDifferingRow() throws Exception {
+    final ImagePixels original = new ImagePixels(makeImage(4, 5, -1, -1));
+    assertEquals(-1, original.findDifferingRow(new ImagePixels(makeImage(4, 5, -1, -1))));
+    for (int row = 0; row < 5; row++) {
+      assertEquals(row, original.findDifferingRow(new ImagePixels(makeImage(4, 5, 3, row))));
+    }
+  }
+
+  @Test
+  public void testImagesOfDifferentSizesDiffer() throws Exception {
+    assertFalse(new ImagePixels(makeImage(4, 5, -1, -1))
+        .isIdenticalTo(new ImagePixels(makeImage(5, 4, -1, -1))));
+  }
+
+  @Test
+  public void testIdenticalImagesWhoseWidthAndHeightDiffer() throws Exception {
+    // The images are wider than they are high and differ only in their last column, so mixing up
+    // x and y would either fail or miss the difference.
+    final File first = writeImage("first.png", makeImage(7, 3, -1, -1));
+    final File same = writeImage("same.png", makeImage(7, 3, -1, -1));
+    final File different = writeImage("different.png", makeImage(7, 3, 6, 2));
+    assertTrue(ImageUtil.identicalImages(first, same));
+    assertFalse(ImageUtil.identicalImages(first, different));
+    assertFalse(ImageUtil.identicalImages(different, first));
+  }
+
+  @Test
+  public void testIdenticalImagesIgnoresEncoding() throws Exception {
+    final BufferedImage image = makeImage(7, 3, -1, -1);
+    final BufferedImage bgr = new BufferedImage(7, 3, BufferedImage.TYPE_3BYTE_BGR);
+    bgr.getGraphics().drawImage(image, 0, 0, null);
+    assertTrue(ImageUtil.identicalImages(writeImage("rgb.png", image),
+        writeImage("bgr.png", bgr)));
+  }
+
+  @Test
+  public void testImagesThatCannotBeDecodedAreNotIdentical() throws Exception {
+    final File image = writeImage("image.png", makeImage(2, 2, -1, -1));
+    final File notAnImage = testFolder.newFile("notAnImage.png");
+    FileUtils.writeStringToFile(notAnImage, "not an image", StandardCharsets.UTF_8);
+    assertFalse(ImageUtil.identicalImages(image, notAnImage));
+    assertFalse(ImageUtil.identicalImages(image, new File(testFolder.getRoot(), "missing.png")));
+  }
+
+  /**
+   * Makes an image with a gradient, in which the pixel at the given position, if any, is changed.
+   */
+  private static BufferedImage makeImage(int width, int height, int changedX, int changedY) {
+    final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, (x * 30) << 16 | (y * 40) << 8);
+      }
+    }
+    if (changedX >= 0) {
+      image.setRGB(changedX, changedY, image.getRGB(changedX, changedY) ^ 1);
+    }
+    return image;
+  }
+
+  private File writeImage(String name, BufferedImage image) throws Exception {
+    final File file = new File(testFolder.getRoot(), name);
+    assertTrue(ImageIO.write(image, "png", file));
+    return file;
+  }
+
+}
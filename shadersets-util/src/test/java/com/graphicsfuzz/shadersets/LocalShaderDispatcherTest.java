@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.shadersets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.graphicsfuzz.server.thrift.ImageJob;
+import com.graphicsfuzz.server.thrift.ImageJobResult;
+import com.graphicsfuzz.server.thrift.JobStatus;
+import com.graphicsfuzz.util.ExecResult;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalShaderDispatcherTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void testImageJobUniformsAreWrittenNextToTheShader() throws Exception {
+    final String fragmentSource = "void main() { gl_FragColor = vec4(injectionSwitch, 0, 1); }";
+    final String uniformsInfo = "{ \"injectionSwitch\": { \"func\": \"glUniform2f\", "
+        + "\"args\": [ 0.0, 1.0 ] } }";
+    final List<File> shadersRendered = new ArrayList<>();
+    final LocalShaderDispatcher dispatcher = new LocalShaderDispatcher(false) {
+      @Override
+      ExecResult runImageTool(File fragmentShaderFile, File tempImageFile, boolean skipRender)
+          throws IOException {
+        assertEquals(fragmentSource,
+            FileUtils.readFileToString(fragmentShaderFile, StandardCharsets.UTF_8));
+        final File uniformsFile = new File(
+            FilenameUtils.removeExtension(fragmentShaderFile.getAbsolutePath()) + ".json");
+        assertEquals(uniformsInfo,
+            FileUtils.readFileToString(uniformsFile, StandardCharsets.UTF_8));
+        shadersRendered.add(fragmentShaderFile);
+        return new ExecResult(0, new StringBuffer(), new StringBuffer(), null, null);
+      }
+    };
+
+    final ImageJobResult result = dispatcher.getImage(new ImageJob()
+            .setName("shader")
+            .setFragmentSource(fragmentSource)
+            .setUniformsInfo(uniformsInfo),
+        new File(testFolder.getRoot(), "image.png"));
+
+    assertEquals(JobStatus.SUCCESS, result.getStatus());
+    assertEquals(1, shadersRendered.size());
+    final File fragmentShaderFile = shadersRendered.get(0);
+    // The scratch files do not outlive the job.
+    assertFalse(fragmentShaderFile.exists());
+    assertFalse(new File(FilenameUtils.removeExtension(fragmentShaderFile.getAbsolutePath())
+        + ".json").exists());
+  }
+
+}
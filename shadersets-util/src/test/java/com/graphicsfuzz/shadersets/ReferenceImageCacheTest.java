@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.shadersets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReferenceImageCacheTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  private final List<File> decoded = new ArrayList<>();
+
+  private final ReferenceImageCache<String> cache = new ReferenceImageCache<>(file -> {
+    decoded.add(file);
+    return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+  });
+
+  @Test
+  public void testUnchangedFileIsDecodedOnce() throws Exception {
+    final File reference = writeFile("reference.png", "reference");
+    final String image = cache.get(reference);
+    assertEquals("reference", image);
+    assertSame(image, cache.get(reference));
+    assertSame(image, cache.get(new File(reference.getPath())));
+    assertEquals(1, decoded.size());
+  }
+
+  @Test
+  public void testChangedFileIsDecodedAgain() throws Exception {
+    final File reference = writeFile("reference.png", "reference");
+    cache.get(reference);
+    FileUtils.writeStringToFile(reference, "new reference", StandardCharsets.UTF_8);
+    assertEquals("new reference", cache.get(reference));
+
+    // A rewrite of the same length is noticed through the modification time.
+    FileUtils.writeStringToFile(reference, "NEW REFERENCE", StandardCharsets.UTF_8);
+    reference.setLastModified(reference.lastModified() - 10000);
+    assertEquals("NEW REFERENCE", cache.get(reference));
+    assertEquals(3, decoded.size());
+  }
+
+  @Test
+  public void testOnlyTheLastFileIsKept() throws Exception {
+    final File first = writeFile("first.png", "first");
+    final File second = writeFile("second.png", "second");
+    assertEquals("first", cache.get(first));
+    assertEquals("second", cache.get(second));
+    assertEquals("second", cache.get(second));
+    assertEquals("first", cache.get(first));
+    assertEquals(3, decoded.size());
+  }
+
+  private File writeFile(String name, String contents) throws Exception {
+    final File file = testFolder.newFile(name);
+    FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+    return file;
+  }
+
+}
@@ -37,6 +37,7 @@ import com.graphicsfuzz.generator.util.TransformationProbabilities;
 import com.graphicsfuzz.util.ExecHelper.RedirectType;
 import com.graphicsfuzz.util.ExecResult;
 import com.graphicsfuzz.util.ToolHelper;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -184,7 +185,8 @@ public class TestGenerate {
       File outputFile)
       throws IOException, ParseTimeoutException {
 
-    try (PrintStream ps = new PrintStream(new FileOutputStream(outputFile))) {
+    try (PrintStream ps = new PrintStream(
+        new BufferedOutputStream(new FileOutputStream(outputFile)))) {
       // TODO: these tests ultimately should not be limited to fragment shaders.
       Helper.emitDefines(ps, shadingLanguageVersion, ShaderKind.FRAGMENT, true);
       PrettyPrinterVisitor ppv = new PrettyPrinterVisitor(ps);
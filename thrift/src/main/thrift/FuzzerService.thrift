@@ -80,16 +80,26 @@ struct CommandInfo {
   3 : optional string logFile,
 }
 
+// Statistics for the commands a queue has completed.
+struct QueueMetrics {
+  1 : optional i64 completed,
+  2 : optional i64 totalWaitMillis,
+  3 : optional i64 maxWaitMillis,
+  4 : optional i64 totalRunMillis,
+}
+
 struct WorkerInfo {
   1 : optional string token,
   2 : optional list<CommandInfo> commandQueue,
   3 : optional list<string> jobQueue,
   4 : optional bool live,
+  5 : optional QueueMetrics commandQueueMetrics,
 }
 
 struct ServerInfo {
   1 : optional list<CommandInfo> reductionQueue,
-  2 : optional list<WorkerInfo> workers
+  2 : optional list<WorkerInfo> workers,
+  3 : optional QueueMetrics reductionQueueMetrics,
 }
 
 struct GetTokenResult {
@@ -235,9 +245,26 @@ service FuzzerService {
 
   GetTokenResult getToken(1 : string platformInfo, 2 : string token),
 
+  /**
+  * Hands out the job at the front of the worker's job queue.  If there is none, the request is
+  * held for a few seconds in case a job is queued, and then answered with a NoJob.  Only a limited
+  * number of requests are held at once; beyond that, a worker with no job gets a NoJob at once,
+  * and should poll again.
+  **/
   Job getJob(1 : string token) throws (1 : TokenNotFoundException ex),
 
   void jobDone(1 : string token, 2 : Job job) throws (1 : TokenNotFoundException ex),
+
+  /**
+  * Batch variant of getJob: hands out up to maxJobs jobs from the front of the worker's
+  * job queue, waiting for a job as getJob does.  An empty list means there is no job.
+  **/
+  list<Job> getJobs(1 : string token, 2 : i32 maxJobs) throws (1 : TokenNotFoundException ex),
+
+  /**
+  * Batch variant of jobDone: the jobs may be reported in any order.
+  **/
+  void jobsDone(1 : string token, 2 : list<Job> jobs) throws (1 : TokenNotFoundException ex),
 }
 
 /**
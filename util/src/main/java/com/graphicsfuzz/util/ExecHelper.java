@@ -16,13 +16,18 @@
 
 package com.graphicsfuzz.util;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.ProcessBuilder.Redirect;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,14 +59,35 @@ public class ExecHelper {
     pathVar = pathVarTemp;
   }
 
+  /**
+   * Passed as a timeout to wait for a process for as long as it runs.
+   */
+  public static final long NO_TIMEOUT = 0;
+
   private final String additionalPathDirectories;
 
+  // Limits the processes running at once, across all threads using this helper; null if there
+  // is no limit.
+  private final Semaphore processSlots;
+
   public ExecHelper(String additionalPathDirectories) {
-    this.additionalPathDirectories = additionalPathDirectories;
+    this(additionalPathDirectories, 0);
   }
 
   public ExecHelper() {
-    this.additionalPathDirectories = null;
+    this(null);
+  }
+
+  /**
+   * Creates a helper that runs at most maxConcurrentProcesses processes at once, across all
+   * threads that share it; a call to exec waits until a process slot is free.  A limit of 0 means
+   * that there is no limit.
+   */
+  public ExecHelper(String additionalPathDirectories, int maxConcurrentProcesses) {
+    this.additionalPathDirectories = additionalPathDirectories;
+    this.processSlots = maxConcurrentProcesses > 0
+        ? new Semaphore(maxConcurrentProcesses, true)
+        : null;
   }
 
   public ExecResult exec(
@@ -69,6 +95,25 @@ public class ExecHelper {
       File directory,
       boolean shell,
       String... command) throws IOException, InterruptedException {
+    return exec(redirectType, directory, shell, NO_TIMEOUT, command);
+  }
+
+  /**
+   * Runs a command, killing it if it has not finished after timeoutSeconds; the result then
+   * records that the command timed out.
+   *
+   * <p>Output that is buffered is captured in temporary files, which the process writes directly,
+   * and is read once the process has finished.  Unlike reading the process's output pipes, this
+   * needs no extra threads, and a process with a lot of output can never block waiting for its
+   * output to be read.  Output that is logged is read from the pipes as it is produced, so that
+   * the log of a long-running command shows its progress.</p>
+   */
+  public ExecResult exec(
+      RedirectType redirectType,
+      File directory,
+      boolean shell,
+      long timeoutSeconds,
+      String... command) throws IOException, InterruptedException {
 
     LOGGER.info(String.join(" ", command));
 
@@ -92,16 +137,12 @@ public class ExecHelper {
       addToPath(env, additionalPathDirectories);
     }
 
-
-    StringBuffer stdout = null;
-    StringBuffer stderr = null;
     File stdoutFile = null;
     File stderrFile = null;
-    StreamGobbler outputGobbler = null;
-    StreamGobbler errorGobbler = null;
 
     switch (redirectType) {
       case TO_FILE:
+      case TO_BUFFER:
         stdoutFile = File.createTempFile("stdout", "");
         stderrFile = File.createTempFile("stderr", "");
         pb.redirectOutput(stdoutFile);
@@ -112,47 +153,107 @@ public class ExecHelper {
         pb.redirectError(Redirect.INHERIT);
         break;
       case TO_LOG:
-      case TO_BUFFER:
         break;
       default:
         assert false;
     }
 
-    Process process = pb.start();
+    final boolean keepOutputFiles = redirectType == RedirectType.TO_FILE;
+    try {
+      final int res;
+      final boolean timedOut;
+      if (processSlots != null) {
+        processSlots.acquire();
+      }
+      try {
+        final Process process = pb.start();
+        StreamGobbler outputGobbler = null;
+        StreamGobbler errorGobbler = null;
+        if (redirectType == RedirectType.TO_LOG) {
+          outputGobbler = new StreamGobblerLogger(process.getInputStream(), "stdout.");
+          outputGobbler.start();
+          errorGobbler = new StreamGobblerLogger(process.getErrorStream(), "stderr.");
+          errorGobbler.start();
+        }
+        try {
+          process.getOutputStream().close();
+          if (timeoutSeconds == NO_TIMEOUT) {
+            process.waitFor();
+            timedOut = false;
+          } else {
+            timedOut = !process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+          }
+        } finally {
+          // Reached with the process still running if it timed out, or if the wait was
+          // interrupted; either way, the process must not be left behind.
+          if (process.isAlive()) {
+            process.destroyForcibly();
+            process.waitFor();
+          }
+        }
+        res = process.exitValue();
+        // The output is complete once the process has gone and the pipes have been drained.
+        if (outputGobbler != null) {
+          outputGobbler.join();
+          errorGobbler.join();
+        }
+      } finally {
+        if (processSlots != null) {
+          processSlots.release();
+        }
+      }
+      if (timedOut) {
+        LOGGER.warn("Killed after {} seconds: {}", timeoutSeconds, String.join(" ", command));
+      }
+
+      StringBuffer stdout = null;
+      StringBuffer stderr = null;
+      switch (redirectType) {
+        case TO_BUFFER:
+          stdout = readOutput(stdoutFile);
+          stderr = readOutput(stderrFile);
+          break;
+        case TO_STDOUT:
+        case TO_LOG:
+        case TO_FILE:
+          break;
+        default:
+          assert false;
+      }
 
-    switch (redirectType) {
-      case TO_LOG:
-        outputGobbler = new StreamGobblerLogger(process.getInputStream(), "stdout.");
-        outputGobbler.start();
-        errorGobbler = new StreamGobblerLogger(process.getErrorStream(), "stderr.");
-        errorGobbler.start();
-        break;
-      case TO_BUFFER:
-        outputGobbler = new StreamGobblerBuffer(process.getInputStream());
-        outputGobbler.start();
-        errorGobbler = new StreamGobblerBuffer(process.getErrorStream());
-        errorGobbler.start();
-        break;
-      case TO_STDOUT:
-      case TO_FILE:
-        break;
-      default:
-        assert false;
+      return new ExecResult(res, stdout, stderr,
+          keepOutputFiles ? stdoutFile : null,
+          keepOutputFiles ? stderrFile : null,
+          timedOut);
+    } finally {
+      if (!keepOutputFiles) {
+        deleteOutputFile(stdoutFile);
+        deleteOutputFile(stderrFile);
+      }
     }
+  }
 
-    process.getOutputStream().close();
-    int res = process.waitFor();
-
-    if (outputGobbler != null) {
-      outputGobbler.join();
-      stdout = outputGobbler.getResult();
+  private static StringBuffer readOutput(File outputFile) throws IOException {
+    final StringBuffer result = new StringBuffer();
+    try (BufferedReader reader = newOutputReader(outputFile)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        result.append(line);
+        result.append(System.lineSeparator());
+      }
     }
-    if (errorGobbler != null) {
-      errorGobbler.join();
-      stderr = errorGobbler.getResult();
+    return result;
+  }
+
+  private static void deleteOutputFile(File outputFile) {
+    if (outputFile != null && !outputFile.delete()) {
+      LOGGER.warn("Could not delete temporary output file {}.", outputFile);
     }
+  }
 
-    return new ExecResult(res, stdout, stderr, stdoutFile, stderrFile);
+  private static BufferedReader newOutputReader(File outputFile) throws IOException {
+    // Decoded leniently with the platform charset, as the output of a process always has been.
+    return new BufferedReader(new InputStreamReader(Files.newInputStream(outputFile.toPath())));
   }
 
   public static void addToPath(Map<String, String> envVars, String pathToAdd) {
@@ -25,13 +25,21 @@ public class ExecResult {
   public final int res;
   public final File stdoutFile;
   public final File stderrFile;
+  // True if the process was killed for running too long; res is then its exit status once killed.
+  public final boolean timedOut;
 
   public ExecResult(int res, StringBuffer stdout, StringBuffer stderr, File stdoutFile,
       File stderrFile) {
+    this(res, stdout, stderr, stdoutFile, stderrFile, false);
+  }
+
+  public ExecResult(int res, StringBuffer stdout, StringBuffer stderr, File stdoutFile,
+      File stderrFile, boolean timedOut) {
     this.res = res;
     this.stdout = stdout;
     this.stderr = stderr;
     this.stdoutFile = stdoutFile;
     this.stderrFile = stderrFile;
+    this.timedOut = timedOut;
   }
 }
@@ -1,40 +0,0 @@
-/*
- * Copyright 2018 The GraphicsFuzz Project Authors
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     https://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package com.graphicsfuzz.util;
-
-import java.io.InputStream;
-
-public class StreamGobblerBuffer extends StreamGobbler {
-
-  private final StringBuffer result;
-
-  public StreamGobblerBuffer(InputStream inputStream) {
-    super(inputStream);
-    this.result = new StringBuffer();
-  }
-
-  @Override
-  protected void handleLine(String line) {
-    result.append(line);
-    result.append(System.lineSeparator());
-  }
-
-  public StringBuffer getResult() {
-    return result;
-  }
-
-}
\ No newline at end of file
@@ -20,28 +20,67 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class ToolHelper {
 
+  /**
+   * The time after which a validator or translator run is assumed to be stuck, and is killed.
+   */
+  public static final long VALIDATOR_TIMEOUT_SECONDS = 60;
+
+  /**
+   * The time after which an image tool is assumed to be stuck, e.g. rendering a shader that does
+   * not terminate, and is killed.
+   */
+  public static final long IMAGE_TIMEOUT_SECONDS = 300;
+
+  // Generation and reduction run the tools from many threads at once, so the processes are
+  // limited so as not to oversubscribe the machine.  Validators and translators are quick and
+  // single-threaded, and get one slot per core.  Image tools are slow, and each keeps several
+  // cores busy, or waits for the GPU, so fewer of them run at once; they have slots of their own
+  // so that a queue of renders does not hold up validation.
+  private static final ExecHelper validatorExecHelper =
+      new ExecHelper(null, Runtime.getRuntime().availableProcessors());
+
+  private static final ExecHelper imageExecHelper =
+      new ExecHelper(null, Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+
   public static ExecResult runValidatorOnShader(ExecHelper.RedirectType redirectType, File file)
         throws IOException, InterruptedException {
-    return new ExecHelper().exec(
+    return runValidatorOnShaders(redirectType, Collections.singletonList(file));
+  }
+
+  /**
+   * Validates several shaders with a single run of the validator, which succeeds only if all of
+   * the shaders are valid.
+   */
+  public static ExecResult runValidatorOnShaders(ExecHelper.RedirectType redirectType,
+        List<File> files)
+        throws IOException, InterruptedException {
+    final List<String> command = new ArrayList<>();
+    command.add(ToolPaths.glslangValidator());
+    for (File file : files) {
+      command.add(file.toString());
+    }
+    return validatorExecHelper.exec(
           redirectType,
           null,
           false,
-          ToolPaths.glslangValidator(),
-          file.toString());
+          VALIDATOR_TIMEOUT_SECONDS,
+          command.toArray(new String[]{}));
   }
 
   public static ExecResult runShaderTranslatorOnShader(ExecHelper.RedirectType redirectType,
         File file,
         String arg)
         throws IOException, InterruptedException {
-    return new ExecHelper().exec(
+    return validatorExecHelper.exec(
           redirectType,
           null,
           false,
+          VALIDATOR_TIMEOUT_SECONDS,
           ToolPaths.shaderTranslator(),
           arg,
           file.toString());
@@ -59,10 +98,11 @@ public class ToolHelper {
       command.add("--exit_linking");
     }
 
-    return new ExecHelper().exec(
+    return imageExecHelper.exec(
           redirectType,
           null,
           false,
+          IMAGE_TIMEOUT_SECONDS,
           command.toArray(new String[]{}));
   }
 
@@ -96,10 +136,11 @@ public class ToolHelper {
       command.add("--exit_linking");
     }
 
-    return new ExecHelper().exec(
+    return imageExecHelper.exec(
           redirectType,
           null,
           false,
+          IMAGE_TIMEOUT_SECONDS,
           command.toArray(new String[]{}));
   }
 
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 The GraphicsFuzz Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.graphicsfuzz.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import com.graphicsfuzz.util.ExecHelper.RedirectType;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExecHelperTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Before
+  public void requirePosixShell() {
+    assumeFalse(System.getProperty("os.name").toLowerCase().startsWith("windows"));
+  }
+
+  @Test
+  public void testOutputIsBuffered() throws Exception {
+    final ExecResult result = new ExecHelper().exec(RedirectType.TO_BUFFER, null, false,
+        "sh", "-c", "echo out; echo err 1>&2; exit 3");
+    assertEquals(3, result.res);
+    assertFalse(result.timedOut);
+    assertEquals("out" + System.lineSeparator(), result.stdout.toString());
+    assertEquals("err" + System.lineSeparator(), result.stderr.toString());
+  }
+
+  @Test
+  public void testProcessIsKilledOnTimeout() throws Exception {
+    final File pidFile = new File(testFolder.getRoot(), "pid");
+    final long start = System.nanoTime();
+    final ExecResult result = new ExecHelper().exec(RedirectType.TO_LOG, null, false, 1,
+        "sh", "-c", "echo $$ > " + pidFile + "; exec sleep 60");
+    assertTrue(result.timedOut);
+    assertNotEquals(0, result.res);
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+    assertFalse(isRunning(readPid(pidFile)));
+  }
+
+  @Test
+  public void testProcessIsKilledWhenInterrupted() throws Exception {
+    final File pidFile = new File(testFolder.getRoot(), "pid");
+    final AtomicReference<Throwable> thrown = new AtomicReference<>();
+    final Thread thread = new Thread(() -> {
+      try {
+        new ExecHelper().exec(RedirectType.TO_BUFFER, null, false,
+            "sh", "-c", "echo $$ > " + pidFile + "; exec sleep 60");
+      } catch (Throwable throwable) {
+        thrown.set(throwable);
+      }
+    });
+    thread.start();
+    final String pid = readPid(pidFile);
+    thread.interrupt();
+    thread.join(TimeUnit.SECONDS.toMillis(30));
+    assertFalse(thread.isAlive());
+    assertTrue(thrown.get() instanceof InterruptedException);
+    assertFalse(isRunning(pid));
+  }
+
+  /**
+   * Waits for the process to record its id in the given file, and yields it.
+   */
+  private static String readPid(File pidFile) throws Exception {
+    for (int i = 0; i < 300; i++) {
+      if (pidFile.isFile()) {
+        final String pid = new String(Files.readAllBytes(pidFile.toPath()),
+            StandardCharsets.UTF_8).trim();
+        if (!pid.isEmpty()) {
+          return pid;
+        }
+      }
+      Thread.sleep(100);
+    }
+    throw new AssertionError("The process did not start.");
+  }
+
+  private static boolean isRunning(String pid) throws Exception {
+    return new ExecHelper().exec(RedirectType.TO_BUFFER, null, false, "kill", "-0", pid).res == 0;
+  }
+
+}